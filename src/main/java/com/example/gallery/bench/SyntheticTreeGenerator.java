@@ -0,0 +1,217 @@
+package com.example.gallery.bench;
+
+import com.example.gallery.progress.PhaseProgress;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import javax.imageio.ImageIO;
+
+/**
+ * ベンチマーク用の合成メディアツリー（inputDir）を生成する。
+ *
+ * <p>各ファイルは形式として有効な小さなスタブに、目標サイズまでの詰め物を加えたもの。
+ *
+ * <ul>
+ *   <li>JPEG / PNG：8x8 の画像（ImageIO で生成）の後ろに詰め物を付ける（デコーダは終端以降を読まない）
+ *   <li>MP4 / MOV / M4V：{@code ftyp} box と、詰め物を中身とする {@code free} box（トラックは持たない）
+ * </ul>
+ *
+ * <p>ファイルごとの拡張子・サイズ・更新日時は (seed, 連番) から決まるため、同じ {@link TreeSpec} からは同じツリーが生成される。
+ */
+public final class SyntheticTreeGenerator {
+
+  /** 生成できる拡張子。 */
+  public static final List<String> SUPPORTED_EXTENSIONS =
+      List.of("jpg", "jpeg", "png", "mp4", "mov", "m4v");
+
+  /** 更新日時の範囲の始点（ここから約4年の範囲に散らす）。 */
+  static final Instant MODIFIED_BASE = Instant.parse("2020-01-01T00:00:00Z");
+
+  private static final long MODIFIED_RANGE_SECONDS = 4L * 365 * 24 * 60 * 60;
+
+  /** 詰め物の元になる乱数ブロック（圧縮・重複排除されにくい内容にする）。 */
+  private static final int PAD_BLOCK_BYTES = 1024 * 1024;
+
+  private static final byte[] JPEG_STUB = image("jpg");
+  private static final byte[] PNG_STUB = image("png");
+
+  private SyntheticTreeGenerator() {}
+
+  /**
+   * 生成結果。
+   *
+   * @param files 生成したファイル数
+   * @param bytes 生成した合計バイト数
+   * @param directories 末端ディレクトリの数
+   */
+  public record Result(long files, long bytes, long directories) {}
+
+  /**
+   * inputDir 配下に合成メディアツリーを生成する（既存のファイルは上書きする）。
+   *
+   * @param inputDir 生成先
+   * @param spec 構成
+   * @param progress 進捗カウンタ（1件ごとに件数とバイト数を加算）
+   * @return 生成結果
+   * @throws IOException 書き込みに失敗した場合
+   */
+  public static Result generate(Path inputDir, TreeSpec spec, PhaseProgress progress)
+      throws IOException {
+    Objects.requireNonNull(inputDir, "inputDir");
+    Objects.requireNonNull(spec, "spec");
+    Objects.requireNonNull(progress, "progress");
+
+    byte[] pad = new byte[PAD_BLOCK_BYTES];
+    new SplittableRandom(spec.seed()).nextBytes(pad);
+    String[] extensions = spec.mix().keySet().toArray(String[]::new);
+    int[] weights = spec.mix().values().stream().mapToInt(Integer::intValue).toArray();
+    int totalWeight = 0;
+    for (int w : weights) {
+      totalWeight += w;
+    }
+
+    long leaves = spec.leafDirectories();
+    Path absInput = inputDir.toAbsolutePath().normalize();
+    Files.createDirectories(absInput);
+    long bytes = 0;
+    for (int i = 0; i < spec.files(); i++) {
+      SplittableRandom random = new SplittableRandom(spec.seed() * 0x9E3779B97F4A7C15L + i);
+      String ext = pick(extensions, weights, random.nextInt(totalWeight));
+      long size = logUniform(random, spec.minBytes(), spec.maxBytes());
+      Path dir = leafDirectory(absInput, i % leaves, spec);
+      Path file = dir.resolve(String.format(Locale.ROOT, "IMG_%07d.%s", i, ext));
+      Files.createDirectories(dir);
+      long written = write(file, ext, size, pad, random.nextInt(PAD_BLOCK_BYTES));
+      Files.setLastModifiedTime(
+          file,
+          FileTime.from(MODIFIED_BASE.plusSeconds(random.nextLong(MODIFIED_RANGE_SECONDS))));
+      bytes += written;
+      progress.add(1, written);
+    }
+    return new Result(spec.files(), bytes, Math.min(leaves, spec.files()));
+  }
+
+  /** 末端ディレクトリの番号を fanOut 進数で depth 桁に分解し、{@code d<桁>} を並べたパスにする。 */
+  static Path leafDirectory(Path root, long leaf, TreeSpec spec) {
+    String[] parts = new String[spec.depth()];
+    long rest = leaf;
+    for (int level = spec.depth() - 1; level >= 0; level--) {
+      parts[level] = "d" + (rest % spec.fanOut());
+      rest /= spec.fanOut();
+    }
+    Path dir = root;
+    for (String part : parts) {
+      dir = dir.resolve(part);
+    }
+    return dir;
+  }
+
+  /**
+   * 拡張子に応じたスタブを返す（MP4 系は {@code ftyp} box のみ）。
+   *
+   * @param ext 拡張子（小文字）
+   * @return スタブのバイト列
+   */
+  static byte[] stub(String ext) {
+    switch (ext) {
+      case "jpg":
+      case "jpeg":
+        return JPEG_STUB;
+      case "png":
+        return PNG_STUB;
+      case "mp4":
+      case "m4v":
+        return ftyp("isom");
+      case "mov":
+        return ftyp("qt  ");
+      default:
+        throw new IllegalArgumentException("対応していない拡張子です: " + ext);
+    }
+  }
+
+  private static long write(Path file, String ext, long size, byte[] pad, int padOffset)
+      throws IOException {
+    byte[] head = stub(ext);
+    boolean boxed = !ext.equals("jpg") && !ext.equals("jpeg") && !ext.equals("png");
+    // MP4 系は詰め物を free box に入れるため、その box ヘッダ（8 バイト）も含めて目標サイズにする
+    long padding = Math.max(0, size - head.length - (boxed ? 8 : 0));
+    try (OutputStream out = Files.newOutputStream(file)) {
+      out.write(head);
+      if (boxed) {
+        ByteBuffer box = ByteBuffer.allocate(8);
+        box.putInt((int) (padding + 8)).put("free".getBytes(StandardCharsets.US_ASCII));
+        out.write(box.array());
+      }
+      long remaining = padding;
+      int offset = padOffset;
+      while (remaining > 0) {
+        int n = (int) Math.min(remaining, pad.length - offset);
+        out.write(pad, offset, n);
+        remaining -= n;
+        offset = 0;
+      }
+    }
+    return head.length + (boxed ? 8 : 0) + padding;
+  }
+
+  private static String pick(String[] extensions, int[] weights, int r) {
+    for (int i = 0; i < extensions.length; i++) {
+      r -= weights[i];
+      if (r < 0) {
+        return extensions[i];
+      }
+    }
+    return extensions[extensions.length - 1];
+  }
+
+  /** 小さいファイルが多く大きいファイルが少ない分布（下限〜上限の対数一様分布）。 */
+  private static long logUniform(SplittableRandom random, long min, long max) {
+    if (min == max) {
+      return min;
+    }
+    double lo = Math.log(min);
+    double hi = Math.log(max);
+    long size = Math.round(Math.exp(lo + random.nextDouble() * (hi - lo)));
+    return Math.min(max, Math.max(min, size));
+  }
+
+  private static byte[] ftyp(String brand) {
+    ByteBuffer box = ByteBuffer.allocate(24);
+    box.putInt(24).put("ftyp".getBytes(StandardCharsets.US_ASCII));
+    box.put(brand.getBytes(StandardCharsets.US_ASCII)).putInt(0x200);
+    box.put(brand.getBytes(StandardCharsets.US_ASCII));
+    box.put("mp41".getBytes(StandardCharsets.US_ASCII));
+    return box.array();
+  }
+
+  private static byte[] image(String format) {
+    BufferedImage img = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+    for (int y = 0; y < 8; y++) {
+      for (int x = 0; x < 8; x++) {
+        img.setRGB(x, y, new Color(x * 32, y * 32, 128).getRGB());
+      }
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      if (!ImageIO.write(img, format, out)) {
+        throw new IllegalStateException("画像を書き出せません: " + format);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,104 @@
+package com.example.gallery.bench;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 合成メディアツリーの構成。
+ *
+ * @param files ファイル数
+ * @param depth ディレクトリの深さ（0 の場合は inputDir 直下にすべて置く）
+ * @param fanOut 1ディレクトリあたりのサブディレクトリ数
+ * @param minBytes ファイルサイズの下限（bytes）
+ * @param maxBytes ファイルサイズの上限（bytes。下限〜上限の対数一様分布で決める）
+ * @param mix 拡張子ごとの重み（例: jpg=70, png=20, mp4=10）
+ * @param seed 乱数の種（同じ構成・種なら同じツリーになる）
+ */
+public record TreeSpec(
+    int files,
+    int depth,
+    int fanOut,
+    long minBytes,
+    long maxBytes,
+    Map<String, Integer> mix,
+    long seed) {
+
+  /** 1ファイルの上限（MP4 の box サイズを 32bit で書くため）。 */
+  static final long MAX_FILE_BYTES = Integer.MAX_VALUE;
+
+  public TreeSpec {
+    if (files < 0) {
+      throw new IllegalArgumentException("files が不正です: " + files);
+    }
+    if (depth < 0) {
+      throw new IllegalArgumentException("depth が不正です: " + depth);
+    }
+    if (fanOut < 1) {
+      throw new IllegalArgumentException("fanOut が不正です: " + fanOut);
+    }
+    if (minBytes < 1 || maxBytes < minBytes || maxBytes > MAX_FILE_BYTES) {
+      throw new IllegalArgumentException(
+          "ファイルサイズの範囲が不正です: " + minBytes + "〜" + maxBytes);
+    }
+    Objects.requireNonNull(mix, "mix");
+    if (mix.isEmpty()) {
+      throw new IllegalArgumentException("mix が空です");
+    }
+    for (Map.Entry<String, Integer> e : mix.entrySet()) {
+      if (!SyntheticTreeGenerator.SUPPORTED_EXTENSIONS.contains(e.getKey())) {
+        throw new IllegalArgumentException(
+            "対応していない拡張子です: "
+                + e.getKey()
+                + "（"
+                + String.join(" / ", SyntheticTreeGenerator.SUPPORTED_EXTENSIONS)
+                + "）");
+      }
+      if (e.getValue() == null || e.getValue() <= 0) {
+        throw new IllegalArgumentException("重みが不正です: " + e.getKey() + "=" + e.getValue());
+      }
+    }
+    mix = Collections.unmodifiableMap(new LinkedHashMap<>(mix));
+  }
+
+  /**
+   * 拡張子ごとの重みの指定（例: {@code jpg=70,png=20,mp4=10}）を解析する。
+   *
+   * @param value 指定値
+   * @return 拡張子（小文字）→ 重み（指定順）
+   * @throws IllegalArgumentException 形式が不正な場合
+   */
+  public static Map<String, Integer> parseMix(String value) {
+    Map<String, Integer> mix = new LinkedHashMap<>();
+    for (String part : value.split(",")) {
+      String trimmed = part.trim();
+      if (trimmed.isEmpty()) {
+        continue;
+      }
+      int eq = trimmed.indexOf('=');
+      String ext = (eq < 0 ? trimmed : trimmed.substring(0, eq)).trim().toLowerCase(Locale.ROOT);
+      if (ext.startsWith(".")) {
+        ext = ext.substring(1);
+      }
+      int weight;
+      try {
+        weight = eq < 0 ? 1 : Integer.parseInt(trimmed.substring(eq + 1).trim());
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("重みが不正です: " + trimmed, e);
+      }
+      mix.merge(ext, weight, Integer::sum);
+    }
+    return mix;
+  }
+
+  /** ファイルを置く末端ディレクトリの数（ファイル数より多い場合はファイル数）。 */
+  long leafDirectories() {
+    long leaves = 1;
+    for (int i = 0; i < depth && leaves < files; i++) {
+      leaves *= fanOut;
+    }
+    return Math.max(1, Math.min(leaves, files));
+  }
+}
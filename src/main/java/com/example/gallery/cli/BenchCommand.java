@@ -0,0 +1,345 @@
+package com.example.gallery.cli;
+
+import com.example.gallery.bench.SyntheticTreeGenerator;
+import com.example.gallery.bench.TreeSpec;
+import com.example.gallery.progress.PhaseProgress;
+import com.example.gallery.progress.PhaseTiming;
+import com.example.gallery.progress.ProgressMode;
+import com.example.gallery.progress.ProgressReporter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * {@code gallery bench} サブコマンド。
+ *
+ * <p>合成メディアツリー（{@link SyntheticTreeGenerator}）を生成し、{@code build} を繰り返し実行して
+ * フェーズごとの所要時間・スループット・ヒープ割り当て量を表示する（本番規模の再現用のマクロベンチマーク）。
+ */
+@Command(name = "bench", description = "合成メディアツリーで build を繰り返し実行し、フェーズごとの所要時間を計測する。")
+public class BenchCommand implements Callable<Integer> {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @Option(
+      names = "--dir",
+      description = "作業ディレクトリ（media / dist / 設定ファイルを置く、省略時: ${DEFAULT-VALUE}）",
+      defaultValue = "./work/bench")
+  private Path dir;
+
+  @Option(
+      names = "--files",
+      description = "ファイル数（省略時: ${DEFAULT-VALUE}）",
+      defaultValue = "10000")
+  private int files;
+
+  @Option(
+      names = "--depth",
+      description = "ディレクトリの深さ（省略時: ${DEFAULT-VALUE}）",
+      defaultValue = "3")
+  private int depth;
+
+  @Option(
+      names = "--fan-out",
+      description = "1ディレクトリあたりのサブディレクトリ数（省略時: ${DEFAULT-VALUE}）",
+      defaultValue = "10")
+  private int fanOut;
+
+  @Option(
+      names = "--min-size",
+      description = "ファイルサイズの下限（bytes、省略時: ${DEFAULT-VALUE}）",
+      defaultValue = "4096")
+  private long minSize;
+
+  @Option(
+      names = "--max-size",
+      description = "ファイルサイズの上限（bytes、対数一様分布、省略時: ${DEFAULT-VALUE}）",
+      defaultValue = "262144")
+  private long maxSize;
+
+  @Option(
+      names = "--mix",
+      description = "拡張子ごとの重み（省略時: ${DEFAULT-VALUE}）",
+      defaultValue = "jpg=70,png=20,mp4=10")
+  private String mix;
+
+  @Option(names = "--seed", description = "乱数の種（省略時: ${DEFAULT-VALUE}）", defaultValue = "1")
+  private long seed;
+
+  @Option(
+      names = "--iterations",
+      description = "計測する回数（省略時: ${DEFAULT-VALUE}）",
+      defaultValue = "3")
+  private int iterations;
+
+  @Option(
+      names = "--warmup",
+      description = "計測前に捨てる回数（JIT のウォームアップ、省略時: ${DEFAULT-VALUE}）",
+      defaultValue = "1")
+  private int warmup;
+
+  @Option(
+      names = "--incremental",
+      description = "2回目以降を --clean なしで実行する（再ビルド時のスキップ・キャッシュの効果を計測する）")
+  private boolean incremental;
+
+  @Option(
+      names = "--scan-memory-budget-mb",
+      description = "設定ファイルの scanMemoryBudgetMb（0 は無制限、省略時: ${DEFAULT-VALUE}）",
+      defaultValue = "0")
+  private int scanMemoryBudgetMb;
+
+  @Option(names = "--regenerate", description = "既存の合成ツリーがあっても作り直す")
+  private boolean regenerate;
+
+  @Option(names = "--verbose", description = "build の出力をそのまま表示する")
+  private boolean verbose;
+
+  @Override
+  public Integer call() {
+    TreeSpec spec;
+    try {
+      spec = new TreeSpec(files, depth, fanOut, minSize, maxSize, TreeSpec.parseMix(mix), seed);
+    } catch (IllegalArgumentException e) {
+      System.err.println("bench: 合成ツリーの指定が不正です");
+      System.err.println("  " + e.getMessage());
+      return 1;
+    }
+    if (iterations < 1 || warmup < 0 || scanMemoryBudgetMb < 0) {
+      System.err.println(
+          "bench: --iterations は 1 以上、--warmup / --scan-memory-budget-mb は 0 以上を指定してください");
+      return 1;
+    }
+
+    Path benchDir = dir.toAbsolutePath().normalize();
+    Path media = benchDir.resolve("media");
+    Path marker = benchDir.resolve(".bench-spec");
+    Path config = benchDir.resolve("gallery.config.json");
+    try {
+      System.out.printf("bench: %s%n", benchDir);
+      System.out.printf(
+          "  files: %,d, depth: %d, fan-out: %d, size: %d〜%d bytes, mix: %s, seed: %d%n",
+          spec.files(), spec.depth(), spec.fanOut(), spec.minBytes(), spec.maxBytes(),
+          spec.mix(), spec.seed());
+
+      if (!prepareTree(spec, media, marker)) {
+        return 1;
+      }
+      writeConfig(config, spec);
+
+      System.out.println();
+      List<Run> runs = new ArrayList<>();
+      for (int i = 0; i < warmup + iterations; i++) {
+        boolean clean = !incremental || i == 0;
+        Run run = runBuild(config, clean);
+        if (run == null) {
+          return 1;
+        }
+        boolean measured = i >= warmup;
+        System.out.printf(
+            "  #%d%s %s%n", i + 1, measured ? "" : "（ウォームアップ）", describe(run));
+        if (measured) {
+          runs.add(run);
+        }
+      }
+
+      System.out.println();
+      printSummary(runs);
+      return 0;
+    } catch (IOException e) {
+      System.err.println("bench: 入出力エラーが発生しました");
+      System.err.println("  " + e.getMessage());
+      return 1;
+    }
+  }
+
+  /** 1回分の build の計測結果。 */
+  private record Run(long totalNanos, List<PhaseTiming> phases) {}
+
+  /**
+   * 合成ツリーを用意する（前回と同じ指定なら作り直さない）。
+   *
+   * @return 続行できる場合は true
+   */
+  private boolean prepareTree(TreeSpec spec, Path media, Path marker) throws IOException {
+    String description = spec.toString();
+    if (!regenerate
+        && Files.isDirectory(media)
+        && Files.isRegularFile(marker)
+        && Files.readString(marker, StandardCharsets.UTF_8).equals(description)) {
+      System.out.println("bench: 前回生成した合成ツリーを使います");
+      return true;
+    }
+    if (Files.exists(media)) {
+      // 自分で生成したツリー（目印のファイルがある）以外は削除しない
+      if (!Files.isRegularFile(marker)) {
+        System.err.println("bench: 生成先に既存のファイルがあります: " + media);
+        System.err.println("  別の --dir を指定してください");
+        return false;
+      }
+      deleteTree(media);
+    }
+    Files.deleteIfExists(marker);
+
+    PhaseProgress progress = new PhaseProgress("generate");
+    progress.setTotals(spec.files(), -1);
+    SyntheticTreeGenerator.Result generated;
+    try (ProgressReporter reporter = ProgressReporter.start(ProgressMode.AUTO, System.out)) {
+      reporter.begin(progress);
+      generated = SyntheticTreeGenerator.generate(media, spec, progress);
+      reporter.end();
+    }
+    Files.writeString(marker, description, StandardCharsets.UTF_8);
+    System.out.printf(
+        "bench: 合成ツリーを生成しました（ファイル: %,d, 合計: %s, ディレクトリ: %,d）%n",
+        generated.files(),
+        ProgressReporter.formatBytes(generated.bytes()),
+        generated.directories());
+    return true;
+  }
+
+  private void writeConfig(Path config, TreeSpec spec) throws IOException {
+    Map<String, Object> json = new LinkedHashMap<>();
+    json.put("title", "Bench");
+    json.put("inputDir", "./media");
+    json.put("outputDir", "./dist");
+    json.put("includeExtensions", List.copyOf(spec.mix().keySet()));
+    json.put("sort", "modified_desc");
+    if (scanMemoryBudgetMb > 0) {
+      json.put("scanMemoryBudgetMb", scanMemoryBudgetMb);
+    }
+    MAPPER.writerWithDefaultPrettyPrinter().writeValue(config.toFile(), json);
+  }
+
+  /**
+   * build を1回実行し、フェーズごとの計測結果を返す。
+   *
+   * @return 計測結果（build が失敗した場合は null）
+   */
+  private Run runBuild(Path config, boolean clean) {
+    BuildCommand build = new BuildCommand();
+    List<String> args = new ArrayList<>(List.of("--config", config.toString()));
+    if (clean) {
+      args.add("--clean");
+    }
+    new CommandLine(build).parseArgs(args.toArray(String[]::new));
+
+    PrintStream stdout = System.out;
+    if (!verbose) {
+      System.setOut(
+          new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8));
+    }
+    int exitCode;
+    long start = System.nanoTime();
+    List<PhaseTiming> phases;
+    try (ProgressReporter reporter = ProgressReporter.start(ProgressMode.NONE, System.out)) {
+      exitCode = build.run(reporter);
+      phases = reporter.timings();
+    } finally {
+      System.setOut(stdout);
+    }
+    long total = System.nanoTime() - start;
+    if (exitCode != 0) {
+      System.err.println("bench: build が失敗しました（終了コード: " + exitCode + "）");
+      return null;
+    }
+    return new Run(total, phases);
+  }
+
+  private static String describe(Run run) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(seconds(run.totalNanos())).append(" (");
+    for (int i = 0; i < run.phases().size(); i++) {
+      PhaseTiming t = run.phases().get(i);
+      sb.append(i > 0 ? ", " : "").append(t.name()).append(' ').append(seconds(t.elapsedNanos()));
+    }
+    return sb.append(')').toString();
+  }
+
+  /** フェーズごとに、計測した回の中央値・最小・最大と、中央値でのスループット・割り当て量を表示する。 */
+  private static void printSummary(List<Run> runs) {
+    Map<String, List<PhaseTiming>> byPhase = new LinkedHashMap<>();
+    for (Run run : runs) {
+      for (PhaseTiming t : run.phases()) {
+        byPhase.computeIfAbsent(t.name(), k -> new ArrayList<>()).add(t);
+      }
+    }
+    System.out.printf("bench: 計測結果（%d 回）%n", runs.size());
+    System.out.printf(
+        Locale.ROOT,
+        "  %-8s %9s %9s %9s %12s %11s %11s%n",
+        "phase", "median", "min", "max", "件/s", "bytes/s", "alloc");
+    for (Map.Entry<String, List<PhaseTiming>> e : byPhase.entrySet()) {
+      List<PhaseTiming> sorted = new ArrayList<>(e.getValue());
+      sorted.sort((a, b) -> Long.compare(a.elapsedNanos(), b.elapsedNanos()));
+      PhaseTiming median = sorted.get(sorted.size() / 2);
+      double secs = Math.max(median.elapsedNanos(), 1) / 1_000_000_000.0;
+      System.out.printf(
+          Locale.ROOT,
+          "  %-8s %9s %9s %9s %,12.0f %11s %11s%n",
+          e.getKey(),
+          seconds(median.elapsedNanos()),
+          seconds(sorted.get(0).elapsedNanos()),
+          seconds(sorted.get(sorted.size() - 1).elapsedNanos()),
+          median.items() / secs,
+          median.bytes() > 0 ? ProgressReporter.formatBytes((long) (median.bytes() / secs)) : "-",
+          median.allocatedBytes() >= 0
+              ? ProgressReporter.formatBytes(median.allocatedBytes())
+              : "n/a");
+    }
+    List<Long> totals = new ArrayList<>();
+    for (Run run : runs) {
+      totals.add(run.totalNanos());
+    }
+    totals.sort(null);
+    System.out.printf(
+        Locale.ROOT,
+        "  %-8s %9s %9s %9s%n",
+        "total",
+        seconds(totals.get(totals.size() / 2)),
+        seconds(totals.get(0)),
+        seconds(totals.get(totals.size() - 1)));
+  }
+
+  private static String seconds(long nanos) {
+    return String.format(Locale.ROOT, "%.3f s", nanos / 1_000_000_000.0);
+  }
+
+  private static void deleteTree(Path root) throws IOException {
+    Files.walkFileTree(
+        root,
+        new SimpleFileVisitor<>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+              throws IOException {
+            Files.delete(file);
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult postVisitDirectory(Path d, IOException e) throws IOException {
+            if (e != null) {
+              throw e;
+            }
+            Files.delete(d);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+}
@@ -3,22 +3,51 @@ package com.example.gallery.cli;
 import com.example.gallery.config.AppConfig;
 import com.example.gallery.config.ConfigLoader;
 import com.example.gallery.config.ConfigValidationException;
+import com.example.gallery.domain.AssetFingerprint;
+import com.example.gallery.domain.InputRoot;
+import com.example.gallery.domain.LayoutMode;
 import com.example.gallery.domain.MediaItem;
+import com.example.gallery.image.DecodeScheduler;
+import com.example.gallery.image.DuplicateFinder;
+import com.example.gallery.image.HashIndex;
+import com.example.gallery.image.ImageDownscaler;
+import com.example.gallery.image.ImageVariantGenerator;
+import com.example.gallery.image.VariantIndex;
+import com.example.gallery.output.ArchiveFormat;
+import com.example.gallery.output.ArchiveWriter;
 import com.example.gallery.output.AssetCopier;
 import com.example.gallery.output.AssetCopyException;
+import com.example.gallery.output.AssetPruner;
+import com.example.gallery.output.AssetVerifier;
+import com.example.gallery.output.ChecksumAlgorithm;
+import com.example.gallery.output.CopyJournal;
+import com.example.gallery.output.CopyOptions;
+import com.example.gallery.output.FileSystemSink;
 import com.example.gallery.output.OutputPaths;
 import com.example.gallery.output.OutputPreparationException;
 import com.example.gallery.output.OutputPreparer;
+import com.example.gallery.output.OutputSink;
+import com.example.gallery.output.SafePaths;
+import com.example.gallery.progress.PhaseProgress;
+import com.example.gallery.progress.ProgressMode;
+import com.example.gallery.progress.ProgressReporter;
+import com.example.gallery.render.AlbumRenderer;
+import com.example.gallery.render.CardOptions;
+import com.example.gallery.render.DuplicateCollapse;
+import com.example.gallery.render.FragmentCache;
 import com.example.gallery.render.HtmlGalleryRenderer;
 import com.example.gallery.render.HtmlTemplateLoader;
 import com.example.gallery.render.HtmlWriteException;
+import com.example.gallery.render.SearchIndex;
 import com.example.gallery.scan.MediaScanException;
 import com.example.gallery.scan.MediaScanner;
+import com.example.gallery.scan.SortedMediaItems;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
-import java.util.List;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Iterator;
 import java.util.concurrent.Callable;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
@@ -31,6 +60,9 @@ import picocli.CommandLine.Option;
 @Command(name = "build", description = "dist/index.html と dist/assets を生成する。")
 public class BuildCommand implements Callable<Integer> {
 
+  private static final String ASSETS_DIR = "assets";
+  private static final String INDEX_NAME = "index.html";
+
   @Option(
       names = "--config",
       description = "設定ファイルのパス",
@@ -40,64 +72,138 @@ public class BuildCommand implements Callable<Integer> {
   @Option(names = "--clean", description = "ビルド前に dist を削除してから生成する")
   private boolean clean;
 
+  @Option(
+      names = "--prune",
+      description = "走査結果に存在しないファイル・空ディレクトリを dist/assets から削除する")
+  private boolean prune;
+
+  @Option(
+      names = "--archive",
+      paramLabel = "FILE",
+      description = "dist の代わりに index.html と assets を1つのアーカイブ（.zip / .tar）へ書き出す")
+  private Path archive;
+
+  @Option(
+      names = "--verify",
+      description = "コピー後に dist/assets がコピー元と一致していることをチェックサムで検証する")
+  private boolean verify;
+
+  @Option(
+      names = "--checksum",
+      description = "--verify で使うチェックサムの種類（crc32c / sha256、省略時: ${DEFAULT-VALUE}）",
+      defaultValue = "crc32c")
+  private String checksum;
+
+  @Option(
+      names = "--progress",
+      description = "進捗表示（auto / tty / plain / none、省略時: ${DEFAULT-VALUE}）",
+      defaultValue = "auto")
+  private String progress;
+
   @Override
   public Integer call() {
+    ProgressMode progressMode;
+    try {
+      progressMode = ProgressMode.from(progress);
+    } catch (IllegalArgumentException e) {
+      System.err.println("build: --progress が不正です: " + progress + "（auto / tty / plain / none）");
+      return 1;
+    }
+
+    try (ProgressReporter reporter = ProgressReporter.start(progressMode, System.out)) {
+      return run(reporter);
+    }
+  }
+
+  /**
+   * 指定したレポーターで進捗を記録しながらビルドする（bench からも呼ぶ）。
+   *
+   * @param reporter 進捗レポーター
+   * @return 終了コード
+   */
+  int run(ProgressReporter reporter) {
+    ChecksumAlgorithm checksumAlgorithm;
+    try {
+      checksumAlgorithm = ChecksumAlgorithm.from(checksum);
+    } catch (IllegalArgumentException e) {
+      System.err.println("build: --checksum が不正です: " + checksum + "（crc32c / sha256）");
+      return 1;
+    }
+
     try {
       AppConfig cfg = ConfigLoader.load(config);
 
       System.out.println("build: 設定ファイルの読み込みに成功しました");
       System.out.printf("  config: %s%n", config.toAbsolutePath().normalize());
-      System.out.printf("  inputDir: %s%n", cfg.inputDir());
+      printInputDirs(cfg);
       System.out.printf("  outputDir: %s%n", cfg.outputDir());
       System.out.printf("  sort: %s%n", cfg.sort().id());
       System.out.printf("  extensions: %s%n", cfg.includeExtensions());
+      System.out.printf("  sniffContent: %s%n", cfg.sniffContent());
+      if (cfg.followLinks()) {
+        System.out.println("  followLinks: true");
+      }
+      System.out.printf("  layout: %s%n", cfg.layout().id());
+      System.out.printf(
+          "  copyConcurrency: %s%n",
+          cfg.copyConcurrency() == 0 ? "auto" : String.valueOf(cfg.copyConcurrency()));
+      if (cfg.copyMaxBytesPerSec() > 0) {
+        System.out.printf("  copyMaxBytesPerSec: %d%n", cfg.copyMaxBytesPerSec());
+      }
+      if (cfg.assetFingerprint() != AssetFingerprint.NONE) {
+        System.out.printf("  assetFingerprint: %s%n", cfg.assetFingerprint().id());
+      }
+      if (cfg.imageVariants().srcset()) {
+        System.out.printf("  imageWidths: %s%n", cfg.imageVariants().widths());
+      }
+      if (cfg.imageVariants().placeholders()) {
+        System.out.println("  imagePlaceholders: true");
+      }
+      if (cfg.collapseDuplicates()) {
+        System.out.printf("  collapseDuplicates: true（threshold: %d）%n", cfg.duplicateThreshold());
+      }
+      if (cfg.searchIndex()) {
+        System.out.println("  searchIndex: true");
+      }
+      if (cfg.downscale().enabled()) {
+        System.out.printf(
+            "  downscale: 長辺 %s, サイズ %s, 画質 %d%n",
+            cfg.downscale().maxDimension() > 0 ? cfg.downscale().maxDimension() + "px" : "-",
+            cfg.downscale().maxBytes() > 0
+                ? ProgressReporter.formatBytes(cfg.downscale().maxBytes())
+                : "-",
+            cfg.downscale().quality());
+      }
       System.out.printf("  clean: %s%n", clean);
+      System.out.printf("  prune: %s%n", prune);
+      if (verify) {
+        System.out.printf("  verify: %s%n", checksumAlgorithm.id());
+      }
+
+      if (archive != null) {
+        return buildArchive(cfg, reporter);
+      }
+      if (verify && cfg.downscale().enabled()) {
+        // 縮小・再エンコードした assets はコピー元と内容が一致しない
+        System.err.println(
+            "build: --verify は downscaleMaxDimension / downscaleMaxBytes と同時に指定できません");
+        return 1;
+      }
 
       // 出力先準備（--clean対応 + パス安全チェック + dist/assets作成）
-      OutputPaths out = OutputPreparer.prepare(cfg.inputDir(), cfg.outputDir(), clean);
+      OutputPaths out = OutputPreparer.prepare(cfg.inputDirs(), cfg.outputDir(), clean);
       System.out.println();
       System.out.println("build: 出力先の準備が完了しました");
       System.out.printf("  dist: %s%n", out.outputDir());
       System.out.printf("  assets: %s%n", out.assetsDir());
       System.out.printf("  index: %s%n", out.indexHtmlPath());
-
-      List<MediaItem> items =
-          MediaScanner.scan(cfg.inputDir(), cfg.includeExtensions(), cfg.sort());
-
-      System.out.println();
-      System.out.printf("build: メディア走査が完了しました（件数: %d）%n", items.size());
-      int preview = Math.min(items.size(), 5);
-      for (int i = 0; i < preview; i++) {
-        MediaItem item = items.get(i);
-        System.out.printf(
-            "  - [%s] %s (size=%d bytes, modified=%s)%n",
-            item.type(),
-            item.relativePath().toString().replace('\\', '/'),
-            item.sizeBytes(),
-            item.lastModifiedAt());
-      }
-
-      // assets へコピー（相対構造維持）
-      int copied = AssetCopier.copyAll(items, out.assetsDir());
+      // dist への書き出し先（assets の差分コピー・index.html・アルバムページ・検索用の索引）
+      FileSystemSink sink = new FileSystemSink(out.outputDir());
 
       System.out.println();
-      System.out.printf("build: assets へのコピーが完了しました（件数: %d）%n", copied);
-      System.out.printf("  assets: %s%n", out.assetsDir());
-
-      // index.html 生成（テンプレ読込 → レンダ → 書き込み）
-      try {
-        String template = HtmlTemplateLoader.loadUtf8("/templates/index.html");
-        String html = HtmlGalleryRenderer.render(template, cfg.title(), items);
-        Files.writeString(out.indexHtmlPath(), html, StandardCharsets.UTF_8);
-      } catch (IOException e) {
-        throw new HtmlWriteException("index.html の生成に失敗しました: " + out.indexHtmlPath(), e);
+      try (SortedMediaItems items = scan(cfg, reporter)) {
+        return writeDist(sink, out.stateDir(), cfg, items, reporter, checksumAlgorithm);
       }
-
-      System.out.println();
-      System.out.println("build: index.html の生成が完了しました");
-      System.out.printf("  index: %s%n", out.indexHtmlPath());
-
-      return 0;
     } catch (OutputPreparationException e) {
       System.err.println("build: 出力先の準備に失敗しました");
       System.err.println("  " + e.getMessage());
@@ -122,6 +228,426 @@ public class BuildCommand implements Callable<Integer> {
       System.err.println("build: 入出力エラーが発生しました");
       System.err.println("  " + e.getMessage());
       return 1;
+    } catch (UncheckedIOException e) {
+      // 一時ファイルからの読み出し中のエラー
+      System.err.println("build: 入出力エラーが発生しました");
+      System.err.println("  " + e.getCause().getMessage());
+      return 1;
+    }
+  }
+
+  /**
+   * 走査結果から dist の内容（assets の差分コピー・index.html・アルバムページ・検索用の索引）を sink へ書き出す。
+   *
+   * <p>前回の内容は sink から読み戻して差分だけを書き出し、不要になったエントリも sink を通して削除する。
+   * ビルドの記録（ジャーナル・キャッシュ）は stateDir に置く。sink に {@link
+   * com.example.gallery.output.InMemorySink} を渡せば、dist をディスクに書き込まずに同じ内容を生成できる。 縮小版（imageWidths /
+   * imagePlaceholders）と {@code --verify} は dist のファイルを直接読み書きするため、{@link FileSystemSink}
+   * の場合だけ指定できる。
+   *
+   * @param sink 出力先（複数のスレッドから同時に呼び出してよい実装）
+   * @param stateDir ビルドの記録を置くディレクトリ
+   * @param cfg 設定
+   * @param items 走査結果
+   * @param reporter 進捗レポーター
+   * @param checksumAlgorithm {@code --verify} で使うチェックサムの種類
+   * @return 終了コード
+   * @throws IOException 読み書きに失敗した場合
+   */
+  int writeDist(
+      OutputSink sink,
+      Path stateDir,
+      AppConfig cfg,
+      SortedMediaItems items,
+      ProgressReporter reporter,
+      ChecksumAlgorithm checksumAlgorithm)
+      throws IOException {
+    Path outputDir = sink instanceof FileSystemSink fs ? fs.root() : null;
+    if (outputDir == null && cfg.imageVariants().enabled()) {
+      System.err.println("build: imageWidths / imagePlaceholders はディレクトリへの出力でのみ指定できます");
+      return 1;
+    }
+    if (outputDir == null && verify) {
+      System.err.println("build: --verify はディレクトリへの出力でのみ指定できます");
+      return 1;
+    }
+
+    // メモリ上に保持している場合は一覧で渡し、一時ファイルの場合はマージしながら順に渡す
+    Iterable<MediaItem> media = items.isInMemory() ? items.toList() : items;
+    // assets 上の名前（assetFingerprint: filename の場合は、縮小・再エンコードの条件を含めたフィンガープリント付き）
+    Iterable<MediaItem> assets =
+        cfg.assetFingerprint().toAssetItems(media, cfg.downscale()::encodingKey);
+
+    // 孤立ファイルの削除（--prune対応。--clean 時は dist が空のため不要）
+    if (prune && !clean) {
+      AssetPruner.Result pruned = AssetPruner.prune(assets, sink);
+      System.out.println();
+      System.out.printf(
+          "build: 不要な assets を削除しました（ファイル: %d, ディレクトリ: %d）%n",
+          pruned.deletedFiles(), pruned.deletedDirectories());
+    }
+
+    // 画像のデコード（コピー時の縮小・再エンコードと縮小版の生成）で共有するメモリ上限
+    DecodeScheduler decoder = DecodeScheduler.withBudget(cfg.decodeMemoryBudgetBytes());
+    ImageDownscaler downscaler =
+        cfg.downscale().enabled() ? new ImageDownscaler(cfg.downscale(), decoder) : null;
+
+    // assets へコピー（相対構造維持。ジャーナルで中断からの再開に対応）
+    System.out.println();
+    AssetCopier.CopyResult copied;
+    PhaseProgress copyProgress = new PhaseProgress("copy");
+    copyProgress.setTotals(items.size(), items.totalBytes());
+    reporter.begin(copyProgress);
+    try (CopyJournal journal = CopyJournal.open(stateDir)) {
+      // --verify 時はコピーしながらコピー元のチェックサムを計算する（検証時に読み直さない）
+      CopyOptions copyOptions =
+          new CopyOptions(
+              cfg.copyConcurrency(),
+              cfg.copyMaxBytesPerSec(),
+              verify ? checksumAlgorithm : null,
+              downscaler);
+      copied = AssetCopier.copyAll(assets, sink, journal, copyOptions, copyProgress);
+    }
+    reporter.end();
+
+    System.out.printf(
+        "build: assets へのコピーが完了しました（件数: %d, 配置済みのためスキップ: %d）%n",
+        copied.copied(), copied.skipped());
+    System.out.printf("  assets: %s%n", locationOf(sink, ASSETS_DIR));
+    if (downscaler != null) {
+      System.out.printf(
+          "  downscale: %d 件（%s → %s）%n",
+          downscaler.downscaledCount(),
+          ProgressReporter.formatBytes(downscaler.bytesBefore()),
+          ProgressReporter.formatBytes(downscaler.bytesAfter()));
     }
+
+    // コピー結果の検証（--verify対応）
+    if (verify) {
+      System.out.println();
+      PhaseProgress verifyProgress = new PhaseProgress("verify");
+      verifyProgress.setTotals(items.size(), items.totalBytes());
+      reporter.begin(verifyProgress);
+      AssetVerifier.Result verified =
+          AssetVerifier.verify(
+              assets,
+              outputDir.resolve(ASSETS_DIR),
+              checksumAlgorithm,
+              verifyProgress,
+              copied.sourceChecksums());
+      reporter.end();
+      if (!VerifyCommand.printResult("build", verified)) {
+        return 1;
+      }
+    }
+
+    // srcset 用の縮小版・プレースホルダの生成（imageWidths / imagePlaceholders 指定時）
+    VariantIndex variantIndex = null;
+    if (cfg.imageVariants().enabled()) {
+      System.out.println();
+      variantIndex = VariantIndex.open(stateDir, outputDir);
+      PhaseProgress resizeProgress = new PhaseProgress("resize");
+      resizeProgress.setTotals(items.size(), items.totalBytes());
+      reporter.begin(resizeProgress);
+      ImageVariantGenerator.Result resized =
+          ImageVariantGenerator.generate(
+              assets,
+              outputDir.resolve(ASSETS_DIR),
+              cfg.imageVariants(),
+              variantIndex,
+              resizeProgress,
+              decoder);
+      int removed = variantIndex.commit();
+      reporter.end();
+      System.out.printf(
+          "build: 縮小版の生成が完了しました（生成: %d 件 / %d ファイル, 変更なし: %d, 対象外: %d, 削除: %d）%n",
+          resized.generated(), resized.files(), resized.reused(), resized.skipped(), removed);
+      System.out.printf("  variants: %s%n", variantIndex.variantsDir());
+      printDecodeStats(decoder);
+    } else if (downscaler != null) {
+      printDecodeStats(decoder);
+    }
+
+    // 似た画像のグループ分け（collapseDuplicates 指定時。走査結果はメモリ上にある）
+    DuplicateCollapse duplicates = DuplicateCollapse.NONE;
+    if (cfg.collapseDuplicates()) {
+      System.out.println();
+      HashIndex hashIndex = HashIndex.open(stateDir);
+      PhaseProgress dupesProgress = new PhaseProgress("dupes");
+      dupesProgress.setTotals(items.size(), items.totalBytes());
+      reporter.begin(dupesProgress);
+      DuplicateFinder.Result found =
+          DuplicateFinder.find(
+              items.toList(), hashIndex, cfg.duplicateThreshold(), decoder, dupesProgress);
+      hashIndex.commit();
+      reporter.end();
+      DupesCommand.printResult("build", found);
+      duplicates = DuplicateCollapse.of(found.groups());
+    }
+    CardOptions cardOptions =
+        new CardOptions(
+            cfg.assetFingerprint(),
+            cfg.imageVariants(),
+            variantIndex,
+            cfg.downscale(),
+            duplicates);
+
+    // index.html 生成（テンプレ読込 → レンダ → 書き込み）
+    System.out.println();
+    AlbumRenderer.Result albums = null;
+    FragmentCache cached = null;
+    PhaseProgress renderProgress = new PhaseProgress("render");
+    renderProgress.setTotals(items.size(), -1);
+    reporter.begin(renderProgress);
+    try {
+      String template = HtmlTemplateLoader.loadUtf8("/templates/index.html");
+      if (cfg.layout() == LayoutMode.ALBUMS) {
+        albums =
+            AlbumRenderer.renderAll(
+                template, cfg.title(), items.toList(), sink, renderProgress, cardOptions);
+      } else {
+        // 前回から変わっていないカードはキャッシュから書き出す
+        try (FragmentCache cache = FragmentCache.open(stateDir, template, cardOptions)) {
+          writeIndexHtml(
+              sink, template, cfg.title(), media, renderProgress, cache, cardOptions);
+          cache.commit();
+          cached = cache;
+        }
+      }
+    } catch (IOException e) {
+      throw new HtmlWriteException(
+          "index.html の生成に失敗しました: " + locationOf(sink, INDEX_NAME), e);
+    }
+    reporter.end();
+
+    System.out.println("build: index.html の生成が完了しました");
+    System.out.printf("  index: %s%n", locationOf(sink, INDEX_NAME));
+    if (albums != null) {
+      System.out.printf(
+          "  albums: %d（生成: %d, 変更なし: %d, 削除: %d）%n",
+          albums.albums(), albums.rendered(), albums.skipped(), albums.removed());
+    }
+    if (cached != null) {
+      System.out.printf(
+          "  cards: %d（生成: %d, キャッシュ: %d）%n",
+          cached.hits() + cached.misses(), cached.misses(), cached.hits());
+    }
+
+    // 検索用の索引（searchIndex 指定時。外した場合は前回の索引を消し、検索欄を出さない）
+    if (cfg.searchIndex()) {
+      System.out.println();
+      writeSearchIndex(sink, cfg, items, media, reporter);
+      System.out.printf("  search: %s%n", locationOf(sink, SearchIndex.FILE_NAME));
+    } else {
+      sink.delete(SearchIndex.FILE_NAME);
+    }
+    return 0;
+  }
+
+  /** sink 上のエントリの場所を表示用に返す（ディレクトリへの出力の場合はパス）。 */
+  private static String locationOf(OutputSink sink, String name) {
+    return sink instanceof FileSystemSink fs ? fs.resolve(name).toString() : name;
+  }
+
+  /**
+   * 入力フォルダを表示する（複数の場合は relativePath に付く名前空間も表示する）。
+   *
+   * @param cfg 設定
+   */
+  static void printInputDirs(AppConfig cfg) {
+    for (InputRoot root : cfg.inputRoots()) {
+      if (root.name().isEmpty()) {
+        System.out.printf("  inputDir: %s%n", root.dir());
+      } else {
+        System.out.printf("  inputDir: %s（%s/）%n", root.dir(), root.name());
+      }
+    }
+  }
+
+  /** 入力フォルダを走査し、件数と先頭数件を表示する。 */
+  private static SortedMediaItems scan(AppConfig cfg, ProgressReporter reporter)
+      throws IOException {
+    PhaseProgress scanProgress = new PhaseProgress("scan");
+    reporter.begin(scanProgress);
+    SortedMediaItems items =
+        MediaScanner.scanSorted(
+            cfg.inputRoots(),
+            cfg.includeExtensions(),
+            cfg.sort(),
+            cfg.scanOptions(),
+            scanProgress);
+    reporter.end();
+
+    System.out.printf("build: メディア走査が完了しました（件数: %d）%n", items.size());
+    if (items.runCount() > 0) {
+      System.out.printf("  一時ファイルに書き出したラン: %d%n", items.runCount());
+    }
+    Iterator<MediaItem> head = items.iterator();
+    for (int i = 0; i < 5 && head.hasNext(); i++) {
+      MediaItem item = head.next();
+      System.out.printf(
+          "  - [%s] %s (size=%d bytes, modified=%s)%n",
+          item.type(),
+          item.relativePath().toString().replace('\\', '/'),
+          item.sizeBytes(),
+          item.lastModifiedAt());
+    }
+    return items;
+  }
+
+  /** 画像のデコードの上限・最大使用量・間引き読み込みの件数を表示する。 */
+  private static void printDecodeStats(DecodeScheduler decoder) {
+    System.out.printf(
+        "  decode: 上限 %s, 同時デコードの最大 %s, 間引き読み込み %d 件%n",
+        ProgressReporter.formatBytes(decoder.capacity()),
+        ProgressReporter.formatBytes(decoder.peakBytes()),
+        decoder.subsampledCount());
+  }
+
+  /**
+   * dist を作らず、index.html と assets を1つのアーカイブへ書き出す（--archive）。
+   *
+   * @return 終了コード
+   */
+  private int buildArchive(AppConfig cfg, ProgressReporter reporter) throws IOException {
+    if (cfg.layout() == LayoutMode.ALBUMS) {
+      System.err.println("build: --archive は layout: albums と同時に指定できません");
+      return 1;
+    }
+    if (cfg.imageVariants().enabled()) {
+      System.err.println("build: --archive は imageWidths / imagePlaceholders と同時に指定できません");
+      return 1;
+    }
+    if (cfg.downscale().enabled()) {
+      System.err.println(
+          "build: --archive は downscaleMaxDimension / downscaleMaxBytes と同時に指定できません");
+      return 1;
+    }
+    if (cfg.collapseDuplicates()) {
+      System.err.println("build: --archive は collapseDuplicates と同時に指定できません");
+      return 1;
+    }
+    if (clean || prune || verify) {
+      System.err.println("build: --archive は --clean / --prune / --verify と同時に指定できません");
+      return 1;
+    }
+    ArchiveFormat format;
+    try {
+      format = ArchiveFormat.fromFileName(archive);
+    } catch (IllegalArgumentException e) {
+      System.err.println("build: --archive の拡張子が不正です: " + archive + "（.zip / .tar）");
+      return 1;
+    }
+    Path absArchive = archive.toAbsolutePath().normalize();
+    SafePaths.validateArchiveOutsideInput(cfg.inputDirs(), absArchive);
+
+    System.out.println();
+    try (SortedMediaItems items = scan(cfg, reporter);
+        ArchiveWriter writer = ArchiveWriter.open(absArchive, format)) {
+      writeTo(writer, cfg, items, reporter);
+      writer.finish();
+
+      System.out.println("build: アーカイブの生成が完了しました");
+      System.out.printf(
+          "  archive: %s（%s, エントリ: %d, %s）%n",
+          absArchive,
+          format.id(),
+          writer.entries(),
+          ProgressReporter.formatBytes(writer.bytesWritten()));
+    }
+    return 0;
+  }
+
+  /**
+   * 走査結果から index.html・assets・検索用の索引を出力先へ1回ずつ書き出す（差分コピー・キャッシュを使わない）。
+   *
+   * <p>{@code --archive} はアーカイブを出力先にして呼ぶ。出力先を差し替えれば、ディスクに書き込まずに（{@link
+   * com.example.gallery.output.InMemorySink}）同じ内容を生成できる。 呼び出し側で {@link OutputSink#finish()} する。
+   *
+   * @param sink 出力先
+   * @param cfg 設定
+   * @param items 走査結果
+   * @param reporter 進捗レポーター
+   * @throws IOException 読み書きに失敗した場合
+   */
+  static void writeTo(
+      OutputSink sink, AppConfig cfg, SortedMediaItems items, ProgressReporter reporter)
+      throws IOException {
+    Iterable<MediaItem> media = items.isInMemory() ? items.toList() : items;
+
+    // assets を出力先へ書き出す（コピー元から読んでそのまま書き込む）
+    System.out.println();
+    PhaseProgress copyProgress = new PhaseProgress("copy");
+    copyProgress.setTotals(items.size(), items.totalBytes());
+    reporter.begin(copyProgress);
+    int copied =
+        AssetCopier.copyAllTo(cfg.assetFingerprint().toAssetItems(media), sink, copyProgress);
+    reporter.end();
+    System.out.printf("build: assets を書き出しました（件数: %d）%n", copied);
+
+    // index.html を出力先へ書き出す
+    System.out.println();
+    PhaseProgress renderProgress = new PhaseProgress("render");
+    renderProgress.setTotals(items.size(), -1);
+    reporter.begin(renderProgress);
+    String template = HtmlTemplateLoader.loadUtf8("/templates/index.html");
+    writeIndexHtml(
+        sink,
+        template,
+        cfg.title(),
+        media,
+        renderProgress,
+        null,
+        new CardOptions(cfg.assetFingerprint()));
+    reporter.end();
+
+    if (cfg.searchIndex()) {
+      System.out.println();
+      writeSearchIndex(sink, cfg, items, media, reporter);
+    }
+  }
+
+  /** index.html を出力先へ書き出す。 */
+  private static void writeIndexHtml(
+      OutputSink sink,
+      String template,
+      String title,
+      Iterable<MediaItem> media,
+      PhaseProgress progress,
+      FragmentCache cache,
+      CardOptions options)
+      throws IOException {
+    sink.putEntry(
+        INDEX_NAME,
+        Instant.now(),
+        out -> HtmlGalleryRenderer.renderTo(out, template, title, media, progress, cache, options));
+  }
+
+  /** 検索用の索引を出力先へ書き出し、結果を表示する。 */
+  private static void writeSearchIndex(
+      OutputSink sink,
+      AppConfig cfg,
+      SortedMediaItems items,
+      Iterable<MediaItem> media,
+      ProgressReporter reporter)
+      throws IOException {
+    PhaseProgress searchProgress = new PhaseProgress("search");
+    searchProgress.setTotals(items.size(), -1);
+    reporter.begin(searchProgress);
+    long before = sink.bytesWritten();
+    SearchIndex.Result indexed =
+        SearchIndex.writeTo(
+            sink,
+            media,
+            cfg.assetFingerprint(),
+            cfg.downscale(),
+            ZoneId.systemDefault(),
+            searchProgress);
+    reporter.end();
+    System.out.printf(
+        "build: 検索用の索引を生成しました（件数: %d, 語: %d, %s）%n",
+        indexed.items(),
+        indexed.terms(),
+        ProgressReporter.formatBytes(sink.bytesWritten() - before));
   }
 }
@@ -0,0 +1,152 @@
+package com.example.gallery.cli;
+
+import com.example.gallery.config.AppConfig;
+import com.example.gallery.config.ConfigLoader;
+import com.example.gallery.config.ConfigValidationException;
+import com.example.gallery.domain.MediaItem;
+import com.example.gallery.image.DecodeScheduler;
+import com.example.gallery.image.DuplicateFinder;
+import com.example.gallery.image.DuplicateGroup;
+import com.example.gallery.image.HashIndex;
+import com.example.gallery.output.OutputPaths;
+import com.example.gallery.progress.PhaseProgress;
+import com.example.gallery.progress.ProgressMode;
+import com.example.gallery.progress.ProgressReporter;
+import com.example.gallery.scan.MediaScanException;
+import com.example.gallery.scan.MediaScanner;
+import com.example.gallery.scan.SortedMediaItems;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * {@code gallery dupes} サブコマンド。
+ *
+ * <p>入力フォルダを走査し、知覚ハッシュが近い画像（連写・再書き出しなど）のグループを一覧表示する。
+ * 計算したハッシュはビルドの記録のディレクトリ（{@link OutputPaths#stateDirOf(Path)}）の .gallery-phash に記録し、次回以降は変更のない画像をデコードしない。
+ */
+@Command(name = "dupes", description = "似た画像（連写・再書き出しなど）のグループを一覧表示する。")
+public class DupesCommand implements Callable<Integer> {
+
+  @Option(
+      names = "--config",
+      description = "設定ファイルのパス",
+      defaultValue = "./work/gallery.config.json")
+  private Path config;
+
+  @Option(
+      names = "--threshold",
+      description = "似た画像とみなすハッシュの距離の上限（0〜64、省略時は設定ファイルの duplicateThreshold）")
+  private Integer threshold;
+
+  @Option(
+      names = "--progress",
+      description = "進捗表示（auto / tty / plain / none、省略時: ${DEFAULT-VALUE}）",
+      defaultValue = "auto")
+  private String progress;
+
+  @Override
+  public Integer call() {
+    ProgressMode progressMode;
+    try {
+      progressMode = ProgressMode.from(progress);
+    } catch (IllegalArgumentException e) {
+      System.err.println("dupes: --progress が不正です: " + progress + "（auto / tty / plain / none）");
+      return 1;
+    }
+    if (threshold != null && (threshold < 0 || threshold > 64)) {
+      System.err.println("dupes: --threshold は0〜64で指定してください: " + threshold);
+      return 1;
+    }
+
+    try (ProgressReporter reporter = ProgressReporter.start(progressMode, System.out)) {
+      AppConfig cfg = ConfigLoader.load(config);
+      int maxDistance = threshold != null ? threshold : cfg.duplicateThreshold();
+
+      System.out.println("dupes: 設定ファイルの読み込みに成功しました");
+      System.out.printf("  config: %s%n", config.toAbsolutePath().normalize());
+      BuildCommand.printInputDirs(cfg);
+      System.out.printf("  threshold: %d%n", maxDistance);
+
+      PhaseProgress scanProgress = new PhaseProgress("scan");
+      reporter.begin(scanProgress);
+      try (SortedMediaItems items =
+          MediaScanner.scanSorted(
+              cfg.inputRoots(),
+              cfg.includeExtensions(),
+              cfg.sort(),
+              cfg.scanOptions(),
+              scanProgress)) {
+        reporter.end();
+        System.out.printf("dupes: メディア走査が完了しました（件数: %d）%n", items.size());
+
+        HashIndex index = HashIndex.open(OutputPaths.stateDirOf(cfg.outputDir()));
+        DecodeScheduler decoder = DecodeScheduler.withBudget(cfg.decodeMemoryBudgetBytes());
+        PhaseProgress dupesProgress = new PhaseProgress("dupes");
+        dupesProgress.setTotals(items.size(), items.totalBytes());
+        reporter.begin(dupesProgress);
+        // グループ分けには全件のハッシュが必要なため、一時ファイルに書き出した場合も一覧として読み込む
+        DuplicateFinder.Result found =
+            DuplicateFinder.find(items.toList(), index, maxDistance, decoder, dupesProgress);
+        index.commit();
+        reporter.end();
+
+        printGroups("dupes", found);
+        return 0;
+      }
+    } catch (ConfigValidationException e) {
+      System.err.println("dupes: 設定が不正です");
+      System.err.println("  " + e.getMessage());
+      return 1;
+    } catch (MediaScanException e) {
+      System.err.println("dupes: 入力フォルダの走査に失敗しました");
+      System.err.println("  " + e.getMessage());
+      return 1;
+    } catch (IOException e) {
+      System.err.println("dupes: 入出力エラーが発生しました");
+      System.err.println("  " + e.getMessage());
+      return 1;
+    } catch (UncheckedIOException e) {
+      // 一時ファイルからの読み出し中のエラー
+      System.err.println("dupes: 入出力エラーが発生しました");
+      System.err.println("  " + e.getCause().getMessage());
+      return 1;
+    }
+  }
+
+  /**
+   * 検出結果を表示する（build の collapseDuplicates と共通）。
+   *
+   * @param command 表示に使うコマンド名
+   * @param found 検出結果
+   */
+  static void printResult(String command, DuplicateFinder.Result found) {
+    System.out.printf(
+        "%s: 似た画像の検出が完了しました（グループ: %d, まとめられる画像: %d, 計算: %d, 変更なし: %d, 対象外: %d）%n",
+        command,
+        found.groups().size(),
+        found.duplicates(),
+        found.hashed(),
+        found.reused(),
+        found.skipped());
+  }
+
+  private static void printGroups(String command, DuplicateFinder.Result found) {
+    printResult(command, found);
+    int n = 0;
+    for (DuplicateGroup group : found.groups()) {
+      n++;
+      System.out.printf("  [%d] %d 件（距離 %d 以内）%n", n, group.items().size(), group.maxDistance());
+      for (MediaItem item : group.items()) {
+        System.out.printf(
+            "    %s %s (size=%d bytes)%n",
+            item == group.representative() ? "*" : "-",
+            item.relativePath().toString().replace('\\', '/'),
+            item.sizeBytes());
+      }
+    }
+  }
+}
@@ -8,13 +8,20 @@ import picocli.CommandLine.Command;
  *
  * <p>フォルダ内の画像・動画から静的なギャラリー（HTMLファイル）を生成する。
  *
- * <p>サブコマンドとして {@code init} と {@code build} を持つ。
+ * <p>サブコマンドとして {@code init}、{@code build}、{@code verify}、{@code dupes}、{@code scan}、{@code bench} を持つ。
  */
 @Command(
     name = "gallery",
     mixinStandardHelpOptions = true,
     description = "フォルダ内の画像・動画から静的なギャラリー（HTMLファイル）を生成する。",
-    subcommands = {InitCommand.class, BuildCommand.class})
+    subcommands = {
+      InitCommand.class,
+      BuildCommand.class,
+      VerifyCommand.class,
+      DupesCommand.class,
+      ScanCommand.class,
+      BenchCommand.class
+    })
 public class GalleryCommand implements Runnable {
 
   @Override
@@ -0,0 +1,169 @@
+package com.example.gallery.cli;
+
+import com.example.gallery.config.AppConfig;
+import com.example.gallery.config.ConfigLoader;
+import com.example.gallery.config.ConfigValidationException;
+import com.example.gallery.domain.MediaItem;
+import com.example.gallery.output.FileSystemSink;
+import com.example.gallery.progress.PhaseProgress;
+import com.example.gallery.progress.ProgressMode;
+import com.example.gallery.progress.ProgressReporter;
+import com.example.gallery.scan.MediaScanException;
+import com.example.gallery.scan.MediaScanner;
+import com.example.gallery.scan.ScanExportFormat;
+import com.example.gallery.scan.ScanExportWriter;
+import com.example.gallery.scan.ScanOptions;
+import com.example.gallery.scan.SortedMediaItems;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.Callable;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * {@code gallery scan} サブコマンド。
+ *
+ * <p>入力フォルダを走査し、見つかったメディアの一覧を JSON Lines / CSV で書き出す（他のツールに渡す用途）。
+ * 既定では走査しながら1件ずつ書き出し、一覧を作らない（ファイル数によらず一定のメモリで動く）。 {@code --sort}
+ * を指定した場合だけ、設定ファイルの sort で並べてから書き出す（scanMemoryBudgetMb を超える分は一時ファイルで外部ソートする）。
+ *
+ * <p>標準出力へ書き出す場合に一覧と混ざらないよう、進捗・結果の表示は標準エラー出力へ出す。
+ */
+@Command(name = "scan", description = "入力フォルダを走査し、メディアの一覧を JSON Lines / CSV で書き出す。")
+public class ScanCommand implements Callable<Integer> {
+
+  private static final int BUFFER_CHARS = 64 * 1024;
+
+  @Option(
+      names = "--config",
+      description = "設定ファイルのパス",
+      defaultValue = "./work/gallery.config.json")
+  private Path config;
+
+  @Option(
+      names = "--format",
+      description = "出力形式（jsonl / csv、省略時: ${DEFAULT-VALUE}）",
+      defaultValue = "jsonl")
+  private String format;
+
+  @Option(names = "--output", description = "書き出し先のファイル（省略時は標準出力）")
+  private Path output;
+
+  @Option(names = "--sort", description = "設定ファイルの sort で並べてから書き出す（省略時は走査順）")
+  private boolean sort;
+
+  @Option(
+      names = "--progress",
+      description = "進捗表示（auto / tty / plain / none、標準エラー出力、省略時: ${DEFAULT-VALUE}）",
+      defaultValue = "auto")
+  private String progress;
+
+  @Override
+  public Integer call() {
+    ScanExportFormat exportFormat;
+    try {
+      exportFormat = ScanExportFormat.from(format);
+    } catch (IllegalArgumentException e) {
+      System.err.println("scan: --format が不正です: " + format + "（jsonl / csv）");
+      return 1;
+    }
+    ProgressMode progressMode;
+    try {
+      progressMode = ProgressMode.from(progress);
+    } catch (IllegalArgumentException e) {
+      System.err.println("scan: --progress が不正です: " + progress + "（auto / tty / plain / none）");
+      return 1;
+    }
+
+    try (ProgressReporter reporter = ProgressReporter.start(progressMode, System.err)) {
+      AppConfig cfg = ConfigLoader.load(config);
+      ScanOptions options = cfg.scanOptions();
+
+      PhaseProgress scanProgress = new PhaseProgress("scan");
+      reporter.begin(scanProgress);
+      long count;
+      String destination;
+      if (output == null) {
+        // System.out は閉じない
+        Writer w =
+            new BufferedWriter(
+                new OutputStreamWriter(System.out, StandardCharsets.UTF_8), BUFFER_CHARS);
+        count = export(w, exportFormat, cfg, options, scanProgress);
+        destination = "標準出力";
+      } else {
+        Path target = output.toAbsolutePath().normalize();
+        long[] written = new long[1];
+        // 一時ファイルに書き出してから置き換える（途中で失敗しても以前の一覧を壊さない）
+        try (FileSystemSink sink = new FileSystemSink(target.getParent())) {
+          sink.putEntry(
+              target.getFileName().toString(),
+              Instant.now(),
+              out -> {
+                Writer w =
+                    new BufferedWriter(
+                        new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_CHARS);
+                written[0] = export(w, exportFormat, cfg, options, scanProgress);
+              });
+          sink.finish();
+        }
+        count = written[0];
+        destination = target.toString();
+      }
+      reporter.end();
+
+      System.err.printf(
+          "scan: メディア一覧を書き出しました（件数: %d, 形式: %s, 書き出し先: %s）%n",
+          count, exportFormat.id(), destination);
+      return 0;
+    } catch (ConfigValidationException e) {
+      System.err.println("scan: 設定が不正です");
+      System.err.println("  " + e.getMessage());
+      return 1;
+    } catch (MediaScanException e) {
+      System.err.println("scan: 入力フォルダの走査に失敗しました");
+      System.err.println("  " + e.getMessage());
+      return 1;
+    } catch (IOException e) {
+      System.err.println("scan: 入出力エラーが発生しました");
+      System.err.println("  " + e.getMessage());
+      return 1;
+    } catch (UncheckedIOException e) {
+      // 一時ファイルからの読み出し中のエラー
+      System.err.println("scan: 入出力エラーが発生しました");
+      System.err.println("  " + e.getCause().getMessage());
+      return 1;
+    }
+  }
+
+  /** 走査しながら（--sort の場合は並べてから）書き出し、件数を返す。 */
+  private long export(
+      Writer w,
+      ScanExportFormat exportFormat,
+      AppConfig cfg,
+      ScanOptions options,
+      PhaseProgress scanProgress)
+      throws IOException {
+    ScanExportWriter writer = ScanExportWriter.open(w, exportFormat);
+    if (sort) {
+      try (SortedMediaItems items =
+          MediaScanner.scanSorted(
+              cfg.inputRoots(), cfg.includeExtensions(), cfg.sort(), options, scanProgress)) {
+        for (MediaItem item : items) {
+          writer.accept(item);
+        }
+      }
+    } else {
+      MediaScanner.scanEach(
+          cfg.inputRoots(), cfg.includeExtensions(), options, scanProgress, writer);
+    }
+    writer.flush();
+    w.flush();
+    return writer.count();
+  }
+}
@@ -0,0 +1,154 @@
+package com.example.gallery.cli;
+
+import com.example.gallery.config.AppConfig;
+import com.example.gallery.config.ConfigLoader;
+import com.example.gallery.config.ConfigValidationException;
+import com.example.gallery.domain.MediaItem;
+import com.example.gallery.output.AssetCopyException;
+import com.example.gallery.output.AssetVerifier;
+import com.example.gallery.output.ChecksumAlgorithm;
+import com.example.gallery.progress.PhaseProgress;
+import com.example.gallery.progress.ProgressMode;
+import com.example.gallery.progress.ProgressReporter;
+import com.example.gallery.scan.MediaScanException;
+import com.example.gallery.scan.MediaScanner;
+import com.example.gallery.scan.SortedMediaItems;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * {@code gallery verify} サブコマンド。
+ *
+ * <p>入力フォルダを走査し、dist/assets の各ファイルがコピー元と一致していることをチェックサムで検証する。
+ * 不一致・欠落・余分なファイルがあれば一覧を表示し、終了コード 1 を返す。
+ */
+@Command(name = "verify", description = "dist/assets がコピー元と一致していることをチェックサムで検証する。")
+public class VerifyCommand implements Callable<Integer> {
+
+  @Option(
+      names = "--config",
+      description = "設定ファイルのパス",
+      defaultValue = "./work/gallery.config.json")
+  private Path config;
+
+  @Option(
+      names = "--checksum",
+      description = "チェックサムの種類（crc32c / sha256、省略時: ${DEFAULT-VALUE}）",
+      defaultValue = "crc32c")
+  private String checksum;
+
+  @Option(
+      names = "--progress",
+      description = "進捗表示（auto / tty / plain / none、省略時: ${DEFAULT-VALUE}）",
+      defaultValue = "auto")
+  private String progress;
+
+  @Override
+  public Integer call() {
+    ProgressMode progressMode;
+    ChecksumAlgorithm algorithm;
+    try {
+      progressMode = ProgressMode.from(progress);
+    } catch (IllegalArgumentException e) {
+      System.err.println("verify: --progress が不正です: " + progress + "（auto / tty / plain / none）");
+      return 1;
+    }
+    try {
+      algorithm = ChecksumAlgorithm.from(checksum);
+    } catch (IllegalArgumentException e) {
+      System.err.println("verify: --checksum が不正です: " + checksum + "（crc32c / sha256）");
+      return 1;
+    }
+
+    try (ProgressReporter reporter = ProgressReporter.start(progressMode, System.out)) {
+      AppConfig cfg = ConfigLoader.load(config);
+      Path assetsDir = cfg.outputDir().resolve("assets");
+
+      System.out.println("verify: 設定ファイルの読み込みに成功しました");
+      System.out.printf("  config: %s%n", config.toAbsolutePath().normalize());
+      BuildCommand.printInputDirs(cfg);
+      System.out.printf("  assets: %s%n", assetsDir);
+      System.out.printf("  checksum: %s%n", algorithm.id());
+      if (cfg.downscale().enabled()) {
+        // 縮小・再エンコードした assets はコピー元と内容が一致しない
+        System.err.println(
+            "verify: downscaleMaxDimension / downscaleMaxBytes を指定した構成は検証できません");
+        return 1;
+      }
+
+      PhaseProgress scanProgress = new PhaseProgress("scan");
+      reporter.begin(scanProgress);
+      try (SortedMediaItems items =
+          MediaScanner.scanSorted(
+              cfg.inputRoots(),
+              cfg.includeExtensions(),
+              cfg.sort(),
+              cfg.scanOptions(),
+              scanProgress)) {
+        reporter.end();
+        System.out.printf("verify: メディア走査が完了しました（件数: %d）%n", items.size());
+
+        Iterable<MediaItem> media =
+            cfg.assetFingerprint().toAssetItems(items.isInMemory() ? items.toList() : items);
+        PhaseProgress verifyProgress = new PhaseProgress("verify");
+        verifyProgress.setTotals(items.size(), items.totalBytes());
+        reporter.begin(verifyProgress);
+        AssetVerifier.Result result =
+            AssetVerifier.verify(media, assetsDir, algorithm, verifyProgress);
+        reporter.end();
+        return printResult("verify", result) ? 0 : 1;
+      }
+    } catch (ConfigValidationException e) {
+      System.err.println("verify: 設定が不正です");
+      System.err.println("  " + e.getMessage());
+      return 1;
+    } catch (MediaScanException e) {
+      System.err.println("verify: 入力フォルダの走査に失敗しました");
+      System.err.println("  " + e.getMessage());
+      return 1;
+    } catch (AssetCopyException e) {
+      System.err.println("verify: assets の検証に失敗しました");
+      System.err.println("  " + e.getMessage());
+      return 1;
+    } catch (IOException e) {
+      System.err.println("verify: 入出力エラーが発生しました");
+      System.err.println("  " + e.getMessage());
+      return 1;
+    } catch (UncheckedIOException e) {
+      // 一時ファイルからの読み出し中のエラー
+      System.err.println("verify: 入出力エラーが発生しました");
+      System.err.println("  " + e.getCause().getMessage());
+      return 1;
+    }
+  }
+
+  /**
+   * 検証結果を表示する（build --verify と共通）。
+   *
+   * @param command 表示に使うコマンド名
+   * @param result 検証結果
+   * @return 問題がなかった場合は true
+   */
+  static boolean printResult(String command, AssetVerifier.Result result) {
+    if (result.ok()) {
+      System.out.printf("%s: assets の検証が完了しました（一致: %d）%n", command, result.verified());
+      return true;
+    }
+    System.err.printf(
+        "%s: assets がコピー元と一致しません（一致: %d, 不一致: %d, 欠落: %d, 余分: %d）%n",
+        command, result.verified(), result.mismatched(), result.missing(), result.extra());
+    for (String problem : result.problems()) {
+      System.err.println("  - " + problem);
+    }
+    int listed = result.problems().size();
+    int total = result.mismatched() + result.missing() + result.extra();
+    if (listed < total) {
+      System.err.printf("  ...ほか %d 件%n", total - listed);
+    }
+    return false;
+  }
+}
@@ -1,6 +1,12 @@
 package com.example.gallery.config;
 
+import com.example.gallery.domain.AssetFingerprint;
+import com.example.gallery.domain.InputRoot;
+import com.example.gallery.domain.LayoutMode;
 import com.example.gallery.domain.SortMode;
+import com.example.gallery.image.DownscaleSpec;
+import com.example.gallery.image.VariantSpec;
+import com.example.gallery.scan.ScanOptions;
 import java.nio.file.Path;
 import java.util.List;
 
@@ -8,6 +14,69 @@ import java.util.List;
  * 設定ファイルから読み込んだアプリ設定（解決済み）。
  *
  * <p>input/output は config ファイルの場所を基準に相対解決された {@link Path} を保持する。
+ *
+ * <p>inputRoots は入力フォルダ（1件以上、指定順）。複数の場合は各フォルダのメディアを名前空間付きの relativePath でまとめる。
+ *
+ * <p>sniffContent が true の場合、メディア種別をファイル先頭のマジックナンバーで判定する。
+ *
+ * <p>layout はページ構成（1ページ / フォルダ単位のアルバム）を表す。
+ *
+ * <p>copyConcurrency は assets への同時コピー数（0 は自動調整）、copyMaxBytesPerSec は書き込み帯域の上限（0 は無制限）。
+ *
+ * <p>scanMemoryBudgetMb は走査結果をメモリ上に保持する量の上限（MB、0 は無制限）。超えた分は一時ファイルに書き出す。
+ * コピージャーナルなど、件数に比例する他の状態は上限に含まれない。
+ *
+ * <p>assetFingerprint は assets の URL にフィンガープリントを付ける方式を表す。
+ *
+ * <p>imageVariants は srcset 用に生成する画像の縮小版とプレースホルダの構成（幅が空でプレースホルダも作らない場合は生成しない）。
+ *
+ * <p>decodeMemoryBudgetMb は同時にデコードする画像の画素バッファの合計の上限（MB、0 は最大ヒープの 1/4）。
+ *
+ * <p>downscale は assets へのコピー時に大きすぎる JPEG を縮小・再エンコードする条件（上限が未指定の場合は行わない）。
+ *
+ * <p>duplicateThreshold は似た画像とみなす知覚ハッシュの距離の上限、collapseDuplicates は似た画像をギャラリー上で1枚にまとめるか。
+ *
+ * <p>searchIndex はページ上の検索欄が使う検索用の索引（search-index.js）を生成するか。
+ *
+ * <p>followLinks は走査時にディレクトリへのシンボリックリンクを辿るか。
  */
 public record AppConfig(
-    String title, Path inputDir, Path outputDir, List<String> includeExtensions, SortMode sort) {}
+    String title,
+    List<InputRoot> inputRoots,
+    Path outputDir,
+    List<String> includeExtensions,
+    SortMode sort,
+    boolean sniffContent,
+    LayoutMode layout,
+    int copyConcurrency,
+    long copyMaxBytesPerSec,
+    int scanMemoryBudgetMb,
+    AssetFingerprint assetFingerprint,
+    VariantSpec imageVariants,
+    int decodeMemoryBudgetMb,
+    DownscaleSpec downscale,
+    int duplicateThreshold,
+    boolean collapseDuplicates,
+    boolean searchIndex,
+    boolean followLinks) {
+
+  /** 入力ディレクトリの一覧（指定順）を返す。 */
+  public List<Path> inputDirs() {
+    return inputRoots.stream().map(InputRoot::dir).toList();
+  }
+
+  /** 走査オプション（内容での種別判定・メモリ上限・リンクの扱い）を返す。 */
+  public ScanOptions scanOptions() {
+    return new ScanOptions(sniffContent, scanMemoryBudgetBytes(), followLinks);
+  }
+
+  /** 走査結果のメモリ上限（bytes、0 は無制限）を返す。 */
+  public long scanMemoryBudgetBytes() {
+    return scanMemoryBudgetMb * 1024L * 1024L;
+  }
+
+  /** デコードのメモリ上限（bytes、0 は自動）を返す。 */
+  public long decodeMemoryBudgetBytes() {
+    return decodeMemoryBudgetMb * 1024L * 1024L;
+  }
+}
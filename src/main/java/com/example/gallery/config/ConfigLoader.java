@@ -1,10 +1,17 @@
 package com.example.gallery.config;
 
+import com.example.gallery.domain.AssetFingerprint;
+import com.example.gallery.domain.InputRoot;
+import com.example.gallery.domain.LayoutMode;
 import com.example.gallery.domain.SortMode;
+import com.example.gallery.image.DownscaleSpec;
+import com.example.gallery.image.DuplicateFinder;
+import com.example.gallery.image.VariantSpec;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
@@ -45,10 +52,8 @@ public final class ConfigLoader {
 
     String title = normalizeTitle(raw.title);
 
-    String inputDirStr = required(raw.inputDir, "inputDir");
+    List<Path> inputDirs = resolveInputDirs(configPath, raw);
     String outputDirStr = required(raw.outputDir, "outputDir");
-
-    Path inputDir = ConfigPaths.resolveAgainstConfigDir(configPath, inputDirStr);
     Path outputDir = ConfigPaths.resolveAgainstConfigDir(configPath, outputDirStr);
 
     List<String> extensions = normalizeExtensions(raw.includeExtensions);
@@ -66,7 +71,104 @@ public final class ConfigLoader {
       }
     }
 
-    return new AppConfig(title, inputDir, outputDir, extensions, sort);
+    boolean sniffContent = Boolean.TRUE.equals(raw.sniffContent);
+
+    LayoutMode layout = LayoutMode.SINGLE;
+    if (raw.layout != null && !raw.layout.isBlank()) {
+      try {
+        layout = LayoutMode.from(raw.layout);
+      } catch (IllegalArgumentException e) {
+        throw new ConfigValidationException(
+            "layout が不正です: " + raw.layout + "（例: " + LayoutMode.ALBUMS.id() + "）");
+      }
+    }
+
+    int copyConcurrency = nonNegative(raw.copyConcurrency, "copyConcurrency").intValue();
+    long copyMaxBytesPerSec = nonNegative(raw.copyMaxBytesPerSec, "copyMaxBytesPerSec");
+
+    int scanMemoryBudgetMb = nonNegative(raw.scanMemoryBudgetMb, "scanMemoryBudgetMb").intValue();
+    if (scanMemoryBudgetMb > 0 && layout == LayoutMode.ALBUMS) {
+      // アルバム生成はフォルダ単位の振り分けに全件を必要とするため、メモリ上限と併用できない
+      throw new ConfigValidationException(
+          "scanMemoryBudgetMb は layout: " + LayoutMode.ALBUMS.id() + " と同時に指定できません");
+    }
+
+    AssetFingerprint assetFingerprint = AssetFingerprint.NONE;
+    if (raw.assetFingerprint != null && !raw.assetFingerprint.isBlank()) {
+      try {
+        assetFingerprint = AssetFingerprint.from(raw.assetFingerprint);
+      } catch (IllegalArgumentException e) {
+        throw new ConfigValidationException(
+            "assetFingerprint が不正です: "
+                + raw.assetFingerprint
+                + "（none / query / filename）");
+      }
+    }
+
+    VariantSpec imageVariants = VariantSpec.NONE;
+    List<Integer> imageWidths = raw.imageWidths == null ? List.of() : raw.imageWidths;
+    boolean imagePlaceholders = Boolean.TRUE.equals(raw.imagePlaceholders);
+    if (!imageWidths.isEmpty() || imagePlaceholders) {
+      String sizes =
+          raw.imageSizes == null || raw.imageSizes.isBlank()
+              ? VariantSpec.DEFAULT_SIZES
+              : raw.imageSizes.trim();
+      if (imageWidths.stream().anyMatch(w -> w == null || w <= 0)) {
+        throw new ConfigValidationException(
+            "imageWidths は1以上の整数の配列で指定してください: " + raw.imageWidths);
+      }
+      imageVariants = new VariantSpec(imageWidths, sizes, imagePlaceholders);
+    }
+
+    int decodeMemoryBudgetMb =
+        nonNegative(raw.decodeMemoryBudgetMb, "decodeMemoryBudgetMb").intValue();
+
+    int downscaleMaxDimension =
+        nonNegative(raw.downscaleMaxDimension, "downscaleMaxDimension").intValue();
+    long downscaleMaxBytes = nonNegative(raw.downscaleMaxBytes, "downscaleMaxBytes");
+    int downscaleQuality =
+        raw.downscaleQuality == null ? DownscaleSpec.DEFAULT_QUALITY : raw.downscaleQuality;
+    if (downscaleQuality < 1 || downscaleQuality > 100) {
+      throw new ConfigValidationException(
+          "downscaleQuality は1〜100の整数で指定してください: " + raw.downscaleQuality);
+    }
+    DownscaleSpec downscale =
+        new DownscaleSpec(downscaleMaxDimension, downscaleMaxBytes, downscaleQuality);
+
+    int duplicateThreshold =
+        raw.duplicateThreshold == null ? DuplicateFinder.DEFAULT_THRESHOLD : raw.duplicateThreshold;
+    if (duplicateThreshold < 0 || duplicateThreshold > 64) {
+      throw new ConfigValidationException(
+          "duplicateThreshold は0〜64の整数で指定してください: " + raw.duplicateThreshold);
+    }
+    boolean collapseDuplicates = Boolean.TRUE.equals(raw.collapseDuplicates);
+    if (collapseDuplicates && scanMemoryBudgetMb > 0) {
+      // グループ分けには全件のハッシュを比べる必要があるため、メモリ上限と併用できない
+      throw new ConfigValidationException(
+          "collapseDuplicates は scanMemoryBudgetMb と同時に指定できません");
+    }
+    boolean searchIndex = Boolean.TRUE.equals(raw.searchIndex);
+    boolean followLinks = Boolean.TRUE.equals(raw.followLinks);
+
+    return new AppConfig(
+        title,
+        InputRoot.assign(inputDirs),
+        outputDir,
+        extensions,
+        sort,
+        sniffContent,
+        layout,
+        copyConcurrency,
+        copyMaxBytesPerSec,
+        scanMemoryBudgetMb,
+        assetFingerprint,
+        imageVariants,
+        decodeMemoryBudgetMb,
+        downscale,
+        duplicateThreshold,
+        collapseDuplicates,
+        searchIndex,
+        followLinks);
   }
 
   private static String normalizeTitle(String title) {
@@ -77,6 +179,39 @@ public final class ConfigLoader {
     return trimmed.isEmpty() ? "Media Gallery" : trimmed;
   }
 
+  /**
+   * inputDir（1件）または inputDirs（1件以上）を解決する。
+   *
+   * <p>同じフォルダの重複や、一方が他方の配下になる指定は、同じメディアを二重に走査するため拒否する。
+   */
+  private static List<Path> resolveInputDirs(Path configPath, RawConfig raw) {
+    if (raw.inputDirs == null) {
+      String inputDirStr = required(raw.inputDir, "inputDir");
+      return List.of(ConfigPaths.resolveAgainstConfigDir(configPath, inputDirStr));
+    }
+    if (raw.inputDir != null) {
+      throw new ConfigValidationException("inputDir と inputDirs は同時に指定できません");
+    }
+    if (raw.inputDirs.isEmpty()) {
+      throw new ConfigValidationException("inputDirs が空です（少なくとも1つ指定してください）");
+    }
+    List<Path> dirs = new ArrayList<>(raw.inputDirs.size());
+    for (String value : raw.inputDirs) {
+      if (value == null || value.isBlank()) {
+        throw new ConfigValidationException("inputDirs に空の値があります: " + raw.inputDirs);
+      }
+      Path dir = ConfigPaths.resolveAgainstConfigDir(configPath, value);
+      for (Path other : dirs) {
+        if (dir.startsWith(other) || other.startsWith(dir)) {
+          throw new ConfigValidationException(
+              "inputDirs が重複しているか、一方が他方の配下です: " + other + ", " + dir);
+        }
+      }
+      dirs.add(dir);
+    }
+    return List.copyOf(dirs);
+  }
+
   private static String required(String value, String fieldName) {
     if (value == null || value.isBlank()) {
       throw new ConfigValidationException(fieldName + " が未指定です");
@@ -84,6 +219,17 @@ public final class ConfigLoader {
     return value;
   }
 
+  private static Long nonNegative(Number value, String fieldName) {
+    if (value == null) {
+      return 0L;
+    }
+    long v = value.longValue();
+    if (v < 0) {
+      throw new ConfigValidationException(fieldName + " は0以上の整数で指定してください: " + value);
+    }
+    return v;
+  }
+
   private static List<String> normalizeExtensions(List<String> raw) {
     if (raw == null) {
       throw new ConfigValidationException("includeExtensions が未指定です");
@@ -102,9 +248,27 @@ public final class ConfigLoader {
   private static class RawConfig {
     public String title;
     public String inputDir;
+    public List<String> inputDirs;
     public String outputDir;
     public List<String> includeExtensions;
     public String sort;
+    public Boolean sniffContent;
+    public String layout;
+    public Integer copyConcurrency;
+    public Long copyMaxBytesPerSec;
+    public Integer scanMemoryBudgetMb;
+    public String assetFingerprint;
+    public List<Integer> imageWidths;
+    public String imageSizes;
+    public Boolean imagePlaceholders;
+    public Integer decodeMemoryBudgetMb;
+    public Integer downscaleMaxDimension;
+    public Long downscaleMaxBytes;
+    public Integer downscaleQuality;
+    public Integer duplicateThreshold;
+    public Boolean collapseDuplicates;
+    public Boolean searchIndex;
+    public Boolean followLinks;
 
     /** Jackson がリフレクションで使用するデフォルトコンストラクタ。 */
     @SuppressWarnings("unused")
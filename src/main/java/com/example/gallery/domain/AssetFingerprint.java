@@ -0,0 +1,222 @@
+package com.example.gallery.domain;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+
+/**
+ * assets の URL にフィンガープリントを付ける方式を表す。
+ *
+ * <p>フィンガープリントはファイルサイズと更新日時から算出する短い16進文字列（内容は読まない）。 置き換えられたファイルは URL
+ * が変わるため、assets に長期間のキャッシュ（{@code Cache-Control: max-age=31536000, immutable} など）を設定できる。
+ *
+ * <p>コピー時に内容を変換する（縮小・再エンコードする）メディアは、変換の条件を表す文字列（encodingKey）もフィンガープリントに含める。
+ * 条件を変えると、元ファイルが同じでも assets の内容と URL が一緒に変わる。
+ */
+public enum AssetFingerprint {
+  /** 付けない（{@code assets/<relativePath>}）。 */
+  NONE("none"),
+
+  /** クエリ文字列として付ける（{@code assets/<relativePath>?v=<fingerprint>}。ファイル名は変えない）。 */
+  QUERY("query"),
+
+  /** ファイル名の拡張子の前に付ける（{@code assets/<dir>/<name>.<fingerprint>.<ext>}）。 */
+  FILENAME("filename");
+
+  private final String id;
+
+  AssetFingerprint(String id) {
+    this.id = id;
+  }
+
+  /** 設定ファイル上の識別子（例: query）を返す。 */
+  public String id() {
+    return id;
+  }
+
+  /**
+   * 設定値（文字列）から {@link AssetFingerprint} を解決する。
+   *
+   * @param value 設定値（null/空は不可）
+   * @return 解決した {@link AssetFingerprint}
+   * @throws IllegalArgumentException 不正な値の場合
+   */
+  public static AssetFingerprint from(String value) {
+    String normalized = value.trim().toLowerCase(Locale.ROOT);
+    return Arrays.stream(values())
+        .filter(m -> m.id.equals(normalized))
+        .findFirst()
+        .orElseThrow(
+            () -> new IllegalArgumentException("不正なassetFingerprintです: " + value));
+  }
+
+  /**
+   * メディアのフィンガープリント（8桁の16進文字列）を返す。
+   *
+   * @param item メディア
+   * @return サイズと更新日時から算出したフィンガープリント
+   */
+  public static String of(MediaItem item) {
+    return of(item, "");
+  }
+
+  /**
+   * コピー時の変換の条件を含めた、メディアのフィンガープリント（8桁の16進文字列）を返す。
+   *
+   * @param item メディア
+   * @param encodingKey assets に置く際の変換の条件（変換しない場合は空文字。空文字なら {@link #of(MediaItem)} と同じ値）
+   * @return サイズ・更新日時・変換の条件から算出したフィンガープリント
+   */
+  public static String of(MediaItem item, String encodingKey) {
+    ByteBuffer buf = ByteBuffer.allocate(Long.BYTES * 2 + Integer.BYTES);
+    buf.putLong(item.sizeBytes());
+    buf.putLong(item.lastModifiedAt().getEpochSecond());
+    buf.putInt(item.lastModifiedAt().getNano());
+    CRC32C crc = new CRC32C();
+    crc.update(buf.array());
+    if (!encodingKey.isEmpty()) {
+      crc.update(0);
+      crc.update(encodingKey.getBytes(StandardCharsets.UTF_8));
+    }
+    return String.format(Locale.ROOT, "%08x", crc.getValue());
+  }
+
+  /**
+   * assets 配下に置くファイルの相対パスを返す（{@link #FILENAME} の場合だけフィンガープリント付きのファイル名になる）。
+   *
+   * @param item メディア
+   * @return assets からの相対パス（区切り文字は {@code /}）
+   */
+  public String assetPath(MediaItem item) {
+    return assetPath(item, "");
+  }
+
+  /**
+   * コピー時の変換の条件を含めて、assets 配下に置くファイルの相対パスを返す。
+   *
+   * @param item メディア
+   * @param encodingKey assets に置く際の変換の条件（変換しない場合は空文字）
+   * @return assets からの相対パス（区切り文字は {@code /}）
+   */
+  public String assetPath(MediaItem item, String encodingKey) {
+    String rel = item.relativePath().toString().replace('\\', '/');
+    if (this != FILENAME) {
+      return rel;
+    }
+    int slash = rel.lastIndexOf('/');
+    int dot = rel.lastIndexOf('.');
+    String fp = of(item, encodingKey);
+    if (dot <= slash + 1) {
+      // 拡張子なし、または ".hidden" のような名前
+      return rel + "." + fp;
+    }
+    return rel.substring(0, dot) + "." + fp + rel.substring(dot);
+  }
+
+  /**
+   * URL に付けるクエリ文字列を返す（{@link #QUERY} 以外は空文字）。
+   *
+   * @param item メディア
+   * @return 例: {@code ?v=1a2b3c4d}
+   */
+  public String query(MediaItem item) {
+    return query(item, "");
+  }
+
+  /**
+   * コピー時の変換の条件を含めて、URL に付けるクエリ文字列を返す（{@link #QUERY} 以外は空文字）。
+   *
+   * @param item メディア
+   * @param encodingKey assets に置く際の変換の条件（変換しない場合は空文字）
+   * @return 例: {@code ?v=1a2b3c4d}
+   */
+  public String query(MediaItem item, String encodingKey) {
+    return this == QUERY ? "?v=" + of(item, encodingKey) : "";
+  }
+
+  /**
+   * assets 配下に置く名前を relativePath としたメディアを返す（コピー・削除・検証はこの名前を使う）。
+   *
+   * @param item メディア
+   * @return {@link #FILENAME} の場合は relativePath を置き換えたメディア、それ以外は item そのもの
+   */
+  public MediaItem toAssetItem(MediaItem item) {
+    return toAssetItem(item, "");
+  }
+
+  /**
+   * コピー時の変換の条件を含めて、assets 配下に置く名前を relativePath としたメディアを返す。
+   *
+   * @param item メディア
+   * @param encodingKey assets に置く際の変換の条件（変換しない場合は空文字）
+   * @return {@link #FILENAME} の場合は relativePath を置き換えたメディア、それ以外は item そのもの
+   */
+  public MediaItem toAssetItem(MediaItem item, String encodingKey) {
+    if (this != FILENAME) {
+      return item;
+    }
+    return new MediaItem(
+        item.sourcePath(),
+        Path.of(assetPath(item, encodingKey)),
+        item.type(),
+        item.sizeBytes(),
+        item.lastModifiedAt());
+  }
+
+  /**
+   * メディア一覧の各件に {@link #toAssetItem(MediaItem)} を適用する。
+   *
+   * <p>items が {@link Collection} の場合は一覧を返し、それ以外（一時ファイルからマージしながら読み出す走査結果など）は
+   * 読み出しながら変換する。
+   *
+   * @param items メディア一覧
+   * @return 変換後のメディア一覧（{@link #FILENAME} 以外は items そのもの）
+   */
+  public Iterable<MediaItem> toAssetItems(Iterable<MediaItem> items) {
+    return toAssetItems(items, item -> "");
+  }
+
+  /**
+   * メディア一覧の各件に {@link #toAssetItem(MediaItem, String)} を適用する。
+   *
+   * @param items メディア一覧
+   * @param encodingKey メディアごとの、assets に置く際の変換の条件（変換しない場合は空文字）
+   * @return 変換後のメディア一覧（{@link #FILENAME} 以外は items そのもの）
+   */
+  public Iterable<MediaItem> toAssetItems(
+      Iterable<MediaItem> items, Function<MediaItem, String> encodingKey) {
+    if (this != FILENAME) {
+      return items;
+    }
+    if (items instanceof Collection<MediaItem> all) {
+      List<MediaItem> mapped = new ArrayList<>(all.size());
+      for (MediaItem item : all) {
+        mapped.add(toAssetItem(item, encodingKey.apply(item)));
+      }
+      return mapped;
+    }
+    return () -> {
+      Iterator<MediaItem> it = items.iterator();
+      return new Iterator<>() {
+        @Override
+        public boolean hasNext() {
+          return it.hasNext();
+        }
+
+        @Override
+        public MediaItem next() {
+          MediaItem item = it.next();
+          return toAssetItem(item, encodingKey.apply(item));
+        }
+      };
+    };
+  }
+}
@@ -0,0 +1,90 @@
+package com.example.gallery.domain;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 入力フォルダ1件（設定ファイルの inputDir / inputDirs）。
+ *
+ * <p>name はメディアの relativePath の先頭に付ける名前空間。複数の入力フォルダのメディアを1つの relativePath
+ * の空間（assets の配置・アルバム・URL）にまとめるために使う。空の場合は付けない（入力フォルダが1つの場合）。
+ *
+ * @param dir 入力ディレクトリ
+ * @param name relativePath の先頭に付ける名前（空の場合は付けない）
+ */
+public record InputRoot(Path dir, String name) {
+
+  /** 入力フォルダ名から名前を決められない場合（ファイルシステムのルート等）の名前。 */
+  private static final String FALLBACK_NAME = "input";
+
+  public InputRoot {
+    Objects.requireNonNull(dir, "dir");
+    Objects.requireNonNull(name, "name");
+  }
+
+  /**
+   * 名前空間を付けない入力フォルダを返す。
+   *
+   * @param dir 入力ディレクトリ
+   * @return 入力フォルダ
+   */
+  public static InputRoot of(Path dir) {
+    return new InputRoot(dir, "");
+  }
+
+  /**
+   * 入力フォルダ群に名前空間を割り当てる。
+   *
+   * <ul>
+   *   <li>1件の場合は名前空間を付けない（inputDir を指定した場合と同じ relativePath になる）
+   *   <li>複数の場合はフォルダ名を名前にする。大小無視で重複する場合は、2件目以降に {@code -2}、{@code -3} … を付ける
+   * </ul>
+   *
+   * @param dirs 入力ディレクトリ（指定順）
+   * @return 入力フォルダ（指定順）
+   */
+  public static List<InputRoot> assign(List<Path> dirs) {
+    if (dirs.size() == 1) {
+      return List.of(of(dirs.get(0)));
+    }
+    Set<String> used = new HashSet<>();
+    List<InputRoot> roots = new ArrayList<>(dirs.size());
+    for (Path dir : dirs) {
+      String base = baseName(dir);
+      String name = base;
+      for (int n = 2; !used.add(name.toLowerCase(Locale.ROOT)); n++) {
+        name = base + "-" + n;
+      }
+      roots.add(new InputRoot(dir, name));
+    }
+    return List.copyOf(roots);
+  }
+
+  /**
+   * 入力フォルダからの相対パスに名前空間を付ける。
+   *
+   * @param relative 入力フォルダからの相対パス
+   * @return relativePath（名前が空の場合はそのまま）
+   */
+  public Path namespaced(Path relative) {
+    return name.isEmpty() ? relative : relative.getFileSystem().getPath(name).resolve(relative);
+  }
+
+  private static String baseName(Path dir) {
+    Path abs = dir.toAbsolutePath().normalize();
+    Path fileName = abs.getFileName();
+    if (fileName != null) {
+      return fileName.toString();
+    }
+    // ドライブのルート（例: D:\）はドライブ名の英数字だけを使う
+    String root = abs.getRoot() == null ? "" : abs.getRoot().toString();
+    StringBuilder sb = new StringBuilder();
+    root.codePoints().filter(Character::isLetterOrDigit).forEach(sb::appendCodePoint);
+    return sb.isEmpty() ? FALLBACK_NAME : sb.toString();
+  }
+}
@@ -0,0 +1,39 @@
+package com.example.gallery.domain;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/** ギャラリーページの構成（レイアウト）を表す。 */
+public enum LayoutMode {
+  /** index.html 1ページに全件を並べる。 */
+  SINGLE("single"),
+
+  /** フォルダ単位のアルバムページと、アルバム一覧の index.html を生成する。 */
+  ALBUMS("albums");
+
+  private final String id;
+
+  LayoutMode(String id) {
+    this.id = id;
+  }
+
+  /** 設定ファイル上の識別子（例: albums）を返す。 */
+  public String id() {
+    return id;
+  }
+
+  /**
+   * 設定値（文字列）から {@link LayoutMode} を解決する。
+   *
+   * @param value 設定値（null/空は不可）
+   * @return 解決した {@link LayoutMode}
+   * @throws IllegalArgumentException 不正な値の場合
+   */
+  public static LayoutMode from(String value) {
+    String normalized = value.trim().toLowerCase(Locale.ROOT);
+    return Arrays.stream(values())
+        .filter(m -> m.id.equals(normalized))
+        .findFirst()
+        .orElseThrow(() -> new IllegalArgumentException("不正なlayoutです: " + value));
+  }
+}
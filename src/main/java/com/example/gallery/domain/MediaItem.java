@@ -6,7 +6,7 @@ import java.time.Instant;
 /**
  * 入力フォルダ内で見つかったメディアファイル1件分の情報。
  *
- * <p>relativePath は inputDir からの相対パス（コピー/HTML生成で使用）。
+ * <p>relativePath は inputDir からの相対パス（コピー/HTML生成で使用）。入力フォルダが複数の場合は先頭に {@link InputRoot#name()} が付く。
  */
 public record MediaItem(
     Path sourcePath, Path relativePath, MediaType type, long sizeBytes, Instant lastModifiedAt) {}
@@ -0,0 +1,123 @@
+package com.example.gallery.image;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * ハミング距離で検索する BK-tree（{@link PerceptualHash} のハッシュ用）。
+ *
+ * <p>各ノードの子を「親との距離」ごとに分けて持つ。 距離 d 以内を探すとき、三角不等式により親との距離が {@code 親との距離 ± d}
+ * の範囲にある子だけをたどればよいため、 d が小さければ全件と比べずに済む。同じハッシュの項目は1つのノードにまとめる。
+ *
+ * <p>スレッドセーフではない。
+ */
+final class BkTree {
+
+  private Node root;
+  private int size;
+
+  /**
+   * 項目を追加する。
+   *
+   * @param hash ハッシュ
+   * @param id 項目の番号
+   */
+  void add(long hash, int id) {
+    size++;
+    if (root == null) {
+      root = new Node(hash, id);
+      return;
+    }
+    Node node = root;
+    while (true) {
+      int d = PerceptualHash.distance(hash, node.hash);
+      if (d == 0) {
+        node.addId(id);
+        return;
+      }
+      Node child = node.child(d);
+      if (child == null) {
+        node.addChild(d, new Node(hash, id));
+        return;
+      }
+      node = child;
+    }
+  }
+
+  /**
+   * 距離 maxDistance 以内の項目をすべて列挙する。
+   *
+   * @param hash ハッシュ
+   * @param maxDistance 最大距離
+   * @param found 見つかった項目の番号を受け取る
+   */
+  void query(long hash, int maxDistance, IntConsumer found) {
+    if (root == null) {
+      return;
+    }
+    // 深い木でもスタックを使い切らないよう、再帰せずにたどる
+    ArrayDeque<Node> pending = new ArrayDeque<>();
+    pending.push(root);
+    while (!pending.isEmpty()) {
+      Node node = pending.pop();
+      int d = PerceptualHash.distance(hash, node.hash);
+      if (d <= maxDistance) {
+        for (int i = 0; i < node.idCount; i++) {
+          found.accept(node.ids[i]);
+        }
+      }
+      for (int i = 0; i < node.childCount; i++) {
+        int cd = node.childDistances[i];
+        if (cd >= d - maxDistance && cd <= d + maxDistance) {
+          pending.push(node.children[i]);
+        }
+      }
+    }
+  }
+
+  /** 追加した項目数。 */
+  int size() {
+    return size;
+  }
+
+  private static final class Node {
+    final long hash;
+    int[] ids = new int[1];
+    int idCount;
+    int[] childDistances = new int[0];
+    Node[] children = new Node[0];
+    int childCount;
+
+    Node(long hash, int id) {
+      this.hash = hash;
+      addId(id);
+    }
+
+    void addId(int id) {
+      if (idCount == ids.length) {
+        ids = Arrays.copyOf(ids, idCount * 2);
+      }
+      ids[idCount++] = id;
+    }
+
+    Node child(int distance) {
+      for (int i = 0; i < childCount; i++) {
+        if (childDistances[i] == distance) {
+          return children[i];
+        }
+      }
+      return null;
+    }
+
+    void addChild(int distance, Node child) {
+      if (childCount == children.length) {
+        int capacity = Math.max(2, childCount * 2);
+        childDistances = Arrays.copyOf(childDistances, capacity);
+        children = Arrays.copyOf(children, capacity);
+      }
+      childDistances[childCount] = distance;
+      children[childCount++] = child;
+    }
+  }
+}
@@ -0,0 +1,217 @@
+package com.example.gallery.image;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * 画像のデコードをメモリ量で制御する。
+ *
+ * <p>デコードの前にヘッダから幅・高さだけを読み、画素バッファの大きさ（1画素 {@value #BYTES_PER_PIXEL} バイト）を見積もる。
+ * 同時にデコードしている画像の見積もりの合計が上限を超える場合は、他のデコードが終わるまで待つ。 スレッド数ではなくメモリ量で同時実行数が決まるため、
+ * 巨大なパノラマ画像が重なってもヒープを使い切らない。
+ *
+ * <p>1枚で上限を超える画像と、出力に必要な幅より十分に大きい画像は、間引いて（{@link
+ * ImageReadParam#setSourceSubsampling}）読み込む。
+ */
+public final class DecodeScheduler {
+
+  /** 画素バッファの見積もりに使う1画素あたりのバイト数（ARGB）。 */
+  static final int BYTES_PER_PIXEL = 4;
+
+  /** 自動設定時にデコードへ割り当てる、最大ヒープに対する割合の逆数。 */
+  static final int AUTO_HEAP_DIVISOR = 4;
+
+  private final long capacity;
+  private long used;
+  private long peak;
+  private final AtomicInteger subsampled = new AtomicInteger();
+
+  private DecodeScheduler(long capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * メモリ上限を指定して作る。
+   *
+   * @param budgetBytes 同時にデコードする画素バッファの合計の上限（bytes、0 は最大ヒープの 1/{@value
+   *     #AUTO_HEAP_DIVISOR}）
+   * @return スケジューラ
+   */
+  public static DecodeScheduler withBudget(long budgetBytes) {
+    if (budgetBytes < 0) {
+      throw new IllegalArgumentException("budgetBytes は0以上で指定してください: " + budgetBytes);
+    }
+    long capacity =
+        budgetBytes == 0 ? Runtime.getRuntime().maxMemory() / AUTO_HEAP_DIVISOR : budgetBytes;
+    return new DecodeScheduler(Math.max(1, capacity));
+  }
+
+  /** デコードした画像。{@link #close()} で確保していたメモリ枠を返す。 */
+  public final class Decoded implements AutoCloseable {
+
+    private final BufferedImage image;
+    private final int originalWidth;
+    private final int originalHeight;
+    private final int subsampling;
+    private final long reservedBytes;
+    private boolean closed;
+
+    private Decoded(
+        BufferedImage image,
+        int originalWidth,
+        int originalHeight,
+        int subsampling,
+        long reservedBytes) {
+      this.image = image;
+      this.originalWidth = originalWidth;
+      this.originalHeight = originalHeight;
+      this.subsampling = subsampling;
+      this.reservedBytes = reservedBytes;
+    }
+
+    /** デコードした画像（間引いた場合は元より小さい）。 */
+    public BufferedImage image() {
+      return image;
+    }
+
+    /** 元画像の幅。 */
+    public int originalWidth() {
+      return originalWidth;
+    }
+
+    /** 元画像の高さ。 */
+    public int originalHeight() {
+      return originalHeight;
+    }
+
+    /** 間引きの倍率（1 は間引きなし）。 */
+    public int subsampling() {
+      return subsampling;
+    }
+
+    @Override
+    public void close() {
+      if (!closed) {
+        closed = true;
+        release(reservedBytes);
+      }
+    }
+  }
+
+  /**
+   * メモリ枠を確保してから画像をデコードする。
+   *
+   * @param file 画像ファイル
+   * @param minWidth 出力に必要な幅（この2倍を下回らない範囲で間引く。0 の場合は上限を超える画像だけ間引く）
+   * @return デコードした画像（呼び出し側で close する）。デコードできない形式・壊れた画像の場合は null
+   * @throws IOException 読み込みに失敗した場合
+   * @throws InterruptedException メモリ枠の待機中に割り込まれた場合
+   */
+  public Decoded decode(Path file, int minWidth) throws IOException, InterruptedException {
+    Objects.requireNonNull(file, "file");
+
+    try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+      if (in == null) {
+        return null;
+      }
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+      if (!readers.hasNext()) {
+        return null;
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(in, true, true);
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        int subsampling = subsamplingFor(width, height, minWidth);
+        long reserved = estimate(ceilDiv(width, subsampling), ceilDiv(height, subsampling));
+
+        acquire(reserved);
+        try {
+          ImageReadParam param = reader.getDefaultReadParam();
+          if (subsampling > 1) {
+            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+          }
+          BufferedImage image = reader.read(0, param);
+          if (subsampling > 1) {
+            subsampled.incrementAndGet();
+          }
+          return new Decoded(image, width, height, subsampling, reserved);
+        } catch (IOException | RuntimeException | Error e) {
+          release(reserved);
+          if (e instanceof IIOException) {
+            return null;
+          }
+          throw e;
+        }
+      } catch (IIOException e) {
+        // ヘッダを解釈できない（壊れた）画像
+        return null;
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  /** 上限（bytes）。 */
+  public long capacity() {
+    return capacity;
+  }
+
+  /** 同時にデコードしていた画素バッファの見積もりの最大値（bytes）。 */
+  public synchronized long peakBytes() {
+    return peak;
+  }
+
+  /** 間引いて読み込んだ画像数。 */
+  public int subsampledCount() {
+    return subsampled.get();
+  }
+
+  /**
+   * 間引きの倍率を返す。
+   *
+   * <p>上限に収まる最小の倍率と、minWidth の2倍の幅を下回らない最大の倍率の大きい方（minWidth が 0 の場合は前者）。
+   * 後者は出力に必要な解像度より大きすぎる画像のデコード量を減らすためのもので、縮小時の補間で間引きの粗さが残らないよう2倍の余裕を持たせる。
+   */
+  int subsamplingFor(int width, int height, int minWidth) {
+    int s = 1;
+    while (estimate(ceilDiv(width, s), ceilDiv(height, s)) > capacity) {
+      s++;
+    }
+    if (minWidth > 0) {
+      s = Math.max(s, width / (2 * minWidth));
+    }
+    return Math.max(1, s);
+  }
+
+  static long estimate(int width, int height) {
+    return (long) width * height * BYTES_PER_PIXEL;
+  }
+
+  private synchronized void acquire(long bytes) throws InterruptedException {
+    while (used > 0 && used + bytes > capacity) {
+      wait();
+    }
+    used += bytes;
+    peak = Math.max(peak, used);
+  }
+
+  private synchronized void release(long bytes) {
+    used -= bytes;
+    notifyAll();
+  }
+
+  private static int ceilDiv(int a, int b) {
+    return (a + b - 1) / b;
+  }
+}
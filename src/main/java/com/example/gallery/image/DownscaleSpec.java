@@ -0,0 +1,69 @@
+package com.example.gallery.image;
+
+import com.example.gallery.domain.MediaItem;
+import com.example.gallery.domain.MediaType;
+import java.util.Locale;
+
+/**
+ * assets へのコピー時に、大きすぎる JPEG を縮小・再エンコードする条件。
+ *
+ * <p>長辺が maxDimension を超える、またはファイルサイズが maxBytes を超える JPEG が対象。
+ *
+ * @param maxDimension 長辺の上限（px、0 は制限なし）
+ * @param maxBytes ファイルサイズの上限（bytes、0 は制限なし）
+ * @param quality 再エンコード時の JPEG の画質（1〜100）
+ */
+public record DownscaleSpec(int maxDimension, long maxBytes, int quality) {
+
+  /** 既定の画質。 */
+  public static final int DEFAULT_QUALITY = 85;
+
+  /** 縮小・再エンコードしない。 */
+  public static final DownscaleSpec NONE = new DownscaleSpec(0, 0, DEFAULT_QUALITY);
+
+  public DownscaleSpec {
+    if (maxDimension < 0) {
+      throw new IllegalArgumentException("maxDimension が不正です: " + maxDimension);
+    }
+    if (maxBytes < 0) {
+      throw new IllegalArgumentException("maxBytes が不正です: " + maxBytes);
+    }
+    if (quality < 1 || quality > 100) {
+      throw new IllegalArgumentException("quality は1〜100で指定してください: " + quality);
+    }
+  }
+
+  /** 縮小・再エンコードを行う場合は true。 */
+  public boolean enabled() {
+    return maxDimension > 0 || maxBytes > 0;
+  }
+
+  /**
+   * 縮小・再エンコードの対象になり得るメディアかを判定する（寸法は見ない）。
+   *
+   * @param item メディア
+   * @return JPEG の画像なら true
+   */
+  public boolean candidate(MediaItem item) {
+    if (!enabled() || item.type() != MediaType.IMAGE) {
+      return false;
+    }
+    String name = item.relativePath().toString().toLowerCase(Locale.ROOT);
+    return name.endsWith(".jpg") || name.endsWith(".jpeg");
+  }
+
+  /**
+   * メディアを assets に置く際の変換の条件を返す（コピージャーナルと assets のフィンガープリントに含める）。
+   *
+   * @param item メディア
+   * @return 縮小・再エンコードの対象なら {@link #cacheKey()}、それ以外は空文字
+   */
+  public String encodingKey(MediaItem item) {
+    return candidate(item) ? cacheKey() : "";
+  }
+
+  /** コピージャーナルに記録する、条件を表す文字列（条件が変わったら対象の JPEG をコピーし直す）。 */
+  public String cacheKey() {
+    return "d" + maxDimension + "b" + maxBytes + "q" + quality;
+  }
+}
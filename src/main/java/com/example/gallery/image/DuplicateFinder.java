@@ -0,0 +1,248 @@
+package com.example.gallery.image;
+
+import com.example.gallery.domain.MediaItem;
+import com.example.gallery.domain.MediaType;
+import com.example.gallery.progress.PhaseProgress;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 似た画像（連写・再書き出しなど）のグループを見つける。
+ *
+ * <p>画像ごとの {@link PerceptualHash} を並列に計算し（{@link HashIndex} に記録済みの画像はデコードしない）、 {@link BkTree}
+ * に順に追加しながら、しきい値以内の既存の画像と同じグループにまとめる（Union-Find）。 全組み合わせを比べないため、件数が多くてもほぼ
+ * O(n log n) で済む。 似た画像が連鎖している場合（A と B、B と C が近い）は、A と C が離れていても同じグループになる。
+ */
+public final class DuplicateFinder {
+
+  /** 既定のしきい値（64 ビット中、異なるビット数がこれ以下なら似た画像とみなす）。 */
+  public static final int DEFAULT_THRESHOLD = 6;
+
+  private DuplicateFinder() {}
+
+  /**
+   * 検出結果。
+   *
+   * @param groups 似た画像のグループ（一覧で先に出てくる画像を含むグループから順）
+   * @param hashed ハッシュを計算した画像数
+   * @param reused 記録済みのハッシュを使った画像数
+   * @param skipped 対象外（動画・デコードできない画像）の件数
+   */
+  public record Result(List<DuplicateGroup> groups, int hashed, int reused, int skipped) {
+
+    public Result {
+      groups = List.copyOf(groups);
+    }
+
+    /** グループの代表以外の画像の合計数（まとめて表示した場合に隠れる件数）。 */
+    public int duplicates() {
+      int n = 0;
+      for (DuplicateGroup g : groups) {
+        n += g.others().size();
+      }
+      return n;
+    }
+  }
+
+  /**
+   * メディア一覧から似た画像のグループを見つけ、ハッシュを index に記録する（{@link HashIndex#commit()} は呼び出し側で行う）。
+   *
+   * @param items メディア一覧（sourcePath はコピー元）
+   * @param index 計算済みのハッシュの一覧
+   * @param threshold しきい値（0〜64）
+   * @param decoder デコードのスケジューラ
+   * @param progress 進捗カウンタ（1件ごとに件数とサイズを加算）
+   * @return 検出結果
+   * @throws IOException 読み込みに失敗した場合
+   */
+  public static Result find(
+      List<MediaItem> items,
+      HashIndex index,
+      int threshold,
+      DecodeScheduler decoder,
+      PhaseProgress progress)
+      throws IOException {
+    Objects.requireNonNull(items, "items");
+    Objects.requireNonNull(index, "index");
+    Objects.requireNonNull(decoder, "decoder");
+    Objects.requireNonNull(progress, "progress");
+    if (threshold < 0 || threshold > Long.SIZE) {
+      throw new IllegalArgumentException("threshold は0〜64で指定してください: " + threshold);
+    }
+
+    int n = items.size();
+    long[] hashes = new long[n];
+    boolean[] hashedAt = new boolean[n];
+    AtomicInteger hashed = new AtomicInteger();
+    AtomicInteger reused = new AtomicInteger();
+    computeHashes(items, index, decoder, progress, hashes, hashedAt, hashed, reused);
+
+    // 順に追加しながら、しきい値以内の既存の画像と同じグループにまとめる
+    BkTree tree = new BkTree();
+    int[] parent = new int[n];
+    int skipped = 0;
+    for (int i = 0; i < n; i++) {
+      parent[i] = i;
+      if (!hashedAt[i]) {
+        skipped++;
+        continue;
+      }
+      int self = i;
+      tree.query(hashes[i], threshold, j -> union(parent, self, j));
+      tree.add(hashes[i], i);
+    }
+
+    Map<Integer, List<Integer>> members = new LinkedHashMap<>();
+    for (int i = 0; i < n; i++) {
+      if (hashedAt[i]) {
+        members.computeIfAbsent(find(parent, i), k -> new ArrayList<>()).add(i);
+      }
+    }
+    List<DuplicateGroup> groups = new ArrayList<>();
+    for (List<Integer> group : members.values()) {
+      if (group.size() >= 2) {
+        groups.add(toGroup(items, hashes, group));
+      }
+    }
+    return new Result(groups, hashed.get(), reused.get(), skipped);
+  }
+
+  /** 対象の画像のハッシュを並列に計算する（記録済みの画像は記録を使う）。 */
+  private static void computeHashes(
+      List<MediaItem> items,
+      HashIndex index,
+      DecodeScheduler decoder,
+      PhaseProgress progress,
+      long[] hashes,
+      boolean[] hashedAt,
+      AtomicInteger hashed,
+      AtomicInteger reused)
+      throws IOException {
+    int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    // 待ち行列に全件を積まないよう、投入数をスレッド数の数倍までに抑える
+    Semaphore inFlight = new Semaphore(threads * 4);
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      for (int i = 0; i < items.size(); i++) {
+        if (failure.get() != null) {
+          break;
+        }
+        MediaItem item = items.get(i);
+        if (!supports(item)) {
+          progress.add(1, item.sizeBytes());
+          continue;
+        }
+        HashIndex.Hashed prev = index.reusable(item);
+        if (prev != null) {
+          index.put(item, prev);
+          hashes[i] = prev.hash();
+          hashedAt[i] = prev.decodable();
+          reused.incrementAndGet();
+          progress.add(1, item.sizeBytes());
+          continue;
+        }
+
+        int at = i;
+        inFlight.acquire();
+        pool.execute(
+            () -> {
+              try {
+                Long hash = PerceptualHash.of(item.sourcePath(), decoder);
+                long modified = item.lastModifiedAt().toEpochMilli();
+                index.put(
+                    item,
+                    new HashIndex.Hashed(
+                        item.sizeBytes(), modified, hash == null ? 0 : hash, hash != null));
+                if (hash != null) {
+                  // 配列の各要素は1つのスレッドだけが書き込み、awaitTermination 後に読む
+                  hashes[at] = hash;
+                  hashedAt[at] = true;
+                  hashed.incrementAndGet();
+                }
+                progress.add(1, item.sizeBytes());
+              } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+              } finally {
+                inFlight.release();
+              }
+            });
+      }
+      pool.shutdown();
+      pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("ハッシュの計算が中断されました", e);
+    } finally {
+      pool.shutdownNow();
+    }
+
+    Throwable t = failure.get();
+    if (t instanceof IOException io) {
+      throw io;
+    }
+    if (t instanceof InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new IOException("ハッシュの計算が中断されました", ie);
+    }
+    if (t instanceof RuntimeException re) {
+      throw re;
+    }
+    if (t instanceof Error err) {
+      throw err;
+    }
+  }
+
+  /** ハッシュを計算する対象か（一覧ファイルは1行1件のため、改行を含む名前は対象にしない）。 */
+  private static boolean supports(MediaItem item) {
+    return item.type() == MediaType.IMAGE && HashIndex.keyOf(item).indexOf('\n') < 0;
+  }
+
+  /** サイズが最大の画像（同じ場合は先に出てくる画像）を代表にしてグループを作る。 */
+  private static DuplicateGroup toGroup(List<MediaItem> items, long[] hashes, List<Integer> group) {
+    int rep = group.get(0);
+    for (int i : group) {
+      if (items.get(i).sizeBytes() > items.get(rep).sizeBytes()) {
+        rep = i;
+      }
+    }
+    List<MediaItem> ordered = new ArrayList<>(group.size());
+    ordered.add(items.get(rep));
+    int maxDistance = 0;
+    for (int i : group) {
+      if (i != rep) {
+        ordered.add(items.get(i));
+        maxDistance = Math.max(maxDistance, PerceptualHash.distance(hashes[rep], hashes[i]));
+      }
+    }
+    return new DuplicateGroup(ordered, maxDistance);
+  }
+
+  private static int find(int[] parent, int i) {
+    while (parent[i] != i) {
+      parent[i] = parent[parent[i]];
+      i = parent[i];
+    }
+    return i;
+  }
+
+  private static void union(int[] parent, int a, int b) {
+    int ra = find(parent, a);
+    int rb = find(parent, b);
+    if (ra != rb) {
+      // 先に出てくる画像を根にする（グループの順序を一覧の順に保つ）
+      parent[Math.max(ra, rb)] = Math.min(ra, rb);
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package com.example.gallery.image;
+
+import com.example.gallery.domain.MediaItem;
+import java.util.List;
+
+/**
+ * 似た画像のグループ（2件以上）。
+ *
+ * @param items 画像（先頭が代表。代表はファイルサイズが最大のもの、同じ場合は一覧で先に出てくるもの）
+ * @param maxDistance 代表とのハッシュの距離の最大値
+ */
+public record DuplicateGroup(List<MediaItem> items, int maxDistance) {
+
+  public DuplicateGroup {
+    items = List.copyOf(items);
+    if (items.size() < 2) {
+      throw new IllegalArgumentException("グループは2件以上で作成してください: " + items.size());
+    }
+  }
+
+  /** 代表（ギャラリーでまとめて表示する場合に表示する画像）。 */
+  public MediaItem representative() {
+    return items.get(0);
+  }
+
+  /** 代表以外の画像。 */
+  public List<MediaItem> others() {
+    return items.subList(1, items.size());
+  }
+}
@@ -0,0 +1,100 @@
+package com.example.gallery.image;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * JPEG の EXIF から向き（Orientation タグ、1〜8）を読み取る。
+ *
+ * <p>ImageIO はデコード時に向きを反映せず、書き出した画像には EXIF を付けないため、縮小・再エンコードした画像は読み取った向きを画素に反映しておく。
+ */
+final class ExifOrientation {
+
+  /** 向きの指定がない（そのまま表示する）。 */
+  static final int NORMAL = 1;
+
+  /** 読み込む先頭の最大バイト数（APP1 は先頭付近にある）。 */
+  private static final int MAX_HEAD_BYTES = 128 * 1024;
+
+  private static final int TAG_ORIENTATION = 0x0112;
+
+  private ExifOrientation() {}
+
+  /**
+   * 向きを読み取る。
+   *
+   * @param file 画像ファイル
+   * @return 1〜8（JPEG でない・EXIF がない・解釈できない場合は {@link #NORMAL}）
+   * @throws IOException 読み込みに失敗した場合
+   */
+  static int read(Path file) throws IOException {
+    byte[] head;
+    try (InputStream in = Files.newInputStream(file)) {
+      head = in.readNBytes(MAX_HEAD_BYTES);
+    }
+    try {
+      return parse(ByteBuffer.wrap(head));
+    } catch (RuntimeException e) {
+      // 途中で切れた・壊れた EXIF
+      return NORMAL;
+    }
+  }
+
+  /** 縦横が入れ替わる向き（5〜8）の場合は true。 */
+  static boolean swapsAxes(int orientation) {
+    return orientation >= 5 && orientation <= 8;
+  }
+
+  private static int parse(ByteBuffer buf) {
+    if (buf.remaining() < 4 || buf.getShort(0) != (short) 0xFFD8) {
+      return NORMAL;
+    }
+    int pos = 2;
+    while (pos + 4 <= buf.limit()) {
+      int marker = buf.getShort(pos) & 0xFFFF;
+      if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA) {
+        // SOS 以降は画像データ
+        return NORMAL;
+      }
+      int length = buf.getShort(pos + 2) & 0xFFFF;
+      int body = pos + 4;
+      if (marker == 0xFFE1 && length >= 14 && isExifHeader(buf, body)) {
+        return parseTiff(buf.slice(body + 6, Math.min(length - 8, buf.limit() - body - 6)));
+      }
+      pos += 2 + length;
+    }
+    return NORMAL;
+  }
+
+  private static boolean isExifHeader(ByteBuffer buf, int pos) {
+    return buf.get(pos) == 'E'
+        && buf.get(pos + 1) == 'x'
+        && buf.get(pos + 2) == 'i'
+        && buf.get(pos + 3) == 'f'
+        && buf.get(pos + 4) == 0
+        && buf.get(pos + 5) == 0;
+  }
+
+  private static int parseTiff(ByteBuffer tiff) {
+    short order = tiff.getShort(0);
+    if (order == 0x4949) {
+      tiff.order(ByteOrder.LITTLE_ENDIAN);
+    } else if (order != 0x4D4D) {
+      return NORMAL;
+    }
+    int ifd = tiff.getInt(4);
+    int count = tiff.getShort(ifd) & 0xFFFF;
+    for (int i = 0; i < count; i++) {
+      int entry = ifd + 2 + i * 12;
+      if ((tiff.getShort(entry) & 0xFFFF) == TAG_ORIENTATION) {
+        int value = tiff.getShort(entry + 8) & 0xFFFF;
+        return value >= 1 && value <= 8 ? value : NORMAL;
+      }
+    }
+    return NORMAL;
+  }
+}
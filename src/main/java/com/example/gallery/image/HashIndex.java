@@ -0,0 +1,149 @@
+package com.example.gallery.image;
+
+import com.example.gallery.domain.MediaItem;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 計算済みの知覚ハッシュの一覧（ビルドの記録のディレクトリの .gallery-phash）。
+ *
+ * <p>1行1件で {@code サイズ<TAB>更新日時(epoch ms)<TAB>ハッシュ(16桁の16進、デコードできない画像は -)<TAB>relativePath}
+ * を記録する。 コピー元のサイズ・更新日時が一致する画像はデコードせずに記録を使う。
+ *
+ * <p>{@link #commit()} で今回の計算結果だけを残して書き直す。
+ */
+public final class HashIndex {
+
+  /** 一覧ファイル名（記録のディレクトリ直下）。 */
+  public static final String FILE_NAME = ".gallery-phash";
+
+  private static final String UNDECODABLE = "-";
+
+  private final Path file;
+  private final Map<String, Hashed> previous;
+  private final Map<String, Hashed> current = new ConcurrentHashMap<>();
+
+  private HashIndex(Path file, Map<String, Hashed> previous) {
+    this.file = file;
+    this.previous = previous;
+  }
+
+  /**
+   * 画像1件分のハッシュ。
+   *
+   * @param sizeBytes 画像のサイズ
+   * @param modifiedMillis 画像の更新日時（epoch ms）
+   * @param hash ハッシュ（decodable が false の場合は 0）
+   * @param decodable デコードできた場合は true
+   */
+  public record Hashed(long sizeBytes, long modifiedMillis, long hash, boolean decodable) {
+
+    boolean matches(MediaItem item) {
+      return sizeBytes == item.sizeBytes()
+          && modifiedMillis == item.lastModifiedAt().toEpochMilli();
+    }
+  }
+
+  /**
+   * stateDir 直下の一覧を開く（存在しない場合は空の一覧として扱う）。
+   *
+   * @param stateDir ビルドの記録のディレクトリ（{@link
+   *     com.example.gallery.output.OutputPaths#stateDirOf(Path)}）
+   * @return 一覧
+   * @throws IOException 読み込みに失敗した場合
+   */
+  public static HashIndex open(Path stateDir) throws IOException {
+    Objects.requireNonNull(stateDir, "stateDir");
+
+    Path file = stateDir.resolve(FILE_NAME);
+    Map<String, Hashed> entries = new HashMap<>();
+    if (Files.isRegularFile(file)) {
+      for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+        parse(line, entries);
+      }
+    }
+    return new HashIndex(file, entries);
+  }
+
+  /**
+   * 前回の計算結果が使える（画像のサイズ・更新日時が一致する）場合に返す。
+   *
+   * @param item 画像
+   * @return 前回の計算結果、使えない場合は null
+   */
+  Hashed reusable(MediaItem item) {
+    Hashed prev = previous.get(keyOf(item));
+    return prev != null && prev.matches(item) ? prev : null;
+  }
+
+  /**
+   * 今回の計算結果を記録する（スレッドセーフ）。
+   *
+   * @param item 画像
+   * @param hashed 計算結果
+   */
+  void put(MediaItem item, Hashed hashed) {
+    current.put(keyOf(item), hashed);
+  }
+
+  /**
+   * 今回の計算結果だけを残して一覧を書き直す（記録のディレクトリがなければ作る）。
+   *
+   * @throws IOException 書き込みに失敗した場合
+   */
+  public void commit() throws IOException {
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    Path tmp = file.resolveSibling(FILE_NAME + ".tmp");
+    List<String> keys = new ArrayList<>(current.keySet());
+    keys.sort(null);
+    try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+      for (String key : keys) {
+        w.write(format(key, current.get(key)));
+      }
+    }
+    try {
+      Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  static String keyOf(MediaItem item) {
+    return item.relativePath().normalize().toString().replace('\\', '/');
+  }
+
+  private static String format(String key, Hashed h) {
+    String hash = h.decodable() ? String.format(Locale.ROOT, "%016x", h.hash()) : UNDECODABLE;
+    return h.sizeBytes() + "\t" + h.modifiedMillis() + "\t" + hash + "\t" + key + "\n";
+  }
+
+  private static void parse(String line, Map<String, Hashed> entries) {
+    String[] parts = line.split("\t", 4);
+    if (parts.length != 4 || parts[3].isEmpty()) {
+      return;
+    }
+    try {
+      long size = Long.parseLong(parts[0]);
+      long modified = Long.parseLong(parts[1]);
+      Hashed hashed =
+          parts[2].equals(UNDECODABLE)
+              ? new Hashed(size, modified, 0, false)
+              : new Hashed(size, modified, Long.parseUnsignedLong(parts[2], 16), true);
+      entries.put(parts[3], hashed);
+    } catch (NumberFormatException e) {
+      // 書き込み途中で終了した行などは無視する
+    }
+  }
+}
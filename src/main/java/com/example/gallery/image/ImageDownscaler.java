@@ -0,0 +1,132 @@
+package com.example.gallery.image;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 大きすぎる JPEG を縮小・再エンコードする（{@link DownscaleSpec} の条件を満たすもの）。
+ *
+ * <p>デコードは {@link DecodeScheduler} を通して行い、出力に必要な幅の2倍を下回らない範囲で間引いて読み込む。 EXIF の向きは画素に反映する（再エンコードした
+ * JPEG には EXIF を付けない）。 複数のスレッドから同時に呼び出してよい。
+ */
+public final class ImageDownscaler {
+
+  private final DownscaleSpec spec;
+  private final DecodeScheduler decoder;
+  private final AtomicInteger downscaled = new AtomicInteger();
+  private final AtomicLong bytesBefore = new AtomicLong();
+  private final AtomicLong bytesAfter = new AtomicLong();
+
+  /**
+   * 条件とデコードのスケジューラを指定して作る。
+   *
+   * @param spec 条件
+   * @param decoder デコードのスケジューラ
+   */
+  public ImageDownscaler(DownscaleSpec spec, DecodeScheduler decoder) {
+    this.spec = Objects.requireNonNull(spec, "spec");
+    this.decoder = Objects.requireNonNull(decoder, "decoder");
+  }
+
+  /** 条件。 */
+  public DownscaleSpec spec() {
+    return spec;
+  }
+
+  /**
+   * 条件を満たす場合に、縮小・再エンコードした JPEG を target へ書き出す。
+   *
+   * <p>寸法・サイズが上限内の場合、デコードできない場合、再エンコードしても小さくならない場合は何も書き出さない（呼び出し側でそのままコピーする）。
+   *
+   * @param source コピー元（JPEG）
+   * @param sourceBytes コピー元のサイズ
+   * @param target 書き出し先（一時ファイル）
+   * @return 書き出したバイト数、書き出さなかった場合は -1
+   * @throws IOException 読み書きに失敗した場合
+   * @throws InterruptedException デコードのメモリ枠の待機中に割り込まれた場合
+   * @see #encode(Path, long)
+   */
+  public long downscale(Path source, long sourceBytes, Path target)
+      throws IOException, InterruptedException {
+    byte[] encoded = encode(source, sourceBytes);
+    if (encoded == null) {
+      return -1;
+    }
+    Files.write(target, encoded);
+    return encoded.length;
+  }
+
+  /**
+   * 条件を満たす場合に、縮小・再エンコードした JPEG をメモリ上に作る（書き出し先は呼び出し側で決める）。
+   *
+   * <p>寸法・サイズが上限内の場合、デコードできない場合、再エンコードしても小さくならない場合は null を返す（呼び出し側でそのままコピーする）。
+   * 結果はコピー元より小さいため、保持するのは1件あたりコピー元のサイズまで。
+   *
+   * @param source コピー元（JPEG）
+   * @param sourceBytes コピー元のサイズ
+   * @return 縮小・再エンコードした JPEG、作らなかった場合は null
+   * @throws IOException 読み込み・エンコードに失敗した場合
+   * @throws InterruptedException デコードのメモリ枠の待機中に割り込まれた場合
+   */
+  public byte[] encode(Path source, long sourceBytes) throws IOException, InterruptedException {
+    Dimension size = ImageFiles.readSize(source);
+    if (size == null) {
+      return null;
+    }
+    int orientation = ExifOrientation.read(source);
+    boolean swap = ExifOrientation.swapsAxes(orientation);
+    int width = swap ? size.height : size.width;
+    int height = swap ? size.width : size.height;
+
+    int longEdge = Math.max(width, height);
+    boolean tooLarge = spec.maxDimension() > 0 && longEdge > spec.maxDimension();
+    boolean tooHeavy = spec.maxBytes() > 0 && sourceBytes > spec.maxBytes();
+    if (!tooLarge && !tooHeavy) {
+      return null;
+    }
+
+    double ratio = tooLarge ? (double) spec.maxDimension() / longEdge : 1.0;
+    int w = Math.max(1, (int) Math.round(width * ratio));
+    int h = Math.max(1, (int) Math.round(height * ratio));
+    DecodeScheduler.Decoded decoded = decoder.decode(source, swap ? h : w);
+    if (decoded == null) {
+      return null;
+    }
+    byte[] encoded;
+    try (decoded) {
+      BufferedImage image =
+          ImageFiles.render(decoded.image(), orientation, w, h, BufferedImage.TYPE_INT_RGB);
+      encoded = ImageFiles.encodeJpeg(image, spec.quality() / 100f);
+    }
+
+    if (encoded.length >= sourceBytes) {
+      // 小さくならない場合は元のままコピーする
+      return null;
+    }
+    downscaled.incrementAndGet();
+    bytesBefore.addAndGet(sourceBytes);
+    bytesAfter.addAndGet(encoded.length);
+    return encoded;
+  }
+
+  /** 縮小・再エンコードした件数。 */
+  public int downscaledCount() {
+    return downscaled.get();
+  }
+
+  /** 縮小・再エンコードした件のコピー元の合計サイズ。 */
+  public long bytesBefore() {
+    return bytesBefore.get();
+  }
+
+  /** 縮小・再エンコードした件の書き出し後の合計サイズ。 */
+  public long bytesAfter() {
+    return bytesAfter.get();
+  }
+}
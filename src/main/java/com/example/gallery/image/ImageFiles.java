@@ -0,0 +1,185 @@
+package com.example.gallery.image;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/** 画像の寸法の読み取り・縮小・書き出しの共通処理。 */
+final class ImageFiles {
+
+  private ImageFiles() {}
+
+  /**
+   * ヘッダから幅・高さだけを読み取る（画素はデコードしない）。
+   *
+   * @param file 画像ファイル
+   * @return 幅・高さ（ImageIO で読めない形式・壊れた画像の場合は null）
+   * @throws IOException 読み込みに失敗した場合
+   */
+  static Dimension readSize(Path file) throws IOException {
+    try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+      if (in == null) {
+        return null;
+      }
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+      if (!readers.hasNext()) {
+        return null;
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(in, true, true);
+        return new Dimension(reader.getWidth(0), reader.getHeight(0));
+      } catch (IIOException e) {
+        return null;
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  /**
+   * EXIF の向きを反映しながら、指定の大きさに縮小した画像を作る。
+   *
+   * @param source 元画像（デコードしたままの向き）
+   * @param orientation EXIF の向き（1〜8）
+   * @param width 向きを反映した後の幅
+   * @param height 向きを反映した後の高さ
+   * @param type 作成する画像の種類（JPEG は透過なしの {@link BufferedImage#TYPE_INT_RGB}）
+   * @return 縮小した画像
+   */
+  static BufferedImage render(
+      BufferedImage source, int orientation, int width, int height, int type) {
+    boolean swap = ExifOrientation.swapsAxes(orientation);
+    // 向きを反映する前の座標系での大きさ
+    int w = swap ? height : width;
+    int h = swap ? width : height;
+
+    AffineTransform t = new AffineTransform();
+    switch (orientation) {
+      case 2 -> {
+        t.scale(-1, 1);
+        t.translate(-w, 0);
+      }
+      case 3 -> {
+        t.translate(w, h);
+        t.rotate(Math.PI);
+      }
+      case 4 -> {
+        t.scale(1, -1);
+        t.translate(0, -h);
+      }
+      case 5 -> {
+        t.rotate(-Math.PI / 2);
+        t.scale(-1, 1);
+      }
+      case 6 -> {
+        t.translate(h, 0);
+        t.rotate(Math.PI / 2);
+      }
+      case 7 -> {
+        t.scale(-1, 1);
+        t.translate(-h, w);
+        t.rotate(3 * Math.PI / 2);
+      }
+      case 8 -> {
+        t.translate(0, w);
+        t.rotate(3 * Math.PI / 2);
+      }
+      default -> {
+        // 1: そのまま
+      }
+    }
+    t.scale((double) w / source.getWidth(), (double) h / source.getHeight());
+
+    BufferedImage scaled = new BufferedImage(width, height, type);
+    Graphics2D g = scaled.createGraphics();
+    try {
+      g.setRenderingHint(
+          RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+      g.drawImage(source, t, null);
+    } finally {
+      g.dispose();
+    }
+    return scaled;
+  }
+
+  /**
+   * JPEG として書き出す。
+   *
+   * @param image 画像（透過なし）
+   * @param file 書き出し先（存在する場合は置き換える）
+   * @param quality 画質（0.0〜1.0）
+   * @throws IOException 書き込みに失敗した場合
+   */
+  static void writeJpeg(BufferedImage image, Path file, float quality) throws IOException {
+    Files.deleteIfExists(file);
+    try (ImageOutputStream out = ImageIO.createImageOutputStream(file.toFile())) {
+      writeJpeg(image, out, quality);
+    }
+  }
+
+  /**
+   * JPEG をメモリ上にエンコードする。
+   *
+   * @param image 画像（透過なし）
+   * @param quality 画質（0.0〜1.0）
+   * @return JPEG のバイト列
+   * @throws IOException エンコードに失敗した場合
+   */
+  static byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ImageOutputStream out = new MemoryCacheImageOutputStream(bytes)) {
+      writeJpeg(image, out, quality);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static void writeJpeg(BufferedImage image, ImageOutputStream out, float quality)
+      throws IOException {
+    ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+    try {
+      writer.setOutput(out);
+      ImageWriteParam param = writer.getDefaultWriteParam();
+      param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+      param.setCompressionQuality(quality);
+      writer.write(null, new IIOImage(image, null, null), param);
+    } finally {
+      writer.dispose();
+    }
+  }
+
+  /**
+   * 一時ファイルを移動先へ置き換える（可能であればアトミックに）。
+   *
+   * @param source 一時ファイル
+   * @param target 移動先
+   * @throws IOException 移動に失敗した場合
+   */
+  static void moveReplacing(Path source, Path target) throws IOException {
+    try {
+      Files.move(
+          source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+}
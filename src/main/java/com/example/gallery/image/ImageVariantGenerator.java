@@ -0,0 +1,313 @@
+package com.example.gallery.image;
+
+import com.example.gallery.domain.MediaItem;
+import com.example.gallery.domain.MediaType;
+import com.example.gallery.progress.PhaseProgress;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.imageio.ImageIO;
+
+/**
+ * 画像の縮小版（srcset 用の幅違い）を dist/variants に生成し、プレースホルダ（{@link Placeholder}）を作る。
+ *
+ * <p>対象は JPEG / PNG（ImageIO でデコードできる形式）で、縮小版も同じ形式で書き出す。 元画像（assets にコピー済みのファイル）は1回だけデコードし、
+ * 大きい幅から順に「直前に作った縮小版」を縮小する（元画像から毎回縮小するより画素数が少なく済む）。 JPEG の EXIF の向きは画素に反映する。
+ * プレースホルダは最小の縮小版から作る（縮小版がない場合は大きく間引いて読み込んだ画像から作る）。
+ *
+ * <p>画像ごとの処理は並列に行う。同時にデコードする画像は {@link DecodeScheduler} がメモリ量で制限する。 元画像が前回と同じ画像は
+ * {@link VariantIndex} の記録を使い、デコードしない。
+ */
+public final class ImageVariantGenerator {
+
+  /** JPEG の画質（0.0〜1.0）。 */
+  static final float JPEG_QUALITY = 0.82f;
+
+  private ImageVariantGenerator() {}
+
+  /**
+   * 生成結果。
+   *
+   * @param generated 縮小版を生成した画像数
+   * @param reused 前回の縮小版を再利用した画像数
+   * @param skipped 対象外（動画・未対応の形式・デコードできない画像）の件数
+   * @param files 書き出した縮小版のファイル数
+   */
+  public record Result(int generated, int reused, int skipped, int files) {}
+
+  /**
+   * 縮小版を生成できるメディアかを判定する。
+   *
+   * @param item メディア
+   * @return JPEG / PNG の画像なら true
+   */
+  public static boolean supports(MediaItem item) {
+    if (item.type() != MediaType.IMAGE) {
+      return false;
+    }
+    String name = item.relativePath().toString();
+    // 一覧ファイルは1行1件のため、改行を含む名前は対象にしない
+    return formatOf(name) != null && name.indexOf('\n') < 0;
+  }
+
+  /**
+   * メディア一覧の画像について縮小版を生成し、結果を index に記録する（{@link VariantIndex#commit()} は呼び出し側で行う）。
+   *
+   * <p>デコードのメモリ上限は自動（最大ヒープの 1/4）にする。
+   *
+   * @param items メディア一覧（relativePath は assets 上の名前。先頭から1回だけ読み出す）
+   * @param assetsDir dist/assets のパス（assets にコピー済みのファイルから縮小する）
+   * @param spec 構成
+   * @param index 生成済みの縮小版の一覧
+   * @param progress 進捗カウンタ（1件ごとに件数と元画像のサイズを加算）
+   * @return 生成結果
+   * @throws IOException 読み込み・書き込みに失敗した場合
+   */
+  public static Result generate(
+      Iterable<MediaItem> items,
+      Path assetsDir,
+      VariantSpec spec,
+      VariantIndex index,
+      PhaseProgress progress)
+      throws IOException {
+    return generate(items, assetsDir, spec, index, progress, DecodeScheduler.withBudget(0));
+  }
+
+  /**
+   * デコードのメモリ上限を指定して、メディア一覧の画像について縮小版を生成する。
+   *
+   * <p>元画像は最大の幅の2倍を下回らない範囲で間引いて読み込む（{@link DecodeScheduler#decode(Path, int)}）。
+   *
+   * @param items メディア一覧（relativePath は assets 上の名前。先頭から1回だけ読み出す）
+   * @param assetsDir dist/assets のパス（assets にコピー済みのファイルから縮小する）
+   * @param spec 構成
+   * @param index 生成済みの縮小版の一覧
+   * @param progress 進捗カウンタ（1件ごとに件数と元画像のサイズを加算）
+   * @param decoder デコードのスケジューラ
+   * @return 生成結果
+   * @throws IOException 読み込み・書き込みに失敗した場合
+   */
+  public static Result generate(
+      Iterable<MediaItem> items,
+      Path assetsDir,
+      VariantSpec spec,
+      VariantIndex index,
+      PhaseProgress progress,
+      DecodeScheduler decoder)
+      throws IOException {
+    Objects.requireNonNull(items, "items");
+    Objects.requireNonNull(assetsDir, "assetsDir");
+    Objects.requireNonNull(spec, "spec");
+    Objects.requireNonNull(index, "index");
+    Objects.requireNonNull(progress, "progress");
+    Objects.requireNonNull(decoder, "decoder");
+
+    Path absAssetsDir = assetsDir.toAbsolutePath().normalize();
+    Path variantsDir = index.variantsDir().toAbsolutePath().normalize();
+    int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    AtomicInteger generated = new AtomicInteger();
+    AtomicInteger reused = new AtomicInteger();
+    AtomicInteger skipped = new AtomicInteger();
+    AtomicInteger files = new AtomicInteger();
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    // 待ち行列に全件を積まないよう、投入数をスレッド数の数倍までに抑える
+    Semaphore inFlight = new Semaphore(threads * 4);
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      for (MediaItem item : items) {
+        if (failure.get() != null) {
+          break;
+        }
+        if (!supports(item)) {
+          skipped.incrementAndGet();
+          progress.add(1, item.sizeBytes());
+          continue;
+        }
+        MediaItem asset = assetOf(item, absAssetsDir);
+        VariantIndex.Variants prev = index.reusable(asset, spec);
+        if (prev != null) {
+          index.put(asset, prev);
+          reused.incrementAndGet();
+          progress.add(1, item.sizeBytes());
+          continue;
+        }
+
+        inFlight.acquire();
+        pool.execute(
+            () -> {
+              try {
+                VariantIndex.Variants made =
+                    generateOne(asset, spec, index, variantsDir, decoder);
+                index.put(asset, made);
+                if (made.originalWidth() == 0) {
+                  skipped.incrementAndGet();
+                } else {
+                  generated.incrementAndGet();
+                  files.addAndGet(made.widths().size());
+                }
+                progress.add(1, item.sizeBytes());
+              } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+              } finally {
+                inFlight.release();
+              }
+            });
+      }
+      pool.shutdown();
+      pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("縮小版の生成が中断されました", e);
+    } finally {
+      pool.shutdownNow();
+    }
+
+    Throwable t = failure.get();
+    if (t instanceof IOException io) {
+      throw io;
+    }
+    if (t instanceof RuntimeException re) {
+      throw re;
+    }
+    if (t instanceof Error err) {
+      throw err;
+    }
+    return new Result(generated.get(), reused.get(), skipped.get(), files.get());
+  }
+
+  /**
+   * assets にコピー済みのファイルを元画像とするメディアを返す。
+   *
+   * <p>サイズ・更新日時もコピー先のものにする（コピー時に縮小・再エンコードした場合や、コピーし直した場合に縮小版を作り直すため）。
+   */
+  private static MediaItem assetOf(MediaItem item, Path absAssetsDir) throws IOException {
+    Path file = absAssetsDir.resolve(VariantIndex.keyOf(item)).normalize();
+    if (!file.startsWith(absAssetsDir)) {
+      throw new IOException("元画像が assets 配下ではありません: " + item.relativePath());
+    }
+    BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+    return new MediaItem(
+        file,
+        item.relativePath(),
+        item.type(),
+        attrs.size(),
+        attrs.lastModifiedTime().toInstant());
+  }
+
+  /** 1件分の縮小版を生成する（デコードできない画像は幅 0・縮小版なしとして記録する）。 */
+  private static VariantIndex.Variants generateOne(
+      MediaItem item,
+      VariantSpec spec,
+      VariantIndex index,
+      Path variantsDir,
+      DecodeScheduler decoder)
+      throws IOException {
+    long modified = item.lastModifiedAt().toEpochMilli();
+    Path file = item.sourcePath();
+    VariantIndex.Variants undecodable =
+        new VariantIndex.Variants(item.sizeBytes(), modified, 0, List.of());
+    Dimension size = ImageFiles.readSize(file);
+    if (size == null) {
+      // デコードできない形式・壊れた画像は縮小版なしとして扱う（ページには元画像を出す）
+      return undecodable;
+    }
+
+    // 幅・高さは EXIF の向きを反映した後のもの
+    int orientation = ExifOrientation.read(file);
+    boolean swap = ExifOrientation.swapsAxes(orientation);
+    int width = swap ? size.height : size.width;
+    int height = swap ? size.width : size.height;
+    List<Integer> widths = spec.widthsFor(width);
+    if (widths.isEmpty() && !spec.placeholders()) {
+      return new VariantIndex.Variants(item.sizeBytes(), modified, width, List.of());
+    }
+
+    // 出力に必要な最大の幅（プレースホルダだけの場合はごく小さい）
+    int largest = widths.isEmpty() ? Placeholder.DECODE_WIDTH : widths.get(widths.size() - 1);
+    // デコード時の（向きを反映する前の）幅に換算して、間引いてよい量を決める
+    int decodeWidth = swap ? (int) Math.ceil((double) largest * height / width) : largest;
+    DecodeScheduler.Decoded decoded;
+    try {
+      decoded = decoder.decode(file, decodeWidth);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("縮小版の生成が中断されました", e);
+    }
+    if (decoded == null) {
+      return undecodable;
+    }
+
+    try (decoded) {
+      String key = VariantIndex.keyOf(item);
+      String format = formatOf(key);
+      int type = format.equals("jpg") ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+      BufferedImage current = null;
+      // 大きい幅から順に、直前の縮小版を元にして縮小する（向きは最初の縮小で反映する）
+      for (int i = widths.size() - 1; i >= 0; i--) {
+        int w = widths.get(i);
+        int h = Math.max(1, (int) Math.round((double) height * w / width));
+        current =
+            current == null
+                ? ImageFiles.render(decoded.image(), orientation, w, h, type)
+                : ImageFiles.render(current, ExifOrientation.NORMAL, w, h, type);
+        Path target = index.pathOf(w, key);
+        if (!target.startsWith(variantsDir)) {
+          throw new IOException("縮小版の出力先が variants 配下ではありません: " + key);
+        }
+        write(current, format, target);
+      }
+      String placeholder = "";
+      if (spec.placeholders()) {
+        placeholder =
+            current == null
+                ? Placeholder.of(decoded.image(), orientation, width, height)
+                : Placeholder.of(current, ExifOrientation.NORMAL, width, height);
+      }
+      return new VariantIndex.Variants(
+          item.sizeBytes(), modified, width, new ArrayList<>(widths), placeholder);
+    }
+  }
+
+  /** 一時ファイル（{@code *.gallery-part}）へ書き出してから target へ置き換える。 */
+  private static void write(BufferedImage image, String format, Path target) throws IOException {
+    Files.createDirectories(target.getParent());
+    Path tmp = target.resolveSibling(target.getFileName() + ".gallery-part");
+    try {
+      if (format.equals("jpg")) {
+        ImageFiles.writeJpeg(image, tmp, JPEG_QUALITY);
+      } else if (!ImageIO.write(image, format, tmp.toFile())) {
+        throw new IOException("画像を書き出せません: " + format);
+      }
+      ImageFiles.moveReplacing(tmp, target);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  /** 拡張子から書き出し形式（jpg / png）を返す。対象外の場合は null。 */
+  private static String formatOf(String name) {
+    String lower = name.toLowerCase(Locale.ROOT);
+    if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) {
+      return "jpg";
+    }
+    if (lower.endsWith(".png")) {
+      return "png";
+    }
+    return null;
+  }
+}
@@ -0,0 +1,104 @@
+package com.example.gallery.image;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * 画像の知覚ハッシュ（dHash、64 ビット）。
+ *
+ * <p>画像を {@value #COLUMNS}×{@value #ROWS} マスのグレースケールに縮め、各行で隣り合うマスの明るさを比べた結果を1ビットずつ並べる。
+ * 連写・再書き出し・縮小・軽い色調整では数ビットしか変わらないため、ハミング距離で似た画像を見つけられる。
+ * EXIF の向きは反映してから計算する（回転して書き出し直した画像も同じハッシュになる）。
+ */
+public final class PerceptualHash {
+
+  /** 格子の列数（比較は隣り合う列の間で行うため、ビット数は行数 ×（列数 - 1））。 */
+  static final int COLUMNS = 9;
+
+  /** 格子の行数。 */
+  static final int ROWS = 8;
+
+  /** 1マスの平均を取る画素数（1辺）。 */
+  private static final int SAMPLES = 4;
+
+  private PerceptualHash() {}
+
+  /**
+   * 画像ファイルのハッシュを計算する。
+   *
+   * <p>出力が極小のため、{@link DecodeScheduler} で大きく間引いて読み込む。
+   *
+   * @param file 画像ファイル
+   * @param decoder デコードのスケジューラ
+   * @return ハッシュ（デコードできない形式・壊れた画像の場合は null）
+   * @throws IOException 読み込みに失敗した場合
+   * @throws InterruptedException デコードのメモリ枠の待機中に割り込まれた場合
+   */
+  public static Long of(Path file, DecodeScheduler decoder)
+      throws IOException, InterruptedException {
+    if (ImageFiles.readSize(file) == null) {
+      return null;
+    }
+    int orientation = ExifOrientation.read(file);
+    DecodeScheduler.Decoded decoded = decoder.decode(file, COLUMNS * SAMPLES);
+    if (decoded == null) {
+      return null;
+    }
+    try (decoded) {
+      return of(decoded.image(), orientation);
+    }
+  }
+
+  /**
+   * デコード済みの画像のハッシュを計算する。
+   *
+   * @param source 画像（デコードしたままの向き）
+   * @param orientation EXIF の向き（1〜8）
+   * @return ハッシュ
+   */
+  static long of(BufferedImage source, int orientation) {
+    BufferedImage sample =
+        ImageFiles.render(
+            source, orientation, COLUMNS * SAMPLES, ROWS * SAMPLES, BufferedImage.TYPE_INT_RGB);
+    int[][] luma = new int[ROWS][COLUMNS];
+    for (int gy = 0; gy < ROWS; gy++) {
+      for (int gx = 0; gx < COLUMNS; gx++) {
+        luma[gy][gx] = averageLuma(sample, gx * SAMPLES, gy * SAMPLES);
+      }
+    }
+    long hash = 0;
+    for (int y = 0; y < ROWS; y++) {
+      for (int x = 0; x < COLUMNS - 1; x++) {
+        hash <<= 1;
+        if (luma[y][x] > luma[y][x + 1]) {
+          hash |= 1;
+        }
+      }
+    }
+    return hash;
+  }
+
+  /**
+   * 2つのハッシュのハミング距離（異なるビットの数）を返す。
+   *
+   * @param a ハッシュ
+   * @param b ハッシュ
+   * @return 0〜64
+   */
+  public static int distance(long a, long b) {
+    return Long.bitCount(a ^ b);
+  }
+
+  /** 1マス分の明るさの平均（ITU-R BT.601 の係数、×1000）。 */
+  private static int averageLuma(BufferedImage sample, int x0, int y0) {
+    long sum = 0;
+    for (int y = y0; y < y0 + SAMPLES; y++) {
+      for (int x = x0; x < x0 + SAMPLES; x++) {
+        int rgb = sample.getRGB(x, y);
+        sum += 299L * (rgb >> 16 & 0xFF) + 587L * (rgb >> 8 & 0xFF) + 114L * (rgb & 0xFF);
+      }
+    }
+    return (int) (sum / (SAMPLES * SAMPLES));
+  }
+}
@@ -0,0 +1,77 @@
+package com.example.gallery.image;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import javax.imageio.ImageIO;
+
+/**
+ * 画像の読み込み中に表示するプレースホルダ（LQIP）を作る。
+ *
+ * <p>長辺 {@value #GRID} マスの格子に縮め、マスごとの平均色を並べた極小の PNG を Base64 にしたもの。 ページに data URI
+ * として埋め込み、CSS の {@code background-size: cover} で引き伸ばすと、ブラウザの補間でぼかした下絵になる（追加のリクエストは発生しない）。
+ */
+final class Placeholder {
+
+  /** 格子の長辺のマス数。 */
+  static final int GRID = 8;
+
+  /** 1マスの平均を取る画素数（1辺）。 */
+  private static final int SAMPLES = 4;
+
+  /** デコード時に必要な幅（これの2倍を下回らない範囲で間引いてよい）。 */
+  static final int DECODE_WIDTH = GRID * SAMPLES;
+
+  private Placeholder() {}
+
+  /**
+   * プレースホルダを作る。
+   *
+   * @param source 画像（デコードしたままの向き。間引いて読み込んだもの・縮小版でもよい）
+   * @param orientation EXIF の向き（1〜8）
+   * @param width 向きを反映した後の元画像の幅（縦横比に使う）
+   * @param height 向きを反映した後の元画像の高さ
+   * @return PNG の Base64（data URI の本体）
+   * @throws IOException PNG の書き出しに失敗した場合
+   */
+  static String of(BufferedImage source, int orientation, int width, int height)
+      throws IOException {
+    int gw = width >= height ? GRID : Math.max(1, (int) Math.round((double) GRID * width / height));
+    int gh = height >= width ? GRID : Math.max(1, (int) Math.round((double) GRID * height / width));
+    BufferedImage sample =
+        ImageFiles.render(
+            source, orientation, gw * SAMPLES, gh * SAMPLES, BufferedImage.TYPE_INT_ARGB);
+
+    BufferedImage grid = new BufferedImage(gw, gh, BufferedImage.TYPE_INT_RGB);
+    for (int gy = 0; gy < gh; gy++) {
+      for (int gx = 0; gx < gw; gx++) {
+        grid.setRGB(gx, gy, average(sample, gx * SAMPLES, gy * SAMPLES));
+      }
+    }
+
+    ByteArrayOutputStream png = new ByteArrayOutputStream(256);
+    if (!ImageIO.write(grid, "png", png)) {
+      throw new IOException("プレースホルダを書き出せません");
+    }
+    return Base64.getEncoder().encodeToString(png.toByteArray());
+  }
+
+  /** 1マス分の平均色（透過部分は白と合成する）。 */
+  private static int average(BufferedImage sample, int x0, int y0) {
+    long r = 0;
+    long g = 0;
+    long b = 0;
+    for (int y = y0; y < y0 + SAMPLES; y++) {
+      for (int x = x0; x < x0 + SAMPLES; x++) {
+        int argb = sample.getRGB(x, y);
+        int a = argb >>> 24;
+        r += ((argb >> 16 & 0xFF) * a + 255 * (255 - a)) / 255;
+        g += ((argb >> 8 & 0xFF) * a + 255 * (255 - a)) / 255;
+        b += ((argb & 0xFF) * a + 255 * (255 - a)) / 255;
+      }
+    }
+    int n = SAMPLES * SAMPLES;
+    return (int) (r / n) << 16 | (int) (g / n) << 8 | (int) (b / n);
+  }
+}
@@ -0,0 +1,271 @@
+package com.example.gallery.image;
+
+import com.example.gallery.domain.MediaItem;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 生成済みの縮小版の一覧（ビルドの記録のディレクトリの .gallery-variants）。縮小版そのものは outputDir/variants に置く。
+ *
+ * <p>1行1件で {@code サイズ<TAB>更新日時(epoch ms)<TAB>元画像の幅<TAB>幅(カンマ区切り)<TAB>プレースホルダ<TAB>relativePath}
+ * を記録する。 コピー元のサイズ・更新日時が一致し、生成すべき幅が変わっていない画像は再生成しない。
+ * プレースホルダ（{@link Placeholder}）も同じ行に記録し、ページの生成時はデコードせずに埋め込む。
+ *
+ * <p>{@link #commit()} で今回の生成結果だけを残して書き直し、不要になった縮小版のファイルを削除する。
+ */
+public final class VariantIndex {
+
+  /** 一覧ファイル名（記録のディレクトリ直下）。 */
+  public static final String FILE_NAME = ".gallery-variants";
+
+  /** 縮小版を置くディレクトリ名（outputDir 直下。{@code variants/<幅>/<relativePath>}）。 */
+  public static final String DIR_NAME = "variants";
+
+  private final Path file;
+  private final Path variantsDir;
+  private final Map<String, Variants> previous;
+  private final Map<String, Variants> current = new ConcurrentHashMap<>();
+
+  private VariantIndex(Path file, Path variantsDir, Map<String, Variants> previous) {
+    this.file = file;
+    this.variantsDir = variantsDir;
+    this.previous = previous;
+  }
+
+  /**
+   * 画像1件分の縮小版。
+   *
+   * @param sizeBytes 元画像のサイズ
+   * @param modifiedMillis 元画像の更新日時（epoch ms）
+   * @param originalWidth 元画像の幅（デコードできなかった場合は 0）
+   * @param widths 生成した幅（昇順）
+   * @param placeholder プレースホルダの PNG の Base64（作らなかった場合は空文字）
+   */
+  public record Variants(
+      long sizeBytes,
+      long modifiedMillis,
+      int originalWidth,
+      List<Integer> widths,
+      String placeholder) {
+
+    public Variants {
+      widths = List.copyOf(widths);
+      Objects.requireNonNull(placeholder, "placeholder");
+    }
+
+    /**
+     * プレースホルダなしの生成結果を作る。
+     *
+     * @param sizeBytes 元画像のサイズ
+     * @param modifiedMillis 元画像の更新日時（epoch ms）
+     * @param originalWidth 元画像の幅（デコードできなかった場合は 0）
+     * @param widths 生成した幅（昇順）
+     */
+    public Variants(long sizeBytes, long modifiedMillis, int originalWidth, List<Integer> widths) {
+      this(sizeBytes, modifiedMillis, originalWidth, widths, "");
+    }
+
+    boolean matches(MediaItem item) {
+      return sizeBytes == item.sizeBytes()
+          && modifiedMillis == item.lastModifiedAt().toEpochMilli();
+    }
+  }
+
+  /**
+   * stateDir 直下の一覧を開く（存在しない場合は空の一覧として扱う）。
+   *
+   * @param stateDir ビルドの記録のディレクトリ（{@link
+   *     com.example.gallery.output.OutputPaths#stateDirOf(Path)}）
+   * @param outputDir 出力ディレクトリ（縮小版は outputDir/variants に置く）
+   * @return 一覧
+   * @throws IOException 読み込みに失敗した場合
+   */
+  public static VariantIndex open(Path stateDir, Path outputDir) throws IOException {
+    Objects.requireNonNull(stateDir, "stateDir");
+    Objects.requireNonNull(outputDir, "outputDir");
+
+    Path file = stateDir.resolve(FILE_NAME);
+    Map<String, Variants> entries = new HashMap<>();
+    if (Files.isRegularFile(file)) {
+      for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+        parse(line, entries);
+      }
+    }
+    Path variantsDir = outputDir.toAbsolutePath().normalize().resolve(DIR_NAME);
+    return new VariantIndex(file, variantsDir, entries);
+  }
+
+  /** 縮小版を置くディレクトリ（outputDir/variants の絶対パス）。 */
+  public Path variantsDir() {
+    return variantsDir;
+  }
+
+  /**
+   * 縮小版1件のパスを返す。
+   *
+   * @param width 幅
+   * @param relativePath assets からの相対パス（{@code /} 区切り）
+   * @return variantsDir/幅/relativePath
+   */
+  public Path pathOf(int width, String relativePath) {
+    return variantsDir.resolve(Integer.toString(width)).resolve(relativePath).normalize();
+  }
+
+  /**
+   * 前回の生成結果が再利用できる場合に返す（元画像が同じで、生成すべき幅が変わっておらず、ファイルが揃っている）。
+   *
+   * <p>プレースホルダを作る構成で前回の記録にない場合は再利用しない。作らない構成の場合は記録から外して返す。
+   *
+   * @param item 元画像（relativePath は assets 上の名前）
+   * @param spec 今回の構成
+   * @return 前回の生成結果、再利用できない場合は null
+   */
+  Variants reusable(MediaItem item, VariantSpec spec) {
+    String key = keyOf(item);
+    Variants prev = previous.get(key);
+    if (prev == null || !prev.matches(item)) {
+      return null;
+    }
+    if (prev.originalWidth() > 0 && !prev.widths().equals(spec.widthsFor(prev.originalWidth()))) {
+      return null;
+    }
+    for (int w : prev.widths()) {
+      if (!Files.isRegularFile(pathOf(w, key))) {
+        return null;
+      }
+    }
+    if (!spec.placeholders()) {
+      return prev.placeholder().isEmpty()
+          ? prev
+          : new Variants(
+              prev.sizeBytes(), prev.modifiedMillis(), prev.originalWidth(), prev.widths());
+    }
+    if (prev.originalWidth() > 0 && prev.placeholder().isEmpty()) {
+      return null;
+    }
+    return prev;
+  }
+
+  /**
+   * 今回の生成結果を記録する（スレッドセーフ）。
+   *
+   * @param item 元画像（relativePath は assets 上の名前）
+   * @param variants 生成結果
+   */
+  void put(MediaItem item, Variants variants) {
+    current.put(keyOf(item), variants);
+  }
+
+  /**
+   * 今回の生成結果を返す。
+   *
+   * @param relativePath assets からの相対パス（{@code /} 区切り）
+   * @return 生成結果、記録がない場合は null
+   */
+  public Variants get(String relativePath) {
+    return current.get(relativePath);
+  }
+
+  /**
+   * 今回の生成結果だけを残して一覧を書き直し（記録のディレクトリがなければ作る）、前回にあって今回ない縮小版のファイルを削除する。
+   *
+   * @return 削除したファイル数
+   * @throws IOException 書き込み・削除に失敗した場合
+   */
+  public int commit() throws IOException {
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    Path tmp = file.resolveSibling(FILE_NAME + ".tmp");
+    List<String> keys = new ArrayList<>(current.keySet());
+    keys.sort(null);
+    try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+      for (String key : keys) {
+        w.write(format(key, current.get(key)));
+      }
+    }
+    try {
+      Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    int deleted = 0;
+    for (Map.Entry<String, Variants> prev : previous.entrySet()) {
+      Variants now = current.get(prev.getKey());
+      for (int w : prev.getValue().widths()) {
+        if (now == null || !now.widths().contains(w)) {
+          Path stale = pathOf(w, prev.getKey());
+          if (stale.startsWith(variantsDir) && Files.deleteIfExists(stale)) {
+            deleted++;
+          }
+        }
+      }
+    }
+    return deleted;
+  }
+
+  static String keyOf(MediaItem item) {
+    return item.relativePath().normalize().toString().replace('\\', '/');
+  }
+
+  private static String format(String key, Variants v) {
+    StringBuilder widths = new StringBuilder();
+    for (int w : v.widths()) {
+      if (widths.length() > 0) {
+        widths.append(',');
+      }
+      widths.append(w);
+    }
+    return v.sizeBytes()
+        + "\t"
+        + v.modifiedMillis()
+        + "\t"
+        + v.originalWidth()
+        + "\t"
+        + widths
+        + "\t"
+        + v.placeholder()
+        + "\t"
+        + key
+        + "\n";
+  }
+
+  private static void parse(String line, Map<String, Variants> entries) {
+    String[] parts = line.split("\t", 6);
+    if (parts.length == 5) {
+      // プレースホルダの列がない以前の形式
+      parts = new String[] {parts[0], parts[1], parts[2], parts[3], "", parts[4]};
+    }
+    if (parts.length != 6 || parts[5].isEmpty()) {
+      return;
+    }
+    try {
+      List<Integer> widths = new ArrayList<>();
+      if (!parts[3].isEmpty()) {
+        for (String w : parts[3].split(",")) {
+          widths.add(Integer.parseInt(w));
+        }
+      }
+      entries.put(
+          parts[5],
+          new Variants(
+              Long.parseLong(parts[0]),
+              Long.parseLong(parts[1]),
+              Integer.parseInt(parts[2]),
+              widths,
+              parts[4]));
+    } catch (NumberFormatException e) {
+      // 書き込み途中で終了した行などは無視する
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package com.example.gallery.image;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 画像の縮小版（srcset 用の幅違い）とプレースホルダの構成。
+ *
+ * @param widths 生成する幅（px、昇順・重複なし。空の場合は生成しない）
+ * @param sizes img 要素の sizes 属性の値
+ * @param placeholders 読み込み中に表示するプレースホルダ（LQIP）を作る場合は true
+ */
+public record VariantSpec(List<Integer> widths, String sizes, boolean placeholders) {
+
+  /** 既定の sizes（スマートフォンでは画面幅、それ以外はカード1枚分の幅）。 */
+  public static final String DEFAULT_SIZES = "(max-width: 480px) 100vw, 360px";
+
+  /** 縮小版を生成しない。 */
+  public static final VariantSpec NONE = new VariantSpec(List.of(), DEFAULT_SIZES, false);
+
+  public VariantSpec {
+    Objects.requireNonNull(widths, "widths");
+    Objects.requireNonNull(sizes, "sizes");
+    widths = widths.stream().sorted().distinct().toList();
+    for (int w : widths) {
+      if (w <= 0) {
+        throw new IllegalArgumentException("幅は1以上で指定してください: " + w);
+      }
+    }
+  }
+
+  /**
+   * プレースホルダを作らない構成を作る。
+   *
+   * @param widths 生成する幅（px。空の場合は生成しない）
+   * @param sizes img 要素の sizes 属性の値
+   */
+  public VariantSpec(List<Integer> widths, String sizes) {
+    this(widths, sizes, false);
+  }
+
+  /** 縮小版またはプレースホルダを作る（画像をデコードする）場合は true。 */
+  public boolean enabled() {
+    return srcset() || placeholders;
+  }
+
+  /** 縮小版を生成する（srcset を出力する）場合は true。 */
+  public boolean srcset() {
+    return !widths.isEmpty();
+  }
+
+  /**
+   * 元画像の幅に対して生成する幅を返す（元画像より小さい幅だけ）。
+   *
+   * @param originalWidth 元画像の幅
+   * @return 生成する幅（昇順）
+   */
+  public List<Integer> widthsFor(int originalWidth) {
+    return widths.stream().filter(w -> w < originalWidth).toList();
+  }
+
+  /** キャッシュの無効化に使う、構成を表す文字列。 */
+  public String cacheKey() {
+    return "widths=" + widths + ";sizes=" + sizes + (placeholders ? ";placeholders" : "");
+  }
+}
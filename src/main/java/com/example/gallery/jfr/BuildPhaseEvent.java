@@ -0,0 +1,50 @@
+package com.example.gallery.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * ビルドの1フェーズ（走査/コピー/検証/HTML 生成など）の JFR イベント。
+ *
+ * <p>{@link com.example.gallery.progress.ProgressReporter} がフェーズの開始〜終了の区間として記録する。 GC や I/O
+ * の停止がどのフェーズで起きたかを対応付けるためのもの。
+ */
+@Name("com.example.gallery.BuildPhase")
+@Label("Build Phase")
+@Category({"Gallery", "Build"})
+@Description("gallery のビルドフェーズ")
+@StackTrace(false)
+public final class BuildPhaseEvent extends Event {
+
+  @Label("Phase")
+  String phase;
+
+  @Label("Items")
+  long items;
+
+  @Label("Bytes")
+  @DataAmount
+  long bytes;
+
+  /**
+   * 区間を終了し、記録が有効であればフェーズ名と件数・バイト数を付けて記録する。
+   *
+   * @param phase フェーズ名
+   * @param items 完了件数
+   * @param bytes 完了バイト数
+   */
+  public void finish(String phase, long items, long bytes) {
+    end();
+    if (shouldCommit()) {
+      this.phase = phase;
+      this.items = items;
+      this.bytes = bytes;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package com.example.gallery.jfr;
+
+import java.nio.file.Path;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * assets（またはアーカイブ）への1ファイルのコピーに時間がかかった場合の JFR イベント。
+ *
+ * <p>既定では {@value #DEFAULT_THRESHOLD} 以上かかったものだけを記録する（JFR の設定の {@code threshold} で変更できる）。
+ */
+@Name("com.example.gallery.CopyFile")
+@Label("Copy File")
+@Category({"Gallery", "Copy"})
+@Description("コピーに時間のかかったファイル")
+@StackTrace(false)
+@Threshold(CopyFileEvent.DEFAULT_THRESHOLD)
+public final class CopyFileEvent extends Event {
+
+  /** 既定の記録しきい値。 */
+  public static final String DEFAULT_THRESHOLD = "20 ms";
+
+  @Label("Source")
+  String source;
+
+  @Label("Target")
+  String target;
+
+  @Label("Size")
+  @DataAmount
+  long size;
+
+  /**
+   * 区間を終了し、しきい値を超えていればコピー元・コピー先・サイズを付けて記録する。
+   *
+   * @param source コピー元
+   * @param target コピー先（アーカイブの場合はアーカイブ内のパス）
+   * @param size ファイルサイズ
+   */
+  public void finish(Path source, String target, long size) {
+    end();
+    if (shouldCommit()) {
+      this.source = source.toString();
+      this.target = target;
+      this.size = size;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package com.example.gallery.jfr;
+
+import com.example.gallery.domain.MediaItem;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * HTML 生成で1件分のカードの組み立て・書き出しに時間がかかった場合の JFR イベント。
+ *
+ * <p>既定では {@value #DEFAULT_THRESHOLD} 以上かかったものだけを記録する（JFR の設定の {@code threshold} で変更できる）。
+ * 書き出し先の I/O 待ちも区間に含む。
+ */
+@Name("com.example.gallery.RenderCard")
+@Label("Render Card")
+@Category({"Gallery", "Render"})
+@Description("HTML 生成で時間のかかったカード")
+@StackTrace(false)
+@Threshold(RenderCardEvent.DEFAULT_THRESHOLD)
+public final class RenderCardEvent extends Event {
+
+  /** 既定の記録しきい値。 */
+  public static final String DEFAULT_THRESHOLD = "5 ms";
+
+  @Label("Path")
+  String path;
+
+  @Label("Size")
+  @DataAmount
+  long size;
+
+  @Label("Cached")
+  boolean cached;
+
+  /**
+   * 区間を終了し、しきい値を超えていればメディアのパスとサイズを付けて記録する。
+   *
+   * @param item メディア
+   * @param cached カードをキャッシュから書き出した場合は true
+   */
+  public void finish(MediaItem item, boolean cached) {
+    end();
+    if (shouldCommit()) {
+      this.path = item.relativePath().toString().replace('\\', '/');
+      this.size = item.sizeBytes();
+      this.cached = cached;
+      commit();
+    }
+  }
+}
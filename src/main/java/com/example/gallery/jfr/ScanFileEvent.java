@@ -0,0 +1,50 @@
+package com.example.gallery.jfr;
+
+import java.nio.file.Path;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * 走査で1ファイルを取り込むのに時間がかかった場合の JFR イベント（属性の読み出し・内容判定・一時ファイルへの書き出しを含む）。
+ *
+ * <p>既定では {@value #DEFAULT_THRESHOLD} 以上かかったものだけを記録する（JFR の設定の {@code threshold} で変更できる）。
+ */
+@Name("com.example.gallery.ScanFile")
+@Label("Scan File")
+@Category({"Gallery", "Scan"})
+@Description("走査で時間のかかったファイル")
+@StackTrace(false)
+@Threshold(ScanFileEvent.DEFAULT_THRESHOLD)
+public final class ScanFileEvent extends Event {
+
+  /** 既定の記録しきい値。 */
+  public static final String DEFAULT_THRESHOLD = "10 ms";
+
+  @Label("Path")
+  String path;
+
+  @Label("Size")
+  @DataAmount
+  long size;
+
+  /**
+   * 区間を終了し、しきい値を超えていればファイルのパスとサイズを付けて記録する。
+   *
+   * @param file 対象ファイル
+   * @param size ファイルサイズ
+   */
+  public void finish(Path file, long size) {
+    end();
+    if (shouldCommit()) {
+      this.path = file.toString();
+      this.size = size;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package com.example.gallery.output;
+
+import java.util.function.LongSupplier;
+
+/**
+ * コピーの同時実行数（in-flight 数）を、スループットに応じて増減させるリミッタ（AIMD）。
+ *
+ * <p>一定時間（ウィンドウ）ごとに書き込んだバイト数からスループットを求め、
+ *
+ * <ul>
+ *   <li>前回より {@value #INCREASE_THRESHOLD} 倍以上に向上した場合：上限を +1（加算的増加）
+ *   <li>前回の {@value #DECREASE_THRESHOLD} 倍未満に低下した場合：上限を ×{@value #DECREASE_FACTOR}（乗算的減少）
+ *   <li>それ以外：維持
+ * </ul>
+ *
+ * <p>HDD / SMB のように並列度を上げるとヘッドのシークで遅くなる出力先では上限が下がり、 NVMe のように並列度で性能が伸びる出力先では上限が上がる。
+ *
+ * <p>バイト数はコピーの完了時ではなく、書き込むたびに {@link #record(long)} で加える。
+ * 完了時にまとめて加えると、大きなファイルが完了したウィンドウだけが突出し、次のウィンドウが低下と判定されるため、
+ * 出力先の混み具合ではなくファイルサイズの偏りに反応して上限が下がってしまう。
+ *
+ * <p>最小値と最大値が等しい場合は固定の同時実行数として動作する。
+ */
+public final class AdaptiveConcurrencyLimiter {
+
+  static final double INCREASE_THRESHOLD = 1.05;
+  static final double DECREASE_THRESHOLD = 0.90;
+  static final double DECREASE_FACTOR = 0.75;
+
+  private static final long DEFAULT_WINDOW_NANOS = 500_000_000L;
+
+  private final int min;
+  private final int max;
+  private final long windowNanos;
+  private final LongSupplier clock;
+
+  private int limit;
+  private int inFlight;
+  private int peak;
+
+  private long windowStart;
+  private long windowBytes;
+  private double previousThroughput;
+
+  /**
+   * リミッタを作成する。
+   *
+   * @param initial 初期の上限
+   * @param min 上限の最小値（1以上）
+   * @param max 上限の最大値（min以上）
+   */
+  public AdaptiveConcurrencyLimiter(int initial, int min, int max) {
+    this(initial, min, max, DEFAULT_WINDOW_NANOS, System::nanoTime);
+  }
+
+  AdaptiveConcurrencyLimiter(int initial, int min, int max, long windowNanos) {
+    this(initial, min, max, windowNanos, System::nanoTime);
+  }
+
+  AdaptiveConcurrencyLimiter(
+      int initial, int min, int max, long windowNanos, LongSupplier clock) {
+    if (min < 1 || max < min) {
+      throw new IllegalArgumentException("min/max が不正です: min=" + min + ", max=" + max);
+    }
+    this.min = min;
+    this.max = max;
+    this.limit = Math.max(min, Math.min(max, initial));
+    this.peak = limit;
+    this.windowNanos = windowNanos;
+    this.clock = clock;
+    this.windowStart = clock.getAsLong();
+  }
+
+  /** 上限を増減させる（最小値と最大値が異なる）場合は true。 */
+  public boolean adaptive() {
+    return min < max;
+  }
+
+  /**
+   * in-flight 数が上限未満になるまで待ってから、1件分の枠を確保する。
+   *
+   * @throws InterruptedException 待機中に割り込まれた場合
+   */
+  public synchronized void acquire() throws InterruptedException {
+    while (inFlight >= limit) {
+      wait();
+    }
+    inFlight++;
+  }
+
+  /**
+   * 書き込んだバイト数をスループットの計測に加える（コピーの途中でも、書き込むたびに呼び出す）。
+   *
+   * @param bytes 書き込んだバイト数
+   */
+  public synchronized void record(long bytes) {
+    windowBytes += bytes;
+    closeWindowIfElapsed();
+  }
+
+  /** 1件分の枠を解放する。 */
+  public synchronized void release() {
+    inFlight--;
+    closeWindowIfElapsed();
+    notifyAll();
+  }
+
+  private void closeWindowIfElapsed() {
+    long now = clock.getAsLong();
+    long elapsed = now - windowStart;
+    if (elapsed >= windowNanos) {
+      adjust(windowBytes * 1_000_000_000.0 / elapsed);
+      windowStart = now;
+      windowBytes = 0;
+    }
+  }
+
+  /**
+   * 1ウィンドウ分のスループットから上限を調整する。
+   *
+   * @param throughput スループット（bytes/sec）
+   * @return 調整後の上限
+   */
+  synchronized int adjust(double throughput) {
+    if (previousThroughput <= 0 || throughput >= previousThroughput * INCREASE_THRESHOLD) {
+      limit = Math.min(max, limit + 1);
+    } else if (throughput < previousThroughput * DECREASE_THRESHOLD) {
+      limit = Math.max(min, (int) (limit * DECREASE_FACTOR));
+    }
+    previousThroughput = throughput;
+    peak = Math.max(peak, limit);
+    notifyAll();
+    return limit;
+  }
+
+  /** 現在の上限を返す。 */
+  public synchronized int limit() {
+    return limit;
+  }
+
+  /** これまでの上限の最大値を返す。 */
+  public synchronized int peak() {
+    return peak;
+  }
+}
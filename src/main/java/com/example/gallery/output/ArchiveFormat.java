@@ -0,0 +1,40 @@
+package com.example.gallery.output;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+/** アーカイブ出力（--archive）の形式を表す。 */
+public enum ArchiveFormat {
+  /** zip（JPEG/動画などの圧縮済み形式は圧縮せずに格納する）。 */
+  ZIP("zip"),
+
+  /** tar（ustar 形式。長いパス・非 ASCII のパスは PAX 拡張ヘッダで格納する）。 */
+  TAR("tar");
+
+  private final String id;
+
+  ArchiveFormat(String id) {
+    this.id = id;
+  }
+
+  /** 識別子（ファイルの拡張子と同じ。例: zip）を返す。 */
+  public String id() {
+    return id;
+  }
+
+  /**
+   * アーカイブのファイル名（拡張子）から形式を解決する。
+   *
+   * @param archive アーカイブのパス（例: gallery.zip）
+   * @return 解決した {@link ArchiveFormat}
+   * @throws IllegalArgumentException 拡張子が対応していない場合
+   */
+  public static ArchiveFormat fromFileName(Path archive) {
+    String name = archive.getFileName().toString().toLowerCase(Locale.ROOT);
+    return Arrays.stream(values())
+        .filter(f -> name.endsWith("." + f.id))
+        .findFirst()
+        .orElseThrow(() -> new IllegalArgumentException("不正なアーカイブ形式です: " + archive));
+  }
+}
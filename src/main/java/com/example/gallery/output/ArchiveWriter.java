@@ -0,0 +1,257 @@
+package com.example.gallery.output;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * dist の内容（index.html と assets）を1つのアーカイブ（zip / tar）へ順に書き出す。
+ *
+ * <p>各ファイルはコピー元から1回だけ読み、アーカイブへ1回だけ書き込む（中間の dist/assets は作らない）。 zip では JPEG・動画など圧縮済みの形式（{@link
+ * #STORE_EXTENSIONS}）を圧縮せずに格納する。
+ *
+ * <p>書き込みは一時ファイル（{@code *.gallery-part}）に対して行い、{@link #finish()} でアーカイブへ移動する。 finish せずに閉じた場合は一時ファイルを削除する。
+ *
+ * <p>{@link #bytesWritten()} はアーカイブに書き込んだバイト数（ヘッダ・圧縮後のサイズを含む）。
+ */
+public final class ArchiveWriter implements OutputSink {
+
+  /** zip で圧縮せずに格納する拡張子（圧縮済みの形式）。 */
+  static final Set<String> STORE_EXTENSIONS =
+      Set.of(
+          "jpg", "jpeg", "png", "gif", "webp", "heic", "heif", "avif", "mp4", "mov", "m4v",
+          "webm", "mkv", "avi", "zip");
+
+  private static final int BUFFER_SIZE = 256 * 1024;
+
+  private final Path archive;
+  private final Path part;
+  private final ArchiveFormat format;
+  private final CountingOutputStream raw;
+  private final ZipOutputStream zip;
+  private long entries;
+  private boolean finished;
+
+  private ArchiveWriter(Path archive, Path part, ArchiveFormat format, OutputStream raw) {
+    this.archive = archive;
+    this.part = part;
+    this.format = format;
+    this.raw = new CountingOutputStream(raw);
+    this.zip =
+        format == ArchiveFormat.ZIP ? new ZipOutputStream(this.raw, StandardCharsets.UTF_8) : null;
+  }
+
+  /**
+   * アーカイブを書き出し用に開く。
+   *
+   * @param archive アーカイブのパス
+   * @param format 形式
+   * @return ライター
+   * @throws IOException 一時ファイルを作成できない場合
+   */
+  public static ArchiveWriter open(Path archive, ArchiveFormat format) throws IOException {
+    Objects.requireNonNull(archive, "archive");
+    Objects.requireNonNull(format, "format");
+
+    Path abs = archive.toAbsolutePath().normalize();
+    if (abs.getParent() != null) {
+      Files.createDirectories(abs.getParent());
+    }
+    Path part = abs.resolveSibling(abs.getFileName() + AssetCopier.PART_SUFFIX);
+    OutputStream raw = new BufferedOutputStream(Files.newOutputStream(part), BUFFER_SIZE);
+    return new ArchiveWriter(abs, part, format, raw);
+  }
+
+  /** アーカイブの形式を返す。 */
+  public ArchiveFormat format() {
+    return format;
+  }
+
+  @Override
+  public long entries() {
+    return entries;
+  }
+
+  @Override
+  public long bytesWritten() {
+    return raw.count;
+  }
+
+  /**
+   * ファイルを1件格納する（サイズ・更新日時はコピー元の属性を使う）。
+   *
+   * @param name アーカイブ内のパス（区切り文字は {@code /}）
+   * @param source コピー元ファイル
+   * @throws IOException 読み書きに失敗した場合
+   * @throws AssetCopyException name が危険/不正な場合
+   */
+  @Override
+  public void putFile(String name, Path source) throws IOException {
+    SafePaths.validateEntryName(name);
+    BasicFileAttributes attrs = Files.readAttributes(source, BasicFileAttributes.class);
+    Instant modified = attrs.lastModifiedTime().toInstant();
+    try (InputStream in = Files.newInputStream(source)) {
+      if (zip != null) {
+        beginZipEntry(name, modified);
+        in.transferTo(zip);
+        zip.closeEntry();
+      } else {
+        // ヘッダに書いたサイズちょうどを格納する（コピー中に増減した場合は失敗にする）
+        TarHeaders.write(raw, name, attrs.size(), modified);
+        long remaining = attrs.size();
+        byte[] buf = new byte[(int) Math.min(BUFFER_SIZE, Math.max(remaining, 1))];
+        while (remaining > 0) {
+          int n = in.read(buf, 0, (int) Math.min(buf.length, remaining));
+          if (n < 0) {
+            throw new IOException("コピー中にファイルサイズが変わりました: " + source);
+          }
+          raw.write(buf, 0, n);
+          remaining -= n;
+        }
+        if (in.read() >= 0) {
+          throw new IOException("コピー中にファイルサイズが変わりました: " + source);
+        }
+        TarHeaders.pad(raw, attrs.size());
+      }
+    }
+    entries++;
+  }
+
+  /**
+   * 内容を書き出しながらエントリを1件格納する（index.html など、サイズが事前に分からないもの）。
+   *
+   * <p>tar はヘッダにサイズが必要なため、いったん一時ファイルへ書き出してから格納する。
+   *
+   * @param name アーカイブ内のパス（区切り文字は {@code /}）
+   * @param modified 更新日時
+   * @param body 内容を書き出す処理（渡された出力先を閉じないこと）
+   * @throws IOException 書き込みに失敗した場合
+   */
+  @Override
+  public void putEntry(String name, Instant modified, EntryBody body) throws IOException {
+    SafePaths.validateEntryName(name);
+    if (zip != null) {
+      beginZipEntry(name, modified);
+      body.writeTo(new NonClosingOutputStream(zip));
+      zip.closeEntry();
+      entries++;
+      return;
+    }
+    Path spool = Files.createTempFile(part.getParent(), "entry-", ".tmp");
+    try {
+      try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(spool))) {
+        body.writeTo(out);
+      }
+      Files.setLastModifiedTime(spool, FileTime.from(modified));
+      putFile(name, spool);
+    } finally {
+      Files.deleteIfExists(spool);
+    }
+  }
+
+  /**
+   * 書き出しを完了し、一時ファイルをアーカイブへ移動する。
+   *
+   * @throws IOException 書き込み・移動に失敗した場合
+   */
+  @Override
+  public void finish() throws IOException {
+    if (zip != null) {
+      zip.finish();
+    } else {
+      TarHeaders.end(raw);
+    }
+    raw.close();
+    try {
+      Files.move(
+          part, archive, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(part, archive, StandardCopyOption.REPLACE_EXISTING);
+    }
+    finished = true;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (finished) {
+      return;
+    }
+    try {
+      raw.close();
+    } finally {
+      Files.deleteIfExists(part);
+    }
+  }
+
+  private void beginZipEntry(String name, Instant modified) throws IOException {
+    ZipEntry entry = new ZipEntry(name);
+    entry.setLastModifiedTime(FileTime.from(modified));
+    // 圧縮済みの形式は圧縮しても縮まないため、CPU を使わない無圧縮（レベル 0）で格納する
+    zip.setLevel(isStored(name) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+    zip.putNextEntry(entry);
+  }
+
+  static boolean isStored(String name) {
+    int dot = name.lastIndexOf('.');
+    if (dot < 0 || dot < name.lastIndexOf('/')) {
+      return false;
+    }
+    return STORE_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+  }
+
+  /** 呼び出し側が close してもアーカイブ本体を閉じないための出力先。 */
+  private static final class NonClosingOutputStream extends FilterOutputStream {
+
+    NonClosingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+  }
+
+  /** アーカイブに書き込んだバイト数を数える出力先。 */
+  private static final class CountingOutputStream extends FilterOutputStream {
+
+    private long count;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+}
@@ -1,18 +1,81 @@
 package com.example.gallery.output;
 
 import com.example.gallery.domain.MediaItem;
+import com.example.gallery.image.ImageDownscaler;
+import com.example.gallery.jfr.CopyFileEvent;
+import com.example.gallery.progress.PhaseProgress;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
-/** メディアファイルを dist/assets 配下へコピーする（相対構造維持）。 */
+/**
+ * メディアファイルを dist/assets 配下へコピーする（相対構造維持）。
+ *
+ * <p>コピー先へは {@link OutputSink} を通して書き出す。{@link FileSystemSink} は同じディレクトリの一時ファイル（{@code
+ * *.gallery-part}）へ書き込んでから移動するため、 途中で強制終了しても書きかけのファイルがコピー先に残らない。
+ *
+ * <p>コピーは並列に行い、同時コピー数は {@link CopyOptions} に従う（既定はスループットに応じた自動調整）。
+ *
+ * <p>{@link CopyOptions#downscaler()} を指定した場合、大きすぎる JPEG は縮小・再エンコードして配置する（それ以外はそのままコピーする）。
+ * 縮小・再エンコードした件はジャーナルに条件とコピー先のサイズを記録し、コピー元と条件が変わらない限り次回はデコードせずにスキップする。
+ */
 public final class AssetCopier {
 
+  /** コピー途中の一時ファイルに付ける接尾辞。 */
+  public static final String PART_SUFFIX = ".gallery-part";
+
+  /** 出力先でメディアを置くディレクトリ名。 */
+  private static final String ASSETS_DIR = "assets";
+
+  /** 帯域制限・チェックサム計算時の書き込み単位。 */
+  private static final int CHUNK_BYTES = 256 * 1024;
+
+  /** コピー元を読むスレッドごとの direct バッファ（{@link AssetVerifier#checksum} と同じくコピーせずにチェックサムへ渡す）。 */
+  private static final ThreadLocal<ByteBuffer> BUFFERS =
+      ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(CHUNK_BYTES));
+
   private AssetCopier() {}
 
+  /**
+   * コピー結果。
+   *
+   * @param copied コピーした件数
+   * @param skipped ジャーナルで配置済みと判定しスキップした件数
+   * @param sourceChecksums コピーしながら計算したコピー元のチェックサム（relativePath → 16進文字列、
+   *     {@link CopyOptions#checksum()} が null の場合やスキップした件は含まない）
+   */
+  public record CopyResult(int copied, int skipped, Map<String, String> sourceChecksums) {
+
+    /**
+     * チェックサムを持たない結果を作成する。
+     *
+     * @param copied コピーした件数
+     * @param skipped ジャーナルで配置済みと判定しスキップした件数
+     */
+    public CopyResult(int copied, int skipped) {
+      this(copied, skipped, Map.of());
+    }
+  }
+
   /**
    * メディア一覧を assetsDir 配下へコピーする。
    *
@@ -26,22 +89,360 @@ public final class AssetCopier {
    * @throws AssetCopyException relativePath が危険/不正な場合
    */
   public static int copyAll(List<MediaItem> items, Path assetsDir) throws IOException {
-    Objects.requireNonNull(items, "items");
+    return copyAll(items, assetsDir, null).copied();
+  }
+
+  /**
+   * ジャーナルを使ってメディア一覧を assetsDir 配下へコピーする（中断からの再開に対応）。
+   *
+   * <ul>
+   *   <li>ジャーナルに記録済みで、コピー先が記録どおりに存在するファイルはスキップする
+   *   <li>一時ファイルへコピーしてからコピー先へ移動し、移動後にジャーナルへ追記する
+   *   <li>全件完了後、ジャーナルを今回のメディア一覧の分だけに書き直す
+   * </ul>
+   *
+   * @param items コピー対象のメディア一覧
+   * @param assetsDir dist/assets のパス
+   * @param journal コピージャーナル（null の場合は記録・スキップを行わない）
+   * @return コピー結果
+   * @throws IOException コピーに失敗した場合
+   * @throws AssetCopyException relativePath が危険/不正な場合
+   */
+  public static CopyResult copyAll(List<MediaItem> items, Path assetsDir, CopyJournal journal)
+      throws IOException {
+    return copyAll(items, assetsDir, journal, CopyOptions.DEFAULT);
+  }
+
+  /**
+   * 並列度・帯域を指定して、メディア一覧を assetsDir 配下へコピーする。
+   *
+   * <p>危険/不正な relativePath が1件でもあれば、コピーを始める前に例外を送出する。 いずれかのコピーに失敗した場合は新たなコピーを開始せず、実行中のコピーの完了を待ってから例外を送出する。
+   *
+   * @param items コピー対象のメディア一覧
+   * @param assetsDir dist/assets のパス
+   * @param journal コピージャーナル（null の場合は記録・スキップを行わない）
+   * @param options 並列度・帯域の設定
+   * @return コピー結果
+   * @throws IOException コピーに失敗した場合
+   * @throws AssetCopyException relativePath が危険/不正な場合
+   * @see #copyAll(List, Path, CopyJournal)
+   */
+  public static CopyResult copyAll(
+      List<MediaItem> items, Path assetsDir, CopyJournal journal, CopyOptions options)
+      throws IOException {
+    return copyAll(items, assetsDir, journal, options, new PhaseProgress("copy"));
+  }
+
+  /**
+   * 進捗を記録しながら、メディア一覧を assetsDir 配下へコピーする。
+   *
+   * <p>開始時に総件数・総バイト数を progress に設定し、1件完了（またはスキップ）するごとに加算する。
+   *
+   * <p>{@link CopyOptions#checksum()} が指定されている場合は、コピー中に読んだコピー元の内容からチェックサムを計算し、
+   * 結果に含める（検証時にコピー元を読み直さずに済む）。
+   *
+   * <p>items が {@link Collection} でない場合（一時ファイルからマージしながら読み出す走査結果など）は、
+   * 全件を保持しないよう先頭から順に読み出しながらコピーする。この場合、relativePath の検証は各件のコピー直前に行い、 総件数・総バイト数は呼び出し側で
+   * progress に設定しておく。ジャーナルの書き直しのために items をもう一度先頭から読み出す。
+   *
+   * @param items コピー対象のメディア一覧
+   * @param assetsDir dist/assets のパス
+   * @param journal コピージャーナル（null の場合は記録・スキップを行わない）
+   * @param options 並列度・帯域の設定
+   * @param progress 進捗カウンタ
+   * @return コピー結果
+   * @throws IOException コピーに失敗した場合
+   * @throws AssetCopyException relativePath が危険/不正な場合
+   * @see #copyAll(List, Path, CopyJournal, CopyOptions)
+   */
+  public static CopyResult copyAll(
+      Iterable<MediaItem> items,
+      Path assetsDir,
+      CopyJournal journal,
+      CopyOptions options,
+      PhaseProgress progress)
+      throws IOException {
     Objects.requireNonNull(assetsDir, "assetsDir");
+    Files.createDirectories(assetsDir);
+    return copyAll(items, new FileSystemSink(assetsDir), "", journal, options, progress);
+  }
 
-    Path absAssetsDir = assetsDir.toAbsolutePath().normalize();
-    Files.createDirectories(absAssetsDir);
+  /**
+   * 出力先の {@code assets/} 配下へ、メディア一覧を差分コピーする（dist への書き出し）。
+   *
+   * <p>配置済みかの判定は、コピー先のサイズを {@link OutputSink#size(String)} で読み戻してジャーナルと照合する
+   * （読み戻せない sink では常にコピーする）。 そのままコピーするファイルは {@link OutputSink#putFile} / {@link
+   * OutputSink#putEntry} で、縮小・再エンコードした JPEG はメモリ上にエンコードしてから {@link OutputSink#putEntry}
+   * で書き出す。 その他の動作は {@link #copyAll(Iterable, Path, CopyJournal, CopyOptions, PhaseProgress)} と同じ。
+   *
+   * <p>sink は複数のスレッドから並行に呼び出す（{@link FileSystemSink} / {@link InMemorySink}）。
+   *
+   * @param items コピー対象のメディア一覧
+   * @param sink 出力先（dist、またはメモリ上）
+   * @param journal コピージャーナル（null の場合は記録・スキップを行わない）
+   * @param options 並列度・帯域の設定
+   * @param progress 進捗カウンタ
+   * @return コピー結果
+   * @throws IOException コピーに失敗した場合
+   * @throws AssetCopyException relativePath が危険/不正な場合
+   */
+  public static CopyResult copyAll(
+      Iterable<MediaItem> items,
+      OutputSink sink,
+      CopyJournal journal,
+      CopyOptions options,
+      PhaseProgress progress)
+      throws IOException {
+    return copyAll(items, sink, ASSETS_DIR + "/", journal, options, progress);
+  }
+
+  private static CopyResult copyAll(
+      Iterable<MediaItem> items,
+      OutputSink sink,
+      String prefix,
+      CopyJournal journal,
+      CopyOptions options,
+      PhaseProgress progress)
+      throws IOException {
+    Objects.requireNonNull(items, "items");
+    Objects.requireNonNull(sink, "sink");
+    Objects.requireNonNull(options, "options");
+    Objects.requireNonNull(progress, "progress");
+
+    // 出力先でのパスを組み立てるための仮の基準ディレクトリ（実際には書き込まない）
+    Path absAssetsDir = Path.of(ASSETS_DIR).toAbsolutePath();
+
+    if (items instanceof Collection<MediaItem> all) {
+      long totalBytes = 0;
+      for (MediaItem item : all) {
+        resolveTargetPath(absAssetsDir, item.relativePath());
+        totalBytes += item.sizeBytes();
+      }
+      progress.setTotals(all.size(), totalBytes);
+    }
+
+    AdaptiveConcurrencyLimiter limiter = options.newLimiter();
+    BandwidthLimiter bandwidth =
+        options.maxBytesPerSecond() > 0 ? new BandwidthLimiter(options.maxBytesPerSecond()) : null;
+    int poolSize = options.adaptive() ? CopyOptions.ADAPTIVE_MAX : options.concurrency();
+
+    ChecksumAlgorithm checksum = options.checksum();
+    ImageDownscaler downscaler = options.downscaler();
+    Map<String, String> sourceChecksums = new ConcurrentHashMap<>();
+    AtomicInteger copied = new AtomicInteger();
+    int skipped = 0;
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    ExecutorService pool = Executors.newFixedThreadPool(poolSize);
+    try {
+      Iterator<MediaItem> it = items.iterator();
+      while (it.hasNext() && failure.get() == null) {
+        MediaItem item = it.next();
+        Path target = resolveTargetPath(absAssetsDir, item.relativePath());
+        String rel = absAssetsDir.relativize(target).toString().replace('\\', '/');
+        String name = prefix + rel;
+        String variant = downscaler != null ? downscaler.spec().encodingKey(item) : "";
+        if (journal != null && journal.isComplete(item, sink.size(name), variant)) {
+          skipped++;
+          progress.add(1, item.sizeBytes());
+          continue;
+        }
+
+        // in-flight 数が上限未満になるまで待ってから投入する（プールの待ち行列には積まない）
+        limiter.acquire();
+        pool.execute(
+            () -> {
+              try {
+                CopyFileEvent event = new CopyFileEvent();
+                event.begin();
+                long written = -1;
+                if (!variant.isEmpty()) {
+                  written = downscaleTo(sink, name, downscaler, item, bandwidth, limiter);
+                }
+                ChecksumAlgorithm.Hasher hasher = checksum != null ? checksum.newHasher() : null;
+                if (written < 0) {
+                  copyTo(sink, name, item.sourcePath(), bandwidth, hasher, limiter);
+                  written = item.sizeBytes();
+                }
+                event.finish(item.sourcePath(), name, written);
+                if (hasher != null) {
+                  sourceChecksums.put(rel, hasher.hex());
+                }
+                if (journal != null) {
+                  journal.record(item, written, variant);
+                }
+                copied.incrementAndGet();
+                progress.add(1, item.sizeBytes());
+              } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+              } finally {
+                limiter.release();
+              }
+            });
+      }
+      pool.shutdown();
+      pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("assets へのコピーが中断されました", e);
+    } catch (RuntimeException e) {
+      // 逐次読み出し中の検証エラー等：実行中のコピーの完了を待ってから送出する
+      pool.shutdown();
+      awaitQuietly(pool);
+      throw e;
+    } finally {
+      pool.shutdownNow();
+    }
 
-    int count = 0;
+    Throwable t = failure.get();
+    if (t instanceof IOException io) {
+      throw io;
+    }
+    if (t instanceof RuntimeException re) {
+      throw re;
+    }
+    if (t instanceof Error err) {
+      throw err;
+    }
+    if (t != null) {
+      throw new IOException("assets へのコピーに失敗しました: " + t.getMessage(), t);
+    }
+
+    if (journal != null) {
+      journal.compact(items);
+    }
+    return new CopyResult(copied.get(), skipped, Map.copyOf(sourceChecksums));
+  }
+
+  /**
+   * メディア一覧を出力先の {@code assets/} 配下へ順に書き出す（dist/assets へのコピーとは異なり、ジャーナル・差分コピーを使わない）。
+   *
+   * <p>アーカイブは1本のストリームのため、並列化せず1件ずつ書き出す。 relativePath の検証は {@link #copyAll(List, Path)} と同じ。
+   *
+   * @param items 書き出すメディア一覧
+   * @param sink 出力先（アーカイブ・メモリ上など）
+   * @param progress 進捗カウンタ（総件数・総バイト数は呼び出し側で設定しておく）
+   * @return 書き出した件数
+   * @throws IOException 読み書きに失敗した場合
+   * @throws AssetCopyException relativePath が危険/不正な場合
+   */
+  public static int copyAllTo(Iterable<MediaItem> items, OutputSink sink, PhaseProgress progress)
+      throws IOException {
+    Objects.requireNonNull(items, "items");
+    Objects.requireNonNull(sink, "sink");
+    Objects.requireNonNull(progress, "progress");
+
+    // 出力先でのパスを組み立てるための仮の基準ディレクトリ（実際には書き込まない）
+    Path base = Path.of(ASSETS_DIR).toAbsolutePath();
+    int copied = 0;
     for (MediaItem item : items) {
-      Path target = resolveTargetPath(absAssetsDir, item.relativePath());
-      Files.createDirectories(target.getParent());
+      Path target = resolveTargetPath(base, item.relativePath());
+      String name = ASSETS_DIR + "/" + base.relativize(target).toString().replace('\\', '/');
+      CopyFileEvent event = new CopyFileEvent();
+      event.begin();
+      sink.putFile(name, item.sourcePath());
+      event.finish(item.sourcePath(), name, item.sizeBytes());
+      copied++;
+      progress.add(1, item.sizeBytes());
+    }
+    return copied;
+  }
 
-      // 既に存在していたら上書き
-      Files.copy(item.sourcePath(), target, StandardCopyOption.REPLACE_EXISTING);
-      count++;
+  private static void awaitQuietly(ExecutorService pool) {
+    try {
+      pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * 縮小・再エンコードした JPEG をメモリ上に作ってから sink へ書き出す。
+   *
+   * @return 書き出したバイト数（縮小・再エンコードしない場合は -1 で、sink には何もしない）
+   */
+  private static long downscaleTo(
+      OutputSink sink,
+      String name,
+      ImageDownscaler downscaler,
+      MediaItem item,
+      BandwidthLimiter bandwidth,
+      AdaptiveConcurrencyLimiter limiter)
+      throws IOException, InterruptedException {
+    byte[] encoded = downscaler.encode(item.sourcePath(), item.sizeBytes());
+    if (encoded == null) {
+      return -1;
+    }
+    if (bandwidth != null) {
+      bandwidth.acquire(encoded.length);
+    }
+    sink.putEntry(name, Instant.now(), out -> out.write(encoded));
+    limiter.record(encoded.length);
+    return encoded.length;
+  }
+
+  /**
+   * sink へコピーする（sink が一時ファイルを経由して置き換えるため、既に存在していたら上書き）。
+   *
+   * <p>帯域の上限・チェックサムがなく同時実行数も固定の場合はファイルのままコピーし、それ以外は一定サイズずつ書き出す
+   * （同時実行数を自動調整する場合は、書き込んだ分を都度リミッタへ加えるため）。
+   */
+  private static void copyTo(
+      OutputSink sink,
+      String name,
+      Path source,
+      BandwidthLimiter bandwidth,
+      ChecksumAlgorithm.Hasher hasher,
+      AdaptiveConcurrencyLimiter limiter)
+      throws IOException {
+    if (bandwidth == null && hasher == null && !limiter.adaptive()) {
+      sink.putFile(name, source);
+    } else {
+      sink.putEntry(
+          name, Instant.now(), out -> copyChunked(source, out, bandwidth, hasher, limiter));
+    }
+  }
+
+  /**
+   * 一定サイズずつ書き込む（帯域の上限を守り、読んだ内容をチェックサムとリミッタにも加える）。
+   *
+   * <p>コピー元は {@link FileChannel} でスレッドごとの direct バッファへ読み、チェックサムはそのバッファから計算する。
+   */
+  private static void copyChunked(
+      Path source,
+      OutputStream out,
+      BandwidthLimiter bandwidth,
+      ChecksumAlgorithm.Hasher hasher,
+      AdaptiveConcurrencyLimiter limiter)
+      throws IOException {
+    ByteBuffer buf = BUFFERS.get();
+    WritableByteChannel target = Channels.newChannel(out);
+    try (FileChannel ch = FileChannel.open(source, StandardOpenOption.READ)) {
+      while (true) {
+        buf.clear();
+        int n = ch.read(buf);
+        if (n < 0) {
+          break;
+        }
+        buf.flip();
+        if (bandwidth != null) {
+          try {
+            bandwidth.acquire(n);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("assets へのコピーが中断されました");
+          }
+        }
+        if (hasher != null) {
+          hasher.update(buf);
+          buf.rewind();
+        }
+        while (buf.hasRemaining()) {
+          target.write(buf);
+        }
+        limiter.record(n);
+      }
     }
-    return count;
   }
 
   private static Path resolveTargetPath(Path absAssetsDir, Path relativePath) {
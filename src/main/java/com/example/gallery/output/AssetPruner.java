@@ -0,0 +1,129 @@
+package com.example.gallery.output;
+
+import com.example.gallery.domain.MediaItem;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * dist/assets 配下のうち、今回の走査結果に存在しないファイル（孤立ファイル）と空ディレクトリを削除する（--prune）。
+ *
+ * <p>--clean と異なり、走査結果に含まれるファイルは削除しないため、再コピーが不要になる。
+ */
+public final class AssetPruner {
+
+  /** 出力先でメディアを置くディレクトリ名。 */
+  private static final String ASSETS_DIR = "assets";
+
+  private AssetPruner() {}
+
+  /**
+   * 削除結果。
+   *
+   * @param deletedFiles 削除したファイル数
+   * @param deletedDirectories 削除した空ディレクトリ数
+   */
+  public record Result(int deletedFiles, int deletedDirectories) {}
+
+  /**
+   * assetsDir 配下の孤立ファイルと空ディレクトリを削除する。
+   *
+   * <p>削除を許可する基準ディレクトリにはカレントディレクトリを使う（{@link OutputPreparer#prepare(Path, Path, boolean)}
+   * と同じ）。
+   *
+   * @param items 今回の走査結果
+   * @param assetsDir dist/assets のパス
+   * @return 削除結果
+   * @throws IOException 削除に失敗した場合
+   * @throws OutputPreparationException assetsDir が許可ルート配下でない場合
+   */
+  public static Result prune(Iterable<MediaItem> items, Path assetsDir) throws IOException {
+    Path cwd = Path.of(".").toAbsolutePath().normalize();
+    return prune(items, assetsDir, cwd);
+  }
+
+  /**
+   * assetsDir 配下の孤立ファイルと空ディレクトリを削除する。
+   *
+   * <p>シンボリックリンクは辿らず、リンク自体を1ファイルとして扱う。assetsDir 自体は削除しない。
+   * 削除は assetsDir の親ディレクトリを書き出し先にした {@link FileSystemSink} を通して行う（{@link #prune(Iterable,
+   * OutputSink)}）。
+   *
+   * @param items 今回の走査結果
+   * @param assetsDir dist/assets のパス
+   * @param allowedDeleteRoot 削除を許可する基準ディレクトリ
+   * @return 削除結果
+   * @throws IOException 削除に失敗した場合
+   * @throws OutputPreparationException assetsDir が許可ルート配下でない場合
+   */
+  public static Result prune(Iterable<MediaItem> items, Path assetsDir, Path allowedDeleteRoot)
+      throws IOException {
+    Objects.requireNonNull(items, "items");
+    Objects.requireNonNull(assetsDir, "assetsDir");
+    Objects.requireNonNull(allowedDeleteRoot, "allowedDeleteRoot");
+
+    Path absAssets = assetsDir.toAbsolutePath().normalize();
+    if (!Files.isDirectory(absAssets)) {
+      return new Result(0, 0);
+    }
+
+    // SafePaths にて削除安全チェックを行う
+    SafePaths.validateDeleteTargetIsUnder(absAssets, allowedDeleteRoot);
+    if (absAssets.getParent() == null) {
+      throw new OutputPreparationException("assetsDir が不正です: " + absAssets);
+    }
+    return prune(
+        items, new FileSystemSink(absAssets.getParent()), absAssets.getFileName().toString());
+  }
+
+  /**
+   * 出力先の {@code assets/} 配下の孤立ファイルを削除する（dist への書き出し）。
+   *
+   * <p>既存のエントリは {@link OutputSink#list(String)} で列挙し、{@link OutputSink#delete(String)} で削除する。
+   * ディレクトリは sink の実装が扱う（{@link FileSystemSink} は削除して空になったディレクトリも削除する）。
+   * 結果のディレクトリ数は、削除によってエントリが1件もなくなったディレクトリの数。
+   *
+   * @param items 今回の走査結果
+   * @param sink 出力先（dist、またはメモリ上）
+   * @return 削除結果
+   * @throws IOException 削除に失敗した場合
+   */
+  public static Result prune(Iterable<MediaItem> items, OutputSink sink) throws IOException {
+    Objects.requireNonNull(items, "items");
+    Objects.requireNonNull(sink, "sink");
+    return prune(items, sink, ASSETS_DIR);
+  }
+
+  private static Result prune(Iterable<MediaItem> items, OutputSink sink, String dir)
+      throws IOException {
+    String prefix = dir + "/";
+    Set<String> expected = new HashSet<>();
+    for (MediaItem item : items) {
+      expected.add(prefix + item.relativePath().normalize().toString().replace('\\', '/'));
+    }
+
+    int files = 0;
+    Set<String> emptied = new HashSet<>();
+    Set<String> kept = new HashSet<>();
+    for (String name : sink.list(dir)) {
+      if (expected.contains(name)) {
+        addParents(name, prefix, kept);
+      } else if (sink.delete(name)) {
+        files++;
+        addParents(name, prefix, emptied);
+      }
+    }
+    emptied.removeAll(kept);
+    return new Result(files, emptied.size());
+  }
+
+  /** dir 配下のエントリ名について、dir より下の親ディレクトリを加える。 */
+  private static void addParents(String name, String prefix, Set<String> dirs) {
+    for (int i = name.lastIndexOf('/'); i >= prefix.length(); i = name.lastIndexOf('/', i - 1)) {
+      dirs.add(name.substring(0, i));
+    }
+  }
+}
@@ -0,0 +1,266 @@
+package com.example.gallery.output;
+
+import com.example.gallery.domain.MediaItem;
+import com.example.gallery.progress.PhaseProgress;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * dist/assets のコピーがコピー元と一致していることをチェックサムで検証する。
+ *
+ * <ul>
+ *   <li>不一致：コピー元とコピー先のチェックサムが異なる
+ *   <li>欠落：コピー先が存在しない
+ *   <li>余分：走査結果に含まれないファイルが assets 配下にある
+ * </ul>
+ *
+ * <p>ファイルの読み込みとチェックサムの計算は並列に行う。 読み込みにはスレッドごとに確保した大きめの direct バッファを使う。
+ */
+public final class AssetVerifier {
+
+  /** 読み込み単位（スレッドごとに1つ確保する direct バッファのサイズ）。 */
+  static final int BUFFER_BYTES = 1024 * 1024;
+
+  /** 結果に含めるパスの最大件数（種類ごと。件数自体はすべて数える）。 */
+  static final int MAX_LISTED = 100;
+
+  private static final ThreadLocal<ByteBuffer> BUFFERS =
+      ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_BYTES));
+
+  private AssetVerifier() {}
+
+  /**
+   * 検証結果。
+   *
+   * @param verified 一致した件数
+   * @param mismatched 不一致の件数
+   * @param missing 欠落の件数
+   * @param extra 余分なファイルの件数
+   * @param problems 問題のあったパス（種類ごとに最大 {@value #MAX_LISTED} 件、例: {@code
+   *     "mismatch: a.jpg"}）
+   */
+  public record Result(
+      int verified, int mismatched, int missing, int extra, List<String> problems) {
+
+    /** 問題がなかった場合は true。 */
+    public boolean ok() {
+      return mismatched == 0 && missing == 0 && extra == 0;
+    }
+  }
+
+  /**
+   * メディア一覧と assetsDir を突き合わせて検証する。
+   *
+   * @param items 走査結果
+   * @param assetsDir dist/assets のパス
+   * @param algorithm チェックサムの種類
+   * @param progress 進捗カウンタ（1件ごとに件数とコピー元のサイズを加算）
+   * @return 検証結果
+   * @throws IOException 読み込みに失敗した場合
+   */
+  public static Result verify(
+      Iterable<MediaItem> items,
+      Path assetsDir,
+      ChecksumAlgorithm algorithm,
+      PhaseProgress progress)
+      throws IOException {
+    return verify(items, assetsDir, algorithm, progress, Map.of());
+  }
+
+  /**
+   * コピー時に計算済みのコピー元チェックサムを使って検証する（コピー元を読み直さない）。
+   *
+   * @param items 走査結果
+   * @param assetsDir dist/assets のパス
+   * @param algorithm チェックサムの種類
+   * @param progress 進捗カウンタ（1件ごとに件数とコピー元のサイズを加算）
+   * @param sourceChecksums relativePath（{@code /} 区切り）→ コピー元のチェックサム
+   * @return 検証結果
+   * @throws IOException 読み込みに失敗した場合
+   * @see AssetCopier#copyAll(Iterable, Path, CopyJournal, CopyOptions, PhaseProgress)
+   */
+  public static Result verify(
+      Iterable<MediaItem> items,
+      Path assetsDir,
+      ChecksumAlgorithm algorithm,
+      PhaseProgress progress,
+      Map<String, String> sourceChecksums)
+      throws IOException {
+    Objects.requireNonNull(items, "items");
+    Objects.requireNonNull(assetsDir, "assetsDir");
+    Objects.requireNonNull(algorithm, "algorithm");
+    Objects.requireNonNull(progress, "progress");
+    Objects.requireNonNull(sourceChecksums, "sourceChecksums");
+
+    Path absAssetsDir = assetsDir.toAbsolutePath().normalize();
+    int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    AtomicInteger verified = new AtomicInteger();
+    AtomicInteger mismatched = new AtomicInteger();
+    AtomicInteger missing = new AtomicInteger();
+    List<String> mismatchedPaths = Collections.synchronizedList(new ArrayList<>());
+    List<String> missingPaths = Collections.synchronizedList(new ArrayList<>());
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    Set<String> expected = new HashSet<>();
+
+    // 待ち行列に全件を積まないよう、投入数をスレッド数の数倍までに抑える
+    Semaphore inFlight = new Semaphore(threads * 4);
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      for (MediaItem item : items) {
+        if (failure.get() != null) {
+          break;
+        }
+        String rel = item.relativePath().normalize().toString().replace('\\', '/');
+        expected.add(rel);
+        Path target = absAssetsDir.resolve(rel).normalize();
+        if (!target.startsWith(absAssetsDir)) {
+          throw new AssetCopyException("コピー先が assetsDir 配下ではありません: " + rel);
+        }
+
+        inFlight.acquire();
+        pool.execute(
+            () -> {
+              try {
+                String targetSum = checksumOrNull(target, algorithm);
+                if (targetSum == null) {
+                  missing.incrementAndGet();
+                  addLimited(missingPaths, rel);
+                } else {
+                  String sourceSum = sourceChecksums.get(rel);
+                  if (sourceSum == null) {
+                    sourceSum = checksum(item.sourcePath(), algorithm);
+                  }
+                  if (sourceSum.equals(targetSum)) {
+                    verified.incrementAndGet();
+                  } else {
+                    mismatched.incrementAndGet();
+                    addLimited(mismatchedPaths, rel);
+                  }
+                }
+                progress.add(1, item.sizeBytes());
+              } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+              } finally {
+                inFlight.release();
+              }
+            });
+      }
+      pool.shutdown();
+      pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("検証が中断されました", e);
+    } finally {
+      pool.shutdownNow();
+    }
+
+    Throwable t = failure.get();
+    if (t instanceof IOException io) {
+      throw io;
+    }
+    if (t instanceof RuntimeException re) {
+      throw re;
+    }
+    if (t instanceof Error err) {
+      throw err;
+    }
+
+    List<String> extraPaths = new ArrayList<>();
+    int extra = countExtra(absAssetsDir, expected, extraPaths);
+
+    List<String> problems = new ArrayList<>();
+    mismatchedPaths.stream().sorted().forEach(p -> problems.add("mismatch: " + p));
+    missingPaths.stream().sorted().forEach(p -> problems.add("missing: " + p));
+    extraPaths.stream().sorted().forEach(p -> problems.add("extra: " + p));
+    return new Result(
+        verified.get(), mismatched.get(), missing.get(), extra, List.copyOf(problems));
+  }
+
+  /**
+   * ファイルのチェックサムを計算する。
+   *
+   * @param file 対象ファイル
+   * @param algorithm チェックサムの種類
+   * @return チェックサム（16進文字列）
+   * @throws IOException 読み込みに失敗した場合
+   */
+  public static String checksum(Path file, ChecksumAlgorithm algorithm) throws IOException {
+    ChecksumAlgorithm.Hasher hasher = algorithm.newHasher();
+    ByteBuffer buf = BUFFERS.get();
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      while (true) {
+        buf.clear();
+        if (ch.read(buf) < 0) {
+          break;
+        }
+        buf.flip();
+        hasher.update(buf);
+      }
+    }
+    return hasher.hex();
+  }
+
+  private static String checksumOrNull(Path file, ChecksumAlgorithm algorithm)
+      throws IOException {
+    try {
+      return checksum(file, algorithm);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  private static void addLimited(List<String> list, String path) {
+    synchronized (list) {
+      if (list.size() < MAX_LISTED) {
+        list.add(path);
+      }
+    }
+  }
+
+  /** 走査結果に含まれない assets 配下のファイルを数える（コピー途中の一時ファイルも含む）。 */
+  private static int countExtra(Path absAssetsDir, Set<String> expected, List<String> listed)
+      throws IOException {
+    if (!Files.isDirectory(absAssetsDir)) {
+      return 0;
+    }
+    int[] count = {0};
+    Files.walkFileTree(
+        absAssetsDir,
+        new SimpleFileVisitor<>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            String rel = absAssetsDir.relativize(file).toString().replace('\\', '/');
+            if (!expected.contains(rel)) {
+              count[0]++;
+              if (listed.size() < MAX_LISTED) {
+                listed.add(rel);
+              }
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        });
+    return count[0];
+  }
+}
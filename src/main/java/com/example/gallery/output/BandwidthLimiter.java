@@ -0,0 +1,44 @@
+package com.example.gallery.output;
+
+/**
+ * 書き込み帯域（bytes/sec）の上限を守るためのリミッタ。
+ *
+ * <p>全スレッドで1つの「次に書き込んでよい時刻」を共有し、書き込むバイト数に応じてその時刻を進める。 各スレッドは自分の番の時刻まで待ってから書き込む。
+ */
+public final class BandwidthLimiter {
+
+  private final long bytesPerSecond;
+  private long nextFreeNanos;
+
+  /**
+   * リミッタを作成する。
+   *
+   * @param bytesPerSecond 上限（bytes/sec、1以上）
+   */
+  public BandwidthLimiter(long bytesPerSecond) {
+    if (bytesPerSecond <= 0) {
+      throw new IllegalArgumentException("bytesPerSecond が不正です: " + bytesPerSecond);
+    }
+    this.bytesPerSecond = bytesPerSecond;
+    this.nextFreeNanos = System.nanoTime();
+  }
+
+  /**
+   * 指定バイト数を書き込む前に呼び出し、上限を超えないよう必要なだけ待つ。
+   *
+   * @param bytes 書き込むバイト数
+   * @throws InterruptedException 待機中に割り込まれた場合
+   */
+  public void acquire(long bytes) throws InterruptedException {
+    long waitNanos;
+    synchronized (this) {
+      long now = System.nanoTime();
+      long start = Math.max(nextFreeNanos, now);
+      nextFreeNanos = start + (long) (bytes * 1_000_000_000.0 / bytesPerSecond);
+      waitNanos = start - now;
+    }
+    if (waitNanos > 0) {
+      Thread.sleep(waitNanos / 1_000_000L, (int) (waitNanos % 1_000_000L));
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package com.example.gallery.output;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Locale;
+
+/** assets の検証（--verify / verify）に使うチェックサムの種類を表す。 */
+public enum ChecksumAlgorithm {
+  /** CRC32C（高速。偶発的な破損の検出向け）。 */
+  CRC32C("crc32c"),
+
+  /** SHA-256（低速だが衝突しにくい）。 */
+  SHA256("sha256");
+
+  private final String id;
+
+  ChecksumAlgorithm(String id) {
+    this.id = id;
+  }
+
+  /** 識別子（例: crc32c）を返す。 */
+  public String id() {
+    return id;
+  }
+
+  /**
+   * 指定値（文字列）から {@link ChecksumAlgorithm} を解決する。
+   *
+   * @param value 指定値（null/空は不可）
+   * @return 解決した {@link ChecksumAlgorithm}
+   * @throws IllegalArgumentException 不正な値の場合
+   */
+  public static ChecksumAlgorithm from(String value) {
+    String normalized = value.trim().toLowerCase(Locale.ROOT).replace("-", "");
+    return Arrays.stream(values())
+        .filter(a -> a.id.equals(normalized))
+        .findFirst()
+        .orElseThrow(() -> new IllegalArgumentException("不正なチェックサムです: " + value));
+  }
+
+  /** 1ファイル分のチェックサムを計算するハッシャーを作成する。 */
+  Hasher newHasher() {
+    if (this == CRC32C) {
+      return new Hasher(new java.util.zip.CRC32C(), null);
+    }
+    try {
+      return new Hasher(null, MessageDigest.getInstance("SHA-256"));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** チェックサムの計算（CRC32C / SHA-256 を同じ操作で扱う）。 */
+  static final class Hasher {
+
+    private final java.util.zip.CRC32C crc;
+    private final MessageDigest digest;
+
+    private Hasher(java.util.zip.CRC32C crc, MessageDigest digest) {
+      this.crc = crc;
+      this.digest = digest;
+    }
+
+    void update(byte[] b, int off, int len) {
+      if (crc != null) {
+        crc.update(b, off, len);
+      } else {
+        digest.update(b, off, len);
+      }
+    }
+
+    /** バッファの position から limit までを加える（direct バッファはコピーせずに処理される）。 */
+    void update(ByteBuffer buffer) {
+      if (crc != null) {
+        crc.update(buffer);
+      } else {
+        digest.update(buffer);
+      }
+    }
+
+    /** 計算結果を16進文字列で返す。 */
+    String hex() {
+      if (crc != null) {
+        return String.format(Locale.ROOT, "%08x", crc.getValue());
+      }
+      return HexFormat.of().formatHex(digest.digest());
+    }
+  }
+}
@@ -0,0 +1,308 @@
+package com.example.gallery.output;
+
+import com.example.gallery.domain.MediaItem;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * assets へのコピー完了を記録するジャーナル（ビルドの記録のディレクトリの .gallery-copy-journal）。
+ *
+ * <p>記録のディレクトリは {@link OutputPaths#stateDirOf(java.nio.file.Path)}（配置する outputDir には置かない）。
+ *
+ * <p>1行1件で {@code サイズ<TAB>更新日時(epoch ms)<TAB>relativePath} を追記する。 コピー先への配置（アトミックな移動）が完了してから追記するため、
+ * ジャーナルにある行は「そのコピー元の内容で配置済み」であることを表す。 ビルドが途中で強制終了しても、次回は記録済みのファイルをスキップして続きからコピーできる。
+ *
+ * <p>縮小・再エンコードして配置した件は {@code サイズ<TAB>更新日時<TAB><TAB>コピー先のサイズ<TAB>条件<TAB>relativePath}
+ * の形式で記録する（3列目が空の行）。条件（{@link com.example.gallery.image.DownscaleSpec#cacheKey()}）が変わった場合は配置し直す。
+ *
+ * <p>書き込み途中で終了した末尾の行など、解釈できない行は無視する。
+ *
+ * <p>開く際はファイルを1行ずつ読み、記録を relativePath をキーにメモリ上に保持する（ファイル全体を文字列として読み込まない）。 保持する記録は今回の
+ * メディア一覧の件数に比例し、{@code scanMemoryBudgetMb}（走査結果の上限）には含まれない。
+ */
+public final class CopyJournal implements Closeable {
+
+  /** ジャーナルファイル名（記録のディレクトリ直下）。 */
+  public static final String FILE_NAME = ".gallery-copy-journal";
+
+  private final Path file;
+  private final Map<String, Entry> entries;
+  private final boolean endsWithPartialLine;
+  private BufferedWriter writer;
+
+  private CopyJournal(Path file, Map<String, Entry> entries, boolean endsWithPartialLine) {
+    this.file = file;
+    this.entries = entries;
+    this.endsWithPartialLine = endsWithPartialLine;
+  }
+
+  /**
+   * stateDir 直下のジャーナルを開く（存在しない場合は空のジャーナルとして扱う）。
+   *
+   * @param stateDir ビルドの記録のディレクトリ
+   * @return ジャーナル
+   * @throws IOException 読み込みに失敗した場合
+   */
+  public static CopyJournal open(Path stateDir) throws IOException {
+    Objects.requireNonNull(stateDir, "stateDir");
+
+    Path file = stateDir.resolve(FILE_NAME);
+    Map<String, Entry> entries = new HashMap<>();
+    boolean partial = false;
+    if (Files.isRegularFile(file)) {
+      partial = endsWithPartialLine(file);
+      try (BufferedReader reader =
+          new BufferedReader(
+              new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8))) {
+        // 1行遅れで解釈し、改行で終わっていない末尾の行は書き込み途中で終了したものとして扱わない
+        String previous = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+          if (previous != null) {
+            parse(previous, entries);
+          }
+          previous = line;
+        }
+        if (previous != null && !partial) {
+          parse(previous, entries);
+        }
+      }
+    }
+    return new CopyJournal(file, entries, partial);
+  }
+
+  /**
+   * 記録済み、かつコピー先が記録どおりに存在する（配置済み）かを判定する。
+   *
+   * <p>コピー元のサイズ・更新日時が記録と一致し、コピー先が同じサイズの通常ファイルとして存在する場合に true。
+   *
+   * @param item コピー元
+   * @param target コピー先
+   * @return 配置済みなら true
+   */
+  public synchronized boolean isComplete(MediaItem item, Path target) {
+    return isComplete(item, target, "");
+  }
+
+  /**
+   * 記録済み、かつコピー先が記録どおりの条件で配置済みかを判定する。
+   *
+   * <p>コピー元のサイズ・更新日時と条件が記録と一致し、コピー先が記録したサイズの通常ファイルとして存在する場合に true。
+   *
+   * @param item コピー元
+   * @param target コピー先
+   * @param variant 縮小・再エンコードの条件（そのままコピーする対象は空文字）
+   * @return 配置済みなら true
+   */
+  public synchronized boolean isComplete(MediaItem item, Path target, String variant) {
+    long size;
+    try {
+      size = Files.isRegularFile(target) ? Files.size(target) : -1;
+    } catch (IOException e) {
+      return false;
+    }
+    return isComplete(item, size, variant);
+  }
+
+  /**
+   * 記録済み、かつコピー先が記録どおりの条件で配置済みかを、コピー先の現在のサイズから判定する。
+   *
+   * <p>コピー先は {@link OutputSink#size(String)} で読み戻したサイズを渡す（ファイルを直接見ない）。
+   *
+   * @param item コピー元
+   * @param targetSize コピー先の現在のサイズ（存在しない場合は -1）
+   * @param variant 縮小・再エンコードの条件（そのままコピーする対象は空文字）
+   * @return 配置済みなら true
+   */
+  public synchronized boolean isComplete(MediaItem item, long targetSize, String variant) {
+    Entry entry = entries.get(keyOf(item));
+    if (entry == null || !entry.matches(item) || !entry.variant.equals(variant)) {
+      return false;
+    }
+    return targetSize >= 0 && targetSize == entry.targetSize;
+  }
+
+  /**
+   * コピー完了を追記する（追記のたびに flush する）。
+   *
+   * @param item コピー元
+   * @throws IOException 書き込みに失敗した場合
+   */
+  public synchronized void record(MediaItem item) throws IOException {
+    record(item, item.sizeBytes(), "");
+  }
+
+  /**
+   * 配置したコピー先のサイズと条件を付けて、コピー完了を追記する（追記のたびに flush する）。
+   *
+   * @param item コピー元
+   * @param targetSize コピー先のサイズ
+   * @param variant 縮小・再エンコードの条件（そのままコピーする対象は空文字）
+   * @throws IOException 書き込みに失敗した場合
+   */
+  public synchronized void record(MediaItem item, long targetSize, String variant)
+      throws IOException {
+    Objects.requireNonNull(variant, "variant");
+    Entry entry =
+        new Entry(item.sizeBytes(), item.lastModifiedAt().toEpochMilli(), targetSize, variant);
+    String key = keyOf(item);
+    entries.put(key, entry);
+
+    if (writer == null) {
+      Files.createDirectories(file.toAbsolutePath().getParent());
+      writer =
+          Files.newBufferedWriter(
+              file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+      if (endsWithPartialLine) {
+        writer.write('\n');
+      }
+    }
+    writer.write(format(key, entry));
+    writer.flush();
+  }
+
+  /**
+   * 今回のメディア一覧に含まれる記録だけを残してジャーナルを書き直す（ビルド成功時に呼び出す）。
+   *
+   * <p>追記を繰り返してもファイルが肥大化しないよう、一時ファイルに書き出してから置き換える。
+   *
+   * @param items 今回のメディア一覧（先頭から1回だけ読み出す）
+   * @throws IOException 書き込みに失敗した場合
+   */
+  public synchronized void compact(Iterable<MediaItem> items) throws IOException {
+    closeWriter();
+
+    Path tmp = file.resolveSibling(FILE_NAME + ".tmp");
+    try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+      for (MediaItem item : items) {
+        String key = keyOf(item);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.matches(item)) {
+          w.write(format(key, entry));
+        }
+      }
+    }
+    moveReplacing(tmp, file);
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    closeWriter();
+  }
+
+  private void closeWriter() throws IOException {
+    if (writer != null) {
+      writer.close();
+      writer = null;
+    }
+  }
+
+  /**
+   * 一時ファイルを移動先へ置き換える（可能であればアトミックに）。
+   *
+   * @param source 一時ファイル
+   * @param target 移動先
+   * @throws IOException 移動に失敗した場合
+   */
+  static void moveReplacing(Path source, Path target) throws IOException {
+    try {
+      Files.move(
+          source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /** ファイルの末尾が改行で終わっていない（書き込み途中で終了した行がある）場合は true。 */
+  private static boolean endsWithPartialLine(Path file) throws IOException {
+    try (SeekableByteChannel ch = Files.newByteChannel(file)) {
+      long size = ch.size();
+      if (size == 0) {
+        return false;
+      }
+      ByteBuffer last = ByteBuffer.allocate(1);
+      ch.position(size - 1);
+      return ch.read(last) == 1 && last.get(0) != '\n';
+    }
+  }
+
+  private static String keyOf(MediaItem item) {
+    return item.relativePath().normalize().toString().replace('\\', '/');
+  }
+
+  private static String format(String key, Entry entry) {
+    String head = entry.sizeBytes + "\t" + entry.modifiedMillis + "\t";
+    if (entry.variant.isEmpty()) {
+      return head + escape(key) + "\n";
+    }
+    return head + "\t" + entry.targetSize + "\t" + entry.variant + "\t" + escape(key) + "\n";
+  }
+
+  private static void parse(String line, Map<String, Entry> entries) {
+    String[] parts = line.split("\t", 3);
+    if (parts.length != 3 || parts[2].isEmpty()) {
+      return;
+    }
+    try {
+      long size = Long.parseLong(parts[0]);
+      long modified = Long.parseLong(parts[1]);
+      if (!parts[2].startsWith("\t")) {
+        entries.put(unescape(parts[2]), new Entry(size, modified, size, ""));
+        return;
+      }
+      // 縮小・再エンコードして配置した件（3列目が空）
+      String[] rest = parts[2].substring(1).split("\t", 3);
+      if (rest.length != 3 || rest[1].isEmpty() || rest[2].isEmpty()) {
+        return;
+      }
+      long targetSize = Long.parseLong(rest[0]);
+      entries.put(unescape(rest[2]), new Entry(size, modified, targetSize, rest[1]));
+    } catch (NumberFormatException e) {
+      // 書き込み途中で終了した行などは無視する
+    }
+  }
+
+  private static String escape(String s) {
+    return s.replace("\\", "\\\\")
+        .replace("\n", "\\n")
+        .replace("\r", "\\r")
+        .replace("\t", "\\t");
+  }
+
+  private static String unescape(String s) {
+    StringBuilder sb = new StringBuilder(s.length());
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '\\' && i + 1 < s.length()) {
+        char next = s.charAt(++i);
+        sb.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next == 't' ? '\t' : next);
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  /** 記録1件分（コピー元のサイズ・更新日時、コピー先のサイズ、縮小・再エンコードの条件）。 */
+  private record Entry(long sizeBytes, long modifiedMillis, long targetSize, String variant) {
+
+    boolean matches(MediaItem item) {
+      return sizeBytes == item.sizeBytes()
+          && modifiedMillis == item.lastModifiedAt().toEpochMilli();
+    }
+  }
+}
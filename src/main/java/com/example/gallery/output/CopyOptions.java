@@ -0,0 +1,73 @@
+package com.example.gallery.output;
+
+import com.example.gallery.image.ImageDownscaler;
+
+/**
+ * assets へのコピーの並列度・帯域の設定。
+ *
+ * @param concurrency 同時コピー数（0 の場合はスループットに応じて自動調整）
+ * @param maxBytesPerSecond 書き込み帯域の上限（bytes/sec、0 の場合は無制限）
+ * @param checksum コピーしながら計算するコピー元のチェックサム（null の場合は計算しない）
+ * @param downscaler 大きすぎる JPEG を縮小・再エンコードしてコピーする場合に指定（null の場合はすべてそのままコピー）
+ */
+public record CopyOptions(
+    int concurrency,
+    long maxBytesPerSecond,
+    ChecksumAlgorithm checksum,
+    ImageDownscaler downscaler) {
+
+  /** 自動調整時の初期値。 */
+  static final int ADAPTIVE_INITIAL = 4;
+
+  /** 自動調整時の最大値。 */
+  static final int ADAPTIVE_MAX = 32;
+
+  /** 既定値（自動調整・帯域無制限）。 */
+  public static final CopyOptions DEFAULT = new CopyOptions(0, 0);
+
+  /** 1件ずつ順にコピーする設定。 */
+  public static final CopyOptions SEQUENTIAL = new CopyOptions(1, 0);
+
+  /**
+   * チェックサムを計算しない設定を作成する。
+   *
+   * @param concurrency 同時コピー数（0 の場合はスループットに応じて自動調整）
+   * @param maxBytesPerSecond 書き込み帯域の上限（bytes/sec、0 の場合は無制限）
+   */
+  public CopyOptions(int concurrency, long maxBytesPerSecond) {
+    this(concurrency, maxBytesPerSecond, null);
+  }
+
+  /**
+   * 縮小・再エンコードを行わない設定を作成する。
+   *
+   * @param concurrency 同時コピー数（0 の場合はスループットに応じて自動調整）
+   * @param maxBytesPerSecond 書き込み帯域の上限（bytes/sec、0 の場合は無制限）
+   * @param checksum コピーしながら計算するコピー元のチェックサム（null の場合は計算しない）
+   */
+  public CopyOptions(int concurrency, long maxBytesPerSecond, ChecksumAlgorithm checksum) {
+    this(concurrency, maxBytesPerSecond, checksum, null);
+  }
+
+  public CopyOptions {
+    if (concurrency < 0) {
+      throw new IllegalArgumentException("concurrency が不正です: " + concurrency);
+    }
+    if (maxBytesPerSecond < 0) {
+      throw new IllegalArgumentException("maxBytesPerSecond が不正です: " + maxBytesPerSecond);
+    }
+  }
+
+  /** 同時コピー数を自動調整する場合は true。 */
+  public boolean adaptive() {
+    return concurrency == 0;
+  }
+
+  /** 設定に応じた同時実行数のリミッタを作成する。 */
+  AdaptiveConcurrencyLimiter newLimiter() {
+    if (adaptive()) {
+      return new AdaptiveConcurrencyLimiter(ADAPTIVE_INITIAL, 1, ADAPTIVE_MAX);
+    }
+    return new AdaptiveConcurrencyLimiter(concurrency, concurrency, concurrency);
+  }
+}
@@ -0,0 +1,199 @@
+package com.example.gallery.output;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ディレクトリ配下のファイルとして書き出す {@link OutputSink}（dist への書き出し）。
+ *
+ * <p>各エントリは一時ファイル（{@code *.gallery-part}）に書いてから置き換えるため、書き出しの途中で失敗しても前回の内容が残る。
+ * 親ディレクトリは必要になった時点で作成する。エントリごとに置き換えが完了するため、{@link #finish()} / {@link #close()} では何もしない。
+ *
+ * <p>{@link #delete(String)} で空になった親ディレクトリは、書き出し先のディレクトリの手前まで削除する。
+ *
+ * <p>{@link OutputSink} の他の実装と異なり、異なるエントリへの書き出しであれば複数のスレッドから並行に呼び出してよい（アルバムページの並列生成で使う）。
+ */
+public final class FileSystemSink implements OutputSink {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Path root;
+  private final AtomicLong entries = new AtomicLong();
+  private final AtomicLong bytes = new AtomicLong();
+
+  /**
+   * 書き出し先のディレクトリを指定して作る。
+   *
+   * @param root 書き出し先のディレクトリ（存在しない場合は最初の書き出しで作成する）
+   */
+  public FileSystemSink(Path root) {
+    this.root = Objects.requireNonNull(root, "root").toAbsolutePath().normalize();
+  }
+
+  /** 書き出し先のディレクトリを返す。 */
+  public Path root() {
+    return root;
+  }
+
+  /**
+   * エントリ名を書き出し先のパスに解決する。
+   *
+   * @param name エントリ名（区切り文字は {@code /}）
+   * @return root 配下のパス
+   * @throws AssetCopyException name が危険/不正な場合
+   */
+  public Path resolve(String name) {
+    SafePaths.validateEntryName(name);
+    Path target = root.resolve(name).normalize();
+    if (!target.startsWith(root) || target.equals(root)) {
+      throw new AssetCopyException("出力先のパスが不正です: " + name);
+    }
+    return target;
+  }
+
+  @Override
+  public void putFile(String name, Path source) throws IOException {
+    Path target = prepare(name);
+    Path part = partOf(target);
+    try {
+      Files.copy(source, part, StandardCopyOption.REPLACE_EXISTING);
+      long size = Files.size(part);
+      CopyJournal.moveReplacing(part, target);
+      record(size);
+    } finally {
+      Files.deleteIfExists(part);
+    }
+  }
+
+  @Override
+  public void putEntry(String name, Instant modified, EntryBody body) throws IOException {
+    Path target = prepare(name);
+    Path part = partOf(target);
+    try {
+      try (OutputStream out =
+          new BufferedOutputStream(Files.newOutputStream(part), BUFFER_SIZE)) {
+        body.writeTo(out);
+      }
+      Files.setLastModifiedTime(part, FileTime.from(modified));
+      long size = Files.size(part);
+      CopyJournal.moveReplacing(part, target);
+      record(size);
+    } finally {
+      Files.deleteIfExists(part);
+    }
+  }
+
+  @Override
+  public long size(String name) throws IOException {
+    try {
+      BasicFileAttributes attrs = Files.readAttributes(resolve(name), BasicFileAttributes.class);
+      return attrs.isRegularFile() ? attrs.size() : -1;
+    } catch (NoSuchFileException e) {
+      return -1;
+    }
+  }
+
+  @Override
+  public InputStream openExisting(String name) throws IOException {
+    Path target = resolve(name);
+    if (!Files.isRegularFile(target)) {
+      return null;
+    }
+    try {
+      return Files.newInputStream(target);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public List<String> list(String dir) throws IOException {
+    Path start = resolve(dir);
+    if (!Files.isDirectory(start, LinkOption.NOFOLLOW_LINKS)) {
+      return List.of();
+    }
+    List<String> names = new ArrayList<>();
+    // シンボリックリンクは辿らず、リンク自体を1エントリとして扱う
+    Files.walkFileTree(
+        start,
+        new SimpleFileVisitor<>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            names.add(root.relativize(file).toString().replace('\\', '/'));
+            return FileVisitResult.CONTINUE;
+          }
+        });
+    names.sort(null);
+    return names;
+  }
+
+  @Override
+  public boolean delete(String name) throws IOException {
+    Path target = resolve(name);
+    if (Files.isDirectory(target, LinkOption.NOFOLLOW_LINKS) || !Files.deleteIfExists(target)) {
+      return false;
+    }
+    for (Path dir = target.getParent(); !dir.equals(root) && isEmpty(dir); dir = dir.getParent()) {
+      Files.delete(dir);
+    }
+    return true;
+  }
+
+  @Override
+  public void finish() {
+    // エントリごとに置き換え済み
+  }
+
+  @Override
+  public long entries() {
+    return entries.get();
+  }
+
+  @Override
+  public long bytesWritten() {
+    return bytes.get();
+  }
+
+  @Override
+  public void close() {
+    // 開いたままのファイルはない
+  }
+
+  private Path prepare(String name) throws IOException {
+    Path target = resolve(name);
+    Files.createDirectories(target.getParent());
+    return target;
+  }
+
+  private static boolean isEmpty(Path dir) throws IOException {
+    try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+      return !entries.iterator().hasNext();
+    }
+  }
+
+  private static Path partOf(Path target) {
+    return target.resolveSibling(target.getFileName() + AssetCopier.PART_SUFFIX);
+  }
+
+  private void record(long size) {
+    entries.incrementAndGet();
+    bytes.addAndGet(size);
+  }
+}
@@ -0,0 +1,139 @@
+package com.example.gallery.output;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * メモリ上に保持する {@link OutputSink}（ディスクに書き込まない）。
+ *
+ * <p>テストや、生成結果をそのまま配信する用途で、ディスクへの書き込みなしにビルドの出力を得るために使う。 {@link #finish()} せずに {@link #close()}
+ * した場合は、それまでの内容を破棄する。
+ *
+ * <p>{@link FileSystemSink} と同じく、複数のスレッドから並行に呼び出してよい（dist への通常のビルドをそのまま実行できる）。
+ */
+public final class InMemorySink implements OutputSink {
+
+  private final NavigableMap<String, Entry> entries = new TreeMap<>();
+  private long count;
+  private long bytes;
+  private boolean finished;
+
+  private record Entry(byte[] content, Instant modified) {}
+
+  @Override
+  public void putFile(String name, Path source) throws IOException {
+    SafePaths.validateEntryName(name);
+    byte[] content = Files.readAllBytes(source);
+    put(name, content, Files.getLastModifiedTime(source).toInstant());
+  }
+
+  @Override
+  public void putEntry(String name, Instant modified, EntryBody body) throws IOException {
+    SafePaths.validateEntryName(name);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    body.writeTo(out);
+    put(name, out.toByteArray(), modified);
+  }
+
+  @Override
+  public synchronized long size(String name) {
+    SafePaths.validateEntryName(name);
+    Entry entry = entries.get(name);
+    return entry == null ? -1 : entry.content().length;
+  }
+
+  @Override
+  public synchronized InputStream openExisting(String name) {
+    SafePaths.validateEntryName(name);
+    Entry entry = entries.get(name);
+    return entry == null ? null : new ByteArrayInputStream(entry.content());
+  }
+
+  @Override
+  public synchronized List<String> list(String dir) {
+    SafePaths.validateEntryName(dir);
+    String prefix = dir + "/";
+    return List.copyOf(entries.subMap(prefix, prefix + Character.MAX_VALUE).keySet());
+  }
+
+  @Override
+  public synchronized boolean delete(String name) {
+    SafePaths.validateEntryName(name);
+    return entries.remove(name) != null;
+  }
+
+  @Override
+  public synchronized void finish() {
+    finished = true;
+  }
+
+  @Override
+  public synchronized long entries() {
+    return count;
+  }
+
+  @Override
+  public synchronized long bytesWritten() {
+    return bytes;
+  }
+
+  /** 書き出したエントリ名を昇順に返す。 */
+  public synchronized List<String> names() {
+    return List.copyOf(entries.keySet());
+  }
+
+  /**
+   * エントリの内容を返す。
+   *
+   * @param name エントリ名
+   * @return 内容（存在しない場合は null）
+   */
+  public synchronized byte[] content(String name) {
+    Entry entry = entries.get(name);
+    return entry == null ? null : entry.content().clone();
+  }
+
+  /**
+   * エントリの内容を UTF-8 の文字列として返す。
+   *
+   * @param name エントリ名
+   * @return 内容（存在しない場合は null）
+   */
+  public synchronized String contentAsString(String name) {
+    Entry entry = entries.get(name);
+    return entry == null ? null : new String(entry.content(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * エントリの更新日時を返す。
+   *
+   * @param name エントリ名
+   * @return 更新日時（存在しない場合は null）
+   */
+  public synchronized Instant modified(String name) {
+    Entry entry = entries.get(name);
+    return entry == null ? null : entry.modified();
+  }
+
+  @Override
+  public synchronized void close() {
+    if (!finished) {
+      entries.clear();
+    }
+  }
+
+  private synchronized void put(String name, byte[] content, Instant modified) {
+    entries.put(name, new Entry(content, modified));
+    count++;
+    bytes += content.length;
+  }
+}
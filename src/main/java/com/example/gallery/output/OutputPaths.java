@@ -5,6 +5,34 @@ import java.nio.file.Path;
 /**
  * 出力先のレイアウト（パス群）。
  *
- * <p>本アプリでは outputDir 配下に index.html と assets/ を作成する。
+ * <p>本アプリでは outputDir 配下に index.html と assets/ を作成する。 layout: albums の場合は albums/
+ * 配下にアルバムページを作成する（必要になった時点で作成）。
+ *
+ * <p>次回のビルドのための記録（コピージャーナル・カードのキャッシュ・縮小版や知覚ハッシュの一覧）は、 配置する outputDir
+ * には置かず、{@link #stateDirOf(Path)} のディレクトリに置く（コピー元のパスなどを公開しないため）。
  */
-public record OutputPaths(Path outputDir, Path assetsDir, Path indexHtmlPath) {}
+public record OutputPaths(Path outputDir, Path assetsDir, Path indexHtmlPath, Path albumsDir) {
+
+  /** ビルドの記録を置くディレクトリ名（outputDir と同じ階層）。 */
+  public static final String STATE_DIR_NAME = ".gallery-cache";
+
+  /** ビルドの記録を置くディレクトリ（{@link #stateDirOf(Path)}）。 */
+  public Path stateDir() {
+    return stateDirOf(outputDir);
+  }
+
+  /**
+   * outputDir に対応する、ビルドの記録を置くディレクトリを返す（{@code <outputDir の親>/.gallery-cache/<outputDir 名>}）。
+   *
+   * @param outputDir 出力ディレクトリ
+   * @return 記録を置くディレクトリ（絶対パス）
+   * @throws OutputPreparationException outputDir がファイルシステムのルートの場合
+   */
+  public static Path stateDirOf(Path outputDir) {
+    Path abs = outputDir.toAbsolutePath().normalize();
+    if (abs.getParent() == null || abs.getFileName() == null) {
+      throw new OutputPreparationException("outputDir にファイルシステムのルートは指定できません: " + abs);
+    }
+    return abs.getParent().resolve(STATE_DIR_NAME).resolve(abs.getFileName().toString());
+  }
+}
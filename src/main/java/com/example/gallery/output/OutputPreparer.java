@@ -6,10 +6,15 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
 
-/** 出力先ディレクトリ（dist/assets）の準備を行う。 */
+/** 出力先ディレクトリ（dist/assets）と、ビルドの記録を置くディレクトリの準備を行う。 */
 public final class OutputPreparer {
 
+  /** 以前のバージョンが outputDir 直下に置いていたビルドの記録（記録のディレクトリへ移す）。 */
+  private static final List<String> LEGACY_STATE_FILES =
+      List.of(".gallery-copy-journal", ".gallery-fragments", ".gallery-variants", ".gallery-phash");
+
   private OutputPreparer() {}
 
   /**
@@ -26,8 +31,24 @@ public final class OutputPreparer {
    */
   public static OutputPaths prepare(Path inputDir, Path outputDir, boolean clean)
       throws IOException {
+    return prepare(List.of(inputDir), outputDir, clean);
+  }
+
+  /**
+   * 入力ディレクトリが複数の場合の出力先を準備する（すべての inputDir との包含関係を禁止する）。
+   *
+   * @param inputDirs 入力ディレクトリ（1件以上）
+   * @param outputDir 出力ディレクトリ
+   * @param clean true の場合、出力先を削除して作り直す
+   * @return 出力先パス群
+   * @throws IOException ファイル操作に失敗した場合
+   * @throws OutputPreparationException パスが危険/不正な場合
+   * @see #prepare(Path, Path, boolean)
+   */
+  public static OutputPaths prepare(List<Path> inputDirs, Path outputDir, boolean clean)
+      throws IOException {
     Path cwd = Path.of(".").toAbsolutePath().normalize();
-    return prepare(inputDir, outputDir, clean, cwd);
+    return prepare(inputDirs, outputDir, clean, cwd);
   }
 
   /**
@@ -48,27 +69,75 @@ public final class OutputPreparer {
    */
   public static OutputPaths prepare(
       Path inputDir, Path outputDir, boolean clean, Path allowedDeleteRoot) throws IOException {
+    return prepare(List.of(inputDir), outputDir, clean, allowedDeleteRoot);
+  }
+
+  /**
+   * 入力ディレクトリが複数の場合の出力先を準備する（削除を許可する基準ディレクトリを指定する）。
+   *
+   * <p>ビルドの記録を置くディレクトリ（{@link OutputPaths#stateDirOf(Path)}）も作成し、--clean 時は outputDir
+   * と一緒に削除する。 以前のバージョンが outputDir 直下に置いた記録は、記録のディレクトリへ移す（配置する outputDir に残さない）。
+   *
+   * @param inputDirs 入力ディレクトリ（1件以上）
+   * @param outputDir 出力ディレクトリ
+   * @param clean true の場合、出力先を削除して作り直す
+   * @param allowedDeleteRoot --clean 時の削除を許可する基準ディレクトリ
+   * @return 出力先パス群
+   * @throws IOException ファイル操作に失敗した場合
+   * @throws OutputPreparationException パスが危険/不正な場合
+   * @see #prepare(Path, Path, boolean, Path)
+   */
+  public static OutputPaths prepare(
+      List<Path> inputDirs, Path outputDir, boolean clean, Path allowedDeleteRoot)
+      throws IOException {
 
-    Path absInput = inputDir.toAbsolutePath().normalize();
+    List<Path> absInputs = inputDirs.stream().map(p -> p.toAbsolutePath().normalize()).toList();
     Path absOutput = outputDir.toAbsolutePath().normalize();
 
-    // SafePaths にて安全チェックを行う
-    SafePaths.validateNoContainment(absInput, absOutput);
+    // SafePaths にて安全チェックを行う（すべての inputDir に対して）
+    SafePaths.validateNoContainment(absInputs, absOutput);
+    Path stateDir = OutputPaths.stateDirOf(absOutput);
+    for (Path input : absInputs) {
+      if (stateDir.startsWith(input)) {
+        throw new OutputPreparationException(
+            "ビルドの記録の置き場所が inputDir 配下です（危険）: " + stateDir + ", inputDir=" + input);
+      }
+    }
 
     if (clean) {
       safeDeleteDirectory(absOutput, allowedDeleteRoot);
+      safeDeleteDirectory(stateDir, allowedDeleteRoot);
     }
 
     Files.createDirectories(absOutput);
+    Files.createDirectories(stateDir);
+    migrateLegacyState(absOutput, stateDir);
     Path assetsDir = absOutput.resolve("assets");
     Files.createDirectories(assetsDir);
 
     Path indexHtml = absOutput.resolve("index.html");
-    return new OutputPaths(absOutput, assetsDir, indexHtml);
+    Path albumsDir = absOutput.resolve("albums");
+    return new OutputPaths(absOutput, assetsDir, indexHtml, albumsDir);
+  }
+
+  /** outputDir 直下に残っている以前のバージョンの記録を、記録のディレクトリへ移す（既にある場合は削除する）。 */
+  private static void migrateLegacyState(Path absOutput, Path stateDir) throws IOException {
+    for (String name : LEGACY_STATE_FILES) {
+      Path legacy = absOutput.resolve(name);
+      if (!Files.isRegularFile(legacy)) {
+        continue;
+      }
+      Path target = stateDir.resolve(name);
+      if (Files.exists(target)) {
+        Files.delete(legacy);
+      } else {
+        CopyJournal.moveReplacing(legacy, target);
+      }
+    }
   }
 
   /**
-   * --clean 時に outputDir を安全に削除する。
+   * --clean 時に outputDir（またはビルドの記録のディレクトリ）を安全に削除する。
    *
    * <p>削除対象が許可ルート配下でない場合は削除しない（事故防止）。
    */
@@ -0,0 +1,131 @@
+package com.example.gallery.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * 生成物（index.html・assets・検索用の索引など）の書き出し先。
+ *
+ * <p>エントリは出力先の直下からの相対パス（区切り文字は {@code /}）で指定する。実装は次のとおり。
+ *
+ * <ul>
+ *   <li>{@link FileSystemSink}: ディレクトリ配下のファイルとして書き出す
+ *   <li>{@link InMemorySink}: メモリ上に保持する（ディスクに書き込まない）
+ *   <li>{@link ArchiveWriter}: 1つのアーカイブ（zip / tar）へ順に書き出す
+ * </ul>
+ *
+ * <p>読み戻せる実装（{@link FileSystemSink} / {@link InMemorySink}）では、{@link #size(String)} / {@link #openExisting(String)} /
+ * {@link #list(String)} で既存のエントリを読み戻し、{@link #delete(String)} で削除できる（差分コピー・アルバムページの再生成の判定と、
+ * 不要になったエントリの削除に使う）。読み戻せない実装（{@link ArchiveWriter}）では、エントリは常に存在しないものとして扱う。
+ *
+ * <p>書き出しが成功したら {@link #finish()} を呼ぶ。finish せずに {@link #close()} した場合、書き出し途中の内容は残らない（実装ごとの範囲で）。
+ * 1つのスレッドから順に呼び出す（{@link FileSystemSink} / {@link InMemorySink} は異なるエントリであれば並行に呼び出してよい）。
+ */
+public interface OutputSink extends Closeable {
+
+  /**
+   * ファイルを1件、コピー元から書き出す。
+   *
+   * @param name 出力先でのパス（区切り文字は {@code /}）
+   * @param source コピー元ファイル
+   * @throws IOException 読み書きに失敗した場合
+   * @throws AssetCopyException name が危険/不正な場合
+   */
+  void putFile(String name, Path source) throws IOException;
+
+  /**
+   * 内容を書き出しながらエントリを1件書き出す（index.html など、サイズが事前に分からないもの）。
+   *
+   * @param name 出力先でのパス（区切り文字は {@code /}）
+   * @param modified 更新日時
+   * @param body 内容を書き出す処理（渡された出力先を閉じないこと）
+   * @throws IOException 書き込みに失敗した場合
+   * @throws AssetCopyException name が危険/不正な場合
+   */
+  void putEntry(String name, Instant modified, EntryBody body) throws IOException;
+
+  /**
+   * 書き出し先に既にあるエントリのサイズを返す。
+   *
+   * @param name 出力先でのパス（区切り文字は {@code /}）
+   * @return サイズ（bytes）。存在しない、または読み戻せない実装の場合は -1
+   * @throws IOException 読み込みに失敗した場合
+   * @throws AssetCopyException name が危険/不正な場合
+   */
+  default long size(String name) throws IOException {
+    SafePaths.validateEntryName(name);
+    return -1;
+  }
+
+  /**
+   * 書き出し先に既にあるエントリの内容を読み出す。
+   *
+   * @param name 出力先でのパス（区切り文字は {@code /}）
+   * @return 内容（呼び出し側で閉じる）。存在しない、または読み戻せない実装の場合は null
+   * @throws IOException 読み込みに失敗した場合
+   * @throws AssetCopyException name が危険/不正な場合
+   */
+  default InputStream openExisting(String name) throws IOException {
+    SafePaths.validateEntryName(name);
+    return null;
+  }
+
+  /**
+   * 書き出し先に既にある、ディレクトリ配下のエントリ名を返す。
+   *
+   * @param dir ディレクトリ（区切り文字は {@code /}）
+   * @return dir 配下（サブディレクトリを含む）のエントリ名の昇順。存在しない、または読み戻せない実装の場合は空
+   * @throws IOException 読み込みに失敗した場合
+   * @throws AssetCopyException dir が危険/不正な場合
+   */
+  default List<String> list(String dir) throws IOException {
+    SafePaths.validateEntryName(dir);
+    return List.of();
+  }
+
+  /**
+   * 書き出し先に既にあるエントリを削除する。
+   *
+   * <p>書き出し（{@link #putFile} / {@link #putEntry}）と並行に呼び出さないこと。
+   *
+   * @param name 出力先でのパス（区切り文字は {@code /}）
+   * @return 削除した場合は true。存在しない、または読み戻せない実装の場合は false
+   * @throws IOException 削除に失敗した場合
+   * @throws AssetCopyException name が危険/不正な場合
+   */
+  default boolean delete(String name) throws IOException {
+    SafePaths.validateEntryName(name);
+    return false;
+  }
+
+  /**
+   * 書き出しを完了する。
+   *
+   * @throws IOException 書き込みに失敗した場合
+   */
+  void finish() throws IOException;
+
+  /** これまでに書き出したエントリ数を返す。 */
+  long entries();
+
+  /** これまでに書き出したバイト数（書き出し先に書き込んだ量）を返す。 */
+  long bytesWritten();
+
+  /** エントリの内容を書き出す処理。 */
+  @FunctionalInterface
+  interface EntryBody {
+
+    /**
+     * 内容を書き出す。
+     *
+     * @param out 出力先（閉じないこと）
+     * @throws IOException 書き込みに失敗した場合
+     */
+    void writeTo(OutputStream out) throws IOException;
+  }
+}
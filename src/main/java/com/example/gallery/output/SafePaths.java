@@ -1,19 +1,36 @@
 package com.example.gallery.output;
 
 import java.nio.file.Path;
+import java.util.List;
 
 /**
  * パス操作における事故（入力/出力の巻き込み削除、包含関係の混在など）を防ぐための検証ユーティリティ。
  *
  * <ul>
- *   <li>inputDir と outputDir の包含関係・同一パスの禁止
+ *   <li>inputDir（複数の場合はそのすべて）と outputDir の包含関係・同一パスの禁止
+ *   <li>アーカイブの出力先が inputDir（複数の場合はそのすべて）の配下にないことの確認
  *   <li>削除対象が許可ルート配下であることの確認
+ *   <li>出力先（{@link OutputSink}）のエントリ名が外へ出ないことの確認
  * </ul>
  */
 public final class SafePaths {
 
   private SafePaths() {}
 
+  /**
+   * すべての inputDir と outputDir が安全な関係であることを検証する。
+   *
+   * @param inputDirs 入力ディレクトリ（絶対パス・正規化済みを推奨）
+   * @param outputDir 出力ディレクトリ（絶対パス・正規化済みを推奨）
+   * @throws OutputPreparationException いずれかの inputDir との関係が危険/不正な場合
+   * @see #validateNoContainment(Path, Path)
+   */
+  public static void validateNoContainment(List<Path> inputDirs, Path outputDir) {
+    for (Path inputDir : inputDirs) {
+      validateNoContainment(inputDir, outputDir);
+    }
+  }
+
   /**
    * inputDir と outputDir が安全な関係であることを検証する。
    *
@@ -53,6 +70,57 @@ public final class SafePaths {
     }
   }
 
+  /**
+   * アーカイブの出力先がどの inputDir の配下にもないことを検証する。
+   *
+   * @param inputDirs 入力ディレクトリ（絶対パス・正規化済みを推奨）
+   * @param archive アーカイブの出力先（絶対パス・正規化済みを推奨）
+   * @throws OutputPreparationException 危険/不正な場合
+   * @see #validateArchiveOutsideInput(Path, Path)
+   */
+  public static void validateArchiveOutsideInput(List<Path> inputDirs, Path archive) {
+    for (Path inputDir : inputDirs) {
+      validateArchiveOutsideInput(inputDir, archive);
+    }
+  }
+
+  /**
+   * アーカイブの出力先が inputDir 配下にないことを検証する（次回の走査に出力が混ざるのを防ぐ）。
+   *
+   * @param inputDir 入力ディレクトリ（絶対パス・正規化済みを推奨）
+   * @param archive アーカイブの出力先（絶対パス・正規化済みを推奨）
+   * @throws OutputPreparationException 危険/不正な場合
+   */
+  public static void validateArchiveOutsideInput(Path inputDir, Path archive) {
+    if (archive.startsWith(inputDir)) {
+      throw new OutputPreparationException(
+          "アーカイブの出力先が inputDir 配下です（危険）: archive=" + archive + ", inputDir=" + inputDir);
+    }
+    if (archive.getNameCount() == 0) {
+      throw new OutputPreparationException("アーカイブの出力先が不正です: " + archive);
+    }
+  }
+
+  /**
+   * 出力先のエントリ名（出力先の直下からの相対パス）として安全であることを検証する（展開時・書き出し時に外へ出る名前を拒否する）。
+   *
+   * @param name エントリ名（区切り文字は {@code /}）
+   * @throws AssetCopyException 空・絶対パス・{@code .} / {@code ..} / 空の要素を含む場合
+   */
+  public static void validateEntryName(String name) {
+    if (name == null || name.isEmpty()) {
+      throw new AssetCopyException("出力先のパスが空です");
+    }
+    if (name.startsWith("/") || name.matches("^[A-Za-z]:.*")) {
+      throw new AssetCopyException("出力先のパスが不正です: " + name);
+    }
+    for (String part : name.split("/", -1)) {
+      if (part.isEmpty() || part.equals(".") || part.equals("..")) {
+        throw new AssetCopyException("出力先のパスが不正です: " + name);
+      }
+    }
+  }
+
   /**
    * 削除対象ディレクトリが、許可ルート配下であることを検証する。
    *
@@ -65,7 +133,7 @@ public final class SafePaths {
     Path absRoot = allowedRoot.toAbsolutePath().normalize();
     if (!absDir.startsWith(absRoot)) {
       throw new OutputPreparationException(
-          "--clean で削除しようとしたディレクトリが許可ルート配下ではありません: dir=" + absDir + ", root=" + absRoot);
+          "削除しようとしたディレクトリが許可ルート配下ではありません（--clean / --prune）: dir=" + absDir + ", root=" + absRoot);
     }
   }
 
@@ -0,0 +1,135 @@
+package com.example.gallery.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * tar（ustar）のヘッダ・パディング・終端ブロックを書き出す。
+ *
+ * <p>パスが 100 バイトを超える、ASCII 以外を含む、またはサイズが 8 GiB 以上の場合は、 PAX 拡張ヘッダ（{@code path} / {@code
+ * size}）を前に置く。
+ */
+final class TarHeaders {
+
+  static final int BLOCK = 512;
+
+  private static final int NAME_LENGTH = 100;
+  private static final long MAX_OCTAL_SIZE = 077777777777L;
+
+  private TarHeaders() {}
+
+  /**
+   * 通常ファイル1件分のヘッダを書き出す（必要に応じて PAX 拡張ヘッダも書き出す）。
+   *
+   * @param out 出力先
+   * @param name アーカイブ内のパス
+   * @param size ファイルサイズ
+   * @param modified 更新日時
+   * @throws IOException 書き込みに失敗した場合
+   */
+  static void write(OutputStream out, String name, long size, Instant modified)
+      throws IOException {
+    byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+    boolean longName = nameBytes.length > NAME_LENGTH || !isAscii(name);
+    boolean largeSize = size > MAX_OCTAL_SIZE;
+
+    String headerName = name;
+    if (longName || largeSize) {
+      StringBuilder records = new StringBuilder();
+      if (longName) {
+        records.append(paxRecord("path", name));
+        headerName = asciiFallback(name);
+      }
+      if (largeSize) {
+        records.append(paxRecord("size", Long.toString(size)));
+      }
+      byte[] data = records.toString().getBytes(StandardCharsets.UTF_8);
+      out.write(header(asciiFallback("PaxHeaders/" + name), data.length, modified, (byte) 'x'));
+      out.write(data);
+      pad(out, data.length);
+    }
+    out.write(header(headerName, largeSize ? 0 : size, modified, (byte) '0'));
+  }
+
+  /** データの末尾をブロック境界まで 0 で埋める。 */
+  static void pad(OutputStream out, long written) throws IOException {
+    int rest = (int) (written % BLOCK);
+    if (rest != 0) {
+      out.write(new byte[BLOCK - rest]);
+    }
+  }
+
+  /** アーカイブの終端（0 埋めのブロック2つ）を書き出す。 */
+  static void end(OutputStream out) throws IOException {
+    out.write(new byte[BLOCK * 2]);
+  }
+
+  private static byte[] header(String name, long size, Instant modified, byte type) {
+    byte[] h = new byte[BLOCK];
+    putString(h, 0, NAME_LENGTH, name);
+    putOctal(h, 100, 8, 0644);
+    putOctal(h, 108, 8, 0);
+    putOctal(h, 116, 8, 0);
+    putOctal(h, 124, 12, size);
+    putOctal(h, 136, 12, Math.max(0, modified.getEpochSecond()));
+    h[156] = type;
+    putString(h, 257, 6, "ustar");
+    putString(h, 263, 2, "00");
+
+    // チェックサムは、チェックサム欄を空白とみなした全バイトの和
+    for (int i = 148; i < 156; i++) {
+      h[i] = ' ';
+    }
+    long sum = 0;
+    for (byte b : h) {
+      sum += b & 0xFF;
+    }
+    putOctal(h, 148, 7, sum);
+    h[155] = ' ';
+    return h;
+  }
+
+  /** PAX レコード（{@code "<長さ> <キー>=<値>\n"}、長さは自身の桁数を含む）。 */
+  static String paxRecord(String key, String value) {
+    int body = key.length() + value.getBytes(StandardCharsets.UTF_8).length + 3;
+    int length = body + Integer.toString(body).length();
+    while (length != body + Integer.toString(length).length()) {
+      length = body + Integer.toString(length).length();
+    }
+    return length + " " + key + "=" + value + "\n";
+  }
+
+  /** ustar のヘッダ欄に入る ASCII の名前（PAX 非対応のツール向けの代替名）。 */
+  private static String asciiFallback(String name) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < name.length() && sb.length() < NAME_LENGTH; i++) {
+      char c = name.charAt(i);
+      sb.append(c < 0x80 ? c : '_');
+    }
+    return sb.toString();
+  }
+
+  private static boolean isAscii(String s) {
+    for (int i = 0; i < s.length(); i++) {
+      if (s.charAt(i) >= 0x80) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void putString(byte[] h, int offset, int length, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+    System.arraycopy(bytes, 0, h, offset, Math.min(bytes.length, length));
+  }
+
+  /** 8進数（先頭 0 埋め、末尾 NUL）で書き込む。 */
+  private static void putOctal(byte[] h, int offset, int length, long value) {
+    String octal = Long.toOctalString(value);
+    String padded = "0".repeat(Math.max(0, length - 1 - octal.length())) + octal;
+    putString(h, offset, length - 1, padded);
+    h[offset + length - 1] = 0;
+  }
+}
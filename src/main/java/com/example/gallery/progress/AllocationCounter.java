@@ -0,0 +1,29 @@
+package com.example.gallery.progress;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/** JVM 全体のヒープ割り当て量（終了したスレッドの分も含む累計）を取得する。 */
+final class AllocationCounter {
+
+  private AllocationCounter() {}
+
+  /**
+   * JVM 起動以降に全スレッドがヒープに割り当てたバイト数を返す。
+   *
+   * @return 累計バイト数（JVM が対応していない・無効にされている場合は -1）
+   */
+  static long totalAllocatedBytes() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean sun)
+        || !sun.isThreadAllocatedMemorySupported()
+        || !sun.isThreadAllocatedMemoryEnabled()) {
+      return -1;
+    }
+    try {
+      return sun.getTotalThreadAllocatedBytes();
+    } catch (UnsupportedOperationException e) {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package com.example.gallery.progress;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 1フェーズ（走査/コピー/HTML生成）分の進捗カウンタ。
+ *
+ * <p>ワーカー側のホットパスから呼ばれるため、カウンタはロックを取らない {@link LongAdder} で保持する。 集計（表示）は {@link
+ * ProgressReporter} のサンプラースレッドが一定間隔で行う。
+ */
+public final class PhaseProgress {
+
+  private final String name;
+  private final LongAdder items = new LongAdder();
+  private final LongAdder bytes = new LongAdder();
+  private volatile long totalItems = -1;
+  private volatile long totalBytes = -1;
+  private volatile long startNanos = System.nanoTime();
+
+  /**
+   * 進捗カウンタを作成する。
+   *
+   * @param name フェーズ名（表示用。例: "scan"）
+   */
+  public PhaseProgress(String name) {
+    this.name = name;
+  }
+
+  /** 表示用のフェーズ名を返す。 */
+  public String name() {
+    return name;
+  }
+
+  /**
+   * 総量を設定する（分かっている場合のみ。未設定の場合は割合・残り時間を表示しない）。
+   *
+   * @param totalItems 総件数
+   * @param totalBytes 総バイト数
+   */
+  public void setTotals(long totalItems, long totalBytes) {
+    this.totalItems = totalItems;
+    this.totalBytes = totalBytes;
+  }
+
+  /**
+   * 完了した件数・バイト数を加算する。
+   *
+   * @param itemCount 件数
+   * @param byteCount バイト数
+   */
+  public void add(long itemCount, long byteCount) {
+    items.add(itemCount);
+    if (byteCount != 0) {
+      bytes.add(byteCount);
+    }
+  }
+
+  /** 計測開始時刻をリセットする（フェーズ開始時に呼ぶ）。 */
+  void restartClock() {
+    startNanos = System.nanoTime();
+  }
+
+  /** 現在の値を取得する。 */
+  public Snapshot snapshot() {
+    return new Snapshot(
+        name, items.sum(), bytes.sum(), totalItems, totalBytes, System.nanoTime() - startNanos);
+  }
+
+  /**
+   * ある時点の進捗。
+   *
+   * @param name フェーズ名
+   * @param items 完了件数
+   * @param bytes 完了バイト数
+   * @param totalItems 総件数（不明な場合は負数）
+   * @param totalBytes 総バイト数（不明な場合は負数）
+   * @param elapsedNanos 経過時間
+   */
+  public record Snapshot(
+      String name, long items, long bytes, long totalItems, long totalBytes, long elapsedNanos) {
+
+    /** 件数ベースの進捗率（0〜100）。総件数が不明な場合は負数。 */
+    public double percent() {
+      if (totalItems <= 0) {
+        return totalItems == 0 ? 100 : -1;
+      }
+      return Math.min(100.0, items * 100.0 / totalItems);
+    }
+
+    /** 残り時間の見込み（秒）。見積もれない場合は負数。 */
+    public long etaSeconds() {
+      double elapsed = elapsedNanos / 1_000_000_000.0;
+      if (elapsed <= 0) {
+        return -1;
+      }
+      // バイト数が分かる場合はバイト数で、そうでなければ件数で見積もる
+      if (totalBytes > 0 && bytes > 0) {
+        return (long) Math.ceil((totalBytes - bytes) / (bytes / elapsed));
+      }
+      if (totalItems > 0 && items > 0) {
+        return (long) Math.ceil((totalItems - items) / (items / elapsed));
+      }
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,13 @@
+package com.example.gallery.progress;
+
+/**
+ * 終了したフェーズ1つ分の計測結果（{@link ProgressReporter#timings()}）。
+ *
+ * @param name フェーズ名
+ * @param items 完了件数
+ * @param bytes 完了バイト数
+ * @param elapsedNanos 経過時間
+ * @param allocatedBytes フェーズ中に全スレッドがヒープに割り当てたバイト数（計測できない場合は負数）
+ */
+public record PhaseTiming(
+    String name, long items, long bytes, long elapsedNanos, long allocatedBytes) {}
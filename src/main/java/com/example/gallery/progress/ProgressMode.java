@@ -0,0 +1,53 @@
+package com.example.gallery.progress;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/** 進捗表示のモードを表す。 */
+public enum ProgressMode {
+  /** 端末（TTY）なら {@link #TTY}、それ以外は {@link #PLAIN}。 */
+  AUTO("auto"),
+
+  /** 1行を上書きしながら短い間隔で表示する。 */
+  TTY("tty"),
+
+  /** CI ログ向けに、一定間隔で1行ずつ追記する。 */
+  PLAIN("plain"),
+
+  /** 進捗を表示しない。 */
+  NONE("none");
+
+  private final String id;
+
+  ProgressMode(String id) {
+    this.id = id;
+  }
+
+  /** コマンドライン上の識別子（例: plain）を返す。 */
+  public String id() {
+    return id;
+  }
+
+  /**
+   * 文字列から {@link ProgressMode} を解決する。
+   *
+   * @param value 指定値（null/空は不可）
+   * @return 解決した {@link ProgressMode}
+   * @throws IllegalArgumentException 不正な値の場合
+   */
+  public static ProgressMode from(String value) {
+    String normalized = value.trim().toLowerCase(Locale.ROOT);
+    return Arrays.stream(values())
+        .filter(m -> m.id.equals(normalized))
+        .findFirst()
+        .orElseThrow(() -> new IllegalArgumentException("不正なprogressです: " + value));
+  }
+
+  /** AUTO を実際のモードへ解決する。 */
+  public ProgressMode resolve() {
+    if (this != AUTO) {
+      return this;
+    }
+    return System.console() != null ? TTY : PLAIN;
+  }
+}
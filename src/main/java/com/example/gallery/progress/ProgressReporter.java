@@ -0,0 +1,190 @@
+package com.example.gallery.progress;
+
+import com.example.gallery.jfr.BuildPhaseEvent;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 実行中フェーズの進捗を一定間隔で表示する。
+ *
+ * <p>表示は専用のサンプラースレッド1本が {@link PhaseProgress} の値を読み出して行うため、 ワーカー側は {@link
+ * PhaseProgress#add(long, long)} でカウンタを加算するだけでよい。
+ *
+ * <ul>
+ *   <li>TTY：{@value #TTY_INTERVAL_MS} ms ごとに1行を上書き表示
+ *   <li>PLAIN：{@value #PLAIN_INTERVAL_MS} ms ごとに1行ずつ追記（CI ログ向け）
+ *   <li>NONE：表示しない（スレッドも起動しない）
+ * </ul>
+ *
+ * <p>表示モードによらず、終了したフェーズの経過時間・件数・割り当てバイト数を {@link #timings()} に記録し、 JFR
+ * のイベント（{@link BuildPhaseEvent}）としても記録する。
+ */
+public final class ProgressReporter implements AutoCloseable {
+
+  static final long TTY_INTERVAL_MS = 500;
+  static final long PLAIN_INTERVAL_MS = 10_000;
+
+  private final ProgressMode mode;
+  private final PrintStream out;
+  private final ScheduledExecutorService sampler;
+
+  private final List<PhaseTiming> timings = new ArrayList<>();
+
+  private volatile PhaseProgress current;
+  private BuildPhaseEvent phaseEvent;
+  private long allocatedAtBegin;
+  private int lastLineLength;
+
+  private ProgressReporter(ProgressMode mode, PrintStream out) {
+    this.mode = mode;
+    this.out = out;
+    if (mode == ProgressMode.NONE) {
+      this.sampler = null;
+      return;
+    }
+    this.sampler =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread t = new Thread(r, "gallery-progress");
+              t.setDaemon(true);
+              return t;
+            });
+    long interval = mode == ProgressMode.TTY ? TTY_INTERVAL_MS : PLAIN_INTERVAL_MS;
+    sampler.scheduleAtFixedRate(this::sample, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * 進捗表示を開始する。
+   *
+   * @param mode 表示モード（AUTO は端末かどうかで解決する）
+   * @param out 出力先
+   * @return レポーター
+   */
+  public static ProgressReporter start(ProgressMode mode, PrintStream out) {
+    Objects.requireNonNull(mode, "mode");
+    Objects.requireNonNull(out, "out");
+    return new ProgressReporter(mode.resolve(), out);
+  }
+
+  /**
+   * フェーズの表示を開始する（経過時間の計測もここから始める）。
+   *
+   * @param phase 進捗カウンタ
+   */
+  public void begin(PhaseProgress phase) {
+    allocatedAtBegin = AllocationCounter.totalAllocatedBytes();
+    phaseEvent = new BuildPhaseEvent();
+    phaseEvent.begin();
+    phase.restartClock();
+    current = phase;
+  }
+
+  /** 実行中フェーズの表示を終了し、最終値を1行表示する。 */
+  public synchronized void end() {
+    PhaseProgress phase = current;
+    current = null;
+    if (phase == null) {
+      return;
+    }
+    PhaseProgress.Snapshot s = phase.snapshot();
+    long allocatedAtEnd = AllocationCounter.totalAllocatedBytes();
+    long allocated =
+        allocatedAtBegin >= 0 && allocatedAtEnd >= 0 ? allocatedAtEnd - allocatedAtBegin : -1;
+    timings.add(new PhaseTiming(s.name(), s.items(), s.bytes(), s.elapsedNanos(), allocated));
+    phaseEvent.finish(s.name(), s.items(), s.bytes());
+    if (mode == ProgressMode.NONE) {
+      return;
+    }
+    print(format(s));
+    if (mode == ProgressMode.TTY) {
+      out.println();
+      lastLineLength = 0;
+    }
+    out.flush();
+  }
+
+  /** これまでに終了したフェーズの計測結果を、終了した順に返す。 */
+  public synchronized List<PhaseTiming> timings() {
+    return List.copyOf(timings);
+  }
+
+  @Override
+  public void close() {
+    end();
+    if (sampler != null) {
+      sampler.shutdownNow();
+    }
+  }
+
+  private synchronized void sample() {
+    PhaseProgress phase = current;
+    if (phase == null) {
+      return;
+    }
+    print(format(phase.snapshot()));
+    out.flush();
+  }
+
+  private void print(String line) {
+    if (mode == ProgressMode.TTY) {
+      // 前回の行より短い場合に残りを消すため空白で埋める
+      int pad = Math.max(0, lastLineLength - line.length());
+      out.print("\r" + line + " ".repeat(pad));
+      lastLineLength = line.length();
+    } else {
+      out.println(line);
+    }
+  }
+
+  /**
+   * 進捗1行分の文字列を組み立てる。
+   *
+   * <p>例：{@code [copy] 1,234/5,000 件 (24.7%) 1.2 GB/4.8 GB 85.3 MB/s 312 件/s 残り 0:42}
+   */
+  static String format(PhaseProgress.Snapshot s) {
+    double elapsed = Math.max(s.elapsedNanos(), 1) / 1_000_000_000.0;
+    StringBuilder sb = new StringBuilder();
+    sb.append('[').append(s.name()).append("] ");
+    sb.append(String.format(Locale.ROOT, "%,d", s.items()));
+    if (s.totalItems() >= 0) {
+      sb.append(String.format(Locale.ROOT, "/%,d 件 (%.1f%%)", s.totalItems(), s.percent()));
+    } else {
+      sb.append(" 件");
+    }
+    if (s.bytes() > 0 || s.totalBytes() > 0) {
+      sb.append(' ').append(formatBytes(s.bytes()));
+      if (s.totalBytes() >= 0) {
+        sb.append('/').append(formatBytes(s.totalBytes()));
+      }
+      sb.append(' ').append(formatBytes((long) (s.bytes() / elapsed))).append("/s");
+    }
+    sb.append(String.format(Locale.ROOT, " %,.0f 件/s", s.items() / elapsed));
+
+    long eta = s.etaSeconds();
+    if (eta >= 0) {
+      sb.append(String.format(Locale.ROOT, " 残り %d:%02d", eta / 60, eta % 60));
+    }
+    return sb.toString();
+  }
+
+  /** バイト数を読みやすい単位（B/KB/MB/GB/TB、1024 基準）で表す。 */
+  public static String formatBytes(long bytes) {
+    if (bytes < 1024) {
+      return bytes + " B";
+    }
+    String units = "KMGTPE";
+    double v = bytes;
+    int u = -1;
+    while (v >= 1024 && u < units.length() - 1) {
+      v /= 1024;
+      u++;
+    }
+    return String.format(Locale.ROOT, "%.1f %sB", v, units.charAt(u));
+  }
+}
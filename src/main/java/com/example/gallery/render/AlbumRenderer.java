@@ -0,0 +1,477 @@
+package com.example.gallery.render;
+
+import com.example.gallery.domain.MediaItem;
+import com.example.gallery.domain.MediaType;
+import com.example.gallery.output.FileSystemSink;
+import com.example.gallery.output.OutputPaths;
+import com.example.gallery.output.OutputSink;
+import com.example.gallery.progress.PhaseProgress;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * フォルダ単位のアルバムページを生成する（layout: albums）。
+ *
+ * <ul>
+ *   <li>relativePath の親ディレクトリごとにメディアをまとめ、{@code albums/<フォルダ>/index.html} を生成する
+ *   <li>{@code index.html} にはアルバム一覧（カバー画像・件数）と、inputDir 直下のメディアを並べる
+ *   <li>アルバムページは並列に生成し、{@link OutputSink} へ書き出す（{@link FileSystemSink} は一時ファイルへ書いてから置き換えるため、途中で失敗しても前回のページが残る）
+ *   <li>各アルバムページの先頭に内容のフィンガープリントを埋め込み、変化のないアルバムは再生成しない
+ *   <li>存在しなくなったフォルダのアルバムページ（フィンガープリント付きのもの）は削除する
+ * </ul>
+ */
+public final class AlbumRenderer {
+
+  private static final String FINGERPRINT_PREFIX = "<!-- gallery-album: ";
+  private static final String FINGERPRINT_SUFFIX = " -->";
+  private static final String PAGE_NAME = "index.html";
+  private static final String ALBUMS_NAME = "albums";
+
+  private AlbumRenderer() {}
+
+  /**
+   * アルバム生成結果。
+   *
+   * @param albums アルバム数（inputDir 直下は含まない）
+   * @param rendered 生成したアルバムページ数
+   * @param skipped 変化がないため生成を省略したアルバムページ数
+   * @param removed 存在しなくなったフォルダのため削除したアルバムページ数
+   */
+  public record Result(int albums, int rendered, int skipped, int removed) {}
+
+  /**
+   * index.html とアルバムページ群を生成する。
+   *
+   * @param templateHtml テンプレHTML
+   * @param title タイトル
+   * @param items メディア一覧（assets配下にコピー済みであること）
+   * @param out 出力先パス群
+   * @return 生成結果
+   * @throws IOException 書き込みに失敗した場合
+   */
+  public static Result renderAll(
+      String templateHtml, String title, List<MediaItem> items, OutputPaths out)
+      throws IOException {
+    return renderAll(templateHtml, title, items, out, new PhaseProgress("render"));
+  }
+
+  /**
+   * 進捗を記録しながら、index.html とアルバムページ群を生成する。
+   *
+   * <p>進捗はカード1件ごとに加算する（変化がなく再生成を省略したアルバムは、その件数をまとめて加算する）。
+   *
+   * @param templateHtml テンプレHTML
+   * @param title タイトル
+   * @param items メディア一覧（assets配下にコピー済みであること）
+   * @param out 出力先パス群
+   * @param progress 進捗カウンタ
+   * @return 生成結果
+   * @throws IOException 書き込みに失敗した場合
+   */
+  public static Result renderAll(
+      String templateHtml,
+      String title,
+      List<MediaItem> items,
+      OutputPaths out,
+      PhaseProgress progress)
+      throws IOException {
+    return renderAll(templateHtml, title, items, out, progress, CardOptions.DEFAULT);
+  }
+
+  /**
+   * カードの設定を指定して、index.html とアルバムページ群を生成する。
+   *
+   * <p>options はアルバムのフィンガープリントに含めるため、変更すると全アルバムを再生成する。
+   *
+   * @param templateHtml テンプレHTML
+   * @param title タイトル
+   * @param items メディア一覧（assets配下にコピー済みであること）
+   * @param out 出力先パス群
+   * @param progress 進捗カウンタ
+   * @param options カードの設定
+   * @return 生成結果
+   * @throws IOException 書き込みに失敗した場合
+   */
+  public static Result renderAll(
+      String templateHtml,
+      String title,
+      List<MediaItem> items,
+      OutputPaths out,
+      PhaseProgress progress,
+      CardOptions options)
+      throws IOException {
+    Objects.requireNonNull(out, "out");
+    return renderAll(
+        templateHtml,
+        title,
+        items,
+        new FileSystemSink(out.outputDir()),
+        out.outputDir().relativize(out.indexHtmlPath()).toString().replace('\\', '/'),
+        out.outputDir().relativize(out.albumsDir()).toString().replace('\\', '/'),
+        progress,
+        options);
+  }
+
+  /**
+   * 出力先の sink へ、{@code index.html} と {@code albums/} 配下のアルバムページ群を生成する。
+   *
+   * <p>再生成の要否は、既存のページの先頭行を {@link OutputSink#openExisting(String)} で読み戻して判定する（読み戻せない sink
+   * では常に生成する）。 アルバムページは並列に書き出すため、sink は複数のスレッドから呼び出してよい実装（{@link FileSystemSink} /
+   * {@link com.example.gallery.output.InMemorySink}）を渡す。
+   * その他の動作は {@link #renderAll(String, String, List, OutputPaths, PhaseProgress, CardOptions)} と同じ。
+   *
+   * @param templateHtml テンプレHTML
+   * @param title タイトル
+   * @param items メディア一覧（assets配下にコピー済みであること）
+   * @param sink 出力先（dist、またはメモリ上）
+   * @param progress 進捗カウンタ
+   * @param options カードの設定
+   * @return 生成結果
+   * @throws IOException 書き込みに失敗した場合
+   */
+  public static Result renderAll(
+      String templateHtml,
+      String title,
+      List<MediaItem> items,
+      OutputSink sink,
+      PhaseProgress progress,
+      CardOptions options)
+      throws IOException {
+    return renderAll(
+        templateHtml, title, items, sink, PAGE_NAME, ALBUMS_NAME, progress, options);
+  }
+
+  private static Result renderAll(
+      String templateHtml,
+      String title,
+      List<MediaItem> items,
+      OutputSink sink,
+      String indexName,
+      String albumsName,
+      PhaseProgress progress,
+      CardOptions options)
+      throws IOException {
+    Objects.requireNonNull(templateHtml, "templateHtml");
+    Objects.requireNonNull(items, "items");
+    Objects.requireNonNull(sink, "sink");
+    Objects.requireNonNull(progress, "progress");
+    Objects.requireNonNull(options, "options");
+
+    String generatedAt = ZonedDateTime.now().format(HtmlGalleryRenderer.DT);
+    Map<String, List<MediaItem>> albums = groupByFolder(items);
+    List<MediaItem> rootItems = albums.getOrDefault("", List.of());
+    albums.remove("");
+
+    progress.setTotals(items.size(), -1);
+    writeIndex(
+        templateHtml,
+        title,
+        generatedAt,
+        albums,
+        rootItems,
+        sink,
+        indexName,
+        progress,
+        options);
+
+    int removed = removeStaleAlbums(sink, albumsName, albums.keySet());
+    if (albums.isEmpty()) {
+      return new Result(0, 0, 0, removed);
+    }
+
+    int threads = Math.min(albums.size(), Runtime.getRuntime().availableProcessors());
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Boolean>> futures = new ArrayList<>();
+      for (Map.Entry<String, List<MediaItem>> album : albums.entrySet()) {
+        futures.add(
+            pool.submit(
+                () ->
+                    writeAlbum(
+                        templateHtml,
+                        title,
+                        generatedAt,
+                        album.getKey(),
+                        album.getValue(),
+                        sink,
+                        albumsName,
+                        progress,
+                        options)));
+      }
+
+      int rendered = 0;
+      for (Future<Boolean> f : futures) {
+        if (await(f)) {
+          rendered++;
+        }
+      }
+      return new Result(albums.size(), rendered, albums.size() - rendered, removed);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * relativePath の親ディレクトリ（区切りは {@code '/'}、直下は空文字）ごとにまとめる。
+   *
+   * <p>アルバム内の並びは items の順序を維持し、アルバム自体はフォルダ名の昇順（大小無視）に並べる。
+   */
+  static Map<String, List<MediaItem>> groupByFolder(List<MediaItem> items) {
+    Map<String, List<MediaItem>> albums =
+        new TreeMap<>(
+            Comparator.comparing((String s) -> s, String.CASE_INSENSITIVE_ORDER)
+                .thenComparing(Comparator.naturalOrder()));
+    for (MediaItem item : items) {
+      albums.computeIfAbsent(folderOf(item), k -> new ArrayList<>()).add(item);
+    }
+    return albums;
+  }
+
+  private static String folderOf(MediaItem item) {
+    Path parent = item.relativePath().getParent();
+    return parent == null ? "" : parent.toString().replace('\\', '/');
+  }
+
+  private static void writeIndex(
+      String templateHtml,
+      String title,
+      String generatedAt,
+      Map<String, List<MediaItem>> albums,
+      List<MediaItem> rootItems,
+      OutputSink sink,
+      String indexName,
+      PhaseProgress progress,
+      CardOptions options)
+      throws IOException {
+    String[] parts = split(templateHtml, title, generatedAt, "");
+
+    sink.putEntry(
+        indexName,
+        Instant.now(),
+        out -> {
+          Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+          w.write(parts[0]);
+          if (albums.isEmpty() && rootItems.isEmpty()) {
+            w.write(HtmlGalleryRenderer.EMPTY_MESSAGE);
+          }
+          for (Map.Entry<String, List<MediaItem>> album : albums.entrySet()) {
+            appendAlbumCard(w, album.getKey(), album.getValue(), options);
+          }
+          HtmlGalleryRenderer.appendCards(w, rootItems, "", progress, options);
+          w.write(parts[1]);
+          w.flush();
+        });
+  }
+
+  private static void appendAlbumCard(
+      Appendable out, String folder, List<MediaItem> items, CardOptions options)
+      throws IOException {
+    MediaItem cover =
+        items.stream().filter(i -> i.type() == MediaType.IMAGE).findFirst().orElse(items.get(0));
+    String coverRel = options.assetPath(cover);
+    String coverQuery = options.assetQuery(cover);
+
+    out.append("<figure>\n<a href=\"albums/");
+    HtmlEscaper.appendUrlPath(out, folder);
+    out.append("/index.html\">");
+    if (cover.type() == MediaType.VIDEO) {
+      out.append("<video muted preload=\"metadata\" src=\"assets/");
+      HtmlEscaper.appendUrlPath(out, coverRel);
+      out.append(coverQuery).append("\"></video>");
+    } else {
+      out.append("<img loading=\"lazy\" src=\"assets/");
+      HtmlEscaper.appendUrlPath(out, coverRel);
+      out.append(coverQuery).append("\" alt=\"\" />");
+    }
+    out.append("</a>\n<figcaption>");
+    HtmlEscaper.appendText(out, folder);
+    out.append(" (").append(String.valueOf(items.size())).append(")</figcaption>\n</figure>\n");
+  }
+
+  /**
+   * アルバムページを1件生成する。
+   *
+   * @return 生成した場合は true、内容に変化がなく省略した場合は false
+   */
+  private static boolean writeAlbum(
+      String templateHtml,
+      String title,
+      String generatedAt,
+      String folder,
+      List<MediaItem> items,
+      OutputSink sink,
+      String albumsName,
+      PhaseProgress progress,
+      CardOptions options)
+      throws IOException {
+    // 出力先でのパスを検証するための仮の基準ディレクトリ（実際には書き込まない）
+    Path albumsDir = Path.of(albumsName).toAbsolutePath();
+    Path dir = albumsDir.resolve(folder).normalize();
+    if (!dir.startsWith(albumsDir) || dir.equals(albumsDir)) {
+      throw new IOException("アルバムの出力先が albums 配下ではありません: " + dir);
+    }
+    String pageName = albumsName + "/" + folder + "/" + PAGE_NAME;
+
+    // albums/<folder>/index.html から dist 直下へ戻る相対パス
+    String up = "../".repeat(Path.of(folder).getNameCount() + 1);
+    String pageTitle = title + " - " + folder;
+
+    String marker =
+        FINGERPRINT_PREFIX
+            + fingerprint(templateHtml, pageTitle, items, options)
+            + FINGERPRINT_SUFFIX;
+    if (marker.equals(readFirstLine(sink, pageName))) {
+      progress.add(items.size(), 0);
+      return false;
+    }
+
+    // 一時ファイルに書いてから置き換えるため、途中で失敗しても先頭のマーカーと本文が食い違ったページは残らない
+    String[] parts = split(templateHtml, pageTitle, generatedAt, up);
+    sink.putEntry(
+        pageName,
+        Instant.now(),
+        out -> {
+          Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+          w.write(marker);
+          w.write('\n');
+          w.write(parts[0]);
+          w.write("<p class=\"meta\" style=\"grid-column: 1 / -1;\"><a href=\"");
+          w.write(HtmlGalleryRenderer.escapeHtmlAttr(up + "index.html"));
+          w.write("\">← アルバム一覧</a></p>\n");
+          HtmlGalleryRenderer.appendCards(w, items, up, progress, options);
+          w.write(parts[1]);
+          w.flush();
+        });
+    return true;
+  }
+
+  /**
+   * 存在しなくなったフォルダのアルバムページを削除する。
+   *
+   * <p>既存のページは {@link OutputSink#list(String)} で列挙し、先頭にフィンガープリントの行があるページ（本クラスが生成したもの）だけを
+   * {@link OutputSink#delete(String)} で削除する。それ以外のファイルには触れない。 {@link FileSystemSink}
+   * は削除して空になったディレクトリも削除する。
+   *
+   * @return 削除したアルバムページ数
+   */
+  private static int removeStaleAlbums(OutputSink sink, String albumsName, Set<String> folders)
+      throws IOException {
+    String prefix = albumsName + "/";
+    String suffix = "/" + PAGE_NAME;
+    int removed = 0;
+    for (String name : sink.list(albumsName)) {
+      if (!name.endsWith(suffix) || name.length() <= prefix.length() + suffix.length()) {
+        continue;
+      }
+      String folder = name.substring(prefix.length(), name.length() - suffix.length());
+      if (!folders.contains(folder) && isGeneratedPage(sink, name) && sink.delete(name)) {
+        removed++;
+      }
+    }
+    return removed;
+  }
+
+  private static boolean isGeneratedPage(OutputSink sink, String name) throws IOException {
+    String first = readFirstLine(sink, name);
+    return first != null && first.startsWith(FINGERPRINT_PREFIX);
+  }
+
+  /**
+   * テンプレを {@code {{ITEMS}}} の前後に分割し、タイトル・生成日時と、ページから outputDir 直下への相対パス（{@code
+   * {{ROOT}}}）を差し込む。
+   */
+  private static String[] split(
+      String templateHtml, String title, String generatedAt, String rootPrefix) {
+    String html =
+        templateHtml
+            .replace("{{TITLE}}", HtmlGalleryRenderer.escapeHtml(title))
+            .replace("{{GENERATED_AT}}", HtmlGalleryRenderer.escapeHtml(generatedAt))
+            .replace("{{ROOT}}", rootPrefix);
+    int idx = html.indexOf("{{ITEMS}}");
+    if (idx < 0) {
+      return new String[] {html, ""};
+    }
+    return new String[] {html.substring(0, idx), html.substring(idx + "{{ITEMS}}".length())};
+  }
+
+  /** テンプレ・タイトル・カードの設定・各メディアの（相対パス, サイズ, 更新日時）から算出したフィンガープリント。 */
+  private static String fingerprint(
+      String templateHtml, String pageTitle, List<MediaItem> items, CardOptions options) {
+    MessageDigest md;
+    try {
+      md = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    md.update(templateHtml.getBytes(StandardCharsets.UTF_8));
+    md.update((byte) 0);
+    md.update((byte) HtmlGalleryRenderer.CARD_FORMAT_VERSION);
+    md.update(pageTitle.getBytes(StandardCharsets.UTF_8));
+    md.update((byte) 0);
+    md.update(options.cacheKey().getBytes(StandardCharsets.UTF_8));
+    for (MediaItem item : items) {
+      String line =
+          item.relativePath().toString().replace('\\', '/')
+              + '\0'
+              + item.type()
+              + '\0'
+              + item.sizeBytes()
+              + '\0'
+              + item.lastModifiedAt().toEpochMilli()
+              + '\n';
+      md.update(line.getBytes(StandardCharsets.UTF_8));
+    }
+    return HexFormat.of().formatHex(md.digest(), 0, 8);
+  }
+
+  private static String readFirstLine(OutputSink sink, String name) throws IOException {
+    InputStream in = sink.openExisting(name);
+    if (in == null) {
+      return null;
+    }
+    try (BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+      return r.readLine();
+    }
+  }
+
+  private static boolean await(Future<Boolean> f) throws IOException {
+    try {
+      return f.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("アルバム生成が中断されました", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException io) {
+        throw io;
+      }
+      if (cause instanceof RuntimeException re) {
+        throw re;
+      }
+      throw new IOException(cause);
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package com.example.gallery.render;
+
+import com.example.gallery.domain.AssetFingerprint;
+import com.example.gallery.domain.MediaItem;
+import com.example.gallery.image.DownscaleSpec;
+import com.example.gallery.image.VariantIndex;
+import com.example.gallery.image.VariantSpec;
+import java.util.Objects;
+
+/**
+ * カード（figure 要素）の出力に関する設定。
+ *
+ * <p>カードの HTML が変わる設定は {@link #cacheKey()} に含め、カードのキャッシュとアルバムのフィンガープリントに反映する。
+ * 縮小版の有無は画像ごとに元画像（サイズ・更新日時）と variants・downscale から決まるため、キャッシュのキーは変えない。
+ *
+ * @param fingerprint assets の URL にフィンガープリントを付ける方式
+ * @param variants 縮小版の構成
+ * @param variantIndex 生成済みの縮小版の一覧（縮小版を使わない場合は null）
+ * @param downscale コピー時の縮小・再エンコードの条件（縮小版の元になる assets の画像の幅が変わる）
+ * @param duplicates 似た画像のグループをまとめる対応表
+ */
+public record CardOptions(
+    AssetFingerprint fingerprint,
+    VariantSpec variants,
+    VariantIndex variantIndex,
+    DownscaleSpec downscale,
+    DuplicateCollapse duplicates) {
+
+  /** 既定値（フィンガープリント・縮小版なし）。 */
+  public static final CardOptions DEFAULT = new CardOptions(AssetFingerprint.NONE);
+
+  public CardOptions {
+    Objects.requireNonNull(fingerprint, "fingerprint");
+    Objects.requireNonNull(variants, "variants");
+    Objects.requireNonNull(downscale, "downscale");
+    Objects.requireNonNull(duplicates, "duplicates");
+  }
+
+  /**
+   * 似た画像をまとめない設定を作る。
+   *
+   * @param fingerprint assets の URL にフィンガープリントを付ける方式
+   * @param variants 縮小版の構成
+   * @param variantIndex 生成済みの縮小版の一覧（縮小版を使わない場合は null）
+   * @param downscale コピー時の縮小・再エンコードの条件
+   */
+  public CardOptions(
+      AssetFingerprint fingerprint,
+      VariantSpec variants,
+      VariantIndex variantIndex,
+      DownscaleSpec downscale) {
+    this(fingerprint, variants, variantIndex, downscale, DuplicateCollapse.NONE);
+  }
+
+  /**
+   * コピー時の縮小・再エンコードを行わない設定を作る。
+   *
+   * @param fingerprint assets の URL にフィンガープリントを付ける方式
+   * @param variants 縮小版の構成
+   * @param variantIndex 生成済みの縮小版の一覧（縮小版を使わない場合は null）
+   */
+  public CardOptions(
+      AssetFingerprint fingerprint, VariantSpec variants, VariantIndex variantIndex) {
+    this(fingerprint, variants, variantIndex, DownscaleSpec.NONE);
+  }
+
+  /**
+   * 縮小版を使わない設定を作る。
+   *
+   * @param fingerprint assets の URL にフィンガープリントを付ける方式
+   */
+  public CardOptions(AssetFingerprint fingerprint) {
+    this(fingerprint, VariantSpec.NONE, null);
+  }
+
+  /** 縮小版（srcset）を出力する場合は true。 */
+  boolean srcset() {
+    return variantIndex != null && variants.srcset();
+  }
+
+  /** プレースホルダを出力する場合は true。 */
+  boolean placeholders() {
+    return variantIndex != null && variants.placeholders();
+  }
+
+  /** assets 内のファイルの相対パス（コピー時の縮小・再エンコードの条件を含めたフィンガープリント付き）を返す。 */
+  String assetPath(MediaItem item) {
+    return fingerprint.assetPath(item, downscale.encodingKey(item));
+  }
+
+  /** assets 内のファイルの URL に付けるクエリ文字列（コピー時の縮小・再エンコードの条件を含む）を返す。 */
+  String assetQuery(MediaItem item) {
+    return fingerprint.query(item, downscale.encodingKey(item));
+  }
+
+  /** キャッシュの無効化に使う、設定を表す文字列。 */
+  String cacheKey() {
+    String key = "fingerprint=" + fingerprint.id() + ";";
+    if (fingerprint != AssetFingerprint.NONE && downscale.enabled()) {
+      // 縮小・再エンコードの条件は assets の URL に含まれる
+      key += downscale.cacheKey() + ";";
+    }
+    if (!duplicates.isEmpty()) {
+      key += duplicates.cacheKey() + ";";
+    }
+    if (variantIndex == null || !variants.enabled()) {
+      return key;
+    }
+    return key + variants.cacheKey() + (downscale.enabled() ? ";" + downscale.cacheKey() : "");
+  }
+}
@@ -0,0 +1,91 @@
+package com.example.gallery.render;
+
+import com.example.gallery.domain.MediaItem;
+import com.example.gallery.image.DuplicateGroup;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+/**
+ * 似た画像のグループをギャラリー上で1枚にまとめるための対応表。
+ *
+ * <p>グループの代表だけをカードとして表示し、それ以外の画像は代表のカードの中に折りたたんだリンクとして出力する。
+ */
+public final class DuplicateCollapse {
+
+  /** まとめない。 */
+  public static final DuplicateCollapse NONE = new DuplicateCollapse(Map.of(), Set.of(), "");
+
+  private final Map<String, List<MediaItem>> othersByRepresentative;
+  private final Set<String> hidden;
+  private final String cacheKey;
+
+  private DuplicateCollapse(
+      Map<String, List<MediaItem>> othersByRepresentative, Set<String> hidden, String cacheKey) {
+    this.othersByRepresentative = othersByRepresentative;
+    this.hidden = hidden;
+    this.cacheKey = cacheKey;
+  }
+
+  /**
+   * グループの一覧から作る。
+   *
+   * @param groups 似た画像のグループ
+   * @return 対応表
+   */
+  public static DuplicateCollapse of(List<DuplicateGroup> groups) {
+    Objects.requireNonNull(groups, "groups");
+    if (groups.isEmpty()) {
+      return NONE;
+    }
+    Map<String, List<MediaItem>> others = new HashMap<>();
+    Set<String> hidden = new HashSet<>();
+    // グループの構成が変わったらカードのキャッシュを無効にする（別の画像の追加で代表のカードが変わるため）
+    CRC32C crc = new CRC32C();
+    for (DuplicateGroup group : groups) {
+      others.put(keyOf(group.representative()), group.others());
+      for (MediaItem item : group.items()) {
+        String key = keyOf(item);
+        if (item != group.representative()) {
+          hidden.add(key);
+        }
+        crc.update((key + "\n").getBytes(StandardCharsets.UTF_8));
+      }
+      crc.update('\n');
+    }
+    return new DuplicateCollapse(
+        others, hidden, "duplicates=" + groups.size() + ":" + Long.toHexString(crc.getValue()));
+  }
+
+  /** まとめるグループがない場合は true。 */
+  public boolean isEmpty() {
+    return hidden.isEmpty();
+  }
+
+  /** 代表のカードの中にまとめるため、カードを出力しない画像なら true。 */
+  boolean hidden(MediaItem item) {
+    return !hidden.isEmpty() && hidden.contains(keyOf(item));
+  }
+
+  /** 代表のカードにまとめる画像（代表でない場合は空）。 */
+  List<MediaItem> othersOf(MediaItem item) {
+    if (othersByRepresentative.isEmpty()) {
+      return List.of();
+    }
+    return othersByRepresentative.getOrDefault(keyOf(item), List.of());
+  }
+
+  /** キャッシュの無効化に使う、グループの構成を表す文字列（まとめない場合は空文字）。 */
+  String cacheKey() {
+    return cacheKey;
+  }
+
+  private static String keyOf(MediaItem item) {
+    return item.relativePath().normalize().toString().replace('\\', '/');
+  }
+}
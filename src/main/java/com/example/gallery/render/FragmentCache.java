@@ -0,0 +1,383 @@
+package com.example.gallery.render;
+
+import com.example.gallery.domain.MediaItem;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * メディア1件分のカード（figure 要素）の HTML を保存しておくキャッシュ（ビルドの記録のディレクトリの .gallery-fragments）。
+ *
+ * <p>キーは（relativePath, 種別, サイズ, 更新日時）と、テンプレ・カード形式から算出したハッシュ。 前回の生成から変わっていないメディアはエスケープ等を行わず保存済みの
+ * HTML をそのまま書き出し、追加・変更されたメディアだけを組み立て直す。
+ *
+ * <p>開く際は前回のファイルを先頭から読み、各カードの位置（オフセットと長さ）の索引だけをメモリ上に作る。カードの HTML
+ * は必要になった時点でファイルから読み出す。
+ *
+ * <p>今回の生成で使ったカードは一時ファイルへ順に書き出し、{@link #commit()} で置き換える。再利用したカードは、前回のファイルから1件分の記録を
+ * 1回だけ読み、そのバイト列を出力先（{@link #copyTo(MediaItem, OutputStream)}）と一時ファイルの両方へ書き出す（文字列への変換はしない）。
+ * テンプレやカード形式が変わった場合、またはファイルが壊れている場合は空のキャッシュとして扱う。
+ */
+public final class FragmentCache implements Closeable {
+
+  /** キャッシュファイル名（記録のディレクトリ直下）。 */
+  public static final String FILE_NAME = ".gallery-fragments";
+
+  private static final int MAGIC = 0x47465247; // "GFRG"
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** 1件分のカードとして読み込む最大サイズ（これを超える値は壊れたファイルとみなす）。 */
+  private static final int MAX_FRAGMENT_BYTES = 1024 * 1024;
+
+  private final Path file;
+  private final Path tmp;
+  private final String hash;
+  private final Map<String, Entry> previous;
+  private FileChannel previousChannel;
+  private DataOutputStream out;
+  private byte[] readBuffer = new byte[4096];
+  private int hits;
+  private int misses;
+
+  private FragmentCache(
+      Path file, String hash, Map<String, Entry> previous, FileChannel previousChannel) {
+    this.file = file;
+    this.tmp = file.resolveSibling(FILE_NAME + ".tmp");
+    this.hash = hash;
+    this.previous = previous;
+    this.previousChannel = previousChannel;
+  }
+
+  /**
+   * stateDir 直下のキャッシュを開く（存在しない・テンプレが異なる場合は空のキャッシュとして扱う）。
+   *
+   * @param stateDir ビルドの記録のディレクトリ（{@link
+   *     com.example.gallery.output.OutputPaths#stateDirOf(Path)}）
+   * @param templateHtml テンプレHTML
+   * @return キャッシュ
+   * @throws IOException 読み込みに失敗した場合
+   */
+  public static FragmentCache open(Path stateDir, String templateHtml) throws IOException {
+    return open(stateDir, templateHtml, CardOptions.DEFAULT);
+  }
+
+  /**
+   * カードの設定を指定して、stateDir 直下のキャッシュを開く（テンプレまたは設定が異なる場合は空のキャッシュとして扱う）。
+   *
+   * @param stateDir ビルドの記録のディレクトリ
+   * @param templateHtml テンプレHTML
+   * @param options カードの設定
+   * @return キャッシュ
+   * @throws IOException 読み込みに失敗した場合
+   */
+  public static FragmentCache open(Path stateDir, String templateHtml, CardOptions options)
+      throws IOException {
+    Objects.requireNonNull(stateDir, "stateDir");
+    Objects.requireNonNull(templateHtml, "templateHtml");
+    Objects.requireNonNull(options, "options");
+
+    Path file = stateDir.resolve(FILE_NAME);
+    String hash = hashOf(templateHtml, options);
+    Map<String, Entry> previous = index(file, hash);
+    FileChannel channel =
+        previous.isEmpty() ? null : FileChannel.open(file, StandardOpenOption.READ);
+    return new FragmentCache(file, hash, previous, channel);
+  }
+
+  /**
+   * 前回の生成で保存したカードがあれば、UTF-8 のバイト列のまま出力先へ書き出し、今回の記録にも加える。
+   *
+   * @param item メディア
+   * @param os 出力先（UTF-8）
+   * @return 書き出した場合は true（{@link #put} は不要）。保存されていない、または内容が変わっている場合は false
+   * @throws IOException 読み書きに失敗した場合
+   */
+  public boolean copyTo(MediaItem item, OutputStream os) throws IOException {
+    Entry entry = reuse(item);
+    if (entry == null) {
+      return false;
+    }
+    os.write(readBuffer, entry.headerLength(), entry.length);
+    return true;
+  }
+
+  /**
+   * 前回の生成で保存したカードがあれば文字の出力先へ書き出し、今回の記録にも加える。
+   *
+   * <p>カードを文字列に戻してから書き出す。バイト列の出力先には {@link #copyTo(MediaItem, OutputStream)} を使う。
+   *
+   * @param item メディア
+   * @param w 出力先
+   * @return 書き出した場合は true（{@link #put} は不要）。保存されていない、または内容が変わっている場合は false
+   * @throws IOException 読み書きに失敗した場合
+   */
+  public boolean copyTo(MediaItem item, Writer w) throws IOException {
+    Entry entry = reuse(item);
+    if (entry == null) {
+      return false;
+    }
+    w.write(new String(readBuffer, entry.headerLength(), entry.length, StandardCharsets.UTF_8));
+    return true;
+  }
+
+  /**
+   * 今回の生成で使ったカードを記録する（生成順に一時ファイルへ追記する）。
+   *
+   * @param item メディア
+   * @param fragment カードの HTML
+   * @throws IOException 書き込みに失敗した場合
+   */
+  public void put(MediaItem item, String fragment) throws IOException {
+    put(item, fragment.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** UTF-8 に符号化済みのカードを記録する（{@link #put(MediaItem, String)} と同じ）。 */
+  void put(MediaItem item, byte[] bytes) throws IOException {
+    if (out == null) {
+      openTemp();
+    }
+    out.writeUTF(keyOf(item));
+    out.writeByte(item.type().ordinal());
+    out.writeLong(item.sizeBytes());
+    out.writeLong(item.lastModifiedAt().getEpochSecond());
+    out.writeInt(item.lastModifiedAt().getNano());
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * 今回の生成で記録したカードでキャッシュファイルを置き換える（生成成功時に呼び出す）。
+   *
+   * @throws IOException 書き込みに失敗した場合
+   */
+  public void commit() throws IOException {
+    if (out == null) {
+      // 0件の場合もヘッダだけは書き出す
+      openTemp();
+    }
+    out.close();
+    out = null;
+    closePrevious();
+    try {
+      Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /** 保存済みのカードを使えた件数を返す。 */
+  public int hits() {
+    return hits;
+  }
+
+  /** カードを組み立て直した件数を返す。 */
+  public int misses() {
+    return misses;
+  }
+
+  /** commit せずに閉じた場合は、書きかけの一時ファイルを削除する。 */
+  @Override
+  public void close() throws IOException {
+    closePrevious();
+    if (out != null) {
+      out.close();
+      out = null;
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  private void openTemp() throws IOException {
+    Files.createDirectories(tmp.toAbsolutePath().getParent());
+    out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), BUFFER_SIZE));
+    out.writeInt(MAGIC);
+    out.writeUTF(hash);
+  }
+
+  private void closePrevious() throws IOException {
+    if (previousChannel != null) {
+      previousChannel.close();
+      previousChannel = null;
+    }
+  }
+
+  /**
+   * 保存済みのカードが使える場合は、1件分の記録を readBuffer へ読み込み、そのまま一時ファイルへ追記する。
+   *
+   * @return 使えるカードの位置（使えない場合は null）
+   */
+  private Entry reuse(MediaItem item) throws IOException {
+    Entry entry = previous.get(keyOf(item));
+    if (entry == null || !entry.matches(item)) {
+      misses++;
+      return null;
+    }
+    int recordLength = entry.headerLength() + entry.length;
+    if (readBuffer.length < recordLength) {
+      readBuffer = new byte[Math.max(recordLength, readBuffer.length * 2)];
+    }
+    ByteBuffer buf = ByteBuffer.wrap(readBuffer, 0, recordLength);
+    long position = entry.recordOffset;
+    while (buf.hasRemaining()) {
+      int n = previousChannel.read(buf, position);
+      if (n < 0) {
+        throw new EOFException("カードのキャッシュが途中で切れています: " + file);
+      }
+      position += n;
+    }
+    if (out == null) {
+      openTemp();
+    }
+    out.write(readBuffer, 0, recordLength);
+    hits++;
+    return entry;
+  }
+
+  /** 前回のファイルを先頭から読み、カードごとの位置の索引を作る（カードの HTML は読み飛ばす）。 */
+  private static Map<String, Entry> index(Path file, String hash) throws IOException {
+    Map<String, Entry> entries = new HashMap<>();
+    if (!Files.isRegularFile(file)) {
+      return entries;
+    }
+    try (CountingInputStream counter =
+            new CountingInputStream(
+                new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+        DataInputStream in = new DataInputStream(counter)) {
+      if (in.readInt() != MAGIC || !hash.equals(in.readUTF())) {
+        return entries;
+      }
+      while (true) {
+        long recordOffset = counter.count;
+        String key;
+        try {
+          key = in.readUTF();
+        } catch (EOFException e) {
+          break;
+        }
+        int type = in.readByte();
+        long size = in.readLong();
+        long seconds = in.readLong();
+        int nanos = in.readInt();
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FRAGMENT_BYTES) {
+          entries.clear();
+          break;
+        }
+        long fragmentOffset = counter.count;
+        in.skipNBytes(length);
+        entries.put(
+            key, new Entry(type, size, seconds, nanos, recordOffset, fragmentOffset, length));
+      }
+    } catch (EOFException | UTFDataFormatException e) {
+      // 書き込み途中で終了したファイルや壊れたファイルは使わない
+      entries.clear();
+    }
+    return entries;
+  }
+
+  /** テンプレ・カード形式・カードの設定から算出したハッシュ。 */
+  private static String hashOf(String templateHtml, CardOptions options) {
+    MessageDigest md;
+    try {
+      md = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    md.update(templateHtml.getBytes(StandardCharsets.UTF_8));
+    md.update((byte) 0);
+    md.update((byte) HtmlGalleryRenderer.CARD_FORMAT_VERSION);
+    md.update(options.cacheKey().getBytes(StandardCharsets.UTF_8));
+    return HexFormat.of().formatHex(md.digest(), 0, 16);
+  }
+
+  private static String keyOf(MediaItem item) {
+    return item.relativePath().toString().replace('\\', '/');
+  }
+
+  /**
+   * 前回のファイル上のカード1件の位置。
+   *
+   * @param recordOffset キーから始まる1件分の記録の先頭位置
+   * @param fragmentOffset カードの HTML の先頭位置
+   * @param length カードの HTML の長さ（bytes）
+   */
+  private record Entry(
+      int type,
+      long sizeBytes,
+      long seconds,
+      int nanos,
+      long recordOffset,
+      long fragmentOffset,
+      int length) {
+
+    /** 記録の先頭からカードの HTML までの長さ。 */
+    int headerLength() {
+      return (int) (fragmentOffset - recordOffset);
+    }
+
+    boolean matches(MediaItem item) {
+      return type == item.type().ordinal()
+          && sizeBytes == item.sizeBytes()
+          && seconds == item.lastModifiedAt().getEpochSecond()
+          && nanos == item.lastModifiedAt().getNano();
+    }
+  }
+
+  /** 読み進めたバイト数を数える入力（索引の位置の算出に使う）。 */
+  private static final class CountingInputStream extends FilterInputStream {
+
+    private long count;
+
+    CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = in.read();
+      if (b >= 0) {
+        count++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = in.read(b, off, len);
+      if (n > 0) {
+        count += n;
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = in.skip(n);
+      count += skipped;
+      return skipped;
+    }
+  }
+}
@@ -0,0 +1,191 @@
+package com.example.gallery.render;
+
+import java.io.IOException;
+
+/**
+ * HTML 出力用のエスケープ（1回の走査で出力先へ直接追記する）。
+ *
+ * <ul>
+ *   <li>テキスト：{@code & < >} を文字参照にする
+ *   <li>属性値：テキストに加えて {@code " '} も文字参照にする
+ *   <li>URL（src/href 属性）：パスの各文字を UTF-8 でパーセントエンコードする（{@code /} と非予約文字はそのまま）
+ * </ul>
+ *
+ * <p>エスケープが不要な文字列（多くのファイル名）は、最初の走査で判定してそのまま追記する。 文字列の中間生成を行わず、エスケープが必要な箇所の前後だけを範囲指定で追記する。
+ */
+final class HtmlEscaper {
+
+  private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+  private HtmlEscaper() {}
+
+  /**
+   * テキストとしてエスケープして追記する。
+   *
+   * @param out 出力先
+   * @param s 文字列（null の場合は何もしない）
+   * @throws IOException 出力先への書き込みに失敗した場合
+   */
+  static void appendText(Appendable out, String s) throws IOException {
+    append(out, s, false);
+  }
+
+  /**
+   * 属性値としてエスケープして追記する（{@code "} / {@code '} のどちらで囲んでも安全）。
+   *
+   * @param out 出力先
+   * @param s 文字列（null の場合は何もしない）
+   * @throws IOException 出力先への書き込みに失敗した場合
+   */
+  static void appendAttr(Appendable out, String s) throws IOException {
+    append(out, s, true);
+  }
+
+  /**
+   * URL のパス（相対パス）としてパーセントエンコードして追記する。
+   *
+   * <p>エンコード後は英数字と {@code - . _ ~ / %} だけになるため、属性値としてのエスケープも不要になる。
+   *
+   * @param out 出力先
+   * @param path パス（区切り文字は {@code /}）
+   * @throws IOException 出力先への書き込みに失敗した場合
+   */
+  static void appendUrlPath(Appendable out, String path) throws IOException {
+    int n = path.length();
+    int start = 0;
+    for (int i = 0; i < n; i++) {
+      char c = path.charAt(i);
+      if (isUrlSafe(c)) {
+        continue;
+      }
+      out.append(path, start, i);
+      int end = i + 1;
+      int codePoint = c;
+      if (Character.isHighSurrogate(c) && end < n && Character.isLowSurrogate(path.charAt(end))) {
+        codePoint = Character.toCodePoint(c, path.charAt(end));
+        end++;
+      } else if (Character.isSurrogate(c)) {
+        // 対になっていないサロゲートは String#getBytes(UTF_8) と同じく '?' にする
+        codePoint = '?';
+      }
+      appendUtf8(out, codePoint);
+      i = end - 1;
+      start = end;
+    }
+    out.append(path, start, n);
+  }
+
+  /** コードポイントを UTF-8 のバイト列としてパーセントエンコードして追記する（バイト配列を作らない）。 */
+  private static void appendUtf8(Appendable out, int codePoint) throws IOException {
+    if (codePoint < 0x80) {
+      appendPercent(out, codePoint);
+    } else if (codePoint < 0x800) {
+      appendPercent(out, 0xC0 | (codePoint >> 6));
+      appendPercent(out, 0x80 | (codePoint & 0x3F));
+    } else if (codePoint < 0x10000) {
+      appendPercent(out, 0xE0 | (codePoint >> 12));
+      appendPercent(out, 0x80 | ((codePoint >> 6) & 0x3F));
+      appendPercent(out, 0x80 | (codePoint & 0x3F));
+    } else {
+      appendPercent(out, 0xF0 | (codePoint >> 18));
+      appendPercent(out, 0x80 | ((codePoint >> 12) & 0x3F));
+      appendPercent(out, 0x80 | ((codePoint >> 6) & 0x3F));
+      appendPercent(out, 0x80 | (codePoint & 0x3F));
+    }
+  }
+
+  private static void appendPercent(Appendable out, int b) throws IOException {
+    out.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+  }
+
+  /**
+   * 属性値としてエスケープした文字列を返す。
+   *
+   * @param s 文字列（null の場合は空文字）
+   * @return エスケープ後の文字列（エスケープ不要な場合は s そのもの）
+   */
+  static String escapeAttr(String s) {
+    return escape(s, true);
+  }
+
+  private static String escape(String s, boolean attr) {
+    if (s == null) {
+      return "";
+    }
+    int first = firstEscapeIndex(s, attr);
+    if (first < 0) {
+      return s;
+    }
+    StringBuilder sb = new StringBuilder(s.length() + 16);
+    try {
+      appendFrom(sb, s, first, attr);
+    } catch (IOException e) {
+      // StringBuilder への追記では発生しない
+      throw new IllegalStateException(e);
+    }
+    return sb.toString();
+  }
+
+  private static void append(Appendable out, String s, boolean attr) throws IOException {
+    if (s == null) {
+      return;
+    }
+    int first = firstEscapeIndex(s, attr);
+    if (first < 0) {
+      out.append(s);
+      return;
+    }
+    appendFrom(out, s, first, attr);
+  }
+
+  /** first より前はエスケープ不要と分かっている前提で、先頭から追記する。 */
+  private static void appendFrom(Appendable out, String s, int first, boolean attr)
+      throws IOException {
+    int start = 0;
+    for (int i = first; i < s.length(); i++) {
+      String ref = reference(s.charAt(i), attr);
+      if (ref != null) {
+        out.append(s, start, i).append(ref);
+        start = i + 1;
+      }
+    }
+    out.append(s, start, s.length());
+  }
+
+  private static int firstEscapeIndex(String s, boolean attr) {
+    for (int i = 0; i < s.length(); i++) {
+      if (reference(s.charAt(i), attr) != null) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static String reference(char c, boolean attr) {
+    switch (c) {
+      case '&':
+        return "&amp;";
+      case '<':
+        return "&lt;";
+      case '>':
+        return "&gt;";
+      case '"':
+        return attr ? "&quot;" : null;
+      case '\'':
+        return attr ? "&#39;" : null;
+      default:
+        return null;
+    }
+  }
+
+  private static boolean isUrlSafe(char c) {
+    return (c >= 'a' && c <= 'z')
+        || (c >= 'A' && c <= 'Z')
+        || (c >= '0' && c <= '9')
+        || c == '-'
+        || c == '.'
+        || c == '_'
+        || c == '~'
+        || c == '/';
+  }
+}
@@ -2,14 +2,32 @@ package com.example.gallery.render;
 
 import com.example.gallery.domain.MediaItem;
 import com.example.gallery.domain.MediaType;
+import com.example.gallery.image.VariantIndex;
+import com.example.gallery.jfr.RenderCardEvent;
+import com.example.gallery.progress.PhaseProgress;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 
 /** メディア一覧からギャラリーHTML（index.html）を生成する。 */
 public final class HtmlGalleryRenderer {
 
-  private static final DateTimeFormatter DT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss Z");
+  static final DateTimeFormatter DT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss Z");
+
+  /** カード（figure 要素）の形式。変えたら上げ、キャッシュ・アルバムのフィンガープリントを無効にする。 */
+  static final int CARD_FORMAT_VERSION = 2;
+
+  static final String EMPTY_MESSAGE =
+      "<p class=\"meta\" style=\"grid-column: 1 / -1;\">メディアがありません</p>\n";
 
   private HtmlGalleryRenderer() {}
 
@@ -22,48 +40,420 @@ public final class HtmlGalleryRenderer {
    * @return 生成HTML
    */
   public static String render(String templateHtml, String title, List<MediaItem> items) {
+    return render(templateHtml, title, items, new PhaseProgress("render"));
+  }
+
+  /**
+   * 進捗を記録しながら、テンプレHTMLへギャラリー内容を差し込んだHTML文字列を生成する。
+   *
+   * @param templateHtml テンプレHTML
+   * @param title タイトル
+   * @param items メディア一覧（assets配下にコピー済みであること）
+   * @param progress 進捗カウンタ（カード1件ごとに加算）
+   * @return 生成HTML
+   */
+  public static String render(
+      String templateHtml, String title, List<MediaItem> items, PhaseProgress progress) {
     String generatedAt = ZonedDateTime.now().format(DT);
 
-    String cards = renderCards(items);
+    String cards = renderCards(items, progress);
 
     return templateHtml
         .replace("{{TITLE}}", escapeHtml(title))
         .replace("{{GENERATED_AT}}", escapeHtml(generatedAt))
+        .replace("{{ROOT}}", "")
         .replace("{{ITEMS}}", cards);
   }
 
-  private static String renderCards(List<MediaItem> items) {
+  /**
+   * テンプレHTMLへギャラリー内容を差し込みながら、出力先へ順に書き出す。
+   *
+   * <p>カードを1件ずつ書き出すため、HTML 全体や全件の一覧をメモリ上に保持しない。 {@code {{ITEMS}}} は最初の1箇所に差し込む。
+   *
+   * <p>items が {@link Collection} でない場合、総件数は呼び出し側で progress に設定しておく。
+   *
+   * @param out 出力先
+   * @param templateHtml テンプレHTML
+   * @param title タイトル
+   * @param items メディア一覧（assets配下にコピー済みであること。先頭から1回だけ読み出す）
+   * @param progress 進捗カウンタ（カード1件ごとに加算）
+   * @throws IOException 出力先への書き込みに失敗した場合
+   */
+  public static void renderTo(
+      Writer out,
+      String templateHtml,
+      String title,
+      Iterable<MediaItem> items,
+      PhaseProgress progress)
+      throws IOException {
+    renderTo(out, templateHtml, title, items, progress, null);
+  }
+
+  /**
+   * カードのキャッシュを使いながら、テンプレHTMLへギャラリー内容を差し込んで出力先へ順に書き出す。
+   *
+   * <p>cache には今回書き出したカードが記録される。生成に成功したら呼び出し側で {@link FragmentCache#commit()} する。
+   *
+   * @param out 出力先
+   * @param templateHtml テンプレHTML
+   * @param title タイトル
+   * @param items メディア一覧（assets配下にコピー済みであること。先頭から1回だけ読み出す）
+   * @param progress 進捗カウンタ（カード1件ごとに加算）
+   * @param cache カードのキャッシュ（null の場合は使わない）
+   * @throws IOException 出力先への書き込みに失敗した場合
+   * @see #renderTo(Writer, String, String, Iterable, PhaseProgress)
+   */
+  public static void renderTo(
+      Writer out,
+      String templateHtml,
+      String title,
+      Iterable<MediaItem> items,
+      PhaseProgress progress,
+      FragmentCache cache)
+      throws IOException {
+    renderTo(out, templateHtml, title, items, progress, cache, CardOptions.DEFAULT);
+  }
+
+  /**
+   * カードの設定を指定して、テンプレHTMLへギャラリー内容を差し込んで出力先へ順に書き出す。
+   *
+   * <p>cache は同じ options で開いたものを渡す（{@link FragmentCache#open(java.nio.file.Path, String,
+   * CardOptions)}）。
+   *
+   * @param out 出力先
+   * @param templateHtml テンプレHTML
+   * @param title タイトル
+   * @param items メディア一覧（assets配下にコピー済みであること。先頭から1回だけ読み出す）
+   * @param progress 進捗カウンタ（カード1件ごとに加算）
+   * @param cache カードのキャッシュ（null の場合は使わない）
+   * @param options カードの設定
+   * @throws IOException 出力先への書き込みに失敗した場合
+   * @see #renderTo(Writer, String, String, Iterable, PhaseProgress, FragmentCache)
+   */
+  public static void renderTo(
+      Writer out,
+      String templateHtml,
+      String title,
+      Iterable<MediaItem> items,
+      PhaseProgress progress,
+      FragmentCache cache,
+      CardOptions options)
+      throws IOException {
+    String page = fillHeader(templateHtml, title);
+    int at = page.indexOf("{{ITEMS}}");
+    if (at < 0) {
+      out.write(page);
+      return;
+    }
+    out.write(page, 0, at);
+
+    if (items instanceof Collection<MediaItem> all) {
+      progress.setTotals(all.size(), -1);
+    }
+    Iterator<MediaItem> it = items == null ? null : items.iterator();
+    if (it == null || !it.hasNext()) {
+      out.write(EMPTY_MESSAGE);
+    } else if (cache != null) {
+      appendCachedCards(out, it, cache, progress, options);
+    } else {
+      appendCards(out, () -> it, "", progress, options);
+    }
+    out.write(page.substring(at + "{{ITEMS}}".length()).replace("{{ITEMS}}", ""));
+  }
+
+  /**
+   * カードの設定を指定して、テンプレHTMLへギャラリー内容を差し込んで出力先へ UTF-8 のバイト列で順に書き出す。
+   *
+   * <p>cache から再利用するカードは、保存済みのバイト列をそのまま書き出す（文字列に戻して符号化し直さない）。 cache が null の場合は
+   * {@link #renderTo(Writer, String, String, Iterable, PhaseProgress, FragmentCache, CardOptions)} と同じ。
+   *
+   * @param out 出力先（バッファ付きであること）
+   * @param templateHtml テンプレHTML
+   * @param title タイトル
+   * @param items メディア一覧（assets配下にコピー済みであること。先頭から1回だけ読み出す）
+   * @param progress 進捗カウンタ（カード1件ごとに加算）
+   * @param cache カードのキャッシュ（null の場合は使わない）
+   * @param options カードの設定
+   * @throws IOException 出力先への書き込みに失敗した場合
+   */
+  public static void renderTo(
+      OutputStream out,
+      String templateHtml,
+      String title,
+      Iterable<MediaItem> items,
+      PhaseProgress progress,
+      FragmentCache cache,
+      CardOptions options)
+      throws IOException {
+    if (cache == null) {
+      Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+      renderTo(w, templateHtml, title, items, progress, null, options);
+      w.flush();
+      return;
+    }
+    String page = fillHeader(templateHtml, title);
+    int at = page.indexOf("{{ITEMS}}");
+    if (at < 0) {
+      out.write(page.getBytes(StandardCharsets.UTF_8));
+      return;
+    }
+    out.write(page.substring(0, at).getBytes(StandardCharsets.UTF_8));
+
+    if (items instanceof Collection<MediaItem> all) {
+      progress.setTotals(all.size(), -1);
+    }
+    Iterator<MediaItem> it = items == null ? null : items.iterator();
+    if (it == null || !it.hasNext()) {
+      out.write(EMPTY_MESSAGE.getBytes(StandardCharsets.UTF_8));
+    } else {
+      appendCachedCards(out, it, cache, progress, options);
+    }
+    String tail = page.substring(at + "{{ITEMS}}".length()).replace("{{ITEMS}}", "");
+    out.write(tail.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** テンプレのタイトル・生成日時・ルートを埋めたページを返す（{@code {{ITEMS}}} は残す）。 */
+  private static String fillHeader(String templateHtml, String title) {
+    String generatedAt = ZonedDateTime.now().format(DT);
+    return templateHtml
+        .replace("{{TITLE}}", escapeHtml(title))
+        .replace("{{GENERATED_AT}}", escapeHtml(generatedAt))
+        .replace("{{ROOT}}", "");
+  }
+
+  private static String renderCards(List<MediaItem> items, PhaseProgress progress) {
     if (items == null || items.isEmpty()) {
-      return "<p class=\"meta\" style=\"grid-column: 1 / -1;\">メディアがありません</p>\n";
+      return EMPTY_MESSAGE;
     }
 
+    progress.setTotals(items.size(), -1);
     StringBuilder sb = new StringBuilder();
+    try {
+      appendCards(sb, items, "", progress, CardOptions.DEFAULT);
+    } catch (IOException e) {
+      // StringBuilder への追記では発生しない
+      throw new UncheckedIOException(e);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * メディア一覧のカード（figure 要素）を出力先へ追記する。
+   *
+   * @param out 出力先
+   * @param items メディア一覧
+   * @param rootPrefix ページから outputDir 直下への相対パス（例: "", "../../"）
+   * @param progress 進捗カウンタ（カード1件ごとに加算）
+   * @param options カードの設定
+   * @throws IOException 出力先への書き込みに失敗した場合
+   */
+  static void appendCards(
+      Appendable out,
+      Iterable<MediaItem> items,
+      String rootPrefix,
+      PhaseProgress progress,
+      CardOptions options)
+      throws IOException {
     for (MediaItem item : items) {
-      String rel = item.relativePath().toString().replace('\\', '/');
-      String src = "assets/" + rel;
-
-      sb.append("<figure>\n");
-      if (item.type() == MediaType.VIDEO) {
-        sb.append("<video controls src=\"").append(escapeHtmlAttr(src)).append("\"></video>\n");
-      } else {
-        sb.append("<img loading=\"lazy\" src=\"")
-            .append(escapeHtmlAttr(src))
-            .append("\" alt=\"\" />\n");
+      if (options.duplicates().hidden(item)) {
+        // 代表のカードの中にまとめて出力する
+        progress.add(1, 0);
+        continue;
       }
-      sb.append("<figcaption>").append(escapeHtml(rel)).append("</figcaption>\n");
-      sb.append("</figure>\n");
+      RenderCardEvent event = new RenderCardEvent();
+      event.begin();
+      appendCard(out, item, rootPrefix, options);
+      event.finish(item, false);
+      progress.add(1, 0);
+    }
+  }
+
+  /**
+   * メディア1件分のカード（figure 要素）を出力先へ追記する。
+   *
+   * @param out 出力先
+   * @param item メディア
+   * @param rootPrefix ページから outputDir 直下への相対パス
+   * @param options カードの設定
+   * @throws IOException 出力先への書き込みに失敗した場合
+   */
+  static void appendCard(Appendable out, MediaItem item, String rootPrefix, CardOptions options)
+      throws IOException {
+    String rel = item.relativePath().toString().replace('\\', '/');
+
+    out.append("<figure>\n");
+    if (item.type() == MediaType.VIDEO) {
+      out.append("<video controls src=\"");
+      appendAssetUrl(out, item, rootPrefix, options);
+      out.append("\"></video>\n");
+    } else {
+      out.append("<img loading=\"lazy\" src=\"");
+      appendAssetUrl(out, item, rootPrefix, options);
+      out.append('"');
+      appendSrcset(out, item, rootPrefix, options);
+      appendPlaceholder(out, item, options);
+      out.append(" alt=\"\" />\n");
+    }
+    out.append("<figcaption>");
+    HtmlEscaper.appendText(out, rel);
+    out.append("</figcaption>\n");
+    appendDuplicates(out, item, rootPrefix, options);
+    out.append("</figure>\n");
+  }
+
+  /** 代表のカードに、まとめた似た画像へのリンクを折りたたんで追記する。 */
+  private static void appendDuplicates(
+      Appendable out, MediaItem item, String rootPrefix, CardOptions options) throws IOException {
+    List<MediaItem> others = options.duplicates().othersOf(item);
+    if (others.isEmpty()) {
+      return;
+    }
+    out.append("<details><summary>似た画像 ")
+        .append(Integer.toString(others.size()))
+        .append(" 件</summary>\n");
+    for (MediaItem other : others) {
+      out.append("<a href=\"");
+      appendAssetUrl(out, other, rootPrefix, options);
+      out.append("\">");
+      HtmlEscaper.appendText(out, other.relativePath().toString().replace('\\', '/'));
+      out.append("</a><br />\n");
+    }
+    out.append("</details>\n");
+  }
+
+  /** assets 内のファイルへの URL（フィンガープリント付き）を追記する。 */
+  private static void appendAssetUrl(
+      Appendable out, MediaItem item, String rootPrefix, CardOptions options) throws IOException {
+    out.append(rootPrefix).append("assets/");
+    HtmlEscaper.appendUrlPath(out, options.assetPath(item));
+    // クエリは英数字だけなので、属性値としてのエスケープは不要
+    out.append(options.assetQuery(item));
+  }
+
+  /**
+   * 縮小版がある画像に srcset / sizes 属性を追記する（先頭に空白を付ける）。
+   *
+   * <p>srcset には各縮小版と元画像を幅の昇順に並べる。縮小版の URL にも元画像と同じフィンガープリント（コピー時の縮小・再エンコードの条件を含む）を付ける。
+   */
+  private static void appendSrcset(
+      Appendable out, MediaItem item, String rootPrefix, CardOptions options) throws IOException {
+    if (!options.srcset()) {
+      return;
+    }
+    String assetPath = options.assetPath(item);
+    VariantIndex.Variants variants = options.variantIndex().get(assetPath);
+    if (variants == null || variants.widths().isEmpty()) {
+      return;
+    }
+    String query = options.assetQuery(item);
+    out.append(" srcset=\"");
+    for (int width : variants.widths()) {
+      out.append(rootPrefix).append(VariantIndex.DIR_NAME).append('/');
+      out.append(Integer.toString(width)).append('/');
+      HtmlEscaper.appendUrlPath(out, assetPath);
+      out.append(query).append(' ').append(Integer.toString(width)).append("w, ");
+    }
+    appendAssetUrl(out, item, rootPrefix, options);
+    out.append(' ').append(Integer.toString(variants.originalWidth())).append("w\" sizes=\"");
+    HtmlEscaper.appendAttr(out, options.variants().sizes());
+    out.append('"');
+  }
+
+  /**
+   * プレースホルダがある画像に、背景として埋め込む style 属性を追記する（先頭に空白を付ける）。
+   *
+   * <p>img 要素と同じく中央を基準に cover で引き伸ばすため、読み込み後の画像と位置が揃う。
+   */
+  private static void appendPlaceholder(Appendable out, MediaItem item, CardOptions options)
+      throws IOException {
+    if (!options.placeholders()) {
+      return;
+    }
+    VariantIndex.Variants variants =
+        options.variantIndex().get(options.assetPath(item));
+    if (variants == null || variants.placeholder().isEmpty()) {
+      return;
+    }
+    out.append(" style=\"background-image:url(data:image/png;base64,");
+    HtmlEscaper.appendAttr(out, variants.placeholder());
+    out.append(");background-size:cover;background-position:center\"");
+  }
+
+  /**
+   * キャッシュを使いながら、メディア一覧のカードを出力先へ追記する。
+   *
+   * <p>前回から変わっていないメディアは保存済みの HTML をそのまま書き出し、それ以外だけを組み立てる。
+   */
+  private static void appendCachedCards(
+      Writer out,
+      Iterator<MediaItem> items,
+      FragmentCache cache,
+      PhaseProgress progress,
+      CardOptions options)
+      throws IOException {
+    StringBuilder sb = new StringBuilder(256);
+    while (items.hasNext()) {
+      MediaItem item = items.next();
+      if (options.duplicates().hidden(item)) {
+        progress.add(1, 0);
+        continue;
+      }
+      RenderCardEvent event = new RenderCardEvent();
+      event.begin();
+      boolean cached = cache.copyTo(item, out);
+      if (!cached) {
+        sb.setLength(0);
+        appendCard(sb, item, "", options);
+        String fragment = sb.toString();
+        out.write(fragment);
+        cache.put(item, fragment);
+      }
+      event.finish(item, cached);
+      progress.add(1, 0);
+    }
+  }
+
+  /**
+   * キャッシュを使いながら、メディア一覧のカードを出力先へ UTF-8 のバイト列で追記する。
+   *
+   * <p>前回から変わっていないメディアは保存済みのバイト列をそのまま書き出し、それ以外だけを組み立てる。
+   */
+  private static void appendCachedCards(
+      OutputStream out,
+      Iterator<MediaItem> items,
+      FragmentCache cache,
+      PhaseProgress progress,
+      CardOptions options)
+      throws IOException {
+    StringBuilder sb = new StringBuilder(256);
+    while (items.hasNext()) {
+      MediaItem item = items.next();
+      if (options.duplicates().hidden(item)) {
+        progress.add(1, 0);
+        continue;
+      }
+      RenderCardEvent event = new RenderCardEvent();
+      event.begin();
+      boolean cached = cache.copyTo(item, out);
+      if (!cached) {
+        sb.setLength(0);
+        appendCard(sb, item, "", options);
+        byte[] fragment = sb.toString().getBytes(StandardCharsets.UTF_8);
+        out.write(fragment);
+        cache.put(item, fragment);
+      }
+      event.finish(item, cached);
+      progress.add(1, 0);
     }
-    return sb.toString();
   }
 
-  private static String escapeHtml(String s) {
-    return s == null
-        ? ""
-        : s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+  /** テンプレへの差し込み用（属性値の中に置かれても安全なようにエスケープする）。 */
+  static String escapeHtml(String s) {
+    return HtmlEscaper.escapeAttr(s);
   }
 
-  private static String escapeHtmlAttr(String s) {
+  static String escapeHtmlAttr(String s) {
     // 属性値用
-    return escapeHtml(s);
+    return HtmlEscaper.escapeAttr(s);
   }
 }
@@ -0,0 +1,320 @@
+package com.example.gallery.render;
+
+import com.example.gallery.domain.AssetFingerprint;
+import com.example.gallery.domain.MediaItem;
+import com.example.gallery.image.DownscaleSpec;
+import com.example.gallery.output.OutputSink;
+import com.example.gallery.progress.PhaseProgress;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ブラウザ上の検索欄が使う検索用の索引（outputDir/search-index.js）を生成する。
+ *
+ * <p>メディアごとに relativePath を語（英数字・文字の連続、小文字）に分け、ディレクトリ名・ファイル名・拡張子の各語と、更新日時およびファイル名中の日付
+ * （{@code yyyy-mm-dd}）を語とする転置索引を作る。テンプレの検索欄は索引をメモリ上に読み込み、入力した語で前方一致する語の出現箇所を引く。
+ *
+ * <p>索引は {@code window.gallerySearchIndex = {...};} を代入するスクリプトで、{@code file://} で開いた場合も読み込める。
+ *
+ * <ul>
+ *   <li>{@code version}: 索引の形式、{@code n}: 件数、{@code f}: assetFingerprint の識別子
+ *   <li>{@code p}: メディアの一覧（items の順）。直前のパスと共通する先頭の文字数（36進）・空白・残りの文字列。{@code f} が {@code
+ *       none} 以外の場合は先頭に8桁のフィンガープリントを付ける
+ *   <li>{@code k}: 語の一覧（昇順）、{@code d}: 語ごとの出現箇所（メディアの番号の差分を36進で {@code ,} 区切り）
+ * </ul>
+ *
+ * <p>メディアの一覧は読み出しながら書き出し、メモリ上には語ごとの出現箇所（可変長整数で符号化した差分）だけを保持する。
+ */
+public final class SearchIndex {
+
+  /** 索引のファイル名（outputDir 直下）。 */
+  public static final String FILE_NAME = "search-index.js";
+
+  /** 索引の形式。変えたらテンプレの検索処理も合わせる。 */
+  static final int FORMAT_VERSION = 1;
+
+  private static final String PREFIX = "window.gallerySearchIndex=";
+  private static final String SUFFIX = ";\n";
+
+  private static final JsonFactory JSON = new JsonFactory();
+
+  /** ファイル名中の日付（例: IMG_20240512, 2024-05-12）。 */
+  private static final Pattern DATE_IN_NAME =
+      Pattern.compile("(?<!\\d)((?:19|20)\\d{2})[-_.]?(\\d{2})[-_.]?(\\d{2})(?!\\d)");
+
+  private SearchIndex() {}
+
+  /**
+   * 生成結果。
+   *
+   * @param items 索引に含めたメディア数
+   * @param terms 語の数
+   */
+  public record Result(int items, int terms) {}
+
+  /**
+   * 出力先の直下に索引（{@value #FILE_NAME}）を書き出す。
+   *
+   * @param sink 出力先
+   * @param items メディア一覧（先頭から1回だけ読み出す）
+   * @param fingerprint assets の URL に付けるフィンガープリント
+   * @param zone 更新日時を日付にするタイムゾーン
+   * @param progress 進捗カウンタ（メディア1件ごとに加算）
+   * @return 生成結果
+   * @throws IOException 書き込みに失敗した場合
+   */
+  public static Result writeTo(
+      OutputSink sink,
+      Iterable<MediaItem> items,
+      AssetFingerprint fingerprint,
+      ZoneId zone,
+      PhaseProgress progress)
+      throws IOException {
+    return writeTo(sink, items, fingerprint, DownscaleSpec.NONE, zone, progress);
+  }
+
+  /**
+   * コピー時の縮小・再エンコードの条件を指定して、出力先の直下に索引（{@value #FILE_NAME}）を書き出す。
+   *
+   * @param sink 出力先
+   * @param items メディア一覧（先頭から1回だけ読み出す）
+   * @param fingerprint assets の URL に付けるフィンガープリント
+   * @param downscale コピー時の縮小・再エンコードの条件（対象の画像はフィンガープリントに含める）
+   * @param zone 更新日時を日付にするタイムゾーン
+   * @param progress 進捗カウンタ（メディア1件ごとに加算）
+   * @return 生成結果
+   * @throws IOException 書き込みに失敗した場合
+   */
+  public static Result writeTo(
+      OutputSink sink,
+      Iterable<MediaItem> items,
+      AssetFingerprint fingerprint,
+      DownscaleSpec downscale,
+      ZoneId zone,
+      PhaseProgress progress)
+      throws IOException {
+    Objects.requireNonNull(sink, "sink");
+
+    Result[] result = new Result[1];
+    sink.putEntry(
+        FILE_NAME,
+        Instant.now(),
+        out -> {
+          Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+          result[0] = write(w, items, fingerprint, downscale, zone, progress);
+          w.flush();
+        });
+    return result[0];
+  }
+
+  /**
+   * 索引を出力先へ書き出す。
+   *
+   * @param out 出力先（閉じない）
+   * @param items メディア一覧（先頭から1回だけ読み出す）
+   * @param fingerprint assets の URL に付けるフィンガープリント
+   * @param zone 更新日時を日付にするタイムゾーン
+   * @param progress 進捗カウンタ（メディア1件ごとに加算）
+   * @return 生成結果
+   * @throws IOException 書き込みに失敗した場合
+   */
+  public static Result write(
+      Writer out,
+      Iterable<MediaItem> items,
+      AssetFingerprint fingerprint,
+      ZoneId zone,
+      PhaseProgress progress)
+      throws IOException {
+    return write(out, items, fingerprint, DownscaleSpec.NONE, zone, progress);
+  }
+
+  /**
+   * コピー時の縮小・再エンコードの条件を指定して、索引を出力先へ書き出す。
+   *
+   * @param out 出力先（閉じない）
+   * @param items メディア一覧（先頭から1回だけ読み出す）
+   * @param fingerprint assets の URL に付けるフィンガープリント
+   * @param downscale コピー時の縮小・再エンコードの条件（対象の画像はフィンガープリントに含める）
+   * @param zone 更新日時を日付にするタイムゾーン
+   * @param progress 進捗カウンタ（メディア1件ごとに加算）
+   * @return 生成結果
+   * @throws IOException 書き込みに失敗した場合
+   */
+  public static Result write(
+      Writer out,
+      Iterable<MediaItem> items,
+      AssetFingerprint fingerprint,
+      DownscaleSpec downscale,
+      ZoneId zone,
+      PhaseProgress progress)
+      throws IOException {
+    Objects.requireNonNull(out, "out");
+    Objects.requireNonNull(items, "items");
+    Objects.requireNonNull(fingerprint, "fingerprint");
+    Objects.requireNonNull(downscale, "downscale");
+    Objects.requireNonNull(zone, "zone");
+    Objects.requireNonNull(progress, "progress");
+
+    Map<String, Postings> postings = new HashMap<>();
+    out.write(PREFIX);
+    JsonGenerator json = JSON.createGenerator(out);
+    json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    json.writeStartObject();
+    json.writeNumberField("version", FORMAT_VERSION);
+    json.writeStringField("f", fingerprint.id());
+
+    // メディアの一覧を書き出しながら、語ごとの出現箇所を集める
+    json.writeArrayFieldStart("p");
+    StringBuilder entry = new StringBuilder(64);
+    String previous = "";
+    int count = 0;
+    for (MediaItem item : items) {
+      String rel = item.relativePath().toString().replace('\\', '/');
+      int shared = sharedPrefix(previous, rel);
+      entry.setLength(0);
+      if (fingerprint != AssetFingerprint.NONE) {
+        entry.append(AssetFingerprint.of(item, downscale.encodingKey(item)));
+      }
+      entry.append(Integer.toString(shared, 36)).append(' ').append(rel, shared, rel.length());
+      json.writeString(entry.toString());
+
+      for (String term : termsOf(item, zone)) {
+        postings.computeIfAbsent(term, t -> new Postings()).add(count);
+      }
+      previous = rel;
+      count++;
+      progress.add(1, 0);
+    }
+    json.writeEndArray();
+    json.writeNumberField("n", count);
+
+    String[] terms = postings.keySet().toArray(new String[0]);
+    // ブラウザ側は文字列の大小比較（UTF-16 の符号単位順）で二分探索する
+    Arrays.sort(terms);
+    json.writeArrayFieldStart("k");
+    for (String term : terms) {
+      json.writeString(term);
+    }
+    json.writeEndArray();
+    json.writeArrayFieldStart("d");
+    for (String term : terms) {
+      json.writeString(postings.get(term).toGaps());
+    }
+    json.writeEndArray();
+    json.writeEndObject();
+    json.flush();
+    out.write(SUFFIX);
+    return new Result(count, terms.length);
+  }
+
+  /**
+   * メディア1件分の語を返す（重複なし、出現順）。
+   *
+   * @param item メディア
+   * @param zone 更新日時を日付にするタイムゾーン
+   * @return relativePath の各語、ファイル名中の日付、更新日時の日付（{@code yyyy-mm-dd}）
+   */
+  static List<String> termsOf(MediaItem item, ZoneId zone) {
+    String rel = item.relativePath().toString().replace('\\', '/').toLowerCase(Locale.ROOT);
+    Set<String> terms = new LinkedHashSet<>();
+    int start = -1;
+    for (int i = 0; i <= rel.length(); ) {
+      int cp = i < rel.length() ? rel.codePointAt(i) : ' ';
+      boolean word = Character.isLetterOrDigit(cp);
+      if (word && start < 0) {
+        start = i;
+      } else if (!word && start >= 0) {
+        terms.add(rel.substring(start, i));
+        start = -1;
+      }
+      i += i < rel.length() ? Character.charCount(cp) : 1;
+    }
+
+    Matcher m = DATE_IN_NAME.matcher(rel);
+    while (m.find()) {
+      int month = Integer.parseInt(m.group(2));
+      int day = Integer.parseInt(m.group(3));
+      if (month >= 1 && month <= 12 && day >= 1 && day <= 31) {
+        terms.add(m.group(1) + '-' + m.group(2) + '-' + m.group(3));
+      }
+    }
+    terms.add(LocalDate.ofInstant(item.lastModifiedAt(), zone).toString());
+    return new ArrayList<>(terms);
+  }
+
+  /** 共通する先頭の文字数（サロゲートペアの途中では区切らない）。 */
+  private static int sharedPrefix(String a, String b) {
+    int max = Math.min(a.length(), b.length());
+    int n = 0;
+    while (n < max && a.charAt(n) == b.charAt(n)) {
+      n++;
+    }
+    if (n > 0 && Character.isHighSurrogate(b.charAt(n - 1))) {
+      n--;
+    }
+    return n;
+  }
+
+  /** 1語分の出現箇所（メディアの番号の差分を可変長整数で符号化して保持する）。 */
+  private static final class Postings {
+
+    private byte[] bytes = new byte[4];
+    private int length;
+    private int last = -1;
+
+    void add(int id) {
+      if (id == last) {
+        return;
+      }
+      int gap = last < 0 ? id : id - last;
+      last = id;
+      if (length + 5 > bytes.length) {
+        bytes = Arrays.copyOf(bytes, bytes.length * 2);
+      }
+      while (gap >= 0x80) {
+        bytes[length++] = (byte) (gap | 0x80);
+        gap >>>= 7;
+      }
+      bytes[length++] = (byte) gap;
+    }
+
+    String toGaps() {
+      StringBuilder sb = new StringBuilder(length * 2);
+      int pos = 0;
+      while (pos < length) {
+        int gap = 0;
+        int shift = 0;
+        byte b;
+        do {
+          b = bytes[pos++];
+          gap |= (b & 0x7F) << shift;
+          shift += 7;
+        } while (b < 0);
+        if (!sb.isEmpty()) {
+          sb.append(',');
+        }
+        sb.append(Integer.toString(gap, 36));
+      }
+      return sb.toString();
+    }
+  }
+}
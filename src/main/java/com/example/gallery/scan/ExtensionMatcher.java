@@ -0,0 +1,90 @@
+package com.example.gallery.scan;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 対象拡張子リストから事前に組み立てた拡張子マッチャ。
+ *
+ * <p>ファイル名の末尾を大小無視で直接比較するため、判定時に部分文字列や小文字化した文字列を生成しない。
+ * 拡張子は長さごとに振り分けておき、末尾の長さが一致する候補だけを比較する。
+ */
+public final class ExtensionMatcher {
+
+  /** 長さ別の拡張子（正規化済み）。index = 拡張子の文字数。 */
+  private final String[][] byLength;
+
+  private ExtensionMatcher(String[][] byLength) {
+    this.byLength = byLength;
+  }
+
+  /**
+   * 対象拡張子リストからマッチャを組み立てる。
+   *
+   * @param includeExtensions 対象拡張子（"jpg" / ".JPG" など。{@link MediaFilter#normalizeExtension} で正規化する）
+   * @return マッチャ
+   */
+  public static ExtensionMatcher of(Collection<String> includeExtensions) {
+    Objects.requireNonNull(includeExtensions, "includeExtensions");
+
+    List<List<String>> buckets = new ArrayList<>();
+    for (String raw : includeExtensions) {
+      if (raw == null) {
+        continue;
+      }
+      String ext = MediaFilter.normalizeExtension(raw);
+      if (ext.isEmpty()) {
+        continue;
+      }
+      while (buckets.size() <= ext.length()) {
+        buckets.add(new ArrayList<>());
+      }
+      List<String> bucket = buckets.get(ext.length());
+      if (!bucket.contains(ext)) {
+        bucket.add(ext);
+      }
+    }
+
+    String[][] byLength = new String[buckets.size()][];
+    for (int i = 0; i < byLength.length; i++) {
+      byLength[i] = buckets.get(i).toArray(String[]::new);
+    }
+    return new ExtensionMatcher(byLength);
+  }
+
+  /**
+   * パス文字列（またはファイル名）の拡張子が対象であれば、正規化済み拡張子を返す。
+   *
+   * <p>戻り値は組み立て時に保持した文字列インスタンスそのもの（新たな文字列は生成しない）。
+   *
+   * @param path パス文字列（区切りは {@code '/'} / {@code '\\'} のどちらでも可）
+   * @return 対象なら正規化済み拡張子、対象外なら {@code null}
+   */
+  public String match(String path) {
+    int end = path.length();
+    int limit = Math.max(0, end - byLength.length - 1);
+
+    // 末尾から最大の拡張子長ぶんだけ '.' を探す（区切り文字に達したら拡張子なし）
+    for (int i = end - 1; i >= limit; i--) {
+      char c = path.charAt(i);
+      if (c == '.') {
+        int len = end - i - 1;
+        if (len == 0 || len >= byLength.length) {
+          return null;
+        }
+        for (String ext : byLength[len]) {
+          if (path.regionMatches(true, i + 1, ext, 0, len)) {
+            return ext;
+          }
+        }
+        return null;
+      }
+      if (c == '/' || c == '\\') {
+        return null;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,187 @@
+package com.example.gallery.scan;
+
+import com.example.gallery.domain.MediaItem;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * メモリ上限を守りながらメディア一覧をソートする（外部ソート）。
+ *
+ * <ol>
+ *   <li>追加された要素をメモリ上に溜め、推定使用量が上限を超えたらソートしてラン（一時ファイル）に書き出す
+ *   <li>ランは大きさの段（レベル）ごとに管理し、同じレベルのランが {@value #MAX_FAN_IN} 本に達したら1本にマージして次のレベルへ上げる
+ *   <li>最後に残った要素もランにし、ランの合計が {@value #MAX_FAN_IN} 本を超える場合は小さいランからマージして減らす
+ *   <li>読み出し時に全ランを k-way マージする（{@link SortedMediaItems}）
+ * </ol>
+ *
+ * <p>同じ大きさのランどうしをマージするため、各要素が書き直される回数はレベルの数（fan-in を底とする対数）に収まる。
+ * 全ランを1本にまとめ直す方式と異なり、ランの数が増えても一時ファイルへの書き込み量は件数に対してほぼ線形になる。
+ *
+ * <p>1本もランを書き出さずに済んだ場合は、メモリ上の一覧のまま返す。
+ */
+final class ExternalMediaSorter {
+
+  /** 同時に開くランの最大数（マージ時のファイルハンドル数の上限。1レベルに溜めるランの数でもある）。 */
+  static final int MAX_FAN_IN = 64;
+
+  /** 1件あたりの固定の推定使用量（オブジェクトヘッダ・フィールド・Path の内部表現）。 */
+  static final long ITEM_OVERHEAD_BYTES = 256;
+
+  private final Comparator<MediaItem> comparator;
+  private final long memoryBudgetBytes;
+  private final Path tempParent;
+
+  private final List<MediaItem> buffer = new ArrayList<>();
+  /** レベルごとのラン（添字が大きいほど大きなラン）。 */
+  private final List<List<Path>> levels = new ArrayList<>();
+  private long bufferedBytes;
+  private long size;
+  private long totalBytes;
+  private Path spillDir;
+  private int nextRunId;
+
+  /**
+   * ソーターを作成する。
+   *
+   * @param comparator 並び順
+   * @param memoryBudgetBytes メモリ上に溜める要素の推定使用量の上限（bytes）
+   * @param tempParent ランを書き出す一時ディレクトリの親（null の場合はシステムの一時ディレクトリ）
+   */
+  ExternalMediaSorter(Comparator<MediaItem> comparator, long memoryBudgetBytes, Path tempParent) {
+    if (memoryBudgetBytes <= 0) {
+      throw new IllegalArgumentException("memoryBudgetBytes が不正です: " + memoryBudgetBytes);
+    }
+    this.comparator = comparator;
+    this.memoryBudgetBytes = memoryBudgetBytes;
+    this.tempParent = tempParent;
+  }
+
+  /**
+   * 要素を追加する。推定使用量が上限を超えた場合はランを書き出す。
+   *
+   * @param item メディア
+   * @throws IOException ランの書き出しに失敗した場合
+   */
+  void add(MediaItem item) throws IOException {
+    buffer.add(item);
+    bufferedBytes += estimateBytes(item);
+    size++;
+    totalBytes += item.sizeBytes();
+    if (bufferedBytes >= memoryBudgetBytes) {
+      spill();
+    }
+  }
+
+  /**
+   * 追加を終え、ソート済みの一覧を返す。
+   *
+   * @return ソート済みメディア一覧（ランを書き出した場合は一時ファイルを保持する）
+   * @throws IOException ランの書き出しに失敗した場合
+   */
+  SortedMediaItems finish() throws IOException {
+    if (levels.isEmpty()) {
+      buffer.sort(comparator);
+      return SortedMediaItems.of(buffer);
+    }
+    if (!buffer.isEmpty()) {
+      spill();
+    }
+
+    // 小さいラン（低いレベル）から順に並べ、読み出し時に開くランを MAX_FAN_IN 本以下にする
+    List<Path> runs = new ArrayList<>();
+    for (List<Path> level : levels) {
+      runs.addAll(level);
+    }
+    levels.clear();
+    levels.add(runs);
+    while (runs.size() > MAX_FAN_IN) {
+      int count = Math.min(MAX_FAN_IN, runs.size() - MAX_FAN_IN + 1);
+      List<Path> smallest = runs.subList(0, count);
+      Path merged = merge(smallest);
+      smallest.clear();
+      runs.add(merged);
+    }
+    return SortedMediaItems.ofRuns(runs, spillDir, comparator, size, totalBytes);
+  }
+
+  /** 書き出し済みのランと一時ディレクトリを削除する（失敗時の後始末）。 */
+  void discard() {
+    try {
+      for (List<Path> level : levels) {
+        for (Path run : level) {
+          Files.deleteIfExists(run);
+        }
+      }
+      if (spillDir != null) {
+        Files.deleteIfExists(spillDir);
+      }
+    } catch (IOException ignored) {
+      // 後始末のため無視する
+    }
+    levels.clear();
+  }
+
+  /**
+   * 1件がメモリ上で占める量を推定する。
+   *
+   * <p>固定分に加え、sourcePath / relativePath の文字列とバイト列を2重に持つ分を見込む。
+   */
+  static long estimateBytes(MediaItem item) {
+    int chars =
+        item.sourcePath().toString().length() + item.relativePath().toString().length();
+    return ITEM_OVERHEAD_BYTES + 3L * chars;
+  }
+
+  private void spill() throws IOException {
+    buffer.sort(comparator);
+    addRun(0, writeRun(buffer));
+    buffer.clear();
+    bufferedBytes = 0;
+  }
+
+  /** ランをレベルに加え、そのレベルが MAX_FAN_IN 本に達したら1本にマージして次のレベルへ上げる。 */
+  private void addRun(int level, Path run) throws IOException {
+    while (levels.size() <= level) {
+      levels.add(new ArrayList<>());
+    }
+    List<Path> runs = levels.get(level);
+    runs.add(run);
+    if (runs.size() >= MAX_FAN_IN) {
+      Path merged = merge(runs);
+      runs.clear();
+      addRun(level + 1, merged);
+    }
+  }
+
+  /** ラン群を1本のランにマージし、元のランを削除する。 */
+  private Path merge(List<Path> runs) throws IOException {
+    SortedMediaItems merged = SortedMediaItems.ofRuns(runs, spillDir, comparator, 0, 0);
+    Path run;
+    try {
+      run = writeRun(merged);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    for (Path old : runs) {
+      Files.deleteIfExists(old);
+    }
+    return run;
+  }
+
+  private Path writeRun(Iterable<MediaItem> items) throws IOException {
+    if (spillDir == null) {
+      spillDir =
+          tempParent == null
+              ? Files.createTempDirectory("gallery-scan-")
+              : Files.createTempDirectory(tempParent, "gallery-scan-");
+    }
+    Path run = spillDir.resolve("run-" + (nextRunId++) + ".bin");
+    RunFile.write(run, items);
+    return run;
+  }
+}
@@ -0,0 +1,246 @@
+package com.example.gallery.scan;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * gitignore 形式の除外ルール（.galleryignore）をコンパイル済みの形で保持する。
+ *
+ * <p>対応する記法：
+ *
+ * <ul>
+ *   <li>空行・{@code #} で始まる行は無視
+ *   <li>{@code !} で始まる行は否定（再包含）。後に書かれたルールが優先される
+ *   <li>末尾 {@code /} はディレクトリのみに一致
+ *   <li>途中/先頭に {@code /} を含むパターンは .galleryignore のあるディレクトリ基準、含まないパターンは任意の階層の名前に一致
+ *   <li>{@code *}, {@code ?}, {@code [...]}, {@code **}
+ * </ul>
+ *
+ * <p>ワイルドカードを含まない名前パターン（例: {@code @eaDir}）は正規表現を使わず文字列比較で判定する。 大小文字は区別する（gitignore と同じ）。
+ *
+ * <p>インスタンスは不変。ネストした .galleryignore は {@link #with(String, List)} で親のルールに追加した新しいインスタンスとして扱う。
+ */
+public final class IgnoreRules {
+
+  /** 除外ルールファイル名。 */
+  public static final String FILE_NAME = ".galleryignore";
+
+  /** ルールなし。 */
+  public static final IgnoreRules EMPTY = new IgnoreRules(List.of());
+
+  private final List<Rule> rules;
+
+  private IgnoreRules(List<Rule> rules) {
+    this.rules = rules;
+  }
+
+  /**
+   * ディレクトリ直下の .galleryignore を読み込み、このルールに追加したものを返す。
+   *
+   * <p>ファイルが存在しない場合は自身をそのまま返す。
+   *
+   * @param dir 対象ディレクトリ
+   * @param baseRel 入力ディレクトリから dir への相対パス（区切りは {@code '/'}、ルートは空文字）
+   * @return ルール
+   * @throws IOException 読み込みに失敗した場合
+   */
+  public IgnoreRules withFileIn(Path dir, String baseRel) throws IOException {
+    Path file = dir.resolve(FILE_NAME);
+    if (!Files.isRegularFile(file)) {
+      return this;
+    }
+    return with(baseRel, Files.readAllLines(file, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * ルール行を追加した新しいインスタンスを返す。
+   *
+   * @param baseRel ルールの基準ディレクトリ（入力ディレクトリからの相対、区切りは {@code '/'}、ルートは空文字）
+   * @param lines .galleryignore の各行
+   * @return ルール
+   */
+  public IgnoreRules with(String baseRel, List<String> lines) {
+    Objects.requireNonNull(baseRel, "baseRel");
+    Objects.requireNonNull(lines, "lines");
+
+    List<Rule> added = new ArrayList<>(rules);
+    for (String line : lines) {
+      Rule rule = Rule.parse(baseRel, line);
+      if (rule != null) {
+        added.add(rule);
+      }
+    }
+    return added.size() == rules.size() ? this : new IgnoreRules(List.copyOf(added));
+  }
+
+  /** ルールが1件もない場合は true。 */
+  public boolean isEmpty() {
+    return rules.isEmpty();
+  }
+
+  /**
+   * パスが除外対象かどうかを判定する。
+   *
+   * @param relativePath 入力ディレクトリからの相対パス（区切りは {@code '/'}）
+   * @param directory ディレクトリの場合は true
+   * @return 除外対象なら true
+   */
+  public boolean isIgnored(String relativePath, boolean directory) {
+    if (rules.isEmpty()) {
+      return false;
+    }
+    String name = relativePath.substring(relativePath.lastIndexOf('/') + 1);
+
+    // 後に書かれたルールが優先されるため、末尾から評価して最初に一致したものを採用する
+    for (int i = rules.size() - 1; i >= 0; i--) {
+      Rule rule = rules.get(i);
+      if (rule.matches(relativePath, name, directory)) {
+        return !rule.negated;
+      }
+    }
+    return false;
+  }
+
+  /** コンパイル済みのルール1行分。 */
+  private record Rule(
+      String basePrefix, boolean negated, boolean dirOnly, String literalName, Pattern pattern) {
+
+    static Rule parse(String baseRel, String line) {
+      String s = stripTrailingSpaces(line);
+      if (s.isEmpty() || s.startsWith("#")) {
+        return null;
+      }
+
+      boolean negated = false;
+      if (s.startsWith("!")) {
+        negated = true;
+        s = s.substring(1);
+      } else if (s.startsWith("\\#") || s.startsWith("\\!")) {
+        s = s.substring(1);
+      }
+
+      boolean dirOnly = false;
+      if (s.endsWith("/")) {
+        dirOnly = true;
+        s = s.substring(0, s.length() - 1);
+      }
+      if (s.isEmpty()) {
+        return null;
+      }
+
+      String basePrefix = baseRel.isEmpty() ? "" : baseRel + "/";
+      boolean anchored = s.indexOf('/') >= 0;
+      if (s.startsWith("/")) {
+        s = s.substring(1);
+      }
+
+      // 名前だけのパターンでワイルドカードを含まないものは文字列比較で判定する
+      if (!anchored && !hasGlobChars(s)) {
+        return new Rule(basePrefix, negated, dirOnly, s, null);
+      }
+
+      String glob = anchored ? s : "**/" + s;
+      return new Rule(basePrefix, negated, dirOnly, null, Pattern.compile(globToRegex(glob)));
+    }
+
+    boolean matches(String relativePath, String name, boolean directory) {
+      if (dirOnly && !directory) {
+        return false;
+      }
+      if (!relativePath.startsWith(basePrefix) || relativePath.length() == basePrefix.length()) {
+        return false;
+      }
+      if (literalName != null) {
+        return literalName.equals(name);
+      }
+      return pattern.matcher(relativePath).region(basePrefix.length(), relativePath.length()).matches();
+    }
+  }
+
+  private static boolean hasGlobChars(String s) {
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '*' || c == '?' || c == '[' || c == '\\') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String stripTrailingSpaces(String line) {
+    int end = line.length();
+    while (end > 0 && line.charAt(end - 1) == ' ' && !(end > 1 && line.charAt(end - 2) == '\\')) {
+      end--;
+    }
+    return line.substring(0, end);
+  }
+
+  /**
+   * glob を正規表現へ変換する。
+   *
+   * <ul>
+   *   <li>{@code **}{@code /}：0個以上のディレクトリ
+   *   <li>末尾の {@code /**}：配下すべて
+   *   <li>{@code *}：区切り以外の0文字以上、{@code ?}：区切り以外の1文字
+   * </ul>
+   */
+  static String globToRegex(String glob) {
+    StringBuilder sb = new StringBuilder();
+    int n = glob.length();
+    for (int i = 0; i < n; i++) {
+      char c = glob.charAt(i);
+      switch (c) {
+        case '*' -> {
+          boolean doubleStar = i + 1 < n && glob.charAt(i + 1) == '*';
+          boolean atSegmentStart = i == 0 || glob.charAt(i - 1) == '/';
+          if (doubleStar && atSegmentStart) {
+            if (i + 2 == n) {
+              sb.append(".*");
+              i++;
+            } else if (glob.charAt(i + 2) == '/') {
+              sb.append("(?:.*/)?");
+              i += 2;
+            } else {
+              sb.append("[^/]*");
+              i++;
+            }
+          } else {
+            sb.append("[^/]*");
+          }
+        }
+        case '?' -> sb.append("[^/]");
+        case '[' -> {
+          int close = glob.indexOf(']', i + 2);
+          if (close < 0) {
+            sb.append("\\[");
+          } else {
+            String body = glob.substring(i + 1, close);
+            if (body.startsWith("!")) {
+              body = "^" + body.substring(1);
+            }
+            sb.append('[').append(body.replace("\\", "\\\\").replace("[", "\\[")).append(']');
+            i = close;
+          }
+        }
+        case '\\' -> {
+          if (i + 1 < n) {
+            sb.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+          }
+        }
+        default -> {
+          if ("().+^$|{}".indexOf(c) >= 0) {
+            sb.append('\\');
+          }
+          sb.append(c);
+        }
+      }
+    }
+    return sb.toString();
+  }
+}
@@ -8,7 +8,8 @@ import java.util.Set;
 /**
  * メディア対象ファイルかどうかを判定するフィルタ。
  *
- * <p>拡張子ベースのフィルタのみを行う。
+ * <p>拡張子ベースのフィルタのみを行う。走査のように大量のファイルを判定する場合は、事前に組み立てた {@link ExtensionMatcher}
+ * を使う。
  */
 public final class MediaFilter {
 
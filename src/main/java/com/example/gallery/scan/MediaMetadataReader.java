@@ -41,7 +41,16 @@ public final class MediaMetadataReader {
    * @throws IOException 取得に失敗した場合
    */
   public static Metadata read(Path file) throws IOException {
-    BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+    return from(Files.readAttributes(file, BasicFileAttributes.class));
+  }
+
+  /**
+   * 取得済みのファイル属性からメタ情報を組み立てる（走査時の属性を再利用し、stat を重複させないため）。
+   *
+   * @param attrs ファイル属性
+   * @return メタ情報
+   */
+  public static Metadata from(BasicFileAttributes attrs) {
     return new Metadata(attrs.size(), attrs.lastModifiedTime().toInstant());
   }
 
@@ -1,18 +1,36 @@
 package com.example.gallery.scan;
 
+import com.example.gallery.domain.InputRoot;
 import com.example.gallery.domain.MediaItem;
 import com.example.gallery.domain.MediaType;
 import com.example.gallery.domain.SortMode;
+import com.example.gallery.jfr.ScanFileEvent;
+import com.example.gallery.progress.PhaseProgress;
 import java.io.IOException;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Stream;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /** inputDir を再帰走査し、対象拡張子のメディア一覧を返す。 */
 public final class MediaScanner {
@@ -24,8 +42,9 @@ public final class MediaScanner {
    *
    * <ol>
    *   <li>入力ディレクトリの存在・種別（ディレクトリ）・拡張子リストの妥当性を検証
-   *   <li>{@link java.nio.file.Files#walk(Path)} により再帰走査
-   *   <li>通常ファイルのみを対象に、拡張子フィルタ（{@link MediaFilter}）を適用
+   *   <li>{@link Files#walkFileTree} により再帰走査（{@link IgnoreRules} で除外されたディレクトリは配下ごとスキップ）。
+   *       ディレクトリへのシンボリックリンクは {@link ScanOptions#followLinks()} の場合だけ辿る
+   *   <li>通常ファイルのみを対象に、拡張子フィルタ（{@link ExtensionMatcher}）と除外ルールを適用
    *   <li>対象ファイルのメタ情報（サイズ/更新日時）を取得し、{@link MediaItem} に変換
    *   <li>{@link SortMode} に従ってソート
    * </ol>
@@ -33,7 +52,8 @@ public final class MediaScanner {
    * <p>補足：
    *
    * <ul>
-   *   <li>relativePath は inputDir からの相対パスとして保持する
+   *   <li>relativePath は inputDir からの相対パスとして保持する（複数の入力フォルダを走査する場合は {@link InputRoot#name()} を先頭に付ける）
+   *   <li>各ディレクトリの .galleryignore は、そのディレクトリ配下にのみ適用される（親のルールを引き継ぐ）
    *   <li>ファイルのメタ情報取得に失敗した場合は、原因が分かるよう例外を送出する
    * </ul>
    *
@@ -46,10 +66,299 @@ public final class MediaScanner {
    */
   public static List<MediaItem> scan(Path inputDir, List<String> includeExtensions, SortMode sort)
       throws IOException {
+    return scan(inputDir, includeExtensions, sort, ScanOptions.DEFAULT);
+  }
+
+  /**
+   * オプションを指定して入力ディレクトリを再帰走査し、対象メディアの一覧を返す。
+   *
+   * @param inputDir 入力ディレクトリ（再帰走査）
+   * @param includeExtensions 対象拡張子（例: jpg, png, mp4）
+   * @param sort ソートモード
+   * @param options 走査オプション
+   * @return メディア一覧（ソート済み）
+   * @throws IOException walk中の入出力エラー
+   * @throws MediaScanException 入力不正（inputDirが存在しない等）
+   * @see #scan(Path, List, SortMode)
+   */
+  public static List<MediaItem> scan(
+      Path inputDir, List<String> includeExtensions, SortMode sort, ScanOptions options)
+      throws IOException {
+    return scan(inputDir, includeExtensions, sort, options, new PhaseProgress("scan"));
+  }
+
+  /**
+   * 進捗を記録しながら入力ディレクトリを再帰走査し、対象メディアの一覧を返す。
+   *
+   * <p>対象メディア1件ごとに、件数とファイルサイズを progress に加算する。
+   *
+   * @param inputDir 入力ディレクトリ（再帰走査）
+   * @param includeExtensions 対象拡張子（例: jpg, png, mp4）
+   * @param sort ソートモード
+   * @param options 走査オプション
+   * @param progress 進捗カウンタ
+   * @return メディア一覧（ソート済み）
+   * @throws IOException walk中の入出力エラー
+   * @throws MediaScanException 入力不正（inputDirが存在しない等）
+   * @see #scan(Path, List, SortMode)
+   */
+  public static List<MediaItem> scan(
+      Path inputDir,
+      List<String> includeExtensions,
+      SortMode sort,
+      ScanOptions options,
+      PhaseProgress progress)
+      throws IOException {
     Objects.requireNonNull(inputDir, "inputDir");
-    Objects.requireNonNull(includeExtensions, "includeExtensions");
+    return scan(List.of(InputRoot.of(inputDir)), includeExtensions, sort, options, progress);
+  }
+
+  /**
+   * 複数の入力フォルダを並行に走査し、1つのソート済みメディア一覧にまとめる。
+   *
+   * <p>入力フォルダごとに1スレッドで走査する（別々のデバイスにある場合は同時に読み出せる）。 各メディアの relativePath には入力フォルダの名前空間（{@link
+   * InputRoot#name()}）が付くため、フォルダをまたいで同じパスになることはない。
+   *
+   * @param roots 入力フォルダ（1件以上）
+   * @param includeExtensions 対象拡張子（例: jpg, png, mp4）
+   * @param sort ソートモード
+   * @param options 走査オプション
+   * @param progress 進捗カウンタ
+   * @return メディア一覧（ソート済み）
+   * @throws IOException walk中の入出力エラー
+   * @throws MediaScanException 入力不正（inputDirが存在しない等）
+   * @see #scan(Path, List, SortMode)
+   */
+  public static List<MediaItem> scan(
+      List<InputRoot> roots,
+      List<String> includeExtensions,
+      SortMode sort,
+      ScanOptions options,
+      PhaseProgress progress)
+      throws IOException {
+    Objects.requireNonNull(sort, "sort");
+    List<MediaItem> items = new ArrayList<>();
+    walkAll(roots, includeExtensions, options, progress, items::add);
+    items.sort(comparator(sort));
+    return List.copyOf(items);
+  }
+
+  /**
+   * 進捗を記録しながら入力ディレクトリを再帰走査し、ソート済みのメディア一覧を返す。
+   *
+   * <p>{@link ScanOptions#memoryBudgetBytes()} が設定されている場合、走査結果の推定使用量が上限を超えるたびに
+   * ソート済みのラン（一時ファイル）として書き出し、読み出し時にマージする。 これにより、ファイル数がヒープに収まらない入力でも走査できる。
+   * 上限が設定されていない場合はメモリ上の一覧を返す。
+   *
+   * <p>戻り値は使い終わったら {@link SortedMediaItems#close()} で閉じること（一時ファイルを削除する）。
+   *
+   * @param inputDir 入力ディレクトリ（再帰走査）
+   * @param includeExtensions 対象拡張子（例: jpg, png, mp4）
+   * @param sort ソートモード
+   * @param options 走査オプション
+   * @param progress 進捗カウンタ
+   * @return ソート済みメディア一覧
+   * @throws IOException walk中の入出力エラー、または一時ファイルの書き出しに失敗した場合
+   * @throws MediaScanException 入力不正（inputDirが存在しない等）
+   * @see #scan(Path, List, SortMode)
+   */
+  public static SortedMediaItems scanSorted(
+      Path inputDir,
+      List<String> includeExtensions,
+      SortMode sort,
+      ScanOptions options,
+      PhaseProgress progress)
+      throws IOException {
+    Objects.requireNonNull(inputDir, "inputDir");
+    return scanSorted(List.of(InputRoot.of(inputDir)), includeExtensions, sort, options, progress);
+  }
+
+  /**
+   * 複数の入力フォルダを並行に走査し、ソート済みのメディア一覧にまとめる（メモリ上限を超える分は一時ファイルに書き出す）。
+   *
+   * @param roots 入力フォルダ（1件以上）
+   * @param includeExtensions 対象拡張子（例: jpg, png, mp4）
+   * @param sort ソートモード
+   * @param options 走査オプション
+   * @param progress 進捗カウンタ
+   * @return ソート済みメディア一覧
+   * @throws IOException walk中の入出力エラー、または一時ファイルの書き出しに失敗した場合
+   * @throws MediaScanException 入力不正（inputDirが存在しない等）
+   * @see #scan(List, List, SortMode, ScanOptions, PhaseProgress)
+   * @see #scanSorted(Path, List, SortMode, ScanOptions, PhaseProgress)
+   */
+  public static SortedMediaItems scanSorted(
+      List<InputRoot> roots,
+      List<String> includeExtensions,
+      SortMode sort,
+      ScanOptions options,
+      PhaseProgress progress)
+      throws IOException {
     Objects.requireNonNull(sort, "sort");
+    Objects.requireNonNull(options, "options");
+    if (!options.bounded()) {
+      return SortedMediaItems.of(scan(roots, includeExtensions, sort, options, progress));
+    }
+    ExternalMediaSorter sorter =
+        new ExternalMediaSorter(comparator(sort), options.memoryBudgetBytes(), null);
+    try {
+      walkAll(roots, includeExtensions, options, progress, sorter::add);
+      return sorter.finish();
+    } catch (IOException | RuntimeException e) {
+      sorter.discard();
+      throw e;
+    }
+  }
 
+  /**
+   * 進捗を記録しながら入力ディレクトリを再帰走査し、見つかったメディアを1件ずつ sink に渡す（ソートしない）。
+   *
+   * <p>一覧を作らないため、ファイル数によらず一定のメモリで走査できる。渡される順は走査順（ディレクトリ内の列挙順は OS 依存）。
+   *
+   * @param inputDir 入力ディレクトリ（再帰走査）
+   * @param includeExtensions 対象拡張子（例: jpg, png, mp4）
+   * @param options 走査オプション
+   * @param progress 進捗カウンタ
+   * @param sink メディアの受け取り先（見つかるたびに呼ばれる）
+   * @throws IOException walk中の入出力エラー、または sink が送出した場合
+   * @throws MediaScanException 入力不正（inputDirが存在しない等）
+   * @see #scan(Path, List, SortMode)
+   */
+  public static void scanEach(
+      Path inputDir,
+      List<String> includeExtensions,
+      ScanOptions options,
+      PhaseProgress progress,
+      ItemSink sink)
+      throws IOException {
+    Objects.requireNonNull(inputDir, "inputDir");
+    scanEach(List.of(InputRoot.of(inputDir)), includeExtensions, options, progress, sink);
+  }
+
+  /**
+   * 複数の入力フォルダを並行に走査し、見つかったメディアを1件ずつ sink に渡す（ソートしない）。
+   *
+   * <p>sink の呼び出しは直列化する（sink はスレッドセーフでなくてよい）。フォルダをまたいだ順は不定。
+   *
+   * @param roots 入力フォルダ（1件以上）
+   * @param includeExtensions 対象拡張子（例: jpg, png, mp4）
+   * @param options 走査オプション
+   * @param progress 進捗カウンタ
+   * @param sink メディアの受け取り先（見つかるたびに呼ばれる）
+   * @throws IOException walk中の入出力エラー、または sink が送出した場合
+   * @throws MediaScanException 入力不正（inputDirが存在しない等）
+   * @see #scanEach(Path, List, ScanOptions, PhaseProgress, ItemSink)
+   */
+  public static void scanEach(
+      List<InputRoot> roots,
+      List<String> includeExtensions,
+      ScanOptions options,
+      PhaseProgress progress,
+      ItemSink sink)
+      throws IOException {
+    Objects.requireNonNull(sink, "sink");
+    walkAll(roots, includeExtensions, options, progress, sink);
+  }
+
+  /** 走査で見つかったメディアの受け取り先。 */
+  @FunctionalInterface
+  public interface ItemSink {
+
+    /**
+     * メディアを1件受け取る。
+     *
+     * @param item 見つかったメディア
+     * @throws IOException 受け取り先での書き込みに失敗した場合（走査を中断する）
+     */
+    void accept(MediaItem item) throws IOException;
+  }
+
+  /**
+   * 入力フォルダごとに1スレッドで並行に走査する（1件の場合は呼び出し元のスレッドで走査する）。
+   *
+   * <p>sink の呼び出しはロックで直列化する。いずれかの走査が失敗した場合は残りの走査を打ち切り、最初の例外を送出する。
+   */
+  private static void walkAll(
+      List<InputRoot> roots,
+      List<String> includeExtensions,
+      ScanOptions options,
+      PhaseProgress progress,
+      ItemSink sink)
+      throws IOException {
+    Objects.requireNonNull(roots, "roots");
+    Objects.requireNonNull(includeExtensions, "includeExtensions");
+    Objects.requireNonNull(options, "options");
+    Objects.requireNonNull(progress, "progress");
+    if (roots.isEmpty()) {
+      throw new MediaScanException("inputDir が指定されていません");
+    }
+    if (includeExtensions.isEmpty()) {
+      throw new MediaScanException("includeExtensions が空です");
+    }
+    // 走査を始める前にすべての入力フォルダを検証する（一部だけ走査してから失敗しないように）
+    List<Path> absInputs = new ArrayList<>(roots.size());
+    for (InputRoot root : roots) {
+      absInputs.add(checkInputDir(root.dir()));
+    }
+    // includeExtensions は ConfigLoader 側で正規化済みの想定だが、マッチャ側でも正規化する
+    ExtensionMatcher matcher = ExtensionMatcher.of(includeExtensions);
+
+    if (roots.size() == 1) {
+      new ScanVisitor(absInputs.get(0), roots.get(0), matcher, options, progress, sink).walk();
+      return;
+    }
+
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    Object lock = new Object();
+    ItemSink serialized =
+        item -> {
+          if (failure.get() != null) {
+            // 他のフォルダの走査が失敗したため打ち切る（例外は最初のものだけを送出する）
+            throw new CancellationException();
+          }
+          synchronized (lock) {
+            sink.accept(item);
+          }
+        };
+    ExecutorService pool = Executors.newFixedThreadPool(roots.size());
+    try {
+      for (int i = 0; i < roots.size(); i++) {
+        Path absInput = absInputs.get(i);
+        ScanVisitor visitor =
+            new ScanVisitor(absInput, roots.get(i), matcher, options, progress, serialized);
+        pool.execute(
+            () -> {
+              try {
+                visitor.walk();
+              } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+              }
+            });
+      }
+      pool.shutdown();
+      pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("走査が中断されました", e);
+    } finally {
+      pool.shutdownNow();
+    }
+
+    Throwable t = failure.get();
+    if (t instanceof IOException io) {
+      throw io;
+    }
+    if (t instanceof RuntimeException re) {
+      throw re;
+    }
+    if (t instanceof Error err) {
+      throw err;
+    }
+  }
+
+  /** 入力ディレクトリの存在・種別を検証し、絶対パス（正規化済み）を返す。 */
+  private static Path checkInputDir(Path inputDir) {
+    Objects.requireNonNull(inputDir, "inputDir");
     Path absInput = inputDir.toAbsolutePath().normalize();
     if (!Files.exists(absInput)) {
       throw new MediaScanException("inputDir が見つかりません: " + absInput);
@@ -57,59 +366,210 @@ public final class MediaScanner {
     if (!Files.isDirectory(absInput)) {
       throw new MediaScanException("inputDir がディレクトリではありません: " + absInput);
     }
-    if (includeExtensions.isEmpty()) {
-      throw new MediaScanException("includeExtensions が空です");
+    return absInput;
+  }
+
+  /**
+   * 再帰走査の本体。
+   *
+   * <p>ディレクトリに入る時点で .galleryignore を読み込んでルールを積み、除外対象のディレクトリは {@link
+   * FileVisitResult#SKIP_SUBTREE} で配下の列挙自体を行わない。
+   *
+   * <p>リンクを辿る場合は、走査済みのディレクトリの実体（{@link BasicFileAttributes#fileKey()}、取得できない OS
+   * では実パス）を記録し、同じ実体に再び着いたら配下を走査しない。 これにより、祖先へのリンク（循環）で無限に辿らず、複数のリンクから同じディレクトリを指す場合も1回だけ走査する。
+   *
+   * <p>どのパスで走査するかがディレクトリの列挙順に左右されないよう、ディレクトリへのリンクはその場では辿らない。
+   * 入力フォルダ内を指すリンクは辿らず（実パスの側で走査する）、入力フォルダの外を指すリンクは入力フォルダの走査の後に、 リンクのパスの順に走査する（同じ実体を指すリンクが複数ある場合は、順が先のパスで走査する）。
+   */
+  private static final class ScanVisitor extends SimpleFileVisitor<Path> {
+
+    private final Path absInput;
+    private final InputRoot root;
+    private final ExtensionMatcher matcher;
+    private final ScanOptions options;
+    private final PhaseProgress progress;
+    private final ItemSink sink;
+    private final Deque<IgnoreRules> rulesStack = new ArrayDeque<>();
+    private final Set<Object> visitedDirs = new HashSet<>();
+
+    /** 後で走査する、入力フォルダの外を指すリンク（キーは入力フォルダからの相対パス）。 */
+    private final TreeMap<String, LinkedDir> linkedDirs = new TreeMap<>();
+
+    private Path realInput;
+    private Path walkStart;
+
+    ScanVisitor(
+        Path absInput,
+        InputRoot root,
+        ExtensionMatcher matcher,
+        ScanOptions options,
+        PhaseProgress progress,
+        ItemSink sink) {
+      this.absInput = absInput;
+      this.root = root;
+      this.matcher = matcher;
+      this.options = options;
+      this.progress = progress;
+      this.sink = sink;
+    }
+
+    /** 入力フォルダ1件を走査する（followLinks の場合はディレクトリへのリンクを辿る）。 */
+    void walk() throws IOException {
+      if (!options.followLinks()) {
+        Files.walkFileTree(
+            absInput, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, this);
+        return;
+      }
+      Set<FileVisitOption> follow = EnumSet.of(FileVisitOption.FOLLOW_LINKS);
+      realInput = absInput.toRealPath();
+      walkStart = absInput;
+      Files.walkFileTree(absInput, follow, Integer.MAX_VALUE, this);
+
+      // 入力フォルダの外を指すリンクを、リンクのパスの順に走査する（走査中に見つけたリンクも順に加わる）
+      Map.Entry<String, LinkedDir> next;
+      while ((next = linkedDirs.pollFirstEntry()) != null) {
+        LinkedDir link = next.getValue();
+        walkStart = link.path();
+        rulesStack.push(link.rules());
+        Files.walkFileTree(link.path(), follow, Integer.MAX_VALUE, this);
+        rulesStack.pop();
+      }
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+        throws IOException {
+      IgnoreRules parent = rulesStack.isEmpty() ? IgnoreRules.EMPTY : rulesStack.peek();
+      String rel = relativeString(dir);
+
+      if (!rel.isEmpty() && parent.isIgnored(rel, true)) {
+        return FileVisitResult.SKIP_SUBTREE;
+      }
+      if (options.followLinks()) {
+        if (!dir.equals(walkStart) && Files.isSymbolicLink(dir)) {
+          // 入力フォルダ内を指すリンクは実パスの側で走査し、外を指すリンクは後でパスの順に走査する
+          if (!dir.toRealPath().startsWith(realInput)) {
+            linkedDirs.putIfAbsent(rel, new LinkedDir(dir, parent));
+          }
+          return FileVisitResult.SKIP_SUBTREE;
+        }
+        if (!visitedDirs.add(directoryKey(dir, attrs))) {
+          // 循環、または別のリンクから走査済みのディレクトリ
+          return FileVisitResult.SKIP_SUBTREE;
+        }
+      }
+      rulesStack.push(parent.withFileIn(dir, rel));
+      return FileVisitResult.CONTINUE;
     }
 
-    // includeExtensions は ConfigLoader 側で正規化済みの想定だが、ここでも安全にSet化する
-    Set<String> allowed = new HashSet<>(includeExtensions);
+    @Override
+    public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+      if (exc instanceof FileSystemLoopException) {
+        // 祖先へのリンク（walkFileTree 側が先に検出した場合）
+        return FileVisitResult.CONTINUE;
+      }
+      throw exc;
+    }
+
+    @Override
+    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+      if (attrs.isSymbolicLink()) {
+        // ファイルへのシンボリックリンクはリンク先の属性で判定する（リンク切れは対象外）
+        if (!Files.isRegularFile(file)) {
+          return FileVisitResult.CONTINUE;
+        }
+        attrs = Files.readAttributes(file, BasicFileAttributes.class);
+      }
+      if (!attrs.isRegularFile()) {
+        return FileVisitResult.CONTINUE;
+      }
+      // 拡張子判定を先に行い、対象外のファイルでは相対パスの算出・除外ルールの照合・MediaItem の生成を行わない。
+      // パス文字列は Path#toString で組み立てる（Unix では初回に1回生成してキャッシュ、Windows は保持済み）
+      String matchedExt = matcher.match(file.toString());
+      if (matchedExt == null) {
+        return FileVisitResult.CONTINUE;
+      }
+      IgnoreRules rules = rulesStack.peek();
+      if (rules != null && !rules.isEmpty() && rules.isIgnored(relativeString(file), false)) {
+        return FileVisitResult.CONTINUE;
+      }
+      ScanFileEvent event = new ScanFileEvent();
+      event.begin();
+      sink.accept(toMediaItem(absInput, root, file, matchedExt, attrs, options));
+      event.finish(file, attrs.size());
+      progress.add(1, attrs.size());
+      return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+      rulesStack.pop();
+      if (exc != null) {
+        throw exc;
+      }
+      return FileVisitResult.CONTINUE;
+    }
+
+    /** ディレクトリの実体を表すキー（fileKey はデバイスと inode。取得できない場合は実パス）。 */
+    private static Object directoryKey(Path dir, BasicFileAttributes attrs) throws IOException {
+      Object key = attrs.fileKey();
+      return key != null ? key : dir.toRealPath();
+    }
 
-    try (Stream<Path> paths = Files.walk(absInput)) {
-      return paths
-          .filter(Files::isRegularFile)
-          .map(p -> toMediaItem(absInput, p, allowed))
-          .filter(Objects::nonNull)
-          .sorted(comparator(sort))
-          .toList();
+    private String relativeString(Path path) {
+      return absInput.relativize(path).toString().replace('\\', '/');
     }
+
+    /**
+     * 後で走査するリンク。
+     *
+     * @param path リンクのパス（入力フォルダ配下）
+     * @param rules リンクを置いたディレクトリの除外ルール
+     */
+    private record LinkedDir(Path path, IgnoreRules rules) {}
   }
 
   /**
    * 走査対象のファイルパスから {@link MediaItem} を組み立てる。
    *
    * <ul>
-   *   <li>拡張子が許可リストに含まれるか判定（対象外は {@code null} を返す）
-   *   <li>sourcePath を絶対パスに正規化し、inputDir からの相対パス（relativePath）を算出
-   *   <li>拡張子が {@code mp4} の場合は VIDEO、それ以外は IMAGE として種別決定
-   *   <li>ファイルサイズと更新日時を取得して {@link MediaItem} に格納
+   *   <li>sourcePath を絶対パスに正規化し、inputDir からの相対パスに名前空間を付けて relativePath とする
+   *   <li>種別は拡張子で決定（{@link MediaTypeSniffer#fromExtension}）。内容判定が有効な場合は先頭バイトで判定し、判定できなければ拡張子に従う
+   *   <li>走査時に取得済みの属性からファイルサイズと更新日時を取り出して {@link MediaItem} に格納
    * </ul>
    *
-   * <p>注意：メタ情報の取得に失敗した場合は、原因ファイルが分かるよう {@link RuntimeException} として投げる （呼び出し側でエラー表示する前提）。
-   *
    * @param absInput 入力ディレクトリ（絶対パスに正規化済み）
+   * @param root 入力フォルダ（relativePath に付ける名前空間）
    * @param file 対象ファイル
-   * @param allowedExtensions 許可拡張子（例: jpg, png, mp4）
-   * @return 対象であれば {@link MediaItem}、対象外であれば {@code null}
+   * @param matchedExt 一致した拡張子（正規化済み）
+   * @param attrs 走査時に取得済みのファイル属性
+   * @param options 走査オプション
+   * @return {@link MediaItem}
+   * @throws IOException 内容判定の読み込みに失敗した場合
    */
-  private static MediaItem toMediaItem(Path absInput, Path file, Set<String> allowedExtensions) {
-    String matchedExt = MediaFilter.matchExtension(file, allowedExtensions);
-    if (matchedExt.isEmpty()) {
-      return null;
-    }
-
+  private static MediaItem toMediaItem(
+      Path absInput,
+      InputRoot root,
+      Path file,
+      String matchedExt,
+      BasicFileAttributes attrs,
+      ScanOptions options)
+      throws IOException {
     Path absFile = file.toAbsolutePath().normalize();
-    Path rel = absInput.relativize(absFile);
+    Path rel = root.namespaced(absInput.relativize(absFile));
 
-    MediaType type = matchedExt.equals("mp4") ? MediaType.VIDEO : MediaType.IMAGE;
-
-    try {
-      MediaMetadataReader.Metadata meta = MediaMetadataReader.read(file);
-      long size = meta.sizeBytes();
-      Instant modified = meta.lastModifiedAt();
-      return new MediaItem(absFile, rel, type, size, modified);
-    } catch (IOException e) {
-      throw new RuntimeException("メタ情報の取得に失敗しました: " + file + " (" + e.getMessage() + ")", e);
+    MediaType type = null;
+    if (options.sniffContent()) {
+      type = MediaTypeSniffer.sniff(file);
     }
+    if (type == null) {
+      type = MediaTypeSniffer.fromExtension(matchedExt);
+    }
+
+    MediaMetadataReader.Metadata meta = MediaMetadataReader.from(attrs);
+    long size = meta.sizeBytes();
+    Instant modified = meta.lastModifiedAt();
+    return new MediaItem(absFile, rel, type, size, modified);
   }
 
   /**
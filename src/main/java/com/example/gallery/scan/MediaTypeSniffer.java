@@ -0,0 +1,121 @@
+package com.example.gallery.scan;
+
+import com.example.gallery.domain.MediaType;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * メディア種別の判定を行う。
+ *
+ * <ul>
+ *   <li>拡張子による判定：動画拡張子（mp4/mov/m4v/webm/mkv/avi）は VIDEO、それ以外は IMAGE
+ *   <li>内容による判定（オプトイン）：先頭 {@value #HEADER_BYTES} バイトのマジックナンバーから判定
+ * </ul>
+ */
+public final class MediaTypeSniffer {
+
+  /** 内容判定で読み込む先頭バイト数。 */
+  public static final int HEADER_BYTES = 16;
+
+  private static final Set<String> VIDEO_EXTENSIONS =
+      Set.of("mp4", "mov", "m4v", "webm", "mkv", "avi");
+
+  /** ISO BMFF（ftyp）のうち画像を表す major brand。 */
+  private static final Set<String> IMAGE_BRANDS =
+      Set.of("heic", "heix", "heim", "heis", "hevc", "mif1", "msf1", "avif", "avis");
+
+  private MediaTypeSniffer() {}
+
+  /**
+   * 正規化済み拡張子からメディア種別を決める。
+   *
+   * @param normalizedExtension 正規化済み拡張子（例: "mp4"）
+   * @return メディア種別
+   */
+  public static MediaType fromExtension(String normalizedExtension) {
+    return VIDEO_EXTENSIONS.contains(normalizedExtension) ? MediaType.VIDEO : MediaType.IMAGE;
+  }
+
+  /**
+   * ファイルの先頭バイトを読み込み、メディア種別を判定する。
+   *
+   * @param file 対象ファイル
+   * @return 判定できた場合はメディア種別、判定できない場合は {@code null}
+   * @throws IOException 読み込みに失敗した場合
+   */
+  public static MediaType sniff(Path file) throws IOException {
+    byte[] header = new byte[HEADER_BYTES];
+    int read;
+    try (InputStream in = Files.newInputStream(file)) {
+      read = in.readNBytes(header, 0, header.length);
+    }
+    return sniff(header, read);
+  }
+
+  /**
+   * 先頭バイト列からメディア種別を判定する。
+   *
+   * @param h 先頭バイト列
+   * @param len 有効なバイト数
+   * @return 判定できた場合はメディア種別、判定できない場合は {@code null}
+   */
+  public static MediaType sniff(byte[] h, int len) {
+    // JPEG: FF D8 FF
+    if (len >= 3 && u(h, 0) == 0xFF && u(h, 1) == 0xD8 && u(h, 2) == 0xFF) {
+      return MediaType.IMAGE;
+    }
+    // PNG: 89 'P' 'N' 'G'
+    if (len >= 4 && u(h, 0) == 0x89 && ascii(h, 1, "PNG")) {
+      return MediaType.IMAGE;
+    }
+    // GIF: "GIF8"
+    if (len >= 4 && ascii(h, 0, "GIF8")) {
+      return MediaType.IMAGE;
+    }
+    // RIFF コンテナ: WebP / AVI
+    if (len >= 12 && ascii(h, 0, "RIFF")) {
+      if (ascii(h, 8, "WEBP")) {
+        return MediaType.IMAGE;
+      }
+      if (ascii(h, 8, "AVI ")) {
+        return MediaType.VIDEO;
+      }
+      return null;
+    }
+    // Matroska / WebM: 1A 45 DF A3
+    if (len >= 4 && u(h, 0) == 0x1A && u(h, 1) == 0x45 && u(h, 2) == 0xDF && u(h, 3) == 0xA3) {
+      return MediaType.VIDEO;
+    }
+    // ISO BMFF（mp4/mov/heic/avif）: [size]"ftyp"[major brand]
+    if (len >= 12 && ascii(h, 4, "ftyp")) {
+      String brand = new String(h, 8, 4, StandardCharsets.ISO_8859_1);
+      return IMAGE_BRANDS.contains(brand) ? MediaType.IMAGE : MediaType.VIDEO;
+    }
+    // ftyp を持たない古い QuickTime（先頭 atom が moov/mdat/wide/free）
+    if (len >= 8
+        && (ascii(h, 4, "moov")
+            || ascii(h, 4, "mdat")
+            || ascii(h, 4, "wide")
+            || ascii(h, 4, "free"))) {
+      return MediaType.VIDEO;
+    }
+    return null;
+  }
+
+  private static int u(byte[] h, int i) {
+    return h[i] & 0xFF;
+  }
+
+  private static boolean ascii(byte[] h, int offset, String s) {
+    for (int i = 0; i < s.length(); i++) {
+      if (h[offset + i] != (byte) s.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
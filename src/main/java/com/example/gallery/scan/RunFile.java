@@ -0,0 +1,118 @@
+package com.example.gallery.scan;
+
+import com.example.gallery.domain.MediaItem;
+import com.example.gallery.domain.MediaType;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * ソート済みラン（一時ファイル）の読み書き。
+ *
+ * <p>1件を sourcePath / relativePath（UTF）、種別、サイズ、更新日時（秒・ナノ秒）の順に書き出す。
+ */
+final class RunFile {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final MediaType[] TYPES = MediaType.values();
+
+  private RunFile() {}
+
+  /**
+   * ソート済みのメディア列をランとして書き出す。
+   *
+   * @param path 書き出し先
+   * @param items ソート済みのメディア列
+   * @throws IOException 書き込みに失敗した場合
+   */
+  static void write(Path path, Iterable<MediaItem> items) throws IOException {
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE))) {
+      for (MediaItem item : items) {
+        out.writeUTF(item.sourcePath().toString());
+        out.writeUTF(item.relativePath().toString());
+        out.writeByte(item.type().ordinal());
+        out.writeLong(item.sizeBytes());
+        out.writeLong(item.lastModifiedAt().getEpochSecond());
+        out.writeInt(item.lastModifiedAt().getNano());
+      }
+    }
+  }
+
+  /**
+   * ランを開き、先頭の1件を読み込んだ状態のリーダーを返す。
+   *
+   * @param path ラン
+   * @param index ランの番号（同順位の要素の並びを安定させるために使う）
+   * @return リーダー
+   * @throws IOException 読み込みに失敗した場合
+   */
+  static Reader open(Path path, int index) throws IOException {
+    DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE));
+    Reader reader = new Reader(in, index);
+    try {
+      reader.advance();
+    } catch (IOException e) {
+      reader.close();
+      throw e;
+    }
+    return reader;
+  }
+
+  /** ランを先頭から1件ずつ読み出すリーダー。 */
+  static final class Reader implements Closeable {
+
+    private final DataInputStream in;
+    private final int index;
+    private MediaItem head;
+
+    private Reader(DataInputStream in, int index) {
+      this.in = in;
+      this.index = index;
+    }
+
+    /** 現在の要素（末尾に達した場合は null）を返す。 */
+    MediaItem head() {
+      return head;
+    }
+
+    int index() {
+      return index;
+    }
+
+    /**
+     * 次の要素を読み込む。
+     *
+     * @return 読み込めた場合は true、末尾に達した場合は false
+     * @throws IOException 読み込みに失敗した場合
+     */
+    boolean advance() throws IOException {
+      String source;
+      try {
+        source = in.readUTF();
+      } catch (EOFException e) {
+        head = null;
+        return false;
+      }
+      Path rel = Path.of(in.readUTF());
+      MediaType type = TYPES[in.readByte()];
+      long size = in.readLong();
+      Instant modified = Instant.ofEpochSecond(in.readLong(), in.readInt());
+      head = new MediaItem(Path.of(source), rel, type, size, modified);
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package com.example.gallery.scan;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/** {@code gallery scan} が書き出すメディア一覧の形式を表す。 */
+public enum ScanExportFormat {
+  /** 1行に1件の JSON オブジェクト（JSON Lines）。 */
+  JSONL("jsonl"),
+
+  /** 先頭行に列名を持つ CSV（RFC 4180、改行は CRLF）。 */
+  CSV("csv");
+
+  private final String id;
+
+  ScanExportFormat(String id) {
+    this.id = id;
+  }
+
+  /** コマンドライン上の識別子（例: jsonl）を返す。 */
+  public String id() {
+    return id;
+  }
+
+  /**
+   * 指定値（文字列）から {@link ScanExportFormat} を解決する。
+   *
+   * @param value 指定値（null/空は不可）
+   * @return 解決した {@link ScanExportFormat}
+   * @throws IllegalArgumentException 不正な値の場合
+   */
+  public static ScanExportFormat from(String value) {
+    String normalized = value.trim().toLowerCase(Locale.ROOT);
+    return Arrays.stream(values())
+        .filter(f -> f.id.equals(normalized))
+        .findFirst()
+        .orElseThrow(() -> new IllegalArgumentException("不正な形式です: " + value));
+  }
+}
@@ -0,0 +1,127 @@
+package com.example.gallery.scan;
+
+import com.example.gallery.domain.MediaItem;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * 走査で見つかったメディアを1件ずつ JSON Lines / CSV として書き出す。
+ *
+ * <p>{@link MediaScanner#scanEach} の受け取り先として渡すと、一覧を作らずに走査しながら書き出せる。 各件の列（キー）は次のとおり。
+ *
+ * <ul>
+ *   <li>{@code relativePath}: inputDir からの相対パス（区切り文字は {@code /}、入力フォルダが複数の場合は名前空間付き）
+ *   <li>{@code type}: {@code image} / {@code video}
+ *   <li>{@code sizeBytes}: ファイルサイズ
+ *   <li>{@code lastModifiedAt}: 更新日時（ISO-8601、UTC）
+ *   <li>{@code sourcePath}: 元ファイルの絶対パス
+ * </ul>
+ *
+ * <p>1つのスレッドから順に呼び出す。書き出し先は閉じないため、使い終わったら {@link #flush()} を呼ぶこと。
+ */
+public final class ScanExportWriter implements MediaScanner.ItemSink, Flushable {
+
+  private static final JsonFactory JSON = new JsonFactory();
+
+  private static final String[] COLUMNS = {
+    "relativePath", "type", "sizeBytes", "lastModifiedAt", "sourcePath"
+  };
+
+  private final Writer out;
+  private final JsonGenerator json;
+  private long count;
+
+  private ScanExportWriter(Writer out, JsonGenerator json) {
+    this.out = out;
+    this.json = json;
+  }
+
+  /**
+   * 書き出しを開始する（CSV の場合は列名の行を書き出す）。
+   *
+   * @param out 書き出し先（閉じない）
+   * @param format 形式
+   * @return 書き出し処理
+   * @throws IOException 書き込みに失敗した場合
+   */
+  public static ScanExportWriter open(Writer out, ScanExportFormat format) throws IOException {
+    Objects.requireNonNull(out, "out");
+    Objects.requireNonNull(format, "format");
+    if (format == ScanExportFormat.CSV) {
+      out.write(String.join(",", COLUMNS));
+      out.write("\r\n");
+      return new ScanExportWriter(out, null);
+    }
+    JsonGenerator json = JSON.createGenerator(out);
+    json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    // 行の区切りは各件の末尾に自分で書く（既定ではルート値の間に空白が入る）
+    json.setRootValueSeparator((SerializableString) null);
+    return new ScanExportWriter(out, json);
+  }
+
+  @Override
+  public void accept(MediaItem item) throws IOException {
+    String rel = item.relativePath().toString().replace('\\', '/');
+    String type = item.type().name().toLowerCase(Locale.ROOT);
+    String modified = item.lastModifiedAt().toString();
+    String source = item.sourcePath().toString();
+    if (json != null) {
+      json.writeStartObject();
+      json.writeStringField(COLUMNS[0], rel);
+      json.writeStringField(COLUMNS[1], type);
+      json.writeNumberField(COLUMNS[2], item.sizeBytes());
+      json.writeStringField(COLUMNS[3], modified);
+      json.writeStringField(COLUMNS[4], source);
+      json.writeEndObject();
+      json.writeRaw('\n');
+    } else {
+      writeCsvField(rel);
+      out.write(',');
+      out.write(type);
+      out.write(',');
+      out.write(Long.toString(item.sizeBytes()));
+      out.write(',');
+      out.write(modified);
+      out.write(',');
+      writeCsvField(source);
+      out.write("\r\n");
+    }
+    count++;
+  }
+
+  /** これまでに書き出した件数を返す。 */
+  public long count() {
+    return count;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    if (json != null) {
+      json.flush();
+    } else {
+      out.flush();
+    }
+  }
+
+  /** 区切り文字・引用符・改行を含む値だけを引用符で囲む（引用符は2つ重ねる）。 */
+  private void writeCsvField(String value) throws IOException {
+    boolean quote = false;
+    for (int i = 0; i < value.length() && !quote; i++) {
+      char c = value.charAt(i);
+      quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+    }
+    if (!quote) {
+      out.write(value);
+      return;
+    }
+    out.write('"');
+    out.write(value.replace("\"", "\"\""));
+    out.write('"');
+  }
+}
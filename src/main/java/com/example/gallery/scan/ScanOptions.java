@@ -0,0 +1,45 @@
+package com.example.gallery.scan;
+
+/**
+ * 走査の挙動を切り替えるオプション。
+ *
+ * @param sniffContent true の場合、ファイル先頭のマジックナンバーでメディア種別を判定する（判定できない場合は拡張子で判定）
+ * @param memoryBudgetBytes 走査結果をメモリ上に保持する量の上限（bytes）。超えた分はソート済みの一時ファイルに書き出す（0 の場合は無制限）。
+ *     対象は走査結果の一覧だけで、コピージャーナルなどビルドの他の状態は含まない
+ * @param followLinks true の場合、ディレクトリへのシンボリックリンクを辿る（同じ実体のディレクトリは1回だけ走査する）
+ */
+public record ScanOptions(boolean sniffContent, long memoryBudgetBytes, boolean followLinks) {
+
+  /** 既定値（拡張子のみで判定、メモリ上限なし、ディレクトリへのリンクは辿らない）。 */
+  public static final ScanOptions DEFAULT = new ScanOptions(false);
+
+  public ScanOptions {
+    if (memoryBudgetBytes < 0) {
+      throw new IllegalArgumentException("memoryBudgetBytes が不正です: " + memoryBudgetBytes);
+    }
+  }
+
+  /**
+   * ディレクトリへのリンクを辿らないオプションを作成する。
+   *
+   * @param sniffContent 内容で種別を判定する場合は true
+   * @param memoryBudgetBytes 走査結果のメモリ上限（bytes、0 は無制限）
+   */
+  public ScanOptions(boolean sniffContent, long memoryBudgetBytes) {
+    this(sniffContent, memoryBudgetBytes, false);
+  }
+
+  /**
+   * メモリ上限なしのオプションを作成する。
+   *
+   * @param sniffContent 内容で種別を判定する場合は true
+   */
+  public ScanOptions(boolean sniffContent) {
+    this(sniffContent, 0);
+  }
+
+  /** 走査結果のメモリ上限が設定されている場合は true。 */
+  public boolean bounded() {
+    return memoryBudgetBytes > 0;
+  }
+}
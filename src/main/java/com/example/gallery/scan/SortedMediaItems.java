@@ -0,0 +1,207 @@
+package com.example.gallery.scan;
+
+import com.example.gallery.domain.MediaItem;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ソート済みのメディア一覧（走査結果）。
+ *
+ * <p>メモリ上の一覧、または一時ファイルに書き出したソート済みラン（run）群のどちらかを保持する。 ランを保持する場合は {@link #iterator()}
+ * のたびにランを k-way マージしながら読み出すため、全件をメモリに載せない。 何度でも先頭から読み直せる（コピーと HTML 生成で2回読む想定）。
+ *
+ * <p>使い終わったら {@link #close()} で一時ファイルを削除する。
+ */
+public final class SortedMediaItems implements Iterable<MediaItem>, Closeable {
+
+  private final List<MediaItem> inMemory;
+  private final List<Path> runs;
+  private final Path spillDir;
+  private final Comparator<MediaItem> comparator;
+  private final long size;
+  private final long totalBytes;
+
+  /** 途中まで読んだイテレータが開いたままのラン（close 時にまとめて閉じる）。 */
+  private final Set<RunFile.Reader> openReaders = ConcurrentHashMap.newKeySet();
+
+  private SortedMediaItems(
+      List<MediaItem> inMemory,
+      List<Path> runs,
+      Path spillDir,
+      Comparator<MediaItem> comparator,
+      long size,
+      long totalBytes) {
+    this.inMemory = inMemory;
+    this.runs = runs;
+    this.spillDir = spillDir;
+    this.comparator = comparator;
+    this.size = size;
+    this.totalBytes = totalBytes;
+  }
+
+  /**
+   * メモリ上のソート済み一覧から作成する。
+   *
+   * @param items ソート済みのメディア一覧
+   * @return ソート済みメディア一覧
+   */
+  public static SortedMediaItems of(List<MediaItem> items) {
+    long bytes = 0;
+    for (MediaItem item : items) {
+      bytes += item.sizeBytes();
+    }
+    return new SortedMediaItems(List.copyOf(items), List.of(), null, null, items.size(), bytes);
+  }
+
+  static SortedMediaItems ofRuns(
+      List<Path> runs, Path spillDir, Comparator<MediaItem> comparator, long size, long bytes) {
+    return new SortedMediaItems(null, List.copyOf(runs), spillDir, comparator, size, bytes);
+  }
+
+  /** 件数を返す。 */
+  public long size() {
+    return size;
+  }
+
+  /** ファイルサイズの合計（bytes）を返す。 */
+  public long totalBytes() {
+    return totalBytes;
+  }
+
+  /** 一時ファイルに書き出したランの数を返す（メモリ上に保持している場合は 0）。 */
+  public int runCount() {
+    return runs.size();
+  }
+
+  /** ランを書き出した一時ディレクトリ（メモリ上に保持している場合は null）を返す。 */
+  Path spillDir() {
+    return spillDir;
+  }
+
+  /** メモリ上に保持している場合は true。 */
+  public boolean isInMemory() {
+    return inMemory != null;
+  }
+
+  /**
+   * 全件を {@link List} として返す。
+   *
+   * <p>ランを保持している場合は全件をメモリに読み込むため、アルバム生成など一覧全体が必要な処理でのみ使う。
+   *
+   * @return メディア一覧
+   */
+  public List<MediaItem> toList() {
+    if (inMemory != null) {
+      return inMemory;
+    }
+    List<MediaItem> all = new ArrayList<>((int) Math.min(size, Integer.MAX_VALUE));
+    for (MediaItem item : this) {
+      all.add(item);
+    }
+    return all;
+  }
+
+  /**
+   * 先頭から順に読み出すイテレータを返す。
+   *
+   * <p>ランの読み込みに失敗した場合は {@link UncheckedIOException} を送出する。
+   */
+  @Override
+  public Iterator<MediaItem> iterator() {
+    if (inMemory != null) {
+      return inMemory.iterator();
+    }
+    return new MergeIterator();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (spillDir == null) {
+      return;
+    }
+    for (RunFile.Reader reader : openReaders) {
+      reader.close();
+    }
+    openReaders.clear();
+    for (Path run : runs) {
+      Files.deleteIfExists(run);
+    }
+    Files.deleteIfExists(spillDir);
+  }
+
+  /** ラン群の先頭要素を優先度付きキューで比較しながら、昇順に1件ずつ取り出す。 */
+  private final class MergeIterator implements Iterator<MediaItem> {
+
+    private final PriorityQueue<RunFile.Reader> heads;
+
+    MergeIterator() {
+      Comparator<RunFile.Reader> byHead =
+          Comparator.comparing(RunFile.Reader::head, comparator)
+              .thenComparingInt(RunFile.Reader::index);
+      heads = new PriorityQueue<>(Math.max(1, runs.size()), byHead);
+      try {
+        for (int i = 0; i < runs.size(); i++) {
+          RunFile.Reader reader = RunFile.open(runs.get(i), i);
+          if (reader.head() != null) {
+            heads.add(reader);
+            openReaders.add(reader);
+          } else {
+            reader.close();
+          }
+        }
+      } catch (IOException e) {
+        closeAll();
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !heads.isEmpty();
+    }
+
+    @Override
+    public MediaItem next() {
+      RunFile.Reader reader = heads.poll();
+      if (reader == null) {
+        throw new NoSuchElementException();
+      }
+      MediaItem item = reader.head();
+      try {
+        if (reader.advance()) {
+          heads.add(reader);
+        } else {
+          openReaders.remove(reader);
+          reader.close();
+        }
+      } catch (IOException e) {
+        closeAll();
+        throw new UncheckedIOException(e);
+      }
+      return item;
+    }
+
+    private void closeAll() {
+      for (RunFile.Reader r : heads) {
+        openReaders.remove(r);
+        try {
+          r.close();
+        } catch (IOException ignored) {
+          // 読み込み失敗時の後始末のため無視する
+        }
+      }
+      heads.clear();
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package com.example.gallery.bench;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.gallery.domain.MediaItem;
+import com.example.gallery.domain.MediaType;
+import com.example.gallery.domain.SortMode;
+import com.example.gallery.progress.PhaseProgress;
+import com.example.gallery.scan.MediaScanner;
+import com.example.gallery.scan.ScanOptions;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SyntheticTreeGeneratorTest {
+
+  @TempDir Path tempDir;
+
+  // 指定した件数・深さ・サイズ範囲でツリーが生成され、内容判定でも種別が一致することを確認する
+  @Test
+  void generatesTreeThatScansWithSniffedTypes() throws Exception {
+    TreeSpec spec =
+        new TreeSpec(50, 2, 3, 100, 5000, TreeSpec.parseMix("jpg=2,png=1,mp4=1"), 7);
+    Path media = tempDir.resolve("media");
+
+    SyntheticTreeGenerator.Result result =
+        SyntheticTreeGenerator.generate(media, spec, new PhaseProgress("generate"));
+
+    assertEquals(50, result.files());
+    assertEquals(9, result.directories());
+    List<MediaItem> items =
+        MediaScanner.scan(
+            media,
+            List.of("jpg", "png", "mp4"),
+            SortMode.MODIFIED_DESC,
+            new ScanOptions(true));
+    assertEquals(50, items.size());
+    long total = 0;
+    for (MediaItem item : items) {
+      assertEquals(3, item.relativePath().getNameCount());
+      assertTrue(item.sizeBytes() >= 100 && item.sizeBytes() <= 5000, item.toString());
+      String name = item.relativePath().getFileName().toString();
+      assertEquals(name.endsWith(".mp4") ? MediaType.VIDEO : MediaType.IMAGE, item.type());
+      total += item.sizeBytes();
+    }
+    assertEquals(result.bytes(), total);
+  }
+
+  // 詰め物を付けた JPEG / PNG がデコードでき、同じ指定からは同じ内容が生成されることを確認する
+  @Test
+  void generatesDecodableImagesDeterministically() throws Exception {
+    TreeSpec spec = new TreeSpec(6, 0, 1, 2000, 2000, Map.of("jpg", 1, "png", 1), 3);
+    SyntheticTreeGenerator.generate(tempDir.resolve("a"), spec, new PhaseProgress("g"));
+    SyntheticTreeGenerator.generate(tempDir.resolve("b"), spec, new PhaseProgress("g"));
+
+    for (int i = 0; i < 6; i++) {
+      String ext = Files.exists(tempDir.resolve("a/IMG_000000" + i + ".jpg")) ? "jpg" : "png";
+      Path a = tempDir.resolve("a/IMG_000000" + i + "." + ext);
+      Path b = tempDir.resolve("b/IMG_000000" + i + "." + ext);
+      assertEquals(2000, Files.size(a));
+      assertNotNull(ImageIO.read(a.toFile()), a.toString());
+      assertArrayEquals(Files.readAllBytes(a), Files.readAllBytes(b));
+      assertEquals(Files.getLastModifiedTime(a), Files.getLastModifiedTime(b));
+    }
+  }
+
+  // 対応していない拡張子や不正な重みを拒否することを確認する
+  @Test
+  void rejectsUnsupportedMix() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new TreeSpec(1, 0, 1, 1, 1, TreeSpec.parseMix("gif=1"), 0));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new TreeSpec(1, 0, 1, 1, 1, TreeSpec.parseMix("jpg=0"), 0));
+    assertEquals(Map.of("jpg", 3, "png", 1), TreeSpec.parseMix(".JPG=2, jpg=1, png"));
+  }
+}
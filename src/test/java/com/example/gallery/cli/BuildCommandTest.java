@@ -0,0 +1,111 @@
+package com.example.gallery.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.gallery.config.AppConfig;
+import com.example.gallery.config.ConfigLoader;
+import com.example.gallery.output.ChecksumAlgorithm;
+import com.example.gallery.output.InMemorySink;
+import com.example.gallery.progress.PhaseProgress;
+import com.example.gallery.progress.ProgressMode;
+import com.example.gallery.progress.ProgressReporter;
+import com.example.gallery.render.SearchIndex;
+import com.example.gallery.scan.MediaScanner;
+import com.example.gallery.scan.SortedMediaItems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BuildCommandTest {
+
+  @TempDir Path tempDir;
+
+  // アーカイブ用の書き出しを InMemorySink に向けると、ディスクに出力せずに dist の内容が揃うことを確認する
+  @Test
+  void writeToFillsInMemorySinkWithoutTouchingDisk() throws Exception {
+    AppConfig cfg = config();
+
+    InMemorySink sink = new InMemorySink();
+    try (SortedMediaItems items = scan(cfg);
+        ProgressReporter reporter = ProgressReporter.start(ProgressMode.NONE, System.out)) {
+      BuildCommand.writeTo(sink, cfg, items, reporter);
+    }
+
+    assertDistEntries(sink);
+    assertEquals(List.of(), outputFilesOnDisk());
+  }
+
+  // 通常のビルド（差分コピー・キャッシュ付き）も InMemorySink に書き出せ、2回目は前回の内容を読み戻すことを確認する
+  @Test
+  void writeDistFillsInMemorySinkWithoutTouchingDisk() throws Exception {
+    AppConfig cfg = config();
+    Path stateDir = tempDir.resolve("state");
+
+    InMemorySink sink = new InMemorySink();
+    for (int i = 0; i < 2; i++) {
+      try (SortedMediaItems items = scan(cfg);
+          ProgressReporter reporter = ProgressReporter.start(ProgressMode.NONE, System.out)) {
+        int code =
+            new BuildCommand()
+                .writeDist(sink, stateDir, cfg, items, reporter, ChecksumAlgorithm.CRC32C);
+        assertEquals(0, code);
+      }
+      assertDistEntries(sink);
+    }
+    assertEquals(List.of(), outputFilesOnDisk());
+  }
+
+  private AppConfig config() throws Exception {
+    Path media = tempDir.resolve("media");
+    Files.createDirectories(media.resolve("2024"));
+    Files.writeString(media.resolve("2024/a.jpg"), "jpeg");
+    Files.writeString(media.resolve("b.mp4"), "video");
+    Path configFile = tempDir.resolve("gallery.config.json");
+    Files.writeString(
+        configFile,
+        """
+        {
+          "inputDir": "./media",
+          "outputDir": "./dist",
+          "includeExtensions": ["jpg", "mp4"],
+          "sort": "modified_desc",
+          "searchIndex": true
+        }
+        """);
+    return ConfigLoader.load(configFile);
+  }
+
+  private static SortedMediaItems scan(AppConfig cfg) throws Exception {
+    return MediaScanner.scanSorted(
+        cfg.inputRoots(),
+        cfg.includeExtensions(),
+        cfg.sort(),
+        cfg.scanOptions(),
+        new PhaseProgress("scan"));
+  }
+
+  private static void assertDistEntries(InMemorySink sink) {
+    List<String> names = sink.names();
+    assertTrue(names.contains("index.html"), names.toString());
+    assertTrue(names.contains("assets/2024/a.jpg"), names.toString());
+    assertTrue(names.contains("assets/b.mp4"), names.toString());
+    assertTrue(names.contains(SearchIndex.FILE_NAME), names.toString());
+    assertEquals("jpeg", sink.contentAsString("assets/2024/a.jpg"));
+  }
+
+  /** 入力フォルダとビルドの記録以外に作られたファイル（dist への出力が漏れていないか）を返す。 */
+  private List<Path> outputFilesOnDisk() throws Exception {
+    try (Stream<Path> files = Files.walk(tempDir)) {
+      return files
+          .filter(Files::isRegularFile)
+          .filter(p -> !p.startsWith(tempDir.resolve("media")))
+          .filter(p -> !p.startsWith(tempDir.resolve("state")))
+          .filter(p -> !p.equals(tempDir.resolve("gallery.config.json")))
+          .toList();
+    }
+  }
+}
@@ -3,6 +3,7 @@ package com.example.gallery.config;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import com.example.gallery.domain.InputRoot;
 import com.example.gallery.domain.SortMode;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -35,7 +36,8 @@ class ConfigLoaderTest {
     AppConfig cfg = ConfigLoader.load(configFile);
 
     // ../media, ../dist が configDir（tempDir/config）基準で tempDir 配下に解決される想定
-    assertEquals(tempDir.resolve("media").normalize(), cfg.inputDir());
+    assertEquals(List.of(tempDir.resolve("media").normalize()), cfg.inputDirs());
+    assertEquals("", cfg.inputRoots().get(0).name());
     assertEquals(tempDir.resolve("dist").normalize(), cfg.outputDir());
     assertEquals(SortMode.MODIFIED_DESC, cfg.sort());
   }
@@ -61,6 +63,57 @@ class ConfigLoaderTest {
     assertEquals(List.of("jpg", "mp4"), cfg.includeExtensions());
   }
 
+  // inputDirs の各フォルダにフォルダ名の名前空間が付き、大小無視で重複する名前に連番が付くことを確認する
+  @Test
+  void assignsNamespacesToMultipleInputDirs() throws Exception {
+    Path configFile = tempDir.resolve("gallery.config.json");
+    Files.writeString(
+        configFile,
+        """
+        {
+          "inputDirs": ["./a/Photos", "./b/photos", "./c/Videos"],
+          "outputDir": "./dist",
+          "includeExtensions": ["jpg"]
+        }
+        """);
+
+    AppConfig cfg = ConfigLoader.load(configFile);
+
+    assertEquals(
+        List.of("Photos", "photos-2", "Videos"),
+        cfg.inputRoots().stream().map(InputRoot::name).toList());
+    assertEquals(tempDir.resolve("b/photos").normalize(), cfg.inputDirs().get(1));
+  }
+
+  // inputDirs の一方が他方の配下の場合と、inputDir と同時に指定した場合に拒否されることを確認する
+  @Test
+  void rejectsNestedOrAmbiguousInputDirs() throws Exception {
+    Path nested = tempDir.resolve("nested.json");
+    Files.writeString(
+        nested,
+        """
+        {
+          "inputDirs": ["./media", "./media/2024"],
+          "outputDir": "./dist",
+          "includeExtensions": ["jpg"]
+        }
+        """);
+    Path both = tempDir.resolve("both.json");
+    Files.writeString(
+        both,
+        """
+        {
+          "inputDir": "./media",
+          "inputDirs": ["./other"],
+          "outputDir": "./dist",
+          "includeExtensions": ["jpg"]
+        }
+        """);
+
+    assertThrows(ConfigValidationException.class, () -> ConfigLoader.load(nested));
+    assertThrows(ConfigValidationException.class, () -> ConfigLoader.load(both));
+  }
+
   // 指定した設定ファイルが存在しない場合に、ConfigValidationException になることを確認する
   @Test
   void rejectsMissingConfigFile() {
@@ -0,0 +1,103 @@
+package com.example.gallery.image;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DecodeSchedulerTest {
+
+  @TempDir Path tempDir;
+
+  // 上限を超える画像は上限に収まるまで間引き、元の幅・高さはヘッダの値を返すことを確認する
+  @Test
+  void subsamplesImagesThatExceedTheBudget() throws Exception {
+    Path file = png("big.png", 400, 200);
+    DecodeScheduler scheduler = DecodeScheduler.withBudget(100_000);
+
+    try (DecodeScheduler.Decoded decoded = scheduler.decode(file, 0)) {
+      assertEquals(2, decoded.subsampling());
+      assertEquals(200, decoded.image().getWidth());
+      assertEquals(100, decoded.image().getHeight());
+      assertEquals(400, decoded.originalWidth());
+      assertEquals(200, decoded.originalHeight());
+    }
+    assertEquals(80_000, scheduler.peakBytes());
+    assertEquals(1, scheduler.subsampledCount());
+
+    // 出力に必要な幅の2倍を下回らない範囲でも間引く
+    DecodeScheduler roomy = DecodeScheduler.withBudget(10_000_000);
+    try (DecodeScheduler.Decoded decoded = roomy.decode(file, 50)) {
+      assertEquals(4, decoded.subsampling());
+      assertEquals(100, decoded.image().getWidth());
+    }
+    try (DecodeScheduler.Decoded decoded = roomy.decode(file, 300)) {
+      assertEquals(1, decoded.subsampling());
+    }
+  }
+
+  // 並列にデコードしても、同時にデコードする見積もりの合計が上限を超えないことを確認する
+  @Test
+  void admitsDecodesAgainstTheMemoryBudget() throws Exception {
+    List<Path> files = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      files.add(png("p" + i + ".png", 100, 100));
+    }
+    // 1枚 40,000 bytes の見積もりに対して2枚分の上限
+    DecodeScheduler scheduler = DecodeScheduler.withBudget(80_000);
+
+    ExecutorService pool = Executors.newFixedThreadPool(6);
+    try {
+      List<Future<Integer>> futures = new ArrayList<>();
+      for (Path file : files) {
+        futures.add(
+            pool.submit(
+                () -> {
+                  try (DecodeScheduler.Decoded decoded = scheduler.decode(file, 0)) {
+                    Thread.sleep(20);
+                    return decoded.image().getWidth();
+                  }
+                }));
+      }
+      for (Future<Integer> f : futures) {
+        assertEquals(100, f.get().intValue());
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    assertTrue(scheduler.peakBytes() <= 80_000, String.valueOf(scheduler.peakBytes()));
+    assertEquals(0, scheduler.subsampledCount());
+  }
+
+  // 画像として解釈できないファイルは null を返すことを確認する
+  @Test
+  void returnsNullForUndecodableFiles() throws Exception {
+    Path broken = tempDir.resolve("broken.jpg");
+    Files.write(broken, new byte[] {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 1, 2, 3});
+    Path text = tempDir.resolve("a.png");
+    Files.writeString(text, "not an image");
+    DecodeScheduler scheduler = DecodeScheduler.withBudget(0);
+
+    assertNull(scheduler.decode(broken, 0));
+    assertNull(scheduler.decode(text, 0));
+    assertEquals(0, scheduler.peakBytes());
+  }
+
+  private Path png(String name, int width, int height) throws Exception {
+    Path file = tempDir.resolve(name);
+    BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    ImageIO.write(img, "png", file.toFile());
+    return file;
+  }
+}
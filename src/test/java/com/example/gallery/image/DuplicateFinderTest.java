@@ -0,0 +1,135 @@
+package com.example.gallery.image;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.example.gallery.domain.MediaItem;
+import com.example.gallery.domain.MediaType;
+import com.example.gallery.progress.PhaseProgress;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DuplicateFinderTest {
+
+  @TempDir Path tempDir;
+
+  // 縮小・明るさ違いの画像が1グループにまとまり、サイズ最大の画像が代表になり、2回目は記録が使われることを確認する
+  @Test
+  void groupsNearDuplicatesAndReusesHashes() throws Exception {
+    MediaItem original = image("a.png", 320, 240, 0);
+    MediaItem smaller = image("b.png", 160, 120, 0);
+    MediaItem brighter = image("c.png", 320, 240, 20);
+    MediaItem other = checkerboard("d.png");
+    MediaItem video =
+        new MediaItem(
+            tempDir.resolve("e.mp4"), Path.of("e.mp4"), MediaType.VIDEO, 1, Instant.EPOCH);
+    List<MediaItem> items = List.of(smaller, other, original, brighter, video);
+
+    HashIndex index = HashIndex.open(tempDir.resolve("dist"));
+    DuplicateFinder.Result first =
+        DuplicateFinder.find(
+            items, index, DuplicateFinder.DEFAULT_THRESHOLD, decoder(), new PhaseProgress("dupes"));
+    index.commit();
+
+    assertEquals(1, first.groups().size());
+    DuplicateGroup group = first.groups().get(0);
+    MediaItem expected = smaller;
+    for (MediaItem item : List.of(original, brighter)) {
+      if (item.sizeBytes() > expected.sizeBytes()) {
+        expected = item;
+      }
+    }
+    assertEquals(expected, group.representative());
+    assertEquals(
+        new TreeSet<>(List.of("a.png", "b.png", "c.png")),
+        new TreeSet<>(group.items().stream().map(i -> i.relativePath().toString()).toList()));
+    assertEquals(2, first.duplicates());
+    assertEquals(4, first.hashed());
+    assertEquals(1, first.skipped());
+
+    HashIndex reopened = HashIndex.open(tempDir.resolve("dist"));
+    DuplicateFinder.Result second =
+        DuplicateFinder.find(
+            items, reopened, DuplicateFinder.DEFAULT_THRESHOLD, decoder(), new PhaseProgress("d"));
+    assertEquals(0, second.hashed());
+    assertEquals(4, second.reused());
+    assertEquals(first.groups(), second.groups());
+  }
+
+  // BK-tree の検索結果が全件との比較と一致することを確認する
+  @Test
+  void bkTreeMatchesBruteForce() {
+    Random random = new Random(42);
+    long[] hashes = new long[2000];
+    BkTree tree = new BkTree();
+    for (int i = 0; i < hashes.length; i++) {
+      // 近いハッシュが多くなるよう、一部は既存のハッシュの数ビットを反転させる
+      hashes[i] =
+          i > 0 && random.nextBoolean()
+              ? hashes[random.nextInt(i)] ^ (1L << random.nextInt(64)) ^ (1L << random.nextInt(64))
+              : random.nextLong();
+      tree.add(hashes[i], i);
+    }
+    assertEquals(hashes.length, tree.size());
+
+    for (int q = 0; q < 50; q++) {
+      long query = hashes[random.nextInt(hashes.length)] ^ (1L << random.nextInt(64));
+      TreeSet<Integer> expected = new TreeSet<>();
+      for (int i = 0; i < hashes.length; i++) {
+        if (PerceptualHash.distance(query, hashes[i]) <= 4) {
+          expected.add(i);
+        }
+      }
+      TreeSet<Integer> actual = new TreeSet<>();
+      tree.query(query, 4, actual::add);
+      assertEquals(expected, actual);
+    }
+  }
+
+  private static DecodeScheduler decoder() {
+    return DecodeScheduler.withBudget(64L * 1024 * 1024);
+  }
+
+  /** 左上から右下へのグラデーションに、円を1つ描いた画像。 */
+  private MediaItem image(String name, int width, int height, int brighten) throws Exception {
+    BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        double dx = (double) x / width - 0.3;
+        double dy = (double) y / height - 0.6;
+        int v = dx * dx + dy * dy < 0.04 ? 230 : (x * 200 / width + y * 50 / height);
+        int c = Math.min(255, v + brighten);
+        img.setRGB(x, y, c << 16 | c << 8 | c);
+      }
+    }
+    return write(name, img);
+  }
+
+  private MediaItem checkerboard(String name) throws Exception {
+    BufferedImage img = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB);
+    for (int y = 0; y < 240; y++) {
+      for (int x = 0; x < 320; x++) {
+        img.setRGB(x, y, ((x / 40 + y / 40) % 2 == 0) ? 0xFFFFFF : 0x000000);
+      }
+    }
+    return write(name, img);
+  }
+
+  private MediaItem write(String name, BufferedImage img) throws Exception {
+    Path file = tempDir.resolve(name);
+    ImageIO.write(img, "png", file.toFile());
+    return new MediaItem(
+        file,
+        Path.of(name),
+        MediaType.IMAGE,
+        Files.size(file),
+        Files.getLastModifiedTime(file).toInstant());
+  }
+}
@@ -0,0 +1,89 @@
+package com.example.gallery.image;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ImageDownscalerTest {
+
+  @TempDir Path tempDir;
+
+  // EXIF の向き（6: 時計回りに90度）が画素に反映され、長辺が上限に収まることを確認する
+  @Test
+  void appliesExifOrientationWhileDownscaling() throws Exception {
+    // 左半分が赤、右半分が青の横長画像を「時計回りに90度回転して表示する」として保存する
+    BufferedImage img = new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB);
+    for (int y = 0; y < 100; y++) {
+      for (int x = 0; x < 200; x++) {
+        img.setRGB(x, y, x < 100 ? 0xFF0000 : 0x0000FF);
+      }
+    }
+    Path source = tempDir.resolve("rotated.jpg");
+    Files.write(source, withOrientation(img, 6));
+    assertEquals(6, ExifOrientation.read(source));
+
+    ImageDownscaler downscaler =
+        new ImageDownscaler(new DownscaleSpec(50, 0, 90), DecodeScheduler.withBudget(0));
+    Path target = tempDir.resolve("out.jpg");
+    long written = downscaler.downscale(source, Files.size(source), target);
+
+    assertEquals(Files.size(target), written);
+    BufferedImage out = ImageIO.read(target.toFile());
+    assertEquals(25, out.getWidth());
+    assertEquals(50, out.getHeight());
+    // 回転後は上半分が赤、下半分が青になる
+    assertTrue(new Color(out.getRGB(12, 5)).getRed() > 200);
+    assertTrue(new Color(out.getRGB(12, 45)).getBlue() > 200);
+    assertEquals(1, downscaler.downscaledCount());
+  }
+
+  // 上限内の画像・デコードできないファイルは書き出さず、そのままコピーさせることを確認する
+  @Test
+  void leavesImagesWithinLimitsAndUndecodableFilesAlone() throws Exception {
+    Path small = tempDir.resolve("small.jpg");
+    ImageIO.write(new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB), "jpg", small.toFile());
+    Path broken = tempDir.resolve("broken.jpg");
+    Files.write(broken, new byte[] {(byte) 0xFF, (byte) 0xD8, 1, 2, 3});
+    ImageDownscaler downscaler =
+        new ImageDownscaler(new DownscaleSpec(100, 1_000_000, 85), DecodeScheduler.withBudget(0));
+    Path target = tempDir.resolve("out.jpg");
+
+    assertEquals(-1, downscaler.downscale(small, Files.size(small), target));
+    assertEquals(-1, downscaler.downscale(broken, Files.size(broken), target));
+    assertFalse(Files.exists(target));
+    assertEquals(0, downscaler.downscaledCount());
+  }
+
+  /** JPEG の SOI の直後に、Orientation タグだけを持つ APP1（Exif）セグメントを挿入する。 */
+  private static byte[] withOrientation(BufferedImage img, int orientation) throws Exception {
+    ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+    ImageIO.write(img, "jpg", jpeg);
+    byte[] body = jpeg.toByteArray();
+
+    ByteBuffer tiff = ByteBuffer.allocate(26);
+    tiff.putShort((short) 0x4D4D).putShort((short) 42).putInt(8);
+    tiff.putShort((short) 1);
+    tiff.putShort((short) 0x0112).putShort((short) 3).putInt(1);
+    tiff.putShort((short) orientation).putShort((short) 0);
+    tiff.putInt(0);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(body, 0, 2);
+    int length = 2 + 6 + tiff.capacity();
+    out.write(new byte[] {(byte) 0xFF, (byte) 0xE1, (byte) (length >> 8), (byte) length});
+    out.write(new byte[] {'E', 'x', 'i', 'f', 0, 0});
+    out.write(tiff.array());
+    out.write(body, 2, body.length - 2);
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,173 @@
+package com.example.gallery.image;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.gallery.domain.MediaItem;
+import com.example.gallery.domain.MediaType;
+import com.example.gallery.progress.PhaseProgress;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ImageVariantGeneratorTest {
+
+  @TempDir Path tempDir;
+
+  // 元画像より小さい幅だけ縦横比を保って生成され、2回目は再利用されることを確認する
+  @Test
+  void generatesSmallerWidthsAndReusesThemNextTime() throws Exception {
+    MediaItem jpg = image("a.jpg", "jpg", 200, 100);
+    MediaItem png = image("sub/b.png", "png", 60, 60);
+    MediaItem video =
+        new MediaItem(
+            tempDir.resolve("c.mp4"), Path.of("c.mp4"), MediaType.VIDEO, 1, Instant.EPOCH);
+    VariantSpec spec = new VariantSpec(List.of(80, 40, 400), VariantSpec.DEFAULT_SIZES);
+    Path dist = tempDir.resolve("dist");
+    Path state = tempDir.resolve("state");
+
+    VariantIndex index = VariantIndex.open(state, dist);
+    ImageVariantGenerator.Result first =
+        ImageVariantGenerator.generate(
+            List.of(jpg, png, video), media(), spec, index, new PhaseProgress("resize"));
+    index.commit();
+
+    assertEquals(new ImageVariantGenerator.Result(2, 0, 1, 3), first);
+    BufferedImage small = ImageIO.read(dist.resolve("variants/40/a.jpg").toFile());
+    assertEquals(40, small.getWidth());
+    assertEquals(20, small.getHeight());
+    assertEquals(80, ImageIO.read(dist.resolve("variants/80/a.jpg").toFile()).getWidth());
+    assertEquals(40, ImageIO.read(dist.resolve("variants/40/sub/b.png").toFile()).getWidth());
+    assertFalse(Files.exists(dist.resolve("variants/80/sub/b.png")));
+    assertEquals(List.of(40, 80), index.get("a.jpg").widths());
+    assertEquals(200, index.get("a.jpg").originalWidth());
+
+    VariantIndex reopened = VariantIndex.open(state, dist);
+    ImageVariantGenerator.Result second =
+        ImageVariantGenerator.generate(
+            List.of(jpg, png, video), media(), spec, reopened, new PhaseProgress("resize"));
+    assertEquals(new ImageVariantGenerator.Result(0, 2, 1, 0), second);
+    assertEquals(List.of(40, 80), reopened.get("a.jpg").widths());
+  }
+
+  // 元画像が変わった画像は作り直し、一覧から消えた画像の縮小版は削除されることを確認する
+  @Test
+  void regeneratesChangedImagesAndDeletesStaleVariants() throws Exception {
+    MediaItem jpg = image("a.jpg", "jpg", 200, 100);
+    MediaItem png = image("b.png", "png", 100, 50);
+    VariantSpec spec = new VariantSpec(List.of(50), VariantSpec.DEFAULT_SIZES);
+    Path dist = tempDir.resolve("dist");
+    Path state = tempDir.resolve("state");
+
+    VariantIndex index = VariantIndex.open(state, dist);
+    ImageVariantGenerator.generate(
+        List.of(jpg, png), media(), spec, index, new PhaseProgress("resize"));
+    index.commit();
+
+    // サイズが同じでも更新日時が変われば作り直す
+    image("a.jpg", "jpg", 120, 120);
+    Instant later = Instant.parse("2030-01-01T00:00:00Z");
+    Files.setLastModifiedTime(jpg.sourcePath(), FileTime.from(later));
+    MediaItem changed =
+        new MediaItem(
+            jpg.sourcePath(),
+            jpg.relativePath(),
+            MediaType.IMAGE,
+            Files.size(jpg.sourcePath()),
+            later);
+    VariantIndex next = VariantIndex.open(state, dist);
+    ImageVariantGenerator.Result result =
+        ImageVariantGenerator.generate(
+            List.of(changed), media(), spec, next, new PhaseProgress("resize"));
+    int deleted = next.commit();
+
+    assertEquals(1, result.generated());
+    assertEquals(1, deleted);
+    assertFalse(Files.exists(dist.resolve("variants/50/b.png")));
+    BufferedImage square = ImageIO.read(dist.resolve("variants/50/a.jpg").toFile());
+    assertEquals(50, square.getHeight());
+    assertTrue(
+        Files.readString(state.resolve(VariantIndex.FILE_NAME)).contains("\t120\t50\t\ta.jpg"));
+  }
+
+  // プレースホルダは縦横比を保った長辺8マスの平均色の PNG になり、縮小版がない画像にも作られることを確認する
+  @Test
+  void createsPlaceholdersFromAverageColours() throws Exception {
+    MediaItem jpg = image("a.jpg", "jpg", 400, 200);
+    MediaItem png = image("b.png", "png", 30, 60);
+    VariantSpec spec = new VariantSpec(List.of(100), VariantSpec.DEFAULT_SIZES, true);
+    Path dist = tempDir.resolve("dist");
+    Path state = tempDir.resolve("state");
+
+    VariantIndex index = VariantIndex.open(state, dist);
+    ImageVariantGenerator.Result first =
+        ImageVariantGenerator.generate(
+            List.of(jpg, png), media(), spec, index, new PhaseProgress("resize"));
+    index.commit();
+
+    assertEquals(new ImageVariantGenerator.Result(2, 0, 0, 1), first);
+    BufferedImage wide = decode(index.get("a.jpg").placeholder());
+    assertEquals(8, wide.getWidth());
+    assertEquals(4, wide.getHeight());
+    // 元画像は右ほど赤、下ほど緑が強い
+    Color left = new Color(wide.getRGB(0, 0));
+    Color right = new Color(wide.getRGB(7, 3));
+    assertTrue(right.getRed() > left.getRed() + 100);
+    assertTrue(right.getGreen() > left.getGreen() + 100);
+    BufferedImage tall = decode(index.get("b.png").placeholder());
+    assertEquals(4, tall.getWidth());
+    assertEquals(8, tall.getHeight());
+
+    // 2回目はデコードせずに記録を使う。プレースホルダを作らない構成では記録から外す
+    VariantIndex reopened = VariantIndex.open(state, dist);
+    ImageVariantGenerator.generate(
+        List.of(jpg, png), media(), spec, reopened, new PhaseProgress("resize"));
+    assertEquals(index.get("b.png").placeholder(), reopened.get("b.png").placeholder());
+    VariantIndex without = VariantIndex.open(state, dist);
+    ImageVariantGenerator.Result plain =
+        ImageVariantGenerator.generate(
+            List.of(jpg, png),
+            media(),
+            new VariantSpec(List.of(100), VariantSpec.DEFAULT_SIZES),
+            without,
+            new PhaseProgress("resize"));
+    assertEquals(2, plain.reused());
+    assertEquals("", without.get("a.jpg").placeholder());
+  }
+
+  private static BufferedImage decode(String base64) throws Exception {
+    return ImageIO.read(new ByteArrayInputStream(Base64.getDecoder().decode(base64)));
+  }
+
+  private Path media() {
+    return tempDir.resolve("media");
+  }
+
+  private MediaItem image(String rel, String format, int width, int height) throws Exception {
+    Path file = media().resolve(rel);
+    Files.createDirectories(file.getParent());
+    BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        img.setRGB(x, y, (x * 255 / width) << 16 | (y * 255 / height) << 8);
+      }
+    }
+    ImageIO.write(img, format, file.toFile());
+    return new MediaItem(
+        file,
+        Path.of(rel),
+        MediaType.IMAGE,
+        Files.size(file),
+        Files.getLastModifiedTime(file).toInstant());
+  }
+}
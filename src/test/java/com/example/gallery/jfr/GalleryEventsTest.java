@@ -0,0 +1,96 @@
+package com.example.gallery.jfr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.gallery.domain.MediaItem;
+import com.example.gallery.domain.SortMode;
+import com.example.gallery.output.AssetCopier;
+import com.example.gallery.progress.PhaseProgress;
+import com.example.gallery.progress.ProgressMode;
+import com.example.gallery.progress.ProgressReporter;
+import com.example.gallery.render.HtmlGalleryRenderer;
+import com.example.gallery.scan.MediaScanner;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GalleryEventsTest {
+
+  @TempDir Path tempDir;
+
+  // しきい値を 0 にすると、走査・コピー・HTML 生成の各ファイルとフェーズがパスやサイズ付きで記録されることを確認する
+  @Test
+  void recordsPhaseAndPerFileEventsWhenThresholdIsZero() throws Exception {
+    Path media = tempDir.resolve("media");
+    Files.createDirectories(media.resolve("sub"));
+    Files.write(media.resolve("a.jpg"), new byte[10]);
+    Files.write(media.resolve("sub/b.mp4"), new byte[20]);
+
+    List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      for (String name : List.of("ScanFile", "CopyFile", "RenderCard", "BuildPhase")) {
+        recording.enable("com.example.gallery." + name).withThreshold(Duration.ZERO);
+      }
+      recording.start();
+
+      PrintStream nowhere = new PrintStream(OutputStream.nullOutputStream());
+      try (ProgressReporter reporter = ProgressReporter.start(ProgressMode.NONE, nowhere)) {
+        PhaseProgress scan = new PhaseProgress("scan");
+        reporter.begin(scan);
+        List<MediaItem> items =
+            MediaScanner.scan(media, List.of("jpg", "mp4"), SortMode.MODIFIED_DESC);
+        scan.add(items.size(), 0);
+        reporter.end();
+
+        AssetCopier.copyAll(items, tempDir.resolve("dist/assets"));
+        HtmlGalleryRenderer.render("{{ITEMS}}", "T", items);
+      }
+
+      recording.stop();
+      Path dump = tempDir.resolve("rec.jfr");
+      recording.dump(dump);
+      events = RecordingFile.readAllEvents(dump);
+    }
+
+    Map<String, List<String>> byType = new TreeMap<>();
+    for (RecordedEvent e : events) {
+      String type = e.getEventType().getName();
+      String key =
+          switch (type) {
+            case "com.example.gallery.ScanFile", "com.example.gallery.RenderCard" ->
+                e.getString("path").replace('\\', '/') + ":" + e.getLong("size");
+            case "com.example.gallery.CopyFile" ->
+                e.getString("target").replace('\\', '/').replaceAll(".*/assets/", "")
+                    + ":"
+                    + e.getLong("size");
+            case "com.example.gallery.BuildPhase" ->
+                e.getString("phase") + ":" + e.getLong("items");
+            default -> null;
+          };
+      if (key != null) {
+        byType.computeIfAbsent(type, k -> new ArrayList<>()).add(key);
+      }
+    }
+    byType.values().forEach(list -> list.sort(null));
+
+    assertEquals(List.of("scan:2"), byType.get("com.example.gallery.BuildPhase"));
+    assertEquals(List.of("a.jpg:10", "sub/b.mp4:20"), byType.get("com.example.gallery.CopyFile"));
+    assertEquals(
+        List.of("a.jpg:10", "sub/b.mp4:20"), byType.get("com.example.gallery.RenderCard"));
+    List<String> scanned = byType.get("com.example.gallery.ScanFile");
+    assertEquals(2, scanned.size());
+    assertTrue(scanned.get(0).endsWith("a.jpg:10"), scanned.toString());
+  }
+}
@@ -0,0 +1,85 @@
+package com.example.gallery.output;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveConcurrencyLimiterTest {
+
+  // スループットが伸びる間は +1 ずつ増え、低下したら乗算的に減り、横ばいなら維持されることを確認する
+  @Test
+  void increasesAdditivelyAndDecreasesMultiplicatively() {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 32, Long.MAX_VALUE);
+
+    assertEquals(5, limiter.adjust(100)); // 初回は探索のため増加
+    assertEquals(6, limiter.adjust(120));
+    assertEquals(7, limiter.adjust(150));
+    assertEquals(7, limiter.adjust(152)); // 横ばい → 維持
+    assertEquals(5, limiter.adjust(100)); // 低下 → ×0.75
+    assertEquals(7, limiter.peak());
+  }
+
+  // 上限は min/max の範囲に収まり、min == max の場合は固定になることを確認する
+  @Test
+  void staysWithinBounds() {
+    AdaptiveConcurrencyLimiter fixed = new AdaptiveConcurrencyLimiter(3, 3, 3, Long.MAX_VALUE);
+    assertEquals(3, fixed.adjust(100));
+    assertEquals(3, fixed.adjust(1000));
+    assertEquals(3, fixed.adjust(1));
+
+    AdaptiveConcurrencyLimiter small = new AdaptiveConcurrencyLimiter(1, 1, 2, Long.MAX_VALUE);
+    assertEquals(2, small.adjust(100));
+    assertEquals(2, small.adjust(1000));
+    assertEquals(1, small.adjust(1));
+    assertEquals(1, small.adjust(0.5));
+  }
+
+  // 出力先の速度が一定なら、ファイルサイズが大小入り混じっても上限が下がらないことを確認する
+  @Test
+  void keepsLimitWhenFileSizesVaryAtConstantDeviceSpeed() {
+    long[] now = {0};
+    long window = 500_000_000L;
+    AdaptiveConcurrencyLimiter limiter =
+        new AdaptiveConcurrencyLimiter(4, 1, 32, window, () -> now[0]);
+
+    // 10 ms ごとに 1 MiB を書き込める出力先を、in-flight のコピーで等分する
+    long tickNanos = 10_000_000L;
+    long bytesPerTick = 1L << 20;
+    long[] sizes = {64L << 10, 256L << 20, 32L << 10, 48L << 20, 8L << 10, 128L << 20};
+    List<long[]> inFlight = new ArrayList<>();
+    int next = 0;
+    int lowest = limiter.limit();
+    for (int tick = 0; tick < 6_000; tick++) {
+      while (inFlight.size() < limiter.limit()) {
+        acquireWithoutBlocking(limiter);
+        inFlight.add(new long[] {sizes[next++ % sizes.length]});
+      }
+      long share = bytesPerTick / inFlight.size();
+      now[0] += tickNanos;
+      for (int i = inFlight.size() - 1; i >= 0; i--) {
+        long[] remaining = inFlight.get(i);
+        long written = Math.min(share, remaining[0]);
+        remaining[0] -= written;
+        limiter.record(written);
+        if (remaining[0] == 0) {
+          inFlight.remove(i);
+          limiter.release();
+        }
+      }
+      lowest = Math.min(lowest, limiter.limit());
+    }
+
+    assertTrue(lowest >= 4, "lowest=" + lowest);
+  }
+
+  private static void acquireWithoutBlocking(AdaptiveConcurrencyLimiter limiter) {
+    try {
+      limiter.acquire();
+    } catch (InterruptedException e) {
+      throw new AssertionError(e);
+    }
+  }
+}
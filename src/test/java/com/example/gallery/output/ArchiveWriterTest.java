@@ -0,0 +1,144 @@
+package com.example.gallery.output;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.gallery.domain.MediaItem;
+import com.example.gallery.domain.MediaType;
+import com.example.gallery.progress.PhaseProgress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ArchiveWriterTest {
+
+  @TempDir Path tempDir;
+
+  // zip に assets と index.html が格納され、JPEG は圧縮せずに格納されることを確認する
+  @Test
+  void writesZipWithStoredJpegAndCompressedHtml() throws Exception {
+    List<MediaItem> items = List.of(media("2024/a.jpg", 4096), media("b.txt.mp4", 10));
+    Path zipPath = tempDir.resolve("out/gallery.zip");
+
+    try (ArchiveWriter writer = ArchiveWriter.open(zipPath, ArchiveFormat.ZIP)) {
+      assertEquals(2, AssetCopier.copyAllTo(items, writer, new PhaseProgress("copy")));
+      writer.putEntry(
+          "index.html",
+          Instant.EPOCH,
+          out -> out.write("<html>".repeat(1000).getBytes(StandardCharsets.UTF_8)));
+      writer.finish();
+      assertEquals(3, writer.entries());
+      assertEquals(Files.size(zipPath), writer.bytesWritten());
+    }
+    assertFalse(Files.exists(tempDir.resolve("out/gallery.zip" + AssetCopier.PART_SUFFIX)));
+
+    try (ZipFile zip = new ZipFile(zipPath.toFile())) {
+      ZipEntry jpg = zip.getEntry("assets/2024/a.jpg");
+      assertArrayEquals(
+          Files.readAllBytes(items.get(0).sourcePath()), zip.getInputStream(jpg).readAllBytes());
+      // 無圧縮（レベル 0）なので圧縮後のサイズが元のサイズを下回らない
+      assertTrue(jpg.getCompressedSize() >= jpg.getSize());
+
+      ZipEntry html = zip.getEntry("index.html");
+      assertEquals(6000, html.getSize());
+      assertTrue(html.getCompressedSize() < html.getSize());
+      assertTrue(zip.getEntry("assets/b.txt.mp4") != null);
+    }
+  }
+
+  // tar の各ヘッダが 512 バイト境界に並び、100 バイトを超えるパスが PAX ヘッダで格納されることを確認する
+  @Test
+  void writesTarWithPaxHeaderForLongNames() throws Exception {
+    String longName = "trip/" + "x".repeat(120) + ".jpg";
+    List<MediaItem> items = List.of(media("a.jpg", 700), media(longName, 3));
+    Path tarPath = tempDir.resolve("gallery.tar");
+
+    try (ArchiveWriter writer = ArchiveWriter.open(tarPath, ArchiveFormat.TAR)) {
+      AssetCopier.copyAllTo(items, writer, new PhaseProgress("copy"));
+      writer.finish();
+    }
+
+    byte[] tar = Files.readAllBytes(tarPath);
+    assertEquals(0, tar.length % TarHeaders.BLOCK);
+
+    Map<String, Long> entries = new HashMap<>();
+    String paxPath = null;
+    int pos = 0;
+    while (pos + TarHeaders.BLOCK <= tar.length && tar[pos] != 0) {
+      assertEquals(checksum(tar, pos), parseOctal(tar, pos + 148, 8));
+      String name = new String(tar, pos, 100, StandardCharsets.US_ASCII).replace("\0", "");
+      long size = parseOctal(tar, pos + 124, 12);
+      byte type = tar[pos + 156];
+      pos += TarHeaders.BLOCK;
+      if (type == 'x') {
+        String record = new String(tar, pos, (int) size, StandardCharsets.UTF_8);
+        paxPath = record.substring(record.indexOf("path=") + 5, record.length() - 1);
+      } else {
+        entries.put(paxPath != null ? paxPath : name, size);
+        paxPath = null;
+      }
+      pos += (int) ((size + TarHeaders.BLOCK - 1) / TarHeaders.BLOCK * TarHeaders.BLOCK);
+    }
+
+    assertEquals(Map.of("assets/a.jpg", 700L, "assets/" + longName, 3L), entries);
+  }
+
+  // PAX レコードの長さが自身の桁数を含めた正しい値になることを確認する
+  @Test
+  void computesPaxRecordLength() {
+    String record = TarHeaders.paxRecord("path", "a".repeat(93));
+    int length = Integer.parseInt(record.split(" ")[0]);
+    assertEquals(record.getBytes(StandardCharsets.UTF_8).length, length);
+  }
+
+  // 展開時に外へ出るパスを拒否し、finish しなかった一時ファイルを残さないことを確認する
+  @Test
+  void rejectsUnsafeNamesAndCleansUpPartFile() throws Exception {
+    Path zipPath = tempDir.resolve("g.zip");
+    try (ArchiveWriter writer = ArchiveWriter.open(zipPath, ArchiveFormat.ZIP)) {
+      assertThrows(
+          AssetCopyException.class,
+          () -> writer.putEntry("../evil.html", Instant.EPOCH, out -> {}));
+      assertThrows(
+          AssetCopyException.class, () -> writer.putEntry("/abs.html", Instant.EPOCH, out -> {}));
+    }
+    assertFalse(Files.exists(zipPath));
+    assertFalse(Files.exists(tempDir.resolve("g.zip" + AssetCopier.PART_SUFFIX)));
+  }
+
+  private MediaItem media(String rel, int size) throws Exception {
+    Path source = tempDir.resolve("media").resolve(rel);
+    Files.createDirectories(source.getParent());
+    byte[] data = new byte[size];
+    for (int i = 0; i < size; i++) {
+      data[i] = (byte) (i * 31 + 7);
+    }
+    Files.write(source, data);
+    MediaType type = rel.endsWith(".mp4") ? MediaType.VIDEO : MediaType.IMAGE;
+    return new MediaItem(source, Path.of(rel), type, size, Instant.EPOCH);
+  }
+
+  private static long checksum(byte[] tar, int pos) {
+    long sum = 0;
+    for (int i = 0; i < TarHeaders.BLOCK; i++) {
+      sum += (i >= 148 && i < 156) ? ' ' : tar[pos + i] & 0xFF;
+    }
+    return sum;
+  }
+
+  private static long parseOctal(byte[] tar, int offset, int length) {
+    String s = new String(tar, offset, length, StandardCharsets.US_ASCII).replace("\0", "").trim();
+    return Long.parseLong(s, 8);
+  }
+}
@@ -1,15 +1,24 @@
 package com.example.gallery.output;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.example.gallery.domain.MediaItem;
 import com.example.gallery.domain.MediaType;
+import com.example.gallery.image.DecodeScheduler;
+import com.example.gallery.image.DownscaleSpec;
+import com.example.gallery.image.ImageDownscaler;
+import com.example.gallery.progress.PhaseProgress;
+import java.awt.image.BufferedImage;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import javax.imageio.ImageIO;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
@@ -45,6 +54,191 @@ class AssetCopierTest {
     assertEquals("B", Files.readString(dst2));
   }
 
+  // ジャーナルに記録済みのファイルは再実行時にスキップされ、変更されたファイルだけ再コピーされることを確認する
+  @Test
+  void resumesFromJournalSkippingCompletedFiles() throws Exception {
+    Path input = tempDir.resolve("media");
+    Path dist = tempDir.resolve("dist");
+    Path assets = dist.resolve("assets");
+    Files.createDirectories(input);
+
+    Path src1 = input.resolve("a.jpg");
+    Path src2 = input.resolve("b.jpg");
+    Files.writeString(src1, "A");
+    Files.writeString(src2, "B");
+    Instant t = Instant.parse("2025-01-01T00:00:00Z");
+    MediaItem a = new MediaItem(src1, Path.of("a.jpg"), MediaType.IMAGE, 1L, t);
+    MediaItem b = new MediaItem(src2, Path.of("b.jpg"), MediaType.IMAGE, 1L, t);
+
+    // 1回目：a のみ完了した状態を作る（途中終了を想定）
+    Files.createDirectories(dist);
+    try (CopyJournal journal = CopyJournal.open(dist)) {
+      AssetCopier.copyAll(List.of(a), assets, journal);
+    }
+
+    // 2回目：a はスキップ、b だけコピーされる
+    AssetCopier.CopyResult result;
+    try (CopyJournal journal = CopyJournal.open(dist)) {
+      result = AssetCopier.copyAll(List.of(a, b), assets, journal);
+    }
+    assertEquals(new AssetCopier.CopyResult(1, 1), result);
+    assertEquals("B", Files.readString(assets.resolve("b.jpg")));
+
+    // コピー元が更新された（更新日時が変わった）ファイルは再コピーされる
+    Files.writeString(src1, "Z");
+    MediaItem changed =
+        new MediaItem(src1, Path.of("a.jpg"), MediaType.IMAGE, 1L, t.plusSeconds(1));
+    try (CopyJournal journal = CopyJournal.open(dist)) {
+      result = AssetCopier.copyAll(List.of(changed, b), assets, journal);
+    }
+    assertEquals(new AssetCopier.CopyResult(1, 1), result);
+    assertEquals("Z", Files.readString(assets.resolve("a.jpg")));
+    assertTrue(Files.notExists(assets.resolve("a.jpg" + AssetCopier.PART_SUFFIX)));
+  }
+
+  // 出力先の sink を通して assets 配下へコピーし、次回はコピー先のサイズを読み戻してスキップすることを確認する
+  @Test
+  void copiesThroughSinkAndSkipsByReadBackSize() throws Exception {
+    Path input = tempDir.resolve("media");
+    Path dist = tempDir.resolve("dist");
+    Files.createDirectories(input.resolve("nested"));
+
+    Path src1 = input.resolve("a.jpg");
+    Path src2 = input.resolve("nested/b.png");
+    Files.writeString(src1, "A");
+    Files.writeString(src2, "BB");
+    Instant t = Instant.parse("2025-01-01T00:00:00Z");
+    List<MediaItem> items =
+        List.of(
+            new MediaItem(src1, Path.of("a.jpg"), MediaType.IMAGE, 1L, t),
+            new MediaItem(src2, Path.of("nested/b.png"), MediaType.IMAGE, 2L, t));
+    // チェックサムを計算する場合は putEntry で一定サイズずつ書き出す
+    CopyOptions options = new CopyOptions(2, 0, ChecksumAlgorithm.CRC32C);
+
+    FileSystemSink sink = new FileSystemSink(dist);
+    AssetCopier.CopyResult result;
+    try (CopyJournal journal = CopyJournal.open(dist)) {
+      result = AssetCopier.copyAll(items, sink, journal, options, new PhaseProgress("copy"));
+    }
+    assertEquals(2, result.copied());
+    assertEquals(2, result.sourceChecksums().size());
+    assertTrue(result.sourceChecksums().containsKey("nested/b.png"));
+    assertEquals(2, sink.entries());
+    assertEquals(3, sink.bytesWritten());
+    assertEquals("A", Files.readString(dist.resolve("assets/a.jpg")));
+    assertEquals("BB", Files.readString(dist.resolve("assets/nested/b.png")));
+
+    // 2回目：両方ともスキップ。コピー先を消した件は sink.size が -1 になるため再コピーされる
+    Files.delete(dist.resolve("assets/a.jpg"));
+    try (CopyJournal journal = CopyJournal.open(dist)) {
+      result =
+          AssetCopier.copyAll(
+              items, sink, journal, CopyOptions.DEFAULT, new PhaseProgress("copy"));
+    }
+    assertEquals(new AssetCopier.CopyResult(1, 1), result);
+    assertEquals("A", Files.readString(dist.resolve("assets/a.jpg")));
+    assertEquals(3, sink.entries());
+  }
+
+  // 並列コピー（固定の同時実行数・帯域上限あり）でも全件が正しくコピーされることを確認する
+  @Test
+  void copiesInParallelWithBandwidthCap() throws Exception {
+    Path input = tempDir.resolve("media");
+    Path assets = tempDir.resolve("dist/assets");
+    Files.createDirectories(input);
+
+    List<MediaItem> items = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      Path src = input.resolve("d" + (i % 3) + "/f" + i + ".jpg");
+      Files.createDirectories(src.getParent());
+      Files.writeString(src, "content-" + i);
+      Path rel = input.relativize(src);
+      items.add(new MediaItem(src, rel, MediaType.IMAGE, Files.size(src), Instant.now()));
+    }
+
+    AssetCopier.CopyResult result =
+        AssetCopier.copyAll(items, assets, null, new CopyOptions(4, 10L * 1024 * 1024));
+
+    assertEquals(new AssetCopier.CopyResult(20, 0), result);
+    for (int i = 0; i < 20; i++) {
+      Path dst = assets.resolve("d" + (i % 3) + "/f" + i + ".jpg");
+      assertEquals("content-" + i, Files.readString(dst));
+    }
+  }
+
+  // 上限を超える JPEG だけ縮小・再エンコードされ、次回はジャーナルでスキップ、条件が変われば作り直されることを確認する
+  @Test
+  void downscalesOversizedJpegsAndSkipsThemViaJournal() throws Exception {
+    Path input = tempDir.resolve("media");
+    Path dist = tempDir.resolve("dist");
+    Path assets = dist.resolve("assets");
+    Files.createDirectories(input);
+    List<MediaItem> items =
+        List.of(
+            image(input, "big.jpg", "jpg", 400, 300),
+            image(input, "small.jpg", "jpg", 60, 40),
+            image(input, "big.png", "png", 400, 300));
+
+    CopyOptions options =
+        new CopyOptions(
+            2, 0, null, new ImageDownscaler(new DownscaleSpec(100, 0, 85), decoder()));
+    AssetCopier.CopyResult first;
+    try (CopyJournal journal = CopyJournal.open(dist)) {
+      first = AssetCopier.copyAll(items, assets, journal, options, new PhaseProgress("copy"));
+    }
+
+    assertEquals(3, first.copied());
+    BufferedImage big = ImageIO.read(assets.resolve("big.jpg").toFile());
+    assertEquals(100, big.getWidth());
+    assertEquals(75, big.getHeight());
+    assertTrue(Files.size(assets.resolve("big.jpg")) < items.get(0).sizeBytes());
+    assertTrue(sameBytes(items.get(1).sourcePath(), assets.resolve("small.jpg")));
+    assertTrue(sameBytes(items.get(2).sourcePath(), assets.resolve("big.png")));
+    assertEquals(1, options.downscaler().downscaledCount());
+
+    AssetCopier.CopyResult second;
+    try (CopyJournal journal = CopyJournal.open(dist)) {
+      second = AssetCopier.copyAll(items, assets, journal, options, new PhaseProgress("copy"));
+    }
+    assertEquals(new AssetCopier.CopyResult(0, 3), second);
+
+    CopyOptions smaller =
+        new CopyOptions(
+            2, 0, null, new ImageDownscaler(new DownscaleSpec(80, 0, 85), decoder()));
+    AssetCopier.CopyResult third;
+    try (CopyJournal journal = CopyJournal.open(dist)) {
+      third = AssetCopier.copyAll(items, assets, journal, smaller, new PhaseProgress("copy"));
+    }
+    // 条件が変わると JPEG は上限内かどうかを判定し直す（PNG はスキップのまま）
+    assertEquals(new AssetCopier.CopyResult(2, 1), third);
+    assertEquals(80, ImageIO.read(assets.resolve("big.jpg").toFile()).getWidth());
+  }
+
+  // ジャーナルを1行ずつ読み、書き込み途中で終わった末尾の行は無視して、次の追記は新しい行から始めることを確認する
+  @Test
+  void ignoresPartialLastLineOfJournal() throws Exception {
+    Path state = tempDir.resolve("state");
+    Files.createDirectories(state);
+    Instant modified = Instant.parse("2024-01-01T00:00:00Z");
+    MediaItem a =
+        new MediaItem(tempDir.resolve("a.jpg"), Path.of("a.jpg"), MediaType.IMAGE, 1, modified);
+    MediaItem b =
+        new MediaItem(tempDir.resolve("b.jpg"), Path.of("b.jpg"), MediaType.IMAGE, 1, modified);
+    long ms = modified.toEpochMilli();
+    Files.writeString(
+        state.resolve(CopyJournal.FILE_NAME), "1\t" + ms + "\ta.jpg\n1\t" + ms + "\tb.jpg");
+
+    try (CopyJournal journal = CopyJournal.open(state)) {
+      assertTrue(journal.isComplete(a, 1, ""));
+      assertFalse(journal.isComplete(b, 1, ""));
+      journal.record(b);
+    }
+    try (CopyJournal journal = CopyJournal.open(state)) {
+      assertTrue(journal.isComplete(a, 1, ""));
+      assertTrue(journal.isComplete(b, 1, ""));
+    }
+  }
+
   // relativePath に .. が含まれる場合は拒否されることを確認する
   @Test
   void rejectsPathTraversal() throws Exception {
@@ -77,4 +271,30 @@ class AssetCopierTest {
 
     assertThrows(AssetCopyException.class, () -> AssetCopier.copyAll(items, assets));
   }
+
+  private static MediaItem image(Path dir, String name, String format, int width, int height)
+      throws Exception {
+    Path file = dir.resolve(name);
+    BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        img.setRGB(x, y, (x * 255 / width) << 16 | (y * 255 / height) << 8 | (x * y) % 256);
+      }
+    }
+    ImageIO.write(img, format, file.toFile());
+    return new MediaItem(
+        file,
+        Path.of(name),
+        MediaType.IMAGE,
+        Files.size(file),
+        Files.getLastModifiedTime(file).toInstant());
+  }
+
+  private static DecodeScheduler decoder() {
+    return DecodeScheduler.withBudget(64L * 1024 * 1024);
+  }
+
+  private static boolean sameBytes(Path a, Path b) throws Exception {
+    return Arrays.equals(Files.readAllBytes(a), Files.readAllBytes(b));
+  }
 }
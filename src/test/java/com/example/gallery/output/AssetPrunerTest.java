@@ -0,0 +1,68 @@
+package com.example.gallery.output;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.gallery.domain.MediaItem;
+import com.example.gallery.domain.MediaType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AssetPrunerTest {
+
+  @TempDir Path tempDir;
+
+  // 走査結果にないファイルと、その結果空になったディレクトリだけが削除されることを確認する
+  @Test
+  void deletesOrphanedFilesAndEmptyDirectories() throws Exception {
+    Path assets = tempDir.resolve("dist/assets");
+    Files.createDirectories(assets.resolve("keep"));
+    Files.createDirectories(assets.resolve("gone/deeper"));
+    Files.writeString(assets.resolve("a.jpg"), "A");
+    Files.writeString(assets.resolve("keep/b.jpg"), "B");
+    Files.writeString(assets.resolve("keep/old.jpg"), "old");
+    Files.writeString(assets.resolve("gone/deeper/c.jpg"), "C");
+
+    List<MediaItem> items =
+        List.of(
+            new MediaItem(
+                tempDir.resolve("media/a.jpg"),
+                Path.of("a.jpg"),
+                MediaType.IMAGE,
+                1L,
+                Instant.now()),
+            new MediaItem(
+                tempDir.resolve("media/keep/b.jpg"),
+                Path.of("keep/b.jpg"),
+                MediaType.IMAGE,
+                1L,
+                Instant.now()));
+
+    AssetPruner.Result result = AssetPruner.prune(items, assets, tempDir);
+
+    assertEquals(new AssetPruner.Result(2, 2), result);
+    assertTrue(Files.exists(assets.resolve("a.jpg")));
+    assertTrue(Files.exists(assets.resolve("keep/b.jpg")));
+    assertTrue(Files.notExists(assets.resolve("keep/old.jpg")));
+    assertTrue(Files.notExists(assets.resolve("gone")));
+    assertTrue(Files.isDirectory(assets));
+  }
+
+  // assetsDir が許可ルート配下でない場合は削除しないことを確認する
+  @Test
+  void rejectsAssetsOutsideAllowedRoot() throws Exception {
+    Path assets = tempDir.resolve("dist/assets");
+    Files.createDirectories(assets);
+    Files.writeString(assets.resolve("x.jpg"), "X");
+
+    Path otherRoot = tempDir.resolve("elsewhere");
+    assertThrows(
+        OutputPreparationException.class, () -> AssetPruner.prune(List.of(), assets, otherRoot));
+    assertTrue(Files.exists(assets.resolve("x.jpg")));
+  }
+}
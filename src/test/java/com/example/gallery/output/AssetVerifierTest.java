@@ -0,0 +1,106 @@
+package com.example.gallery.output;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.gallery.domain.MediaItem;
+import com.example.gallery.domain.MediaType;
+import com.example.gallery.progress.PhaseProgress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AssetVerifierTest {
+
+  @TempDir Path tempDir;
+
+  // コピー中に計算したチェックサムが検証時のコピー元の値と一致し、一致した全件が検証済みになることを確認する
+  @Test
+  void verifiesCopiedAssetsUsingChecksumsComputedDuringCopy() throws Exception {
+    List<MediaItem> items = items(30);
+    Path assets = tempDir.resolve("dist/assets");
+
+    for (ChecksumAlgorithm alg : ChecksumAlgorithm.values()) {
+      AssetCopier.CopyResult copied =
+          AssetCopier.copyAll(
+              items, assets, null, new CopyOptions(4, 0, alg), new PhaseProgress("copy"));
+      assertEquals(30, copied.sourceChecksums().size());
+      MediaItem first = items.get(0);
+      assertEquals(
+          AssetVerifier.checksum(first.sourcePath(), alg),
+          copied.sourceChecksums().get("d0/f0.jpg"));
+
+      PhaseProgress progress = new PhaseProgress("verify");
+      AssetVerifier.Result result =
+          AssetVerifier.verify(items, assets, alg, progress, copied.sourceChecksums());
+      assertTrue(result.ok());
+      assertEquals(30, result.verified());
+      assertEquals(30, progress.snapshot().items());
+    }
+  }
+
+  // 不一致・欠落・余分なファイルをそれぞれ検出することを確認する
+  @Test
+  void reportsMismatchedMissingAndExtraFiles() throws Exception {
+    List<MediaItem> items = items(5);
+    Path assets = tempDir.resolve("dist/assets");
+    AssetCopier.copyAll(items, assets);
+
+    Files.write(assets.resolve("d1/f1.jpg"), new byte[] {1, 2, 3});
+    Files.delete(assets.resolve("d2/f2.jpg"));
+    Files.write(assets.resolve("d3/stale.jpg"), new byte[] {9});
+
+    AssetVerifier.Result result =
+        AssetVerifier.verify(items, assets, ChecksumAlgorithm.CRC32C, new PhaseProgress("v"));
+    assertFalse(result.ok());
+    assertEquals(3, result.verified());
+    assertEquals(1, result.mismatched());
+    assertEquals(1, result.missing());
+    assertEquals(1, result.extra());
+    assertEquals(
+        List.of("mismatch: d1/f1.jpg", "missing: d2/f2.jpg", "extra: d3/stale.jpg"),
+        result.problems());
+  }
+
+  // CRC32C の値が JDK の実装と一致し、名前の表記ゆれを受け付けることを確認する
+  @Test
+  void computesCrc32cAndParsesAlgorithmNames() throws Exception {
+    byte[] data = new byte[3 * AssetVerifier.BUFFER_BYTES / 2];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (i * 13);
+    }
+    Path file = tempDir.resolve("big.bin");
+    Files.write(file, data);
+    CRC32C crc = new CRC32C();
+    crc.update(data);
+
+    assertEquals(
+        String.format("%08x", crc.getValue()),
+        AssetVerifier.checksum(file, ChecksumAlgorithm.CRC32C));
+    assertEquals(64, AssetVerifier.checksum(file, ChecksumAlgorithm.SHA256).length());
+    assertEquals(ChecksumAlgorithm.SHA256, ChecksumAlgorithm.from("SHA-256"));
+    assertEquals(ChecksumAlgorithm.CRC32C, ChecksumAlgorithm.from("crc32c"));
+  }
+
+  private List<MediaItem> items(int count) throws Exception {
+    List<MediaItem> items = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      Path rel = Path.of("d" + i, "f" + i + ".jpg");
+      Path source = tempDir.resolve("media").resolve(rel);
+      Files.createDirectories(source.getParent());
+      byte[] data = new byte[1000 + i * 37];
+      for (int j = 0; j < data.length; j++) {
+        data[j] = (byte) (i + j);
+      }
+      Files.write(source, data);
+      items.add(new MediaItem(source, rel, MediaType.IMAGE, data.length, Instant.EPOCH));
+    }
+    return items;
+  }
+}
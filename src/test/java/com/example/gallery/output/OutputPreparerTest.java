@@ -1,10 +1,12 @@
 package com.example.gallery.output;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
@@ -30,6 +32,27 @@ class OutputPreparerTest {
     assertTrue(Files.notExists(output.resolve("old.txt")));
   }
 
+  // 以前の outputDir 直下の記録は記録のディレクトリへ移され、--clean では記録のディレクトリも削除されることを確認する
+  @Test
+  void movesBuildStateOutOfOutputDir() throws Exception {
+    Path input = tempDir.resolve("media");
+    Path output = tempDir.resolve("dist");
+    Files.createDirectories(input);
+    Files.createDirectories(output);
+    Files.writeString(output.resolve(CopyJournal.FILE_NAME), "1\t2\ta.jpg\n");
+
+    OutputPaths paths = OutputPreparer.prepare(input, output, false, tempDir);
+
+    Path stateDir = tempDir.resolve(OutputPaths.STATE_DIR_NAME).resolve("dist");
+    assertEquals(stateDir, paths.stateDir());
+    assertTrue(Files.notExists(output.resolve(CopyJournal.FILE_NAME)));
+    assertEquals("1\t2\ta.jpg\n", Files.readString(stateDir.resolve(CopyJournal.FILE_NAME)));
+
+    OutputPreparer.prepare(input, output, true, tempDir);
+    assertTrue(Files.isDirectory(stateDir));
+    assertTrue(Files.notExists(stateDir.resolve(CopyJournal.FILE_NAME)));
+  }
+
   // outputDir が inputDir 配下の場合は拒否されることを確認する
   @Test
   void rejectsOutputUnderInput() {
@@ -47,4 +70,15 @@ class OutputPreparerTest {
     assertThrows(
         OutputPreparationException.class, () -> OutputPreparer.prepare(input, output, false));
   }
+
+  // 入力フォルダが複数の場合は、どの inputDir の配下の outputDir も拒否されることを確認する
+  @Test
+  void rejectsOutputUnderAnyInput() {
+    Path first = tempDir.resolve("vol1/media");
+    Path second = tempDir.resolve("vol2/media");
+    Path output = second.resolve("dist");
+    assertThrows(
+        OutputPreparationException.class,
+        () -> OutputPreparer.prepare(List.of(first, second), output, false));
+  }
 }
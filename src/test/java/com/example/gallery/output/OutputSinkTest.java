@@ -0,0 +1,155 @@
+package com.example.gallery.output;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.gallery.domain.MediaItem;
+import com.example.gallery.domain.MediaType;
+import com.example.gallery.progress.PhaseProgress;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OutputSinkTest {
+
+  @TempDir Path tempDir;
+
+  // ディレクトリ配下に書き出し、外へ出る名前を拒否し、失敗したエントリは前回の内容を残すことを確認する
+  @Test
+  void fileSystemSinkWritesUnderRootAndKeepsPreviousOnFailure() throws Exception {
+    MediaItem a = media("2024/a.jpg", "jpeg");
+    Path root = tempDir.resolve("dist");
+
+    try (FileSystemSink sink = new FileSystemSink(root)) {
+      assertEquals(1, AssetCopier.copyAllTo(List.of(a), sink, new PhaseProgress("copy")));
+      sink.putEntry("index.html", Instant.EPOCH, out -> out.write(bytes("<html>")));
+      sink.finish();
+
+      assertEquals(2, sink.entries());
+      assertEquals(10, sink.bytesWritten());
+      assertEquals("jpeg", Files.readString(root.resolve("assets/2024/a.jpg")));
+      assertEquals("<html>", Files.readString(root.resolve("index.html")));
+      assertEquals(
+          Instant.EPOCH, Files.getLastModifiedTime(root.resolve("index.html")).toInstant());
+
+      assertThrows(
+          AssetCopyException.class, () -> sink.putEntry("../x.html", Instant.EPOCH, out -> {}));
+      assertThrows(
+          AssetCopyException.class, () -> sink.putEntry("a//b.html", Instant.EPOCH, out -> {}));
+      assertThrows(
+          IOException.class,
+          () ->
+              sink.putEntry(
+                  "index.html",
+                  Instant.EPOCH,
+                  out -> {
+                    out.write(bytes("<half"));
+                    throw new IOException("boom");
+                  }));
+    }
+    assertEquals("<html>", Files.readString(root.resolve("index.html")));
+    assertFalse(Files.exists(root.resolve("index.html" + AssetCopier.PART_SUFFIX)));
+  }
+
+  // ディスクに書き込まずに保持し、finish せずに閉じた場合は破棄することを確認する
+  @Test
+  void inMemorySinkHoldsEntriesUntilClosedWithoutFinish() throws Exception {
+    MediaItem a = media("b.mp4", "video");
+
+    InMemorySink sink = new InMemorySink();
+    AssetCopier.copyAllTo(List.of(a), sink, new PhaseProgress("copy"));
+    sink.putEntry("index.html", Instant.EPOCH, out -> out.write(bytes("<p>")));
+
+    assertEquals(List.of("assets/b.mp4", "index.html"), sink.names());
+    assertArrayEquals(bytes("video"), sink.content("assets/b.mp4"));
+    assertEquals("<p>", sink.contentAsString("index.html"));
+    assertEquals(Instant.EPOCH, sink.modified("index.html"));
+    assertEquals(8, sink.bytesWritten());
+    assertThrows(AssetCopyException.class, () -> sink.putEntry("/abs", Instant.EPOCH, out -> {}));
+
+    sink.close();
+    assertEquals(List.of(), sink.names());
+    assertNull(sink.content("index.html"));
+  }
+
+  // 既存のエントリのサイズと内容を読み戻せ、存在しない名前は -1 / null になることを確認する
+  @Test
+  void sinksReadBackExistingEntries() throws Exception {
+    Path root = tempDir.resolve("dist");
+    Files.createDirectories(root.resolve("albums"));
+    Files.writeString(root.resolve("index.html"), "<old>");
+
+    try (FileSystemSink sink = new FileSystemSink(root)) {
+      assertEquals(5, sink.size("index.html"));
+      try (InputStream in = sink.openExisting("index.html")) {
+        assertArrayEquals(bytes("<old>"), in.readAllBytes());
+      }
+      assertEquals(-1, sink.size("missing.html"));
+      assertNull(sink.openExisting("missing.html"));
+      assertEquals(-1, sink.size("albums"));
+      assertNull(sink.openExisting("albums"));
+      assertThrows(AssetCopyException.class, () -> sink.size("../index.html"));
+    }
+
+    InMemorySink memory = new InMemorySink();
+    memory.putEntry("index.html", Instant.EPOCH, out -> out.write(bytes("<p>")));
+    assertEquals(3, memory.size("index.html"));
+    try (InputStream in = memory.openExisting("index.html")) {
+      assertArrayEquals(bytes("<p>"), in.readAllBytes());
+    }
+    assertEquals(-1, memory.size("missing.html"));
+    assertNull(memory.openExisting("missing.html"));
+  }
+
+  // ディレクトリ配下のエントリを名前順に一覧し、削除すると空になった親ディレクトリも消えることを確認する
+  @Test
+  void sinksListAndDeleteEntries() throws Exception {
+    Path root = tempDir.resolve("dist");
+    try (FileSystemSink sink = new FileSystemSink(root)) {
+      sink.putEntry("albums/b/index.html", Instant.EPOCH, out -> out.write(bytes("b")));
+      sink.putEntry("albums/a/index.html", Instant.EPOCH, out -> out.write(bytes("a")));
+      sink.putEntry("index.html", Instant.EPOCH, out -> out.write(bytes("i")));
+
+      assertEquals(List.of("albums/a/index.html", "albums/b/index.html"), sink.list("albums"));
+      assertEquals(List.of(), sink.list("missing"));
+      assertTrue(sink.delete("albums/a/index.html"));
+      assertFalse(sink.delete("albums/a/index.html"));
+      assertFalse(sink.delete("albums"));
+      assertFalse(Files.exists(root.resolve("albums/a")));
+      assertTrue(Files.exists(root.resolve("albums/b/index.html")));
+      assertThrows(AssetCopyException.class, () -> sink.delete("../index.html"));
+    }
+
+    InMemorySink memory = new InMemorySink();
+    memory.putEntry("albums/b/index.html", Instant.EPOCH, out -> out.write(bytes("b")));
+    memory.putEntry("albums2/index.html", Instant.EPOCH, out -> out.write(bytes("x")));
+    memory.putEntry("albums/a/index.html", Instant.EPOCH, out -> out.write(bytes("a")));
+
+    assertEquals(List.of("albums/a/index.html", "albums/b/index.html"), memory.list("albums"));
+    assertTrue(memory.delete("albums/a/index.html"));
+    assertFalse(memory.delete("albums/a/index.html"));
+    assertEquals(List.of("albums/b/index.html", "albums2/index.html"), memory.names());
+  }
+
+  private MediaItem media(String rel, String content) throws Exception {
+    Path source = tempDir.resolve("media").resolve(rel);
+    Files.createDirectories(source.getParent());
+    Files.writeString(source, content);
+    MediaType type = rel.endsWith(".mp4") ? MediaType.VIDEO : MediaType.IMAGE;
+    return new MediaItem(source, Path.of(rel), type, content.length(), Instant.EPOCH);
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+}
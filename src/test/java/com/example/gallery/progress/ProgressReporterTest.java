@@ -0,0 +1,76 @@
+package com.example.gallery.progress;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class ProgressReporterTest {
+
+  // 件数・割合・バイト数・速度・残り時間が1行にまとめて表示されることを確認する
+  @Test
+  void formatsRatesPercentAndEta() {
+    long mb = 1024L * 1024;
+    PhaseProgress.Snapshot s =
+        new PhaseProgress.Snapshot("copy", 250, 256 * mb, 1000, 1024 * mb, 2_000_000_000L);
+
+    String line = ProgressReporter.format(s);
+
+    assertEquals(
+        "[copy] 250/1,000 件 (25.0%) 256.0 MB/1.0 GB 128.0 MB/s 125 件/s 残り 0:06", line);
+  }
+
+  // 総量が不明な場合は割合・残り時間を表示しないことを確認する
+  @Test
+  void omitsPercentAndEtaWhenTotalsUnknown() {
+    PhaseProgress.Snapshot s = new PhaseProgress.Snapshot("scan", 42, 0, -1, -1, 1_000_000_000L);
+
+    assertEquals("[scan] 42 件 42 件/s", ProgressReporter.format(s));
+  }
+
+  // plain モードではフェーズ終了時に最終値が1行出力されることを確認する
+  @Test
+  void printsFinalLineOnEndInPlainMode() {
+    ByteArrayOutputStream buf = new ByteArrayOutputStream();
+    PrintStream out = new PrintStream(buf, true, StandardCharsets.UTF_8);
+
+    PhaseProgress phase = new PhaseProgress("render");
+    try (ProgressReporter reporter = ProgressReporter.start(ProgressMode.PLAIN, out)) {
+      reporter.begin(phase);
+      phase.setTotals(3, -1);
+      phase.add(3, 0);
+      reporter.end();
+    }
+
+    String printed = buf.toString(StandardCharsets.UTF_8);
+    assertTrue(printed.startsWith("[render] 3/3 件 (100.0%)"), printed);
+    assertEquals(1, printed.lines().count());
+  }
+
+  // 表示しないモードでも、終了したフェーズの計測結果が順に記録されることを確認する
+  @Test
+  void recordsTimingsEvenWhenNotPrinting() {
+    ByteArrayOutputStream buf = new ByteArrayOutputStream();
+    PrintStream out = new PrintStream(buf, true, StandardCharsets.UTF_8);
+
+    try (ProgressReporter reporter = ProgressReporter.start(ProgressMode.NONE, out)) {
+      PhaseProgress scan = new PhaseProgress("scan");
+      reporter.begin(scan);
+      scan.add(5, 100);
+      reporter.end();
+      reporter.begin(new PhaseProgress("copy"));
+      reporter.end();
+
+      assertEquals(2, reporter.timings().size());
+      PhaseTiming first = reporter.timings().get(0);
+      assertEquals("scan", first.name());
+      assertEquals(5, first.items());
+      assertEquals(100, first.bytes());
+      assertEquals("copy", reporter.timings().get(1).name());
+    }
+    assertEquals(0, buf.size());
+  }
+}
@@ -0,0 +1,106 @@
+package com.example.gallery.render;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.gallery.domain.MediaItem;
+import com.example.gallery.domain.MediaType;
+import com.example.gallery.output.OutputPaths;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AlbumRendererTest {
+
+  @TempDir Path tempDir;
+
+  private static final String TEMPLATE =
+      "<title>{{TITLE}}</title><p>{{GENERATED_AT}}</p><div class=\"grid\">{{ITEMS}}</div>";
+
+  // フォルダごとのアルバムページと、アルバム一覧の index.html が生成されることを確認する
+  @Test
+  void rendersAlbumPagesAndIndex() throws Exception {
+    OutputPaths out = outputPaths();
+    List<MediaItem> items =
+        List.of(
+            item("2024/trip/a.jpg", MediaType.IMAGE),
+            item("2024/trip/b.mp4", MediaType.VIDEO),
+            item("party/c.png", MediaType.IMAGE),
+            item("root.jpg", MediaType.IMAGE));
+
+    AlbumRenderer.Result result = AlbumRenderer.renderAll(TEMPLATE, "Gallery", items, out);
+    assertEquals(new AlbumRenderer.Result(2, 2, 0, 0), result);
+
+    String index = Files.readString(out.indexHtmlPath());
+    assertTrue(index.contains("href=\"albums/2024/trip/index.html\""));
+    assertTrue(index.contains("src=\"assets/2024/trip/a.jpg\""));
+    assertTrue(index.contains("2024/trip (2)"));
+    assertTrue(index.contains("src=\"assets/root.jpg\""));
+
+    String trip = Files.readString(out.albumsDir().resolve("2024/trip/index.html"));
+    assertTrue(trip.contains("<title>Gallery - 2024/trip</title>"));
+    assertTrue(trip.contains("src=\"../../../assets/2024/trip/a.jpg\""));
+    assertTrue(trip.contains("src=\"../../../assets/2024/trip/b.mp4\""));
+    assertTrue(trip.contains("href=\"../../../index.html\""));
+  }
+
+  // 変化のないアルバムは再生成されず、変化したアルバムのみ再生成されることを確認する
+  @Test
+  void rerendersOnlyChangedAlbums() throws Exception {
+    OutputPaths out = outputPaths();
+    MediaItem a = item("a/1.jpg", MediaType.IMAGE);
+    MediaItem b = item("b/1.jpg", MediaType.IMAGE);
+
+    AlbumRenderer.renderAll(TEMPLATE, "Gallery", List.of(a, b), out);
+
+    MediaItem added = item("b/2.jpg", MediaType.IMAGE);
+    AlbumRenderer.Result result =
+        AlbumRenderer.renderAll(TEMPLATE, "Gallery", List.of(a, b, added), out);
+
+    assertEquals(new AlbumRenderer.Result(2, 1, 1, 0), result);
+    assertTrue(Files.readString(out.albumsDir().resolve("b/index.html")).contains("b/2.jpg"));
+  }
+
+  // 存在しなくなったフォルダのアルバムページだけが削除され、生成物でないファイルは残ることを確認する
+  @Test
+  void removesAlbumPagesOfVanishedFolders() throws Exception {
+    OutputPaths out = outputPaths();
+    MediaItem a = item("a/1.jpg", MediaType.IMAGE);
+    MediaItem b = item("b/c/1.jpg", MediaType.IMAGE);
+    AlbumRenderer.renderAll(TEMPLATE, "Gallery", List.of(a, b), out);
+    Path userPage = out.albumsDir().resolve("own/index.html");
+    Files.createDirectories(userPage.getParent());
+    Files.writeString(userPage, "<p>own</p>");
+
+    AlbumRenderer.Result result = AlbumRenderer.renderAll(TEMPLATE, "Gallery", List.of(a), out);
+
+    assertEquals(new AlbumRenderer.Result(1, 0, 1, 1), result);
+    assertTrue(Files.exists(out.albumsDir().resolve("a/index.html")));
+    assertFalse(Files.exists(out.albumsDir().resolve("b")));
+    assertTrue(Files.exists(userPage));
+    try (Stream<Path> files = Files.walk(out.outputDir())) {
+      assertTrue(files.noneMatch(p -> p.toString().endsWith(".gallery-part")));
+    }
+  }
+
+  private OutputPaths outputPaths() throws Exception {
+    Path dist = tempDir.resolve("dist");
+    Files.createDirectories(dist.resolve("assets"));
+    return new OutputPaths(
+        dist, dist.resolve("assets"), dist.resolve("index.html"), dist.resolve("albums"));
+  }
+
+  private static MediaItem item(String rel, MediaType type) {
+    return new MediaItem(
+        Path.of("media").resolve(rel),
+        Path.of(rel),
+        type,
+        1L,
+        Instant.parse("2025-01-01T00:00:00Z"));
+  }
+}
@@ -0,0 +1,127 @@
+package com.example.gallery.render;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.example.gallery.domain.MediaItem;
+import com.example.gallery.domain.MediaType;
+import com.example.gallery.progress.PhaseProgress;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FragmentCacheTest {
+
+  private static final String TEMPLATE = "<div>{{ITEMS}}</div>";
+
+  @TempDir Path tempDir;
+
+  // 2回目の生成では変わっていないカードがキャッシュから書き出され、出力も同じになることを確認する
+  @Test
+  void reusesUnchangedCardsAndRebuildsChangedOnes() throws Exception {
+    MediaItem a = item("a.jpg", MediaType.IMAGE, 10, "2024-01-01T00:00:00Z");
+    MediaItem b = item("sub/b&c.mp4", MediaType.VIDEO, 20, "2024-01-02T00:00:00Z");
+
+    String first = render(List.of(a, b), 0, 2);
+
+    // 変更なし：全件キャッシュから
+    String second = render(List.of(a, b), 2, 0);
+    assertEquals(first, second);
+
+    // 1件追加・1件更新：その2件だけ組み立て直す
+    MediaItem bUpdated = item("sub/b&c.mp4", MediaType.VIDEO, 21, "2024-01-02T00:00:00Z");
+    MediaItem c = item("c.png", MediaType.IMAGE, 5, "2024-01-03T00:00:00Z");
+    String third = render(List.of(c, a, bUpdated), 1, 2);
+    assertEquals(render(List.of(c, a, bUpdated), null), third);
+  }
+
+  // 並び順が変わって前回のファイルの位置が飛び飛びになっても、写したカードを次回も再利用できることを確認する
+  @Test
+  void copiesReorderedCardsFromPreviousFile() throws Exception {
+    MediaItem a = item("a.jpg", MediaType.IMAGE, 10, "2024-01-01T00:00:00Z");
+    MediaItem b = item("b.jpg", MediaType.IMAGE, 11, "2024-01-02T00:00:00Z");
+    MediaItem c = item("c.mp4", MediaType.VIDEO, 12, "2024-01-03T00:00:00Z");
+    MediaItem d = item("d.png", MediaType.IMAGE, 13, "2024-01-04T00:00:00Z");
+    render(List.of(a, b, c), 0, 3);
+
+    // c, a は前回と逆順、d は新規（写す範囲と組み立て直したカードが交互になる）
+    String second = render(List.of(c, d, a, b), 3, 1);
+    assertEquals(render(List.of(c, d, a, b), null), second);
+
+    String third = render(List.of(c, d, a, b), 4, 0);
+    assertEquals(second, third);
+    assertEquals(third, render(List.of(c, d, a, b), null));
+  }
+
+  // バイト列の出力先では保存済みのカードをそのまま書き出し、文字の出力先と同じ HTML になることを確認する
+  @Test
+  void copiesCachedBytesToOutputStream() throws Exception {
+    MediaItem a = item("trip/a.jpg", MediaType.IMAGE, 10, "2024-01-01T00:00:00Z");
+    MediaItem b = item("sub/b&c.mp4", MediaType.VIDEO, 20, "2024-01-02T00:00:00Z");
+    MediaItem c = item("c.png", MediaType.IMAGE, 5, "2024-01-03T00:00:00Z");
+    String expected = render(List.of(a, c, b), null);
+
+    assertEquals(expected.replace(cardOf(c), ""), renderBytes(List.of(a, b), 0, 2));
+    assertEquals(expected, renderBytes(List.of(a, c, b), 2, 1));
+    assertEquals(expected, renderBytes(List.of(a, c, b), 3, 0));
+    assertEquals(expected, render(List.of(a, c, b), 3, 0));
+  }
+
+  // テンプレが変わった場合は前回のキャッシュを使わないことを確認する
+  @Test
+  void ignoresCacheWrittenForDifferentTemplate() throws Exception {
+    MediaItem a = item("a.jpg", MediaType.IMAGE, 10, "2024-01-01T00:00:00Z");
+    render(List.of(a), 0, 1);
+
+    try (FragmentCache cache = FragmentCache.open(tempDir, "<ul>{{ITEMS}}</ul>")) {
+      StringWriter out = new StringWriter();
+      HtmlGalleryRenderer.renderTo(
+          out, "<ul>{{ITEMS}}</ul>", "T", List.of(a), new PhaseProgress("render"), cache);
+      assertEquals(0, cache.hits());
+      assertEquals(1, cache.misses());
+    }
+  }
+
+  private String render(List<MediaItem> items, int expectedHits, int expectedMisses)
+      throws Exception {
+    try (FragmentCache cache = FragmentCache.open(tempDir, TEMPLATE)) {
+      String html = render(items, cache);
+      cache.commit();
+      assertEquals(expectedHits, cache.hits());
+      assertEquals(expectedMisses, cache.misses());
+      return html;
+    }
+  }
+
+  private String renderBytes(List<MediaItem> items, int expectedHits, int expectedMisses)
+      throws Exception {
+    try (FragmentCache cache = FragmentCache.open(tempDir, TEMPLATE)) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      HtmlGalleryRenderer.renderTo(
+          out, TEMPLATE, "T", items, new PhaseProgress("render"), cache, CardOptions.DEFAULT);
+      cache.commit();
+      assertEquals(expectedHits, cache.hits());
+      assertEquals(expectedMisses, cache.misses());
+      return out.toString(StandardCharsets.UTF_8);
+    }
+  }
+
+  private static String cardOf(MediaItem item) throws Exception {
+    return render(List.of(item), null).replace("<div>", "").replace("</div>", "");
+  }
+
+  private static String render(List<MediaItem> items, FragmentCache cache) throws Exception {
+    StringWriter out = new StringWriter();
+    HtmlGalleryRenderer.renderTo(out, TEMPLATE, "T", items, new PhaseProgress("render"), cache);
+    return out.toString();
+  }
+
+  private static MediaItem item(String rel, MediaType type, long size, String modified) {
+    return new MediaItem(
+        Path.of("/abs").resolve(rel), Path.of(rel), type, size, Instant.parse(modified));
+  }
+}
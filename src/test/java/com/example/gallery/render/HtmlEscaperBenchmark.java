@@ -0,0 +1,90 @@
+package com.example.gallery.render;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * カード1件分のエスケープについて、以前の {@code String.replace} の連鎖と {@link HtmlEscaper} を比較する JMH ベンチマーク。
+ *
+ * <p>カードの src（assets からの相対パス）と figcaption（relativePath）を、再利用する {@link StringBuilder} へ追記する。
+ * 以前の方式は src も属性値としてエスケープするだけだったため、パーセントエンコードを行う現在の方式とは出力が異なる。
+ * 実行方法と結果の読み方は docs/04_benchmarks.md を参照。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+public class HtmlEscaperBenchmark {
+
+  /** 入力の種類（plain: エスケープ不要、special: 記号と空白を含む、japanese: 日本語を含む）。 */
+  @Param({"plain", "special", "japanese"})
+  public String kind;
+
+  private String path;
+  private final StringBuilder sb = new StringBuilder(256);
+
+  @Setup
+  public void setUp() {
+    path =
+        switch (kind) {
+          case "plain" -> "2024/trip/IMG_0001.jpg";
+          case "special" -> "2024/Tom & Jerry/a \"b\" <c>.jpg";
+          case "japanese" -> "2024/旅行/京都の写真_0001.jpg";
+          default -> throw new IllegalArgumentException(kind);
+        };
+  }
+
+  /** 以前の方式：src・figcaption とも {@code String.replace} を4回連ねる。 */
+  @Benchmark
+  public StringBuilder legacyReplace() {
+    sb.setLength(0);
+    sb.append(legacyEscape("assets/" + path));
+    sb.append(legacyEscape(path));
+    return sb;
+  }
+
+  /** 現在の方式：src は {@link HtmlEscaper#appendUrlPath}、figcaption は {@link HtmlEscaper#appendText}。 */
+  @Benchmark
+  public StringBuilder currentCard() throws IOException {
+    sb.setLength(0);
+    sb.append("assets/");
+    HtmlEscaper.appendUrlPath(sb, path);
+    HtmlEscaper.appendText(sb, path);
+    return sb;
+  }
+
+  /** 属性値のエスケープだけを比べる（以前の方式と出力が同じ範囲）。 */
+  @Benchmark
+  public StringBuilder legacyAttr() {
+    sb.setLength(0);
+    sb.append(legacyEscape(path));
+    return sb;
+  }
+
+  /** 属性値のエスケープだけを比べる（{@link HtmlEscaper#appendAttr}）。 */
+  @Benchmark
+  public StringBuilder currentAttr() throws IOException {
+    sb.setLength(0);
+    HtmlEscaper.appendAttr(sb, path);
+    return sb;
+  }
+
+  private static String legacyEscape(String s) {
+    return s == null
+        ? ""
+        : s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+  }
+}
@@ -0,0 +1,48 @@
+package com.example.gallery.render;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+class HtmlEscaperTest {
+
+  // テキストでは & < > だけを、属性値では " ' も文字参照にすることを確認する
+  @Test
+  void escapesTextAndAttributeDifferently() throws Exception {
+    String s = "Tom & Jerry's <\"best\">";
+
+    StringBuilder text = new StringBuilder();
+    HtmlEscaper.appendText(text, s);
+    assertEquals("Tom &amp; Jerry's &lt;\"best\"&gt;", text.toString());
+    assertEquals("Tom &amp; Jerry&#39;s &lt;&quot;best&quot;&gt;", HtmlEscaper.escapeAttr(s));
+    assertEquals("", HtmlEscaper.escapeAttr(null));
+  }
+
+  // エスケープ不要な文字列は新しい文字列を作らずにそのまま返すことを確認する
+  @Test
+  void returnsSameInstanceWhenNothingToEscape() {
+    String s = "2024/旅行/IMG_0001.jpg";
+
+    assertSame(s, HtmlEscaper.escapeAttr(s));
+  }
+
+  // URL のパスは / と非予約文字以外を UTF-8 でパーセントエンコードすることを確認する
+  @Test
+  void percentEncodesUrlPath() throws Exception {
+    StringBuilder sb = new StringBuilder("assets/");
+    HtmlEscaper.appendUrlPath(sb, "2024/旅行/a b&c'd#1%.jpg");
+    assertEquals("assets/2024/%E6%97%85%E8%A1%8C/a%20b%26c%27d%231%25.jpg", sb.toString());
+
+    // サロゲートペア（絵文字）は1文字として4バイトにエンコードする
+    StringBuilder emoji = new StringBuilder();
+    HtmlEscaper.appendUrlPath(emoji, "\uD83D\uDCF7.jpg");
+    assertEquals("%F0%9F%93%B7.jpg", emoji.toString());
+
+    // 2バイト文字も UTF-8 でエンコードし、対になっていないサロゲートは '?' として扱う
+    String odd = "caf\u00e9/\uD83D.jpg";
+    StringBuilder encoded = new StringBuilder();
+    HtmlEscaper.appendUrlPath(encoded, odd);
+    assertEquals("caf%C3%A9/%3F.jpg", encoded.toString());
+  }
+}
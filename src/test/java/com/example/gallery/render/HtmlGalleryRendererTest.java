@@ -1,17 +1,33 @@
 package com.example.gallery.render;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.example.gallery.domain.AssetFingerprint;
 import com.example.gallery.domain.MediaItem;
 import com.example.gallery.domain.MediaType;
+import com.example.gallery.image.DownscaleSpec;
+import com.example.gallery.image.DuplicateGroup;
+import com.example.gallery.image.ImageVariantGenerator;
+import com.example.gallery.image.VariantIndex;
+import com.example.gallery.image.VariantSpec;
+import com.example.gallery.progress.PhaseProgress;
+import java.awt.image.BufferedImage;
+import java.io.StringWriter;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.util.List;
+import javax.imageio.ImageIO;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 class HtmlGalleryRendererTest {
 
+  @TempDir Path tempDir;
+
   @Test
   // テンプレのプレースホルダが置換され、img/videoカードが生成されることを確認する
   void rendersTemplateAndCards() {
@@ -76,9 +92,9 @@ class HtmlGalleryRendererTest {
     // タイトルのエスケープ（< > & を検証）
     assertTrue(html.contains("A&amp;B &lt;Title&gt;"));
 
-    // パス（figcaption）と src 属性のエスケープ（& を検証）
-    assertTrue(html.contains("assets/a&amp;b.jpg"));
-    assertTrue(html.contains("a&amp;b.jpg"));
+    // パス（figcaption）のエスケープと src 属性のパーセントエンコード（& を検証）
+    assertTrue(html.contains("src=\"assets/a%26b.jpg\""));
+    assertTrue(html.contains("<figcaption>a&amp;b.jpg</figcaption>"));
   }
 
   // items が0件のとき、空状態のメッセージが出力されることを確認する
@@ -90,4 +106,229 @@ class HtmlGalleryRendererTest {
     assertTrue(html.contains("メディアがありません"));
     assertFalse(html.contains("{{ITEMS}}"));
   }
+
+  // 出力先へ順に書き出す場合も、テンプレの前後とカードが1回ずつ出力されることを確認する
+  @Test
+  void rendersToWriterInStreamingFashion() throws Exception {
+    String template = "<h1>{{TITLE}}</h1><div>{{ITEMS}}</div><p>end</p>";
+    MediaItem img =
+        new MediaItem(
+            Path.of("/abs/a.jpg"), Path.of("a.jpg"), MediaType.IMAGE, 1, Instant.EPOCH);
+    MediaItem video =
+        new MediaItem(
+            Path.of("/abs/b.mp4"), Path.of("sub/b.mp4"), MediaType.VIDEO, 1, Instant.EPOCH);
+
+    StringWriter out = new StringWriter();
+    Iterable<MediaItem> streamed = () -> List.of(img, video).iterator();
+    HtmlGalleryRenderer.renderTo(out, template, "T", streamed, new PhaseProgress("render"));
+    String html = out.toString();
+
+    assertTrue(html.startsWith("<h1>T</h1><div><figure>"));
+    assertTrue(html.contains("src=\"assets/a.jpg\""));
+    assertTrue(html.contains("<video controls src=\"assets/sub/b.mp4\""));
+    assertTrue(html.endsWith("</figure>\n</div><p>end</p>"));
+
+    StringWriter empty = new StringWriter();
+    HtmlGalleryRenderer.renderTo(empty, template, "T", List.of(), new PhaseProgress("render"));
+    assertTrue(empty.toString().contains("メディアがありません"));
+  }
+
+  // assetFingerprint に応じて、URL のクエリまたはファイル名にフィンガープリントが付くことを確認する
+  @Test
+  void appendsFingerprintToAssetUrls() throws Exception {
+    MediaItem img =
+        new MediaItem(
+            Path.of("/abs/a b.jpg"),
+            Path.of("sub/a b.jpg"),
+            MediaType.IMAGE,
+            10,
+            Instant.parse("2025-01-01T00:00:00Z"));
+    MediaItem noExt =
+        new MediaItem(Path.of("/abs/c"), Path.of("c"), MediaType.IMAGE, 10, Instant.EPOCH);
+    String fp = AssetFingerprint.of(img);
+
+    StringWriter query = new StringWriter();
+    HtmlGalleryRenderer.renderTo(
+        query,
+        "{{ITEMS}}",
+        "T",
+        List.of(img),
+        new PhaseProgress("render"),
+        null,
+        new CardOptions(AssetFingerprint.QUERY));
+    assertTrue(query.toString().contains("src=\"assets/sub/a%20b.jpg?v=" + fp + "\""));
+
+    StringWriter filename = new StringWriter();
+    HtmlGalleryRenderer.renderTo(
+        filename,
+        "{{ITEMS}}",
+        "T",
+        List.of(img, noExt),
+        new PhaseProgress("render"),
+        null,
+        new CardOptions(AssetFingerprint.FILENAME));
+    String html = filename.toString();
+    assertTrue(html.contains("src=\"assets/sub/a%20b." + fp + ".jpg\""), html);
+    assertTrue(html.contains("src=\"assets/c." + AssetFingerprint.of(noExt) + "\""), html);
+    // 表示名は元のファイル名のまま
+    assertTrue(html.contains(">sub/a b.jpg<"), html);
+
+    assertEquals(8, fp.length());
+    assertNotEquals(
+        fp,
+        AssetFingerprint.of(
+            new MediaItem(
+                img.sourcePath(), img.relativePath(), img.type(), 11, img.lastModifiedAt())));
+  }
+
+  // コピー時に縮小・再エンコードする JPEG だけ、条件を変えると assets の URL が変わることを確認する
+  @Test
+  void fingerprintIncludesDownscaleConditionForCandidates() throws Exception {
+    MediaItem jpg =
+        new MediaItem(Path.of("/abs/a.jpg"), Path.of("a.jpg"), MediaType.IMAGE, 10, Instant.EPOCH);
+    MediaItem png =
+        new MediaItem(Path.of("/abs/b.png"), Path.of("b.png"), MediaType.IMAGE, 10, Instant.EPOCH);
+    DownscaleSpec q80 = new DownscaleSpec(1000, 0, 80);
+    DownscaleSpec q90 = new DownscaleSpec(1000, 0, 90);
+
+    String html80 = renderWithDownscale(List.of(jpg, png), q80);
+    String html90 = renderWithDownscale(List.of(jpg, png), q90);
+
+    String fp80 = AssetFingerprint.of(jpg, q80.cacheKey());
+    assertNotEquals(AssetFingerprint.of(jpg), fp80);
+    assertNotEquals(fp80, AssetFingerprint.of(jpg, q90.cacheKey()));
+    assertTrue(html80.contains("src=\"assets/a." + fp80 + ".jpg\""), html80);
+    assertFalse(html90.contains("a." + fp80 + ".jpg"), html90);
+    // 対象外の画像は条件に関係なく同じ URL
+    String pngUrl = "src=\"assets/b." + AssetFingerprint.of(png) + ".png\"";
+    assertTrue(html80.contains(pngUrl), html80);
+    assertTrue(html90.contains(pngUrl), html90);
+  }
+
+  // 縮小版がある画像に、縮小版と元画像を幅の昇順に並べた srcset と sizes が出力されることを確認する
+  @Test
+  void rendersSrcsetForGeneratedVariants() throws Exception {
+    Path file = tempDir.resolve("a.png");
+    ImageIO.write(new BufferedImage(100, 50, BufferedImage.TYPE_INT_RGB), "png", file.toFile());
+    MediaItem img =
+        new MediaItem(
+            file, Path.of("a.png"), MediaType.IMAGE, Files.size(file), Instant.EPOCH);
+    MediaItem video =
+        new MediaItem(Path.of("/abs/b.mp4"), Path.of("b.mp4"), MediaType.VIDEO, 1, Instant.EPOCH);
+    VariantSpec spec = new VariantSpec(List.of(50, 25), "50vw");
+    VariantIndex index = VariantIndex.open(tempDir, tempDir);
+    ImageVariantGenerator.generate(
+        List.of(img, video), tempDir, spec, index, new PhaseProgress("resize"));
+
+    StringWriter out = new StringWriter();
+    HtmlGalleryRenderer.renderTo(
+        out,
+        "{{ITEMS}}",
+        "T",
+        List.of(img, video),
+        new PhaseProgress("render"),
+        null,
+        new CardOptions(AssetFingerprint.QUERY, spec, index));
+    String html = out.toString();
+
+    String v = "?v=" + AssetFingerprint.of(img);
+    assertTrue(
+        html.contains(
+            "src=\"assets/a.png"
+                + v
+                + "\" srcset=\"variants/25/a.png"
+                + v
+                + " 25w, variants/50/a.png"
+                + v
+                + " 50w, assets/a.png"
+                + v
+                + " 100w\" sizes=\"50vw\" alt=\"\" />"),
+        html);
+    assertFalse(html.contains("b.mp4 "), html);
+  }
+
+  // プレースホルダを作る構成では、画像の img 要素に data URI の背景が埋め込まれることを確認する
+  @Test
+  void embedsPlaceholderAsInlineBackground() throws Exception {
+    Path file = tempDir.resolve("a.png");
+    ImageIO.write(new BufferedImage(100, 50, BufferedImage.TYPE_INT_RGB), "png", file.toFile());
+    MediaItem img =
+        new MediaItem(
+            file, Path.of("a.png"), MediaType.IMAGE, Files.size(file), Instant.EPOCH);
+    VariantSpec spec = new VariantSpec(List.of(), VariantSpec.DEFAULT_SIZES, true);
+    VariantIndex index = VariantIndex.open(tempDir, tempDir);
+    ImageVariantGenerator.generate(
+        List.of(img), tempDir, spec, index, new PhaseProgress("resize"));
+
+    StringWriter out = new StringWriter();
+    HtmlGalleryRenderer.renderTo(
+        out,
+        "{{ITEMS}}",
+        "T",
+        List.of(img),
+        new PhaseProgress("render"),
+        null,
+        new CardOptions(AssetFingerprint.NONE, spec, index));
+    String html = out.toString();
+
+    assertTrue(
+        html.contains(
+            "src=\"assets/a.png\" style=\"background-image:url(data:image/png;base64,"
+                + index.get("a.png").placeholder()
+                + ");background-size:cover;background-position:center\" alt=\"\" />"),
+        html);
+    assertFalse(html.contains("srcset="), html);
+  }
+
+  // 似た画像をまとめる設定では、代表のカードだけが出力され、他の画像はその中のリンクになることを確認する
+  @Test
+  void collapsesDuplicateGroupsIntoRepresentativeCard() throws Exception {
+    MediaItem a =
+        new MediaItem(Path.of("/abs/a.jpg"), Path.of("a.jpg"), MediaType.IMAGE, 30, Instant.EPOCH);
+    MediaItem b =
+        new MediaItem(Path.of("/abs/b.jpg"), Path.of("b.jpg"), MediaType.IMAGE, 20, Instant.EPOCH);
+    MediaItem c =
+        new MediaItem(Path.of("/abs/c.jpg"), Path.of("c.jpg"), MediaType.IMAGE, 10, Instant.EPOCH);
+    DuplicateCollapse duplicates =
+        DuplicateCollapse.of(List.of(new DuplicateGroup(List.of(b, a), 3)));
+
+    StringWriter out = new StringWriter();
+    HtmlGalleryRenderer.renderTo(
+        out,
+        "{{ITEMS}}",
+        "T",
+        List.of(a, b, c),
+        new PhaseProgress("render"),
+        null,
+        new CardOptions(
+            AssetFingerprint.NONE, VariantSpec.NONE, null, DownscaleSpec.NONE, duplicates));
+    String html = out.toString();
+
+    assertFalse(html.contains("src=\"assets/a.jpg\""), html);
+    assertTrue(
+        html.contains(
+            "<figcaption>b.jpg</figcaption>\n<details><summary>似た画像 1 件</summary>\n"
+                + "<a href=\"assets/a.jpg\">a.jpg</a><br />\n</details>\n</figure>"),
+        html);
+    assertTrue(html.contains("src=\"assets/c.jpg\""), html);
+    assertNotEquals(
+        new CardOptions(AssetFingerprint.NONE).cacheKey(),
+        new CardOptions(
+                AssetFingerprint.NONE, VariantSpec.NONE, null, DownscaleSpec.NONE, duplicates)
+            .cacheKey());
+  }
+
+  private static String renderWithDownscale(List<MediaItem> items, DownscaleSpec downscale)
+      throws Exception {
+    StringWriter out = new StringWriter();
+    HtmlGalleryRenderer.renderTo(
+        out,
+        "{{ITEMS}}",
+        "T",
+        items,
+        new PhaseProgress("render"),
+        null,
+        new CardOptions(AssetFingerprint.FILENAME, VariantSpec.NONE, null, downscale));
+    return out.toString();
+  }
 }
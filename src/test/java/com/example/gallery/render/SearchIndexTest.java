@@ -0,0 +1,116 @@
+package com.example.gallery.render;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.gallery.domain.AssetFingerprint;
+import com.example.gallery.domain.MediaItem;
+import com.example.gallery.domain.MediaType;
+import com.example.gallery.output.AssetCopier;
+import com.example.gallery.output.FileSystemSink;
+import com.example.gallery.progress.PhaseProgress;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SearchIndexTest {
+
+  @TempDir Path tempDir;
+
+  // パスの各語・ファイル名中の日付・更新日時の日付が語になることを確認する
+  @Test
+  void splitsPathsIntoTermsAndDates() {
+    MediaItem item = item("Trip 2024/Day-1/IMG_20240512_0930.JPG", "2024-06-01T23:30:00Z");
+
+    List<String> terms = SearchIndex.termsOf(item, ZoneOffset.ofHours(9));
+
+    assertEquals(
+        List.of(
+            "trip", "2024", "day", "1", "img", "20240512", "0930", "jpg", "2024-05-12",
+            "2024-06-02"),
+        terms);
+  }
+
+  // 一覧が直前のパスとの差分で格納され、語ごとの出現箇所から元のメディアを引けることを確認する
+  @Test
+  void writesFrontCodedPathsAndSortedPostings() throws Exception {
+    List<MediaItem> items =
+        List.of(
+            item("2024/beach/a.jpg", "2024-01-01T00:00:00Z"),
+            item("2024/beach/b.jpg", "2024-01-01T00:00:00Z"),
+            item("2023/snow.png", "2023-02-03T00:00:00Z"));
+    PhaseProgress progress = new PhaseProgress("search");
+
+    SearchIndex.Result result =
+        SearchIndex.writeTo(
+            new FileSystemSink(tempDir), items, AssetFingerprint.NONE, ZoneOffset.UTC, progress);
+
+    assertEquals(3, result.items());
+    assertEquals(3L, progress.snapshot().items());
+    assertTrue(Files.notExists(tempDir.resolve(SearchIndex.FILE_NAME + AssetCopier.PART_SUFFIX)));
+    String js = Files.readString(tempDir.resolve(SearchIndex.FILE_NAME), StandardCharsets.UTF_8);
+    assertTrue(js.startsWith("window.gallerySearchIndex={"));
+    assertTrue(js.endsWith("};\n"));
+    JsonNode index =
+        new ObjectMapper().readTree(js.substring(js.indexOf('{'), js.lastIndexOf('}') + 1));
+
+    assertEquals(3, index.get("n").asInt());
+    assertEquals("none", index.get("f").asText());
+    assertEquals("0 2024/beach/a.jpg", index.get("p").get(0).asText());
+    assertEquals("b b.jpg", index.get("p").get(1).asText());
+    assertEquals("3 3/snow.png", index.get("p").get(2).asText());
+
+    List<String> terms = new ArrayList<>();
+    index.get("k").forEach(k -> terms.add(k.asText()));
+    assertEquals(terms.stream().sorted().toList(), terms);
+    assertEquals(result.terms(), terms.size());
+    assertEquals("0,1", postings(index, terms, "beach"));
+    assertEquals("0,1", postings(index, terms, "2024"));
+    assertEquals("2", postings(index, terms, "2023-02-03"));
+  }
+
+  // フィンガープリントを付ける場合は一覧の各件の先頭に8桁で付くことを確認する
+  @Test
+  void prefixesEntriesWithFingerprint() throws Exception {
+    MediaItem a = item("a.jpg", "2024-01-01T00:00:00Z");
+
+    StringWriter out = new StringWriter();
+    SearchIndex.write(
+        out, List.of(a), AssetFingerprint.FILENAME, ZoneOffset.UTC, new PhaseProgress("search"));
+
+    String js = out.toString();
+    JsonNode index =
+        new ObjectMapper().readTree(js.substring(js.indexOf('{'), js.lastIndexOf('}') + 1));
+    assertEquals("filename", index.get("f").asText());
+    assertEquals(AssetFingerprint.of(a) + "0 a.jpg", index.get("p").get(0).asText());
+  }
+
+  /** 差分で格納された出現箇所を、メディアの番号の一覧（, 区切り）に戻す。 */
+  private static String postings(JsonNode index, List<String> terms, String term) {
+    String[] gaps = index.get("d").get(terms.indexOf(term)).asText().split(",");
+    StringBuilder sb = new StringBuilder();
+    int id = 0;
+    for (String gap : gaps) {
+      id += Integer.parseInt(gap, 36);
+      if (!sb.isEmpty()) {
+        sb.append(',');
+      }
+      sb.append(id);
+    }
+    return sb.toString();
+  }
+
+  private static MediaItem item(String rel, String modified) {
+    return new MediaItem(
+        Path.of("/in").resolve(rel), Path.of(rel), MediaType.IMAGE, 10, Instant.parse(modified));
+  }
+}
@@ -0,0 +1,37 @@
+package com.example.gallery.scan;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ExtensionMatcherTest {
+
+  // 拡張子が大小無視で判定され、正規化済みの拡張子が返ることを確認する
+  @Test
+  void matchesExtensionCaseInsensitively() {
+    ExtensionMatcher matcher = ExtensionMatcher.of(List.of(".JPG", "jpeg", "mp4"));
+
+    assertEquals("jpg", matcher.match("/media/a/IMG_0001.JPG"));
+    assertEquals("jpeg", matcher.match("C:\\media\\b.Jpeg"));
+    assertEquals("mp4", matcher.match("clip.mp4"));
+
+    // 同じ拡張子なら同じ文字列インスタンスが返る（判定ごとに文字列を生成しない）
+    assertSame(matcher.match("x.jpg"), matcher.match("y.JPG"));
+  }
+
+  // 拡張子なし・対象外・ディレクトリ名のドットは一致しないことを確認する
+  @Test
+  void rejectsNonMatchingNames() {
+    ExtensionMatcher matcher = ExtensionMatcher.of(List.of("jpg", "mp4"));
+
+    assertNull(matcher.match("notes.txt"));
+    assertNull(matcher.match("README"));
+    assertNull(matcher.match("trailing."));
+    assertNull(matcher.match("album.jpg/README"));
+    assertNull(matcher.match("a.xjpg"));
+    assertNull(matcher.match("a.verylongextension"));
+  }
+}
@@ -0,0 +1,63 @@
+package com.example.gallery.scan;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.gallery.domain.MediaItem;
+import com.example.gallery.domain.MediaType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExternalMediaSorterTest {
+
+  @TempDir Path tempDir;
+
+  // 複数のレベルにまたがってランをマージしても、読み出し時に開くランが上限以下で、全件がソート順に並ぶことを確認する
+  @Test
+  void mergesRunsByLevelAndKeepsFanInBounded() throws Exception {
+    Comparator<MediaItem> byPath = Comparator.comparing(i -> i.relativePath().toString());
+    // レベル1に MAX_FAN_IN - 1 本、レベル0に MAX_FAN_IN - 1 本のランが残る件数
+    int count = ExternalMediaSorter.MAX_FAN_IN * ExternalMediaSorter.MAX_FAN_IN - 1;
+    List<MediaItem> items = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      // 追加順とソート順が一致しないようにする
+      int key = (int) ((i * 7919L) % count);
+      items.add(
+          new MediaItem(
+              Path.of("/abs/" + key + ".jpg"),
+              Path.of(String.format("%06d.jpg", key)),
+              MediaType.IMAGE,
+              1,
+              Instant.EPOCH));
+    }
+
+    // 1件ごとに上限を超える設定にして、1件ずつのランを書き出す
+    ExternalMediaSorter sorter = new ExternalMediaSorter(byPath, 1, tempDir);
+    for (MediaItem item : items) {
+      sorter.add(item);
+    }
+    List<MediaItem> expected = new ArrayList<>(items);
+    expected.sort(byPath);
+
+    Path spillDir;
+    try (SortedMediaItems sorted = sorter.finish()) {
+      assertFalse(sorted.isInMemory());
+      assertTrue(sorted.runCount() <= ExternalMediaSorter.MAX_FAN_IN);
+      assertEquals(count, sorted.size());
+      assertEquals(expected, sorted.toList());
+      spillDir = sorted.spillDir();
+      try (Stream<Path> files = Files.list(spillDir)) {
+        assertEquals(sorted.runCount(), files.count());
+      }
+    }
+    assertFalse(Files.exists(spillDir));
+  }
+}
@@ -0,0 +1,44 @@
+package com.example.gallery.scan;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class IgnoreRulesTest {
+
+  // 名前パターン・ディレクトリ限定・基準ディレクトリ付きパターン・** が gitignore と同様に判定されることを確認する
+  @Test
+  void matchesGitignoreStylePatterns() {
+    IgnoreRules rules =
+        IgnoreRules.EMPTY
+            .with("", List.of("@eaDir/", "*.tmp", "/RAW", "docs/**/draft-?.jpg"))
+            .with("event", List.of("private/"));
+
+    assertTrue(rules.isIgnored("@eaDir", true));
+    assertTrue(rules.isIgnored("a/b/@eaDir", true));
+    assertFalse(rules.isIgnored("@eaDir", false)); // 末尾 / はディレクトリのみ
+
+    assertTrue(rules.isIgnored("x/y.tmp", false));
+    assertTrue(rules.isIgnored("RAW", true));
+    assertFalse(rules.isIgnored("event/RAW", true)); // 先頭 / はルート基準
+
+    assertTrue(rules.isIgnored("docs/draft-1.jpg", false));
+    assertTrue(rules.isIgnored("docs/a/b/draft-2.jpg", false));
+    assertFalse(rules.isIgnored("docs/draft-10.jpg", false));
+
+    assertTrue(rules.isIgnored("event/private", true));
+    assertFalse(rules.isIgnored("other/private", true)); // ネストしたルールはそのディレクトリ配下のみ
+  }
+
+  // 否定パターン（!）は後勝ちで再包含されることを確認する
+  @Test
+  void laterNegationReincludes() {
+    IgnoreRules rules = IgnoreRules.EMPTY.with("", List.of("*.jpg", "!keep.jpg"));
+
+    assertTrue(rules.isIgnored("a.jpg", false));
+    assertFalse(rules.isIgnored("keep.jpg", false));
+    assertFalse(rules.isIgnored("a.png", false));
+  }
+}
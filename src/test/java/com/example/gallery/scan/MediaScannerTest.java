@@ -1,17 +1,24 @@
 package com.example.gallery.scan;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.example.gallery.domain.InputRoot;
 import com.example.gallery.domain.MediaItem;
 import com.example.gallery.domain.MediaType;
 import com.example.gallery.domain.SortMode;
+import com.example.gallery.progress.PhaseProgress;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.FileTime;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
 import org.junit.jupiter.api.io.TempDir;
 
 class MediaScannerTest {
@@ -51,6 +58,170 @@ class MediaScannerTest {
     assertEquals(MediaType.VIDEO, items.get(1).type());
   }
 
+  // 一覧を作らずに走査する場合も、対象メディアが1件ずつ受け取り先に渡されることを確認する
+  @Test
+  void scanEachStreamsItemsWithoutSorting() throws Exception {
+    Path input = tempDir.resolve("media");
+    Files.createDirectories(input.resolve("nested"));
+    Files.writeString(input.resolve("a.jpg"), "a");
+    Files.writeString(input.resolve("b.txt"), "b");
+    Files.writeString(input.resolve("nested/c.png"), "cc");
+    PhaseProgress progress = new PhaseProgress("scan");
+
+    List<String> rels = new ArrayList<>();
+    MediaScanner.scanEach(
+        input,
+        List.of("jpg", "png"),
+        ScanOptions.DEFAULT,
+        progress,
+        item -> rels.add(item.relativePath().toString().replace('\\', '/')));
+
+    assertEquals(List.of("a.jpg", "nested/c.png"), rels.stream().sorted().toList());
+    assertEquals(2L, progress.snapshot().items());
+  }
+
+  // 複数の入力フォルダを並行に走査し、名前空間付きの relativePath で1つの一覧にまとめることを確認する
+  @Test
+  void mergesMultipleRootsIntoNamespacedSortedList() throws Exception {
+    Path photos = tempDir.resolve("vol1/photos");
+    Path archive = tempDir.resolve("vol2/archive");
+    Files.createDirectories(photos);
+    Files.createDirectories(archive.resolve("2020"));
+    Path a = photos.resolve("a.jpg");
+    Path b = archive.resolve("a.jpg");
+    Path c = archive.resolve("2020/c.jpg");
+    Files.writeString(a, "a");
+    Files.writeString(b, "bb");
+    Files.writeString(c, "ccc");
+    Files.setLastModifiedTime(a, FileTime.from(Instant.parse("2022-01-01T00:00:00Z")));
+    Files.setLastModifiedTime(b, FileTime.from(Instant.parse("2021-01-01T00:00:00Z")));
+    Files.setLastModifiedTime(c, FileTime.from(Instant.parse("2023-01-01T00:00:00Z")));
+    PhaseProgress progress = new PhaseProgress("scan");
+
+    List<MediaItem> items =
+        MediaScanner.scan(
+            InputRoot.assign(List.of(photos, archive)),
+            List.of("jpg"),
+            SortMode.MODIFIED_DESC,
+            ScanOptions.DEFAULT,
+            progress);
+
+    assertEquals(
+        List.of("archive/2020/c.jpg", "photos/a.jpg", "archive/a.jpg"),
+        items.stream().map(i -> i.relativePath().toString().replace('\\', '/')).toList());
+    assertEquals(b.toAbsolutePath().normalize(), items.get(2).sourcePath());
+    assertEquals(6L, progress.snapshot().bytes());
+  }
+
+  // ディレクトリへのリンクは既定では辿らず、followLinks では循環せずに同じ実体を1回だけ走査することを確認する
+  @Test
+  @DisabledOnOs(value = OS.WINDOWS, disabledReason = "シンボリックリンクの作成に権限が必要なため")
+  void followsDirectoryLinksOnceWhenEnabled() throws Exception {
+    Path input = tempDir.resolve("media");
+    Path shared = tempDir.resolve("shared");
+    Files.createDirectories(input.resolve("local"));
+    Files.createDirectories(shared);
+    Files.writeString(input.resolve("local/a.jpg"), "a");
+    Files.writeString(shared.resolve("b.jpg"), "b");
+    Files.createSymbolicLink(input.resolve("album"), shared);
+    Files.createSymbolicLink(input.resolve("local/same-album"), shared);
+    Files.createSymbolicLink(input.resolve("local/loop"), input);
+
+    List<String> plain =
+        MediaScanner.scan(input, List.of("jpg"), SortMode.MODIFIED_DESC).stream()
+            .map(item -> item.relativePath().toString().replace('\\', '/'))
+            .toList();
+    List<MediaItem> followed =
+        MediaScanner.scan(
+            input, List.of("jpg"), SortMode.MODIFIED_DESC, new ScanOptions(false, 0, true));
+
+    assertEquals(List.of("local/a.jpg"), plain);
+    assertEquals(2, followed.size());
+    List<Path> sources = followed.stream().map(MediaItem::sourcePath).toList();
+    assertTrue(sources.stream().anyMatch(p -> p.getFileName().toString().equals("b.jpg")));
+    assertTrue(sources.stream().anyMatch(p -> p.getFileName().toString().equals("a.jpg")));
+  }
+
+  // 同じディレクトリにリンクと実パスの両方から着く場合は実パスで、外を指すリンクが複数ある場合はパスの順が先のリンクで走査することを確認する
+  @Test
+  @DisabledOnOs(value = OS.WINDOWS, disabledReason = "シンボリックリンクの作成に権限が必要なため")
+  void choosesSamePathForLinkedDirectoriesRegardlessOfListingOrder() throws Exception {
+    Path input = tempDir.resolve("media");
+    Path shared = tempDir.resolve("shared");
+    Files.createDirectories(input.resolve("real"));
+    Files.createDirectories(input.resolve("m"));
+    Files.createDirectories(shared);
+    Files.writeString(input.resolve("real/a.jpg"), "a");
+    Files.writeString(shared.resolve("b.jpg"), "b");
+    // 名前の順では実パスより前に来るリンク
+    Files.createSymbolicLink(input.resolve("a-real"), input.resolve("real"));
+    Files.createSymbolicLink(input.resolve("z-shared"), shared);
+    Files.createSymbolicLink(input.resolve("m/shared"), shared);
+
+    List<String> rels =
+        MediaScanner.scan(
+                input, List.of("jpg"), SortMode.MODIFIED_DESC, new ScanOptions(false, 0, true))
+            .stream()
+            .map(item -> item.relativePath().toString().replace('\\', '/'))
+            .sorted()
+            .toList();
+    assertEquals(List.of("m/shared/b.jpg", "real/a.jpg"), rels);
+  }
+
+  // .galleryignore（ルート/ネスト）で除外したディレクトリ・ファイルが結果に含まれないことを確認する
+  @Test
+  void skipsPathsExcludedByGalleryIgnore() throws Exception {
+    Path input = tempDir.resolve("media");
+    Files.createDirectories(input.resolve("@eaDir"));
+    Files.createDirectories(input.resolve("event/RAW"));
+    Files.createDirectories(input.resolve("event/.thumbnails"));
+
+    Files.writeString(input.resolve(".galleryignore"), "# synology\n@eaDir/\n.thumbnails/\n");
+    Files.writeString(input.resolve("event/.galleryignore"), "/RAW\n*-draft.jpg\n");
+
+    Files.writeString(input.resolve("top.jpg"), "t");
+    Files.writeString(input.resolve("@eaDir/meta.jpg"), "m");
+    Files.writeString(input.resolve("event/a.jpg"), "a");
+    Files.writeString(input.resolve("event/a-draft.jpg"), "d");
+    Files.writeString(input.resolve("event/RAW/a.jpg"), "r");
+    Files.writeString(input.resolve("event/.thumbnails/a.jpg"), "x");
+
+    List<String> rels =
+        MediaScanner.scan(input, List.of("jpg"), SortMode.MODIFIED_DESC).stream()
+            .map(item -> item.relativePath().toString().replace('\\', '/'))
+            .sorted()
+            .toList();
+
+    assertEquals(List.of("event/a.jpg", "top.jpg"), rels);
+  }
+
+  // 内容判定を有効にすると、拡張子ではなく先頭バイトで種別が決まることを確認する
+  @Test
+  void sniffsMediaTypeFromContentWhenEnabled() throws Exception {
+    Path input = tempDir.resolve("media");
+    Files.createDirectories(input);
+
+    // 拡張子は mp4 だが中身は HEIC（ftyp heic）
+    byte[] heic = {0, 0, 0, 24, 'f', 't', 'y', 'p', 'h', 'e', 'i', 'c', 0, 0, 0, 0};
+    // 拡張子は mov、中身は QuickTime（ftyp qt）
+    byte[] mov = {0, 0, 0, 20, 'f', 't', 'y', 'p', 'q', 't', ' ', ' ', 0, 0, 0, 0};
+    Files.write(input.resolve("photo.mp4"), heic);
+    Files.write(input.resolve("clip.MOV"), mov);
+
+    List<MediaItem> byExt =
+        MediaScanner.scan(input, List.of("mp4", "mov"), SortMode.MODIFIED_DESC);
+    assertTrue(byExt.stream().allMatch(item -> item.type() == MediaType.VIDEO));
+
+    List<MediaItem> sniffed =
+        MediaScanner.scan(
+            input, List.of("mp4", "mov"), SortMode.MODIFIED_DESC, new ScanOptions(true));
+    for (MediaItem item : sniffed) {
+      MediaType expected =
+          item.relativePath().toString().equals("photo.mp4") ? MediaType.IMAGE : MediaType.VIDEO;
+      assertEquals(expected, item.type());
+    }
+  }
+
   // inputDir が存在しない場合に MediaScanException になることを確認する
   @Test
   void rejectsMissingInputDir() {
@@ -59,4 +230,45 @@ class MediaScannerTest {
         MediaScanException.class,
         () -> MediaScanner.scan(missing, List.of("jpg"), SortMode.MODIFIED_DESC));
   }
+
+  // メモリ上限を超えて一時ファイルに書き出した場合も、メモリ上の走査と同じ順で読み出せることを確認する
+  @Test
+  void boundedScanSpillsRunsAndMergesInOrder() throws Exception {
+    Path input = tempDir.resolve("media");
+    Files.createDirectories(input.resolve("nested"));
+    int count = ExternalMediaSorter.MAX_FAN_IN * 2 + 5;
+    for (int i = 0; i < count; i++) {
+      Path file = input.resolve((i % 3 == 0 ? "nested/" : "") + "f" + i + ".jpg");
+      Files.writeString(file, "x".repeat(i % 7));
+      // 同一日時を含めて、パス順での並びも確認できるようにする
+      Instant modified = Instant.parse("2020-01-01T00:00:00Z").plusSeconds((i * 37L) % 50);
+      Files.setLastModifiedTime(file, FileTime.from(modified));
+    }
+
+    List<MediaItem> expected = MediaScanner.scan(input, List.of("jpg"), SortMode.MODIFIED_DESC);
+
+    // 1件ごとに上限を超える設定にして、ランの書き出しと途中マージを発生させる
+    ScanOptions options = new ScanOptions(false, 1);
+    Path spillDir;
+    try (SortedMediaItems sorted =
+        MediaScanner.scanSorted(
+            input,
+            List.of("jpg"),
+            SortMode.MODIFIED_DESC,
+            options,
+            new PhaseProgress("scan"))) {
+      assertFalse(sorted.isInMemory());
+      assertTrue(sorted.runCount() < ExternalMediaSorter.MAX_FAN_IN);
+      assertEquals(count, sorted.size());
+      assertEquals(expected, sorted.toList());
+      // 2回目の読み出しも先頭から同じ順になる
+      assertEquals(expected, sorted.toList());
+
+      // 途中まで読んだイテレータが残っていても close で後始末できる
+      sorted.iterator().next();
+      spillDir = sorted.spillDir();
+      assertTrue(Files.isDirectory(spillDir));
+    }
+    assertFalse(Files.exists(spillDir));
+  }
 }
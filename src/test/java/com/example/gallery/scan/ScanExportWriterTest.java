@@ -0,0 +1,69 @@
+package com.example.gallery.scan;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.example.gallery.domain.MediaItem;
+import com.example.gallery.domain.MediaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+
+class ScanExportWriterTest {
+
+  // JSON Lines では1行に1件のオブジェクトが書き出されることを確認する
+  @Test
+  void writesOneJsonObjectPerLine() throws Exception {
+    StringWriter out = new StringWriter();
+    ScanExportWriter writer = ScanExportWriter.open(out, ScanExportFormat.JSONL);
+
+    writer.accept(item("2024/a.jpg", MediaType.IMAGE, 10));
+    writer.accept(item("2024/b.mp4", MediaType.VIDEO, 2048));
+    writer.flush();
+
+    String[] lines = out.toString().split("\n", -1);
+    assertEquals(3, lines.length);
+    assertEquals("", lines[2]);
+    assertEquals(2L, writer.count());
+    JsonNode first = new ObjectMapper().readTree(lines[0]);
+    assertEquals("2024/a.jpg", first.get("relativePath").asText());
+    assertEquals("image", first.get("type").asText());
+    assertEquals(10L, first.get("sizeBytes").asLong());
+    assertEquals("2024-05-12T09:30:00Z", first.get("lastModifiedAt").asText());
+    JsonNode second = new ObjectMapper().readTree(lines[1]);
+    assertEquals("video", second.get("type").asText());
+    assertEquals(2048L, second.get("sizeBytes").asLong());
+  }
+
+  // CSV では列名の行に続き、区切り文字や引用符を含むパスだけが引用符で囲まれることを確認する
+  @Test
+  void writesCsvWithHeaderAndQuoting() throws Exception {
+    StringWriter out = new StringWriter();
+    ScanExportWriter writer = ScanExportWriter.open(out, ScanExportFormat.CSV);
+
+    writer.accept(item("plain.jpg", MediaType.IMAGE, 1));
+    writer.accept(item("a,\"b\".jpg", MediaType.IMAGE, 2));
+    writer.flush();
+
+    String[] lines = out.toString().split("\r\n", -1);
+    assertEquals("relativePath,type,sizeBytes,lastModifiedAt,sourcePath", lines[0]);
+    assertEquals(
+        "plain.jpg,image,1,2024-05-12T09:30:00Z," + Path.of("/in").resolve("plain.jpg"),
+        lines[1]);
+    String source = Path.of("/in").resolve("a,\"b\".jpg").toString().replace("\"", "\"\"");
+    assertEquals(
+        "\"a,\"\"b\"\".jpg\",image,2,2024-05-12T09:30:00Z,\"" + source + "\"", lines[2]);
+    assertEquals("", lines[3]);
+  }
+
+  private static MediaItem item(String rel, MediaType type, long size) {
+    return new MediaItem(
+        Path.of("/in").resolve(rel),
+        Path.of(rel),
+        type,
+        size,
+        Instant.parse("2024-05-12T09:30:00Z"));
+  }
+}